@@ -0,0 +1,90 @@
+package account;
+
+import atm.ATM;
+import atm.Population;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how {@link Account#deposit()} and {@link Account#withdrawCash(long)} scale with the number of threads
+ * using one account. Both take the account's stripe of the {@link TransferEngine}, so they are the paths to compare
+ * with the bare compare-and-set and locked updates of {@link BalanceContentionBench}.
+ *
+ * <p>
+ *     Deposits read a cheque from a feed that is not tailed, so the account goes back to the first line once it has
+ *     read them all and never runs out. Every withdrawal puts the money and the bills it dispensed back. The ATM has
+ *     no journal, so neither path writes a record.
+ * </p>
+ *
+ * <p>
+ *     Run with a growing number of threads, for example -t 1, -t 4 and -t 16.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountPathsBench {
+
+    private ATM atm;
+
+    private File deposits;
+
+    private Chequing account;
+
+    @Setup
+    public void setup() throws IOException {
+        atm = Population.create(0);
+        deposits = File.createTempFile("deposits", ".txt");
+        try (FileWriter w = new FileWriter(deposits)) {
+            for (int i = 0; i < 1000; i++) {
+                w.write("1.00\n");
+            }
+        }
+        DepositFeed.setDefault(new DepositFeed(deposits, false));
+    }
+
+    @Setup(Level.Iteration)
+    public void openAccount() {
+        account = new Chequing(1, atm);
+        account.addMoney(1000000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        DepositFeed.setDefault(null);
+        deposits.delete();
+    }
+
+    @Benchmark
+    public long deposit() {
+        return account.deposit();
+    }
+
+    @Benchmark
+    public boolean withdrawCash() {
+        int[] plan = account.withdrawCash(2000);
+        if (plan == null) {
+            return false;
+        }
+        account.addMoney(2000);
+        return atm.getBills().depositBills(plan);
+    }
+}
@@ -0,0 +1,59 @@
+package account;
+
+import atm.ATM;
+import atm.Population;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how credits and debits to a single account scale with the number of threads updating it, comparing the
+ * compare-and-set balance updates of {@link Account} with the same updates made under a lock. Deposits and withdrawals
+ * take the account's lock on top of the compare-and-set, see {@link AccountPathsBench}.
+ *
+ * <p>
+ *     Run with a growing number of threads, for example -t 1, -t 4 and -t 16.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BalanceContentionBench {
+
+    private Chequing cas;
+
+    private Chequing locked;
+
+    @Setup
+    public void setup() {
+        ATM atm = Population.create(0);
+        cas = new Chequing(1, atm);
+        locked = new Chequing(2, atm);
+    }
+
+    @Benchmark
+    public boolean cas() {
+        cas.addMoney(300);
+        return cas.tryRemoveMoney(300);
+    }
+
+    @Benchmark
+    public boolean locked() {
+        synchronized (locked) {
+            locked.addMoney(300);
+            return locked.tryRemoveMoney(300);
+        }
+    }
+}
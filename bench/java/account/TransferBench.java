@@ -0,0 +1,54 @@
+package account;
+
+import atm.ATM;
+import atm.Population;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a transfer out of an account and back again through {@link Account#transferOut(long, Account)} and
+ * {@link Account#transferIn(long, Account)}, without their console messages. Fresh accounts are opened for every
+ * iteration, so their transaction logs do not keep growing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferBench {
+
+    private ATM atm;
+
+    private Chequing from;
+
+    private Chequing to;
+
+    @Setup
+    public void setup() {
+        atm = Population.create(0);
+    }
+
+    @Setup(Level.Iteration)
+    public void openAccounts() {
+        from = new Chequing(1, atm);
+        to = new Chequing(2, atm);
+        from.addMoney(1000000);
+    }
+
+    @Benchmark
+    public boolean transferOutAndIn() {
+        return from.tryTransferOut(300, to) & from.tryTransferIn(300, to);
+    }
+}
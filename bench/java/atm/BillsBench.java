@@ -0,0 +1,51 @@
+package atm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures planning and dispensing a withdrawal with {@link Bills#withdrawBills(long)}. The cassettes are topped
+ * back up after every withdrawal, so each one starts from the same stock.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BillsBench {
+
+    /**
+     * The amount withdrawn, in cents: a single bill, a mix of every bill and a large sum.
+     */
+    @Param({"2000", "8500", "38000"})
+    private long amount;
+
+    private Bills bills;
+
+    @Setup
+    public void setup() {
+        Population.quiet();
+        bills = new Bills(CassetteLayout.standard(), new int[]{100, 100, 100, 100});
+    }
+
+    @Benchmark
+    public boolean withdrawBills() {
+        boolean dispensed = bills.withdrawBills(amount);
+        for (int i = 0; i < bills.getLayout().size(); i++) {
+            bills.restock(i);
+        }
+        return dispensed;
+    }
+}
@@ -0,0 +1,60 @@
+package atm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookup behind the login menu of {@link interfaces.Interface}: finding a user by name in the
+ * {@link UserDirectory} and checking their password, for registered and unknown usernames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LoginBench {
+
+    @Param({"1000", "100000", "1000000"})
+    private int users;
+
+    private UserDirectory directory;
+
+    private String[] usernames;
+
+    private String[] passwords;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        directory = Population.create(users).getUserDirectory();
+        // Every eighth attempt is for a username nobody has.
+        usernames = new String[4096];
+        passwords = new String[usernames.length];
+        Random random = new Random(42);
+        for (int i = 0; i < usernames.length; i++) {
+            int user = random.nextInt(users);
+            usernames[i] = i % 8 == 0 ? "nobody" + user : Population.username(user);
+            passwords[i] = Population.password(user);
+        }
+    }
+
+    @Benchmark
+    public User authenticate() {
+        int i = next++ & (usernames.length - 1);
+        return directory.authenticate(usernames[i], passwords[i]);
+    }
+}
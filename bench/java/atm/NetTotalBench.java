@@ -0,0 +1,66 @@
+package atm;
+
+import account.Account;
+import account.Chequing;
+import account.CreditCard;
+import account.LOC;
+import account.Savings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link User#getNetTotal()} for users with a few accounts and with many.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetTotalBench {
+
+    @Param({"4", "40"})
+    private int accounts;
+
+    private User user;
+
+    @Setup
+    public void setup() {
+        ATM atm = Population.create(0);
+        ArrayList<Account> list = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            switch (i % 4) {
+                case 0:
+                    list.add(new Chequing(i, atm));
+                    break;
+                case 1:
+                    list.add(new Savings(i, atm));
+                    break;
+                case 2:
+                    list.add(new CreditCard(i, atm));
+                    break;
+                default:
+                    list.add(new LOC(i, atm));
+                    break;
+            }
+        }
+        user = new User("bench", "bench", list);
+    }
+
+    @Benchmark
+    public long getNetTotal() {
+        return user.getNetTotal();
+    }
+}
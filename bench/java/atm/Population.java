@@ -0,0 +1,84 @@
+package atm;
+
+import account.Account;
+import account.Chequing;
+import account.CreditCard;
+import account.Savings;
+import subscriptions.Subscription;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Builds ATMs with a given number of users for the benchmarks, without going through the bank manager, so that
+ * setting up a million users does not print five million lines.
+ *
+ * <p>
+ *     Every user is named "user" followed by their number, counting from 0, and has the password "pw" followed by the
+ *     same number. Each has a chequing account, a savings account and a credit card with a one cent subscription.
+ * </p>
+ */
+public final class Population {
+
+    /**
+     * Account numbers given to the accounts of the population start here, above any the bank manager hands out.
+     */
+    private static final int FIRST_ACCOUNT_NUM = 100000000;
+
+    private Population() {
+    }
+
+    /**
+     * Creates an ATM with the given number of users.
+     *
+     * @param users the number of users
+     * @return the ATM
+     */
+    public static ATM create(int users) {
+        quiet();
+        ATM atm = new ATM();
+        int accountNum = FIRST_ACCOUNT_NUM;
+        for (int i = 0; i < users; i++) {
+            ArrayList<Account> accounts = new ArrayList<>(3);
+            Chequing chequing = new Chequing(accountNum++, atm);
+            chequing.setPrimary();
+            chequing.addMoney(100000 + i % 1000);
+            Savings savings = new Savings(accountNum++, atm);
+            savings.addMoney(500000);
+            CreditCard credit = new CreditCard(accountNum++, atm);
+            accounts.add(chequing);
+            accounts.add(savings);
+            accounts.add(credit);
+            User user = new User(username(i), password(i), accounts);
+            user.addSubscription(new Subscription("bench", 1));
+            atm.addUserToList(user);
+        }
+        return atm;
+    }
+
+    /**
+     * @param i the number of a user
+     * @return the username of that user
+     */
+    public static String username(int i) {
+        return "user" + i;
+    }
+
+    /**
+     * @param i the number of a user
+     * @return the password of that user
+     */
+    public static String password(int i) {
+        return "pw" + i;
+    }
+
+    /**
+     * Stops the ATM from printing and drops the messages it reports, so the benchmarks measure the work rather than
+     * the console.
+     */
+    public static void quiet() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        AsyncOutput.setDefault(line -> { });
+    }
+}
@@ -0,0 +1,119 @@
+package atm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing the snapshot {@link ATM#shutDown()} takes and reading it back the way {@link ATM#load()} does
+ * when {@link Run} starts, for banks of a thousand, a hundred thousand and a million users.
+ *
+ * <p>
+ *     Each write is a single shot, since it takes seconds for the largest banks. The snapshot is written to
+ *     snapshot.blob in the directory the benchmark runs in. The encode and decode benchmarks compare
+ *     {@link SnapshotCodec} against Java serialization of the same bank in memory, without the disk; the size of
+ *     both is printed once the bank is built. encodeOneShard and decodeOneShard write the whole bank as a single
+ *     shard, which is written and read on one thread, to show what splitting it into shards gains.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SnapshotBench {
+
+    @Param({"1000", "100000", "1000000"})
+    private int users;
+
+    private ATM atm;
+
+    private byte[] binary;
+
+    private byte[] serialized;
+
+    private byte[] oneShard;
+
+    @Setup
+    public void setup() throws IOException {
+        atm = Population.create(users);
+        atm.writeSnapshot();
+        binary = encodeBinary().toByteArray();
+        serialized = encodeJava().toByteArray();
+        oneShard = encodeOneShard().toByteArray();
+        System.err.println("snapshot: " + binary.length + " bytes, serialized: " + serialized.length + " bytes");
+    }
+
+    @Benchmark
+    public ATM writeSnapshot() {
+        atm.writeSnapshot();
+        return atm;
+    }
+
+    @Benchmark
+    public ATM readSnapshot() throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(new File(ATM.SNAPSHOT_FILE)))) {
+            return SnapshotCodec.read(in);
+        }
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream encodeBinary() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(binary == null ? 1 << 16 : binary.length);
+        SnapshotCodec.write(atm, out);
+        return out;
+    }
+
+    @Benchmark
+    public ATM decodeBinary() throws IOException {
+        return SnapshotCodec.read(new ByteArrayInputStream(binary));
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream encodeOneShard() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(binary.length);
+        SnapshotCodec.write(atm, out, Integer.MAX_VALUE);
+        return out;
+    }
+
+    @Benchmark
+    public ATM decodeOneShard() throws IOException {
+        return SnapshotCodec.read(new ByteArrayInputStream(oneShard));
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream encodeJava() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(serialized == null ? 1 << 16 : serialized.length);
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(atm);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public ATM decodeJava() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return (ATM) ois.readObject();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package broker;
+
+import atm.Population;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Broker#checkIfStockIsValid(String)} and {@link Broker#companyNameFromSymbol(String)} against the
+ * full stocklist.txt, cycling through every listed symbol and as many unlisted ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolLookupBench {
+
+    private Broker broker;
+
+    private String[] symbols;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        broker = Population.create(0).getBroker();
+        List<String> listed = broker.symbolsStartingWith("");
+        symbols = new String[listed.size() * 2];
+        for (int i = 0; i < listed.size(); i++) {
+            symbols[2 * i] = listed.get(i);
+            symbols[2 * i + 1] = listed.get(i) + "X";
+        }
+    }
+
+    private String nextSymbol() {
+        String symbol = symbols[next];
+        next = next + 1 == symbols.length ? 0 : next + 1;
+        return symbol;
+    }
+
+    @Benchmark
+    public boolean checkIfStockIsValid() {
+        return broker.checkIfStockIsValid(nextSymbol());
+    }
+
+    @Benchmark
+    public String companyNameFromSymbol() {
+        return broker.companyNameFromSymbol(nextSymbol());
+    }
+}
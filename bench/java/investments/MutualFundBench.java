@@ -0,0 +1,50 @@
+package investments;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MutualFund#getValue()} for funds holding a few, a hundred and a thousand positions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutualFundBench {
+
+    @Param({"10", "100", "1000"})
+    private int positions;
+
+    private MutualFund fund;
+
+    @Setup
+    public void setup() {
+        QuoteBook quotes = new QuoteBook();
+        ArrayList<Position> stocks = new ArrayList<>(positions);
+        for (int i = 0; i < positions; i++) {
+            Quote quote = quotes.intern("S" + i, "Stock " + i);
+            quote.setCurrentPrice(1000 + i);
+            stocks.add(new Position(quote, 10 + i % 7));
+        }
+        fund = new MutualFund(2, "bench", stocks);
+    }
+
+    @Benchmark
+    public long getValue() {
+        return fund.getValue();
+    }
+}
@@ -0,0 +1,49 @@
+package metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what recording a metric adds to an operation: timing it with a {@link Timer}, counting it with a
+ * {@link Counter}, and the clock reads alone for comparison. Run with -t 8 or more to see the cost when many threads
+ * record into the same metric.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBench {
+
+    private final Timer timer = new Metrics().timer("bench.timer");
+
+    private final Counter counter = new Metrics().counter("bench.counter");
+
+    @Benchmark
+    public long clockOnly() {
+        return System.nanoTime() - System.nanoTime();
+    }
+
+    @Benchmark
+    public Timer timerStartStop() {
+        long start = timer.start();
+        timer.stop(start);
+        return timer;
+    }
+
+    @Benchmark
+    public Counter counterIncrement() {
+        counter.increment();
+        return counter;
+    }
+}
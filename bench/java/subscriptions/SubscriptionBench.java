@@ -0,0 +1,61 @@
+package subscriptions;
+
+import account.Account;
+import atm.ATM;
+import atm.Population;
+import atm.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Subscriber#updateAllSubscriptions()} charging every user for their subscription on the 1st of the
+ * month. Credit cards are paid off before every iteration, so no subscription is cancelled for lack of credit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SubscriptionBench {
+
+    @Param({"1000", "100000", "1000000"})
+    private int users;
+
+    private ATM atm;
+
+    @Setup
+    public void setup() {
+        atm = Population.create(users);
+        atm.setDate("2020-01-01");
+    }
+
+    @Setup(Level.Iteration)
+    public void payOffCreditCards() {
+        for (User user : atm.getListOfUsers()) {
+            for (Account account : user.getAccounts()) {
+                if (account.getType().equals("creditcard")) {
+                    account.restoreBalance(0);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public ATM updateAllSubscriptions() {
+        atm.getSubscriber().updateAllSubscriptions();
+        return atm;
+    }
+}
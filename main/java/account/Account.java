@@ -1,12 +1,25 @@
 package account;
 
 import atm.ATM;
+import atm.AsyncOutput;
+import atm.HistoryStore;
+import atm.Journal;
+import atm.Money;
 import atm.Transaction;
+import atm.TransactionLog;
+import atm.TransactionType;
 import atm.User;
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
 
 /**
  * Abstract class representing a user's bank account.
@@ -24,15 +37,34 @@ public abstract class Account implements Serializable {
     private final int accountNum;
 
     /**
-     * The dollar balance on the account.
+     * Times withdrawals from every account, and counts those that were declined.
      */
-    double balance;
+    private static final Timer WITHDRAWALS = Metrics.getDefault().timer("account.withdraw");
+    private static final Counter DECLINED_WITHDRAWALS = Metrics.getDefault().counter("account.withdraw.declined");
 
     /**
-     * A list of {@link Transaction} objects representing transactions performed through the account.
-     * Deposits are not recorded in this list because they cannot be undone
+     * Times bill payments from every account.
      */
-    private final ArrayList<Transaction> listOfTransactions = new ArrayList<>();
+    private static final Timer BILL_PAYMENTS = Metrics.getDefault().timer("account.paybill");
+
+    /**
+     * Changes {@link Account#balance} with compare-and-set, so single-account credits and debits need no lock.
+     */
+    private static final AtomicLongFieldUpdater<Account> BALANCE =
+            AtomicLongFieldUpdater.newUpdater(Account.class, "balance");
+
+    /**
+     * The balance on the account, in cents. Only changed through {@link Account#changeBalance(long, LongPredicate)}
+     * and the other balance methods below once the account is in use.
+     */
+    volatile long balance;
+
+    /**
+     * The most recent transactions performed through the account, see {@link TransactionLog}. Older transactions are
+     * in the ATM's {@link HistoryStore}.
+     * Deposits are not recorded in this log because they cannot be undone
+     */
+    private final TransactionLog transactions = new TransactionLog();
     /**
      * The date the account was created.
      */
@@ -71,12 +103,48 @@ public abstract class Account implements Serializable {
     /**
      * Returns the balance of the account {@link Account#balance}.
      *
-     * @return the balance of the account
+     * @return the balance of the account, in cents
      */
-    public double getBalance(){
+    public long getBalance(){
         return this.balance;
     }
 
+    /**
+     * Sets the balance of the account directly. Only used to restore the account's state when replaying the
+     * {@link Journal}, since the balance recorded there already includes every rule of the account type.
+     *
+     * @param balance the balance in cents the account had when the journal record was written
+     */
+    public void restoreBalance(long balance) {
+        this.balance = balance;
+    }
+
+    /**
+     * Sets the position of the account in the {@link DepositFeed}. Only used to restore the account's state when
+     * replaying the {@link Journal}.
+     *
+     * @param depositOffset the byte offset of the next deposit the account reads
+     */
+    public void restoreDepositOffset(long depositOffset) {
+        this.readAndWrite.restoreDepositOffset(depositOffset);
+    }
+
+    /**
+     * Sets the date the account was created. Only used to restore the account from a snapshot.
+     *
+     * @param millis the date the account was created, in milliseconds since the epoch
+     */
+    public void restoreDateCreated(long millis) {
+        this.dateCreated.setTimeInMillis(millis);
+    }
+
+    /**
+     * @return the byte offset in the {@link DepositFeed} of the next deposit the account reads
+     */
+    public long getDepositOffset() {
+        return this.readAndWrite.getDepositOffset();
+    }
+
     /**
      * Returns the joint status of the account {@link Account#isJoint}.
      *
@@ -96,11 +164,68 @@ public abstract class Account implements Serializable {
     }
 
     /**
-     * Returns the list of all transactions ever performed using the account {@link Account#listOfTransactions}.
-     * @return {@link Account#listOfTransactions} a list of Transaction objects
+     * Returns a list of all transactions ever performed using the account. The list is a copy, changes to it are not
+     * recorded in the account. Use {@link Account#getHistoryPage(int, int)} to read a long history a page at a time.
+     * @return a list of Transaction objects, oldest first
      */
     public ArrayList<Transaction> getListOfTransactions() {
-        return this.listOfTransactions;
+        return getHistory(0, (int) getTransactionCount());
+    }
+
+    /**
+     * Returns the number of transactions ever performed using the account, including the ones that are only kept
+     * on disk.
+     * @return the number of transactions
+     */
+    public long getTransactionCount() {
+        return this.transactions.getNextSequence();
+    }
+
+    /**
+     * Returns transactions performed using the account by sequence number, the first transaction of the account
+     * being 0. Transactions older than the ones in {@link Account#transactions} are read from the ATM's
+     * {@link HistoryStore}.
+     * @param fromSequence the sequence number of the first transaction to return
+     * @param count the most transactions to return
+     * @return a list of Transaction objects, oldest first
+     */
+    public ArrayList<Transaction> getHistory(long fromSequence, int count) {
+        long first = Math.max(0, fromSequence);
+        long end = Math.min(fromSequence + count, getTransactionCount());
+        ArrayList<Transaction> history = new ArrayList<>();
+        long inMemory = this.transactions.getFirstSequence();
+        if (first < inMemory && atm.getHistory() != null) {
+            history.addAll(atm.getHistory().read(accountNum, first, (int) (Math.min(end, inMemory) - first)));
+        }
+        for (long seq = Math.max(first, inMemory); seq < end; seq++) {
+            history.add(this.transactions.get((int) (seq - inMemory)));
+        }
+        return history;
+    }
+
+    /**
+     * Returns one page of the account's history, most recent transactions first.
+     * @param page the number of the page, 0 being the most recent transactions
+     * @param pageSize the number of transactions on a page
+     * @return a list of at most pageSize Transaction objects, newest first, empty when past the oldest transaction
+     */
+    public ArrayList<Transaction> getHistoryPage(int page, int pageSize) {
+        long end = getTransactionCount() - (long) page * pageSize;
+        if (page < 0 || pageSize <= 0 || end <= 0) {
+            return new ArrayList<>();
+        }
+        long start = Math.max(0, end - pageSize);
+        ArrayList<Transaction> history = getHistory(start, (int) (end - start));
+        Collections.reverse(history);
+        return history;
+    }
+
+    /**
+     * Returns the log of the most recent transactions performed using the account {@link Account#transactions}.
+     * @return {@link Account#transactions}
+     */
+    public TransactionLog getTransactionLog() {
+        return this.transactions;
     }
 
     /**
@@ -117,10 +242,25 @@ public abstract class Account implements Serializable {
      * for an account or null if no transactions have been performed yet
      */
     public Transaction getLastTransaction() {
-        if (listOfTransactions.size() > 0) {
-            return this.listOfTransactions.get(listOfTransactions.size() - 1);
-        } else {
-            return null;
+        restoreTail();
+        return this.transactions.last();
+    }
+
+    /**
+     * Removes the most recent transaction from the account's transactions, when it is undone.
+     */
+    public void removeLastTransaction() {
+        restoreTail();
+        this.transactions.pop();
+    }
+
+    /**
+     * Reads the most recent transactions back from the ATM's {@link HistoryStore} if every transaction in
+     * {@link Account#transactions} has been undone, so older transactions can still be undone.
+     */
+    private void restoreTail() {
+        if (this.transactions.isEmpty() && atm.getHistory() != null) {
+            atm.getHistory().restoreTail(this);
         }
     }
 
@@ -159,24 +299,68 @@ public abstract class Account implements Serializable {
      * Adds money to the account and updates the balance according to the type of account.
      * Balance of Asset accounts increases when money is added.
      * Balance of Debt accounts decreases when money is added.
-     * @param amount dollar amount added into the account
+     * @param amount amount added into the account, in cents
      */
-    public abstract void addMoney (double amount);
+    public abstract void addMoney (long amount);
 
     /**
      * Removes money from the account and updates the balance accordingly.
      * Balance of Asset accounts decreases when money is removed.
      * Balance of Debt accounts increases when money is removed.
-     * @param amount dollar amount removed from the account
+     * @param amount amount removed from the account, in cents
      */
-    public abstract void removeMoney (double amount);
+    public abstract void removeMoney (long amount);
+
+    /**
+     * Removes money from the account if the rules of the account type allow it, updating the balance as
+     * {@link Account#removeMoney(long)} does.
+     * @param amount amount removed from the account, in cents
+     * @return true if the money was removed, false if the account refused it
+     */
+    public abstract boolean tryRemoveMoney(long amount);
+
+    /**
+     * Adds delta to the balance if allowed accepts the balance it would be added to. The rule is checked against
+     * the balance the change is made to: if another session changes the balance first, the rule is checked again
+     * against the new balance before retrying.
+     * @param delta the change to the balance, in cents
+     * @param allowed the rule of the account type, given the current balance
+     * @return true if the balance was changed
+     */
+    final boolean changeBalance(long delta, LongPredicate allowed) {
+        while (true) {
+            long current = this.balance;
+            if (!allowed.test(current)) {
+                return false;
+            }
+            if (BALANCE.compareAndSet(this, current, current + delta)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds delta to the balance, with no rule to check.
+     * @param delta the change to the balance, in cents
+     */
+    final void addToBalance(long delta) {
+        BALANCE.getAndAdd(this, delta);
+    }
+
+    /**
+     * Replaces the balance with a function of itself, retrying if another session changes it first.
+     * @param update the new balance given the current one
+     */
+    final void updateBalance(LongUnaryOperator update) {
+        BALANCE.updateAndGet(this, update);
+    }
 
     /**
      * Checks if there is sufficient funds in an account.
-     * @param amount sufficient amount of funds needed
+     * @param amount sufficient amount of funds needed, in cents
      * @return a boolean, false if the account's balance is less than the amount we are checking for and true otherwise
      */
-    public boolean checkFundsSufficient(double amount){
+    public boolean checkFundsSufficient(long amount){
         if (this.balance < amount){
             return false;
         }else{
@@ -187,84 +371,175 @@ public abstract class Account implements Serializable {
     /**
      * Transfers money into the account from another account
      * and prints the result of the transaction.
-     * @param amount the dollar amount being transferred
+     * @param amount the amount being transferred, in cents
      * @param accountFrom the account the money is being transferred from
      */
-    public void transferIn(double amount, Account accountFrom) {
-        boolean sufficientFunds = accountFrom.checkFundsSufficient(amount);
-        if(sufficientFunds){
-            addMoney(amount);
-            accountFrom.removeMoney(amount);
-            updateTransactionList(new Transaction(accountFrom.accountNum, amount, "TransferIn"));
-            System.out.println("\n" + amount + " has been transferred");}
+    public void transferIn(long amount, Account accountFrom) {
+        boolean transferred = tryTransferIn(amount, accountFrom);
+        AsyncOutput.getDefault().flush();
+        if(transferred){
+            System.out.println("\n" + Money.format(amount) + " has been transferred");}
         else{
             System.out.println("\nThis transaction is not possible: insufficient funds");
         }
     }
 
+    /**
+     * Transfers money into the account from another account without printing anything. Both accounts are changed
+     * together, see {@link TransferEngine}.
+     * @param amount the amount being transferred, in cents
+     * @param accountFrom the account the money is being transferred from
+     * @return true if the money was transferred, false if the account it comes from does not have enough
+     */
+    public boolean tryTransferIn(long amount, Account accountFrom) {
+        return TransferEngine.getDefault().transfer(accountFrom, this, amount, () -> {
+            this.transactions.add(TransactionType.TRANSFER_IN, amount, accountFrom.accountNum);
+            if (atm.getJournal() != null) {
+                atm.getJournal().logTransfer(Journal.TRANSFER_IN, this, accountFrom, amount);
+            }
+        });
+    }
+
     /**
      * Transfers money out of the account into another account
      * and prints the result of the transaction.
-     * @param amount the amount being transferred
+     * @param amount the amount being transferred, in cents
      * @param accountTo the account transferred to
      */
-    public void transferOut(double amount, Account accountTo) {
-        boolean sufficientFunds = checkFundsSufficient(amount);
-        if(sufficientFunds){
-            accountTo.addMoney(amount);
-            removeMoney(amount);
-            updateTransactionList(new Transaction(accountTo.accountNum, amount, "TransferOut"));
-            System.out.println("\n" + amount + " has been transferred");}
+    public void transferOut(long amount, Account accountTo) {
+        boolean transferred = tryTransferOut(amount, accountTo);
+        AsyncOutput.getDefault().flush();
+        if(transferred){
+            System.out.println("\n" + Money.format(amount) + " has been transferred");}
         else{
             System.out.println("\nThis transaction is not possible: insufficient funds");
         }
     }
 
+    /**
+     * Transfers money out of the account into another account without printing anything. Both accounts are changed
+     * together, see {@link TransferEngine}.
+     * @param amount the amount being transferred, in cents
+     * @param accountTo the account transferred to
+     * @return true if the money was transferred, false if this account does not have enough or cannot transfer out
+     */
+    public boolean tryTransferOut(long amount, Account accountTo) {
+        return TransferEngine.getDefault().transfer(this, accountTo, amount, () -> {
+            this.transactions.add(TransactionType.TRANSFER_OUT, amount, accountTo.accountNum);
+            if (atm.getJournal() != null) {
+                atm.getJournal().logTransfer(Journal.TRANSFER_OUT, this, accountTo, amount);
+            }
+        });
+    }
+
     /**
      * Deposits money into the account by reading the amount of money being deposited
      * from deposit.txt using an instance of ReadAndWrite class and updates the
-     * transaction list of the account.
+     * transaction list of the account. The deposit is read from the feed before the account is locked, and is read
+     * again if another deposit to the account was taken in the meantime. The credit itself is a compare-and-set like
+     * any other, but it is made under the account's lock, since the journal record of the deposit holds the balance
+     * after it and no other change to the account may land between the two.
+     * @return the amount deposited, in cents, 0 if there was nothing to deposit or the cash was returned
      * @see ReadAndWrite
      */
-    public void deposit() {
-        Double amount = this.readAndWrite.depositReader();
-        addMoney(amount);
-        //updateTransactionList(new Transaction(amount, "deposit"));
+    public long deposit() {
+        long[] deposited = new long[1];
+        while (true) {
+            long from = this.readAndWrite.getDepositOffset();
+            DepositFeed.Entry entry = this.readAndWrite.nextDeposit(from);
+            if (entry == null) {
+                return 0;
+            }
+            boolean taken = TransferEngine.getDefault().withLock(this, () -> {
+                if (this.readAndWrite.getDepositOffset() != from) {
+                    return false;
+                }
+                long amount = this.readAndWrite.takeDeposit(entry);
+                addMoney(amount);
+                //this.transactions.add(TransactionType.DEPOSIT, amount, 0);
+                if (atm.getJournal() != null) {
+                    atm.getJournal().logDeposit(this, amount, this.readAndWrite.getDepositOffset());
+                }
+                deposited[0] = amount;
+                return true;
+            });
+            if (taken) {
+                return deposited[0];
+            }
+        }
     }
 
     /**
      * Withdraws money from the account if there is enough money
      * in the account and the ATM has enough dollar bills to dispense.
-     * @param amount the amount being withdrawn from the account
-     */
-    public void withdraw(double amount) {
-        if(atm.getBills().getTotalAmount() >= amount && checkFundsSufficient(amount)) {
-            removeMoney(amount);
-            atm.getBills().withdrawBills(amount);
-            //atm.getBills().alertManager();
-            updateTransactionList(new Transaction(amount, "withdraw"));
-            System.out.println(this.listOfTransactions);
+     * @param amount the amount being withdrawn from the account, in cents
+     */
+    public void withdraw(long amount) {
+        int[] plan = withdrawCash(amount);
+        AsyncOutput.getDefault().flush();
+        if (plan != null) {
+            System.out.println(atm.getBills().describe(plan));
+            System.out.println("\n" + Money.format(amount) + " has been withdrawn");
         }
         else{
             System.out.println("\nTransaction not possible: not enough funds in ATM");
         }
     }
 
+    /**
+     * Withdraws money from the account if there is enough money in the account and the ATM can dispense the amount
+     * exactly.
+     * @param amount the amount being withdrawn from the account, in cents
+     * @return true if the money was withdrawn and dispensed
+     */
+    public boolean tryWithdraw(long amount) {
+        return withdrawCash(amount) != null;
+    }
+
+    /**
+     * Withdraws money from the account like {@link Account#tryWithdraw(long)}, and returns the bills dispensed.
+     * @param amount the amount being withdrawn from the account, in cents
+     * @return the number of bills dispensed from each cassette, or null if nothing was withdrawn
+     * @see atm.Bills#describe(int[])
+     */
+    public int[] withdrawCash(long amount) {
+        long start = WITHDRAWALS.start();
+        int[][] plan = new int[1][];
+        TransferEngine.getDefault().withLock(this, () -> {
+            if (!checkFundsSufficient(amount) || !tryRemoveMoney(amount)) {
+                return false;
+            }
+            if ((plan[0] = atm.getBills().dispense(amount)) == null) {
+                // the ATM cannot make the amount, so the money debited is put back.
+                addMoney(amount);
+                return false;
+            }
+            this.transactions.add(TransactionType.WITHDRAW, amount, 0);
+            if (atm.getJournal() != null) {
+                atm.getJournal().logCash(Journal.WITHDRAW, this, amount);
+            }
+            return true;
+        });
+        WITHDRAWALS.stop(start);
+        if (plan[0] == null) {
+            DECLINED_WITHDRAWALS.increment();
+        }
+        return plan[0];
+    }
+
     /**
      * Pays a bill by transferring money from the account to an external account.
      * <p>
      * Reads the details of the bill to be paid from outgoing.txt using an instance
      * of the atm.ReadAndWrite class and if funds sufficient pays the bill.
-     * @param amount the bill amount
+     * @param amount the bill amount, in cents
      * @param receiver the external account the money is being paid to
      */
-    public void payBill(double amount, String receiver){
-        boolean sufficientFunds = checkFundsSufficient(amount);
-        if(sufficientFunds){
-            removeMoney(amount);
-            this.readAndWrite.payBillWriting(amount, receiver, accountNum);
-            System.out.println("You paid " + amount + " to " + receiver);
-            updateTransactionList(new Transaction(receiver, amount));
+    public void payBill(long amount, String receiver){
+        boolean paid = tryPayBill(amount, receiver);
+        AsyncOutput.getDefault().flush();
+        if(paid){
+            System.out.println("You paid " + Money.format(amount) + " to " + receiver);
         }
         else{
             System.out.println("\nThis transaction is not possible: insufficient funds");
@@ -272,11 +547,29 @@ public abstract class Account implements Serializable {
     }
 
     /**
-     * Adds a {@link Transaction} to the end of the account's list of transactions.
-     * @param transaction a {@link Transaction} object
+     * Pays a bill to an external account without printing anything. The payment is queued to be appended to
+     * outgoing.txt once the account is unlocked.
+     * @param amount the bill amount, in cents
+     * @param receiver the external account the money is being paid to
+     * @return true if the bill was paid, false if the account does not have enough or cannot pay bills
      */
-    private void updateTransactionList(Transaction transaction){
-        this.listOfTransactions.add(transaction);
+    public boolean tryPayBill(long amount, String receiver) {
+        long start = BILL_PAYMENTS.start();
+        boolean paid = TransferEngine.getDefault().withLock(this, () -> {
+            if (!checkFundsSufficient(amount) || !tryRemoveMoney(amount)) {
+                return false;
+            }
+            this.transactions.addPayBill(receiver, amount);
+            if (atm.getJournal() != null) {
+                atm.getJournal().logPayBill(this, receiver, amount);
+            }
+            return true;
+        });
+        if (paid) {
+            this.readAndWrite.payBillWriting(amount, receiver, accountNum);
+        }
+        BILL_PAYMENTS.stop(start);
+        return paid;
     }
 
     /**
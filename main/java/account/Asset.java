@@ -1,6 +1,7 @@
 package account;
 
 import atm.ATM;
+import atm.AsyncOutput;
 
 /**
  * Asset is a child of {@link Account} and is an abstract class
@@ -20,10 +21,39 @@ public abstract class Asset extends Account{
 
     /**
      * Adds money to the account and increases the balance.
-     * @param amount dollar amount added into the account
+     * @param amount amount added into the account, in cents
      */
-    public void addMoney(double amount){
-        balance += amount;
+    public void addMoney(long amount){
+        addToBalance(amount);
     }
+
+    /**
+     * Removes money from the account and decreases the balance, if the rules of the account type allow it, and
+     * reports it if they do not.
+     * @param amount amount removed from the account, in cents
+     */
+    public void removeMoney(long amount) {
+        if (!tryRemoveMoney(amount)) {
+            AsyncOutput.getDefault().println("Insufficient funds! Please try another amount or account.");
+        }
+    }
+
+    /**
+     * Decreases the balance if {@link Asset#allowsRemoval(long, long)} accepts the balance at the moment of the
+     * change.
+     * @param amount amount removed from the account, in cents
+     * @return true if the money was removed
+     */
+    public boolean tryRemoveMoney(long amount) {
+        return changeBalance(-amount, current -> allowsRemoval(current, amount));
+    }
+
+    /**
+     * The rule of the account type for removing money.
+     * @param balance the balance the money would be removed from, in cents
+     * @param amount amount removed from the account, in cents
+     * @return true if the money can be removed
+     */
+    abstract boolean allowsRemoval(long balance, long amount);
 }
 
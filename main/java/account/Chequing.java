@@ -1,6 +1,7 @@
 package account;
 
 import atm.ATM;
+import atm.Money;
 
 /**
  *Chequing is a child class of {@link Asset} and represents a user's chequing account.
@@ -12,6 +13,11 @@ public class Chequing extends Asset {
      */
     public boolean primaryStatus;
 
+    /**
+     * The most a chequing account can be overdrawn by, in cents.
+     */
+    private static final long OVERDRAFT_LIMIT = 100 * Money.CENTS_PER_DOLLAR;
+
     /**
      * Constructor of Chequing class.
      * Calls on super ({@link Asset} and also initializes an account
@@ -36,13 +42,10 @@ public class Chequing extends Asset {
     }
 
     /**
-     * Removes money from the account and decreases the balance.
-     * There is a maximum of $100 in overdraft per chequing account.
-     * @param amount dollar amount removed from the account
+     * Money can only be removed from a chequing account that is not overdrawn, and
+     * there is a maximum of $100 in overdraft per chequing account.
      */
-    public void removeMoney(double amount) {
-        if (balance >= 0 && balance - amount >= -100) {
-            balance -= amount;
-        }
+    boolean allowsRemoval(long balance, long amount) {
+        return balance >= 0 && balance - amount >= -OVERDRAFT_LIMIT;
     }
 }
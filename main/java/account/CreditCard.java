@@ -17,11 +17,19 @@ public class CreditCard extends Debt {
         this.type = "creditcard";
     }
 
-    public void transferOut(double amount, Account accountTo) {
+    public void transferOut(long amount, Account accountTo) {
         System.out.println("You cannot transfer out from a Credit Card account. Please try another account.");
     }
 
-    public void payBill(double amount, String receiver) {
+    public boolean tryTransferOut(long amount, Account accountTo) {
+        return false;
+    }
+
+    public void payBill(long amount, String receiver) {
         System.out.println("You cannot pay bills from a Credit Card account. Please try another account.");
     }
+
+    public boolean tryPayBill(long amount, String receiver) {
+        return false;
+    }
 }
\ No newline at end of file
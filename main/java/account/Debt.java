@@ -1,6 +1,8 @@
 package account;
 
 import atm.ATM;
+import atm.AsyncOutput;
+import atm.Money;
 
 /***
  * Debt class is a subclass of the {@link Account#type}
@@ -11,9 +13,9 @@ import atm.ATM;
 public abstract class Debt extends Account{
 
     /**
-     * The maximum credit limit available for the user to spend per credit card account.
+     * The maximum credit limit available for the user to spend per credit card account, in cents.
      */
-    private final double creditLimit = 50000;
+    private final long creditLimit = 50000 * Money.CENTS_PER_DOLLAR;
 
     /**
      * Debt constructor calls on super {@link Account}.
@@ -26,27 +28,34 @@ public abstract class Debt extends Account{
 
     /**
      * Adds money to the account and decreases the balance.
-     * @param amount dollar amount added into the account
+     * @param amount amount added into the account, in cents
      */
-    public void addMoney(double amount){
-        this.balance -= amount;
+    public void addMoney(long amount){
+        addToBalance(-amount);
     }
 
     /**
      * Removes money from the account if credit available and increases the balance.
-     * @param amount dollar amount removed from the account
+     * @param amount amount removed from the account, in cents
      */
-    public void removeMoney(double amount){
-        if (checkFundsSufficient(amount)) {
-            this.balance += amount;
-
-        } else {
-            System.out.println("Transaction declined. This account has reached the maximum credit limit!");
+    public void removeMoney(long amount){
+        if (!tryRemoveMoney(amount)) {
+            AsyncOutput.getDefault().println("Transaction declined. This account has reached the maximum credit limit!");
         }
     }
 
+    /**
+     * Increases the balance if it stays within the credit limit, checked against the balance at the moment of the
+     * change.
+     * @param amount amount removed from the account, in cents
+     * @return true if the money was removed
+     */
+    public boolean tryRemoveMoney(long amount) {
+        return changeBalance(amount, current -> current + amount <= creditLimit);
+    }
+
     @Override
-    public boolean checkFundsSufficient(double amount) {
+    public boolean checkFundsSufficient(long amount) {
         return (balance + amount) <= creditLimit;
     }
 }
@@ -0,0 +1,232 @@
+package account;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads deposits from deposits.txt, one deposit per line.
+ *
+ * <p>
+ *     Readers keep their own position in the feed as a byte offset and ask for the deposit at that offset, so reading
+ *     a deposit never rescans the lines before it. The file is memory mapped and mapped again only when it changes.
+ *     Blank lines are skipped.
+ * </p>
+ *
+ * <p>
+ *     When tailing, the file is treated as a feed that an upstream system keeps appending to: a line is only read
+ *     once its newline has been written, and readers at the end of the file wait for new deposits instead of
+ *     starting again from the first line. Tailing is turned on with the atm.deposits.tail system property.
+ * </p>
+ */
+public class DepositFeed {
+
+    /**
+     * The feed used by every account unless another one is set.
+     */
+    private static DepositFeed defaultFeed;
+
+    /**
+     * The file deposits are read from.
+     */
+    private final File file;
+
+    /**
+     * True if the file is a feed that keeps growing.
+     */
+    private final boolean tailing;
+
+    /**
+     * The file mapped into memory, or null if the file is empty or has not been read yet.
+     */
+    private MappedByteBuffer mapped;
+
+    /**
+     * The size of the file when it was mapped.
+     */
+    private long mappedSize = -1;
+
+    /**
+     * The time the file was last modified when it was mapped.
+     */
+    private long mappedModified = -1;
+
+    /**
+     * DepositFeed constructor.
+     *
+     * @param file the file deposits are read from
+     * @param tailing true if the file is a feed that keeps growing
+     */
+    public DepositFeed(File file, boolean tailing) {
+        this.file = file;
+        this.tailing = tailing;
+    }
+
+    /**
+     * Returns the feed used by every account. The file is deposits.txt unless the atm.deposits system property names
+     * another file.
+     *
+     * @return the feed used by every account
+     */
+    public static synchronized DepositFeed getDefault() {
+        if (defaultFeed == null) {
+            String path = System.getProperty("atm.deposits",
+                    System.getProperty("user.dir") + "/phase1/src/main/Text Files/deposits.txt");
+            defaultFeed = new DepositFeed(new File(path), Boolean.getBoolean("atm.deposits.tail"));
+        }
+        return defaultFeed;
+    }
+
+    /**
+     * Replaces the feed used by every account.
+     *
+     * @param feed the feed used by every account
+     */
+    public static synchronized void setDefault(DepositFeed feed) {
+        defaultFeed = feed;
+    }
+
+    /**
+     * @return true if the file is a feed that keeps growing
+     */
+    public boolean isTailing() {
+        return tailing;
+    }
+
+    /**
+     * Reads the first deposit at or after a position in the feed. If the file has become shorter than the position,
+     * it has been replaced and is read from the start.
+     *
+     * @param offset the byte offset of the position in the feed
+     * @return the deposit and the position after it, or null if there is no deposit after the position yet
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized Entry next(long offset) throws IOException {
+        remapIfChanged();
+        if (mapped == null) {
+            return null;
+        }
+        int size = (int) mappedSize;
+        int position = offset > size ? 0 : (int) offset;
+        while (position < size) {
+            int end = position;
+            while (end < size && mapped.get(end) != '\n') {
+                end++;
+            }
+            if (end == size && tailing) {
+                // the upstream feed has not finished writing this line.
+                return null;
+            }
+            byte[] bytes = new byte[end - position];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = mapped.get(position + i);
+            }
+            String line = new String(bytes, StandardCharsets.UTF_8).trim();
+            position = end < size ? end + 1 : end;
+            if (!line.isEmpty()) {
+                return new Entry(line, position);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the position of a line of the feed, counting blank lines. Used to move accounts that counted the lines
+     * they had read, before positions were byte offsets, to the same place in the feed.
+     *
+     * @param line the number of lines before the position
+     * @return the byte offset of the start of the line, or of the end of the file if it has fewer lines
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized long offsetOfLine(int line) throws IOException {
+        remapIfChanged();
+        if (mapped == null) {
+            return 0;
+        }
+        int size = (int) mappedSize;
+        int position = 0;
+        for (int i = 0; i < line && position < size; i++) {
+            while (position < size && mapped.get(position) != '\n') {
+                position++;
+            }
+            if (position < size) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Waits for the first deposit at or after a position in the feed to be written.
+     *
+     * @param offset the byte offset of the position in the feed
+     * @param timeoutMillis how long to wait for a deposit
+     * @return the deposit and the position after it, or null if no deposit was written in time
+     * @throws IOException if the file cannot be read
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Entry await(long offset, long timeoutMillis) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        Entry entry = next(offset);
+        while (entry == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(Math.min(50, Math.max(1, deadline - System.currentTimeMillis())));
+            entry = next(offset);
+        }
+        return entry;
+    }
+
+    /**
+     * Maps the file again if it has changed since it was last mapped.
+     *
+     * @throws IOException if the file cannot be read or is too large to map
+     */
+    private void remapIfChanged() throws IOException {
+        long size = file.length();
+        long modified = file.lastModified();
+        if (size == mappedSize && modified == mappedModified) {
+            return;
+        }
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(file + " is too large to read");
+        }
+        mapped = null;
+        if (size > 0) {
+            try (FileChannel channel = FileChannel.open(file.toPath())) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+        mappedSize = size;
+        mappedModified = modified;
+    }
+
+    /**
+     * A deposit read from the feed.
+     */
+    public static final class Entry {
+        private final String line;
+        private final long nextOffset;
+
+        Entry(String line, long nextOffset) {
+            this.line = line;
+            this.nextOffset = nextOffset;
+        }
+
+        /**
+         * @return the line describing the deposit
+         */
+        public String getLine() {
+            return line;
+        }
+
+        /**
+         * @return the byte offset of the position after the deposit
+         */
+        public long getNextOffset() {
+            return nextOffset;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package account;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Appends a line to outgoing.txt for every bill paid, so the bills can be sent to the external accounts they were
+ * paid to.
+ *
+ * <p>
+ *     Lines are put on a bounded queue and written by one background thread. The thread takes every line waiting on
+ *     the queue, appends them together and forces them to the disk once, so many payments made at the same time
+ *     share a single disk write. A payment is acknowledged once its line is on the disk. When the queue is full,
+ *     payments wait for the thread to catch up.
+ * </p>
+ *
+ * <p>
+ *     When outgoing.txt grows past {@link OutgoingPayments#maxBytes} it is renamed to outgoing.txt.1, .2 and so on,
+ *     and a new outgoing.txt is started. Rotated files are never deleted.
+ * </p>
+ */
+public class OutgoingPayments {
+
+    /**
+     * The most lines written in one disk write.
+     */
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * The appender used by every account unless another one is set.
+     */
+    private static OutgoingPayments defaultPayments;
+
+    /**
+     * The file lines are appended to.
+     */
+    private final File file;
+
+    /**
+     * The size outgoing.txt can grow to before it is rotated, in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * Lines waiting to be written.
+     */
+    private final BlockingQueue<Pending> queue;
+
+    /**
+     * The thread writing lines, or null if nothing has been written yet.
+     */
+    private Thread writer;
+
+    /**
+     * The file being appended to, or null if it is not open.
+     */
+    private FileOutputStream out;
+
+    /**
+     * OutgoingPayments constructor.
+     *
+     * @param file the file lines are appended to
+     * @param capacity the most lines that can wait to be written
+     * @param maxBytes the size the file can grow to before it is rotated, in bytes
+     */
+    public OutgoingPayments(File file, int capacity, long maxBytes) {
+        this.file = file;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the appender used by every account. Writes to outgoing.txt, with a queue of atm.outgoing.queue lines
+     * and rotating at atm.outgoing.maxbytes bytes.
+     *
+     * @return the appender used by every account
+     */
+    public static synchronized OutgoingPayments getDefault() {
+        if (defaultPayments == null) {
+            defaultPayments = new OutgoingPayments(
+                    new File(System.getProperty("user.dir") + "/phase1/src/main/Text Files/outgoing.txt"),
+                    Integer.getInteger("atm.outgoing.queue", 1024),
+                    Long.getLong("atm.outgoing.maxbytes", 1024 * 1024));
+        }
+        return defaultPayments;
+    }
+
+    /**
+     * Replaces the appender used by every account.
+     *
+     * @param payments the appender used by every account
+     */
+    public static synchronized void setDefault(OutgoingPayments payments) {
+        defaultPayments = payments;
+    }
+
+    /**
+     * Queues a line to be appended, waiting if the queue is full.
+     *
+     * @param line the line, without a newline
+     * @return completes once the line is on the disk, or completes exceptionally if it could not be written
+     * @throws InterruptedException if the thread is interrupted while waiting for room on the queue
+     */
+    public CompletableFuture<Void> submit(String line) throws InterruptedException {
+        Pending pending = new Pending(line, false);
+        enqueue(pending, true);
+        return pending.written;
+    }
+
+    /**
+     * Queues a line to be appended and waits until it is on the disk.
+     *
+     * @param line the line, without a newline
+     * @return true if the line was written, false if it could not be
+     */
+    public boolean append(String line) {
+        try {
+            submit(line).get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits until every line queued before this call is on the disk.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        Pending marker = new Pending(null, false);
+        if (!enqueue(marker, false)) {
+            return;
+        }
+        try {
+            marker.written.get();
+        } catch (ExecutionException e) {
+            // the lines before the marker report their own failures.
+        }
+    }
+
+    /**
+     * Writes every queued line and stops the background thread. Lines submitted afterwards start it again.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void close() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        queue.put(new Pending(null, true));
+        // holding the lock until the thread has stopped keeps new lines from reaching it.
+        writer.join();
+        writer = null;
+    }
+
+    /**
+     * Puts a line on the queue of the running background thread. The queue and the thread are checked together so a
+     * line can never be queued behind the marker that stops the thread.
+     *
+     * @param pending the line
+     * @param start true to start the thread if it is not running
+     * @return false if the thread was not running and was not started
+     * @throws InterruptedException if the thread is interrupted while waiting for room on the queue
+     */
+    private synchronized boolean enqueue(Pending pending, boolean start) throws InterruptedException {
+        if (writer == null) {
+            if (!start) {
+                return false;
+            }
+            writer = new Thread(this::run, "outgoing-payments");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        queue.put(pending);
+        return true;
+    }
+
+    /**
+     * Writes lines until told to stop.
+     */
+    private void run() {
+        ArrayList<Pending> batch = new ArrayList<>(MAX_BATCH);
+        boolean stop = false;
+        while (!stop) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                writeBatch(batch);
+            } catch (IOException e) {
+                System.err.println("Problem writing to the file outgoing.txt");
+                closeFile();
+                for (Pending pending : batch) {
+                    pending.written.completeExceptionally(e);
+                    stop |= pending.stop;
+                }
+                continue;
+            }
+            for (Pending pending : batch) {
+                pending.written.complete(null);
+                stop |= pending.stop;
+            }
+            // the batch is on the disk whether or not the file can be rotated, so rotating comes after it is
+            // acknowledged.
+            rotateIfFull();
+        }
+        closeFile();
+    }
+
+    /**
+     * Appends a batch of lines and forces them to the disk in one write.
+     *
+     * @param batch the lines to write
+     * @throws IOException if the lines could not be written
+     */
+    private void writeBatch(ArrayList<Pending> batch) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Pending pending : batch) {
+            if (pending.line != null) {
+                sb.append(pending.line).append(System.lineSeparator());
+            }
+        }
+        if (sb.length() == 0) {
+            return;
+        }
+        if (out == null) {
+            out = new FileOutputStream(file, true);
+        }
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        out.getFD().sync();
+    }
+
+    /**
+     * Rotates the file if it has grown past {@link #maxBytes}. If it cannot be rotated, lines go on being appended to
+     * it and rotating is tried again after the next batch.
+     */
+    private void rotateIfFull() {
+        try {
+            if (out != null && out.getChannel().size() >= maxBytes) {
+                rotate();
+            }
+        } catch (IOException e) {
+            System.err.println("Problem rotating the file outgoing.txt");
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Renames the file to the first unused outgoing.txt.n and starts a new one.
+     *
+     * @throws IOException if the file could not be renamed
+     */
+    private void rotate() throws IOException {
+        closeFile();
+        int n = 1;
+        File rotated = new File(file.getPath() + "." + n);
+        while (rotated.exists()) {
+            n++;
+            rotated = new File(file.getPath() + "." + n);
+        }
+        if (!file.renameTo(rotated)) {
+            throw new IOException("Could not rotate " + file);
+        }
+    }
+
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Problem closing the file outgoing.txt");
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * A line waiting to be written.
+     */
+    private static final class Pending {
+        private final String line;
+        private final boolean stop;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        Pending(String line, boolean stop) {
+            this.line = line;
+            this.stop = stop;
+        }
+    }
+}
@@ -8,11 +8,15 @@ import atm.*;
  */
 class ReadAndWrite implements Serializable {
     /**
-     * Keeps track of the line number in deposits.txt
-     * to make sure the ATM does not run out of transaction
-     * information for a deposit transaction.
+     * The byte offset in the {@link DepositFeed} of the next deposit this account reads, so the ATM does not
+     * read the same deposit twice and does not reread the deposits before it.
      */
-    private int depositNum = 0;
+    private volatile long depositOffset = 0;
+
+    /**
+     * How long a deposit waits for the upstream feed to write a new line when the feed is tailed.
+     */
+    private static final long TAIL_WAIT_MILLIS = 2000;
 
     /**
      *Instance of {@link ATM}.
@@ -24,72 +28,89 @@ class ReadAndWrite implements Serializable {
     }
 
     /**
-     * Reads deposits.txt and returns the amount being deposited in the transaction/line.
-     * @return dollar amount being deposited
+     * Reads the next deposit from deposits.txt without taking it. When every deposit has been read the ATM goes back
+     * to the first line, unless the file is tailed as a feed, in which case it waits for a new deposit to be written.
+     * Does not need the account's lock, so the account is not held while the feed is waited for.
+     * @param from the byte offset to read from, normally {@link #getDepositOffset()}
+     * @return the next deposit, or null if there is no deposit to read
      */
-    Double depositReader() {
-        Double amount;
+    DepositFeed.Entry nextDeposit(long from) {
+        DepositFeed feed = DepositFeed.getDefault();
         try {
-            File file = new File(System.getProperty("user.dir") + "/phase1/src/main/Text Files/deposits.txt");
-            FileInputStream is = new FileInputStream(file);
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader r = new BufferedReader(isr);
-            String line = r.readLine();
-            String firstLine = line;
-
-            int count = 0;
-            while (line != null && count < depositNum) {
-                count += 1;
-                line = r.readLine();
+            DepositFeed.Entry entry;
+            if (feed.isTailing()) {
+                entry = feed.await(from, TAIL_WAIT_MILLIS);
+            } else {
+                entry = feed.next(from);
+                if (entry == null) {
+                    // returns back to the first line if end of file reached.
+                    entry = feed.next(0);
+                }
             }
-
-            amount = depositReaderHelper(line, count, firstLine);
-            r.close();
-
-            return amount;
+            if (entry == null) {
+                AsyncOutput.getDefault().println("\nThere are no deposits waiting to be made");
+            }
+            return entry;
         } catch (IOException e) {
             System.err.println("Problem reading the file deposits.txt");
-            return 0.0;
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         }
     }
 
     /**
-     * Identifies if a cheque or cash is being deposited and calculates the total amount being deposited
-     * If cash is being deposited increases the number of dollar bills in the ATM accordingly.
+     * Takes a deposit read by {@link #nextDeposit(long)}, moving past it in the feed and returning the amount being
+     * deposited. Must be called with the account's lock held.
+     * @param entry the deposit
+     * @return amount being deposited, in cents, or 0 if the ATM has no room for the cash
+     */
+    long takeDeposit(DepositFeed.Entry entry) {
+        depositOffset = entry.getNextOffset();
+        return depositReaderHelper(entry.getLine());
+    }
+
+    /**
+     * @return the byte offset in the {@link DepositFeed} of the next deposit this account reads
+     */
+    long getDepositOffset() {
+        return depositOffset;
+    }
+
+    /**
+     * Moves this account's position in the {@link DepositFeed}. Only used when replaying the journal.
      *
-     * @param line the current line read in from deposits.txt
-     * @param count the index of the current line
-     * @param firstLine the first line of deposits.txt
-     * @return total dollar amount being deposited
+     * @param depositOffset the byte offset of the next deposit this account reads
      */
-    private double depositReaderHelper(String line, int count, String firstLine){
-        double amount;
+    void restoreDepositOffset(long depositOffset) {
+        this.depositOffset = depositOffset;
+    }
 
-        //Proceeds the line cursor to the next line in deposits.txt or
-        // returns back to the first line if end of file reached.
-        if (line != null && count >= depositNum){
-            depositNum += 1;
-        }else{
-            line = firstLine;
-            depositNum = 1;
-        }
+    /**
+     * Identifies if a cheque or cash is being deposited and calculates the total amount being deposited
+     * If cash is being deposited increases the number of bills in each cassette of the ATM accordingly.
+     *
+     * @param line the line of deposits.txt describing the deposit
+     * @return total amount being deposited, in cents, or 0 if the ATM has no room for the cash
+     */
+    private long depositReaderHelper(String line){
+        long amount;
 
         //Since coins cannot be deposited, if a deposit amount has cents, then it is a cheque.
         if (line.contains(".")){
-            amount = Double.parseDouble(line);
-            System.out.println("\nYou have deposited a cheque for $" + amount);
+            amount = Money.parse(line);
+            AsyncOutput.getDefault().println("\nYou have deposited a cheque for $" + Money.format(amount));
         }else{
-            amount = (double) ((Character.getNumericValue(line.charAt(0))) * 5 +
-                Character.getNumericValue(line.charAt(1)) * 10 +
-                Character.getNumericValue(line.charAt(2)) * 20 +
-                Character.getNumericValue(line.charAt(3)) * 50);
-
+            Bills bills = atm.getBills();
+            int[] counts = bills.getLayout().parseCash(line);
             //update number of bills in ATM
-            atm.getBills().addBills(0, Character.getNumericValue(line.charAt(0)));
-            atm.getBills().addBills(1, Character.getNumericValue(line.charAt(1)));
-            atm.getBills().addBills(2, Character.getNumericValue(line.charAt(2)));
-            atm.getBills().addBills(3, Character.getNumericValue(line.charAt(3)));
-            System.out.println("\nYou have deposited $" + amount + " in cash");
+            if (!bills.depositBills(counts)) {
+                AsyncOutput.getDefault().println("\nYour cash has been returned");
+                return 0;
+            }
+            amount = bills.getLayout().valueOf(counts);
+            AsyncOutput.getDefault().println("\nYou have deposited $" + Money.format(amount) + " in cash");
         }
         return amount;
     }
@@ -97,24 +118,25 @@ class ReadAndWrite implements Serializable {
     // Adds information of the paid bill to the text file.
 
     /**
-     * Adds a line to outgoing.txt to confirm the payment of a bill.
-     * @param amount dollar amount of the bill
+     * Queues a line for outgoing.txt to confirm the payment of a bill, without waiting for it to be written. The
+     * payment is already in the journal by then, and every queued line is written before the ATM shuts down. A line
+     * that cannot be written is reported.
+     * @param amount amount of the bill, in cents
      * @param receiver external account the bill is being paid to
      * @param accountNum the unique account number of account paying the bill
-     * @return a boolean confirming if the bill has been  successfully paid (true) or not (false)
+     * @see OutgoingPayments
      */
-    boolean payBillWriting(double amount, String receiver, int accountNum) {
+    void payBillWriting(long amount, String receiver, int accountNum) {
+        String line = accountNum + " payed " + Money.format(amount) + " to " + receiver;
         try {
-            File file = new File(System.getProperty("user.dir") + "/phase1/src/main/Text Files/outgoing.txt");
-            FileOutputStream is = new FileOutputStream(file);
-            OutputStreamWriter osw = new OutputStreamWriter(is);
-            Writer w = new BufferedWriter(osw);
-            w.write(accountNum + " payed " + amount + " to " + receiver);
-            w.close();
-            return true;
-        } catch (IOException e) {
-            System.err.println("Problem writing to the file outgoing.txt");
-            return false;
+            OutgoingPayments.getDefault().submit(line).whenComplete((written, e) -> {
+                if (e != null) {
+                    AsyncOutput.getDefault().println("Problem writing the payment \"" + line + "\" to outgoing.txt");
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            AsyncOutput.getDefault().println("Problem writing the payment \"" + line + "\" to outgoing.txt");
         }
     }
 
@@ -1,5 +1,7 @@
 package account;
 import atm.ATM;
+import atm.AsyncOutput;
+import atm.Money;
 
 /**
  * A child class of {@link Asset} represents a user's savings account.
@@ -7,9 +9,15 @@ import atm.ATM;
 public class Savings extends Asset {
 
     /**
-     * The monthly interest rate applied to the balance in the savings account at the end of each month.
+     * The monthly interest rate applied to the balance in the savings account at the end of each month, as the
+     * balance is multiplied by interestRate / INTEREST_RATE_SCALE.
      */
-    private final double interestRate;
+    private final long interestRate;
+
+    /**
+     * The denominator of {@link Savings#interestRate}.
+     */
+    private static final long INTEREST_RATE_SCALE = 1000;
 
     /**
      * Savings constructor calls on super {@link Asset} and
@@ -20,15 +28,15 @@ public class Savings extends Asset {
      */
     public Savings(int accountNum, ATM atm){
         super(accountNum, atm);
-        interestRate = 1.001;
+        interestRate = 1001;
         this.type = "savings";
     }
 
     /**
-     * Increases {@link Account#balance} according to the {@link Savings#interestRate}.
+     * Increases {@link Account#balance} according to the {@link Savings#interestRate}, rounded to the nearest cent.
      */
     public void addInterest(){
-        this.balance = (this.balance * interestRate);
+        updateBalance(current -> Money.scale(current, interestRate, INTEREST_RATE_SCALE));
     }
 
     //Removing money from an asset account will decrease its balance
@@ -36,13 +44,18 @@ public class Savings extends Asset {
     /**
      * If there is sufficient funds in the savings account,
      * removes the specified amount and decreases the balance.
-     * @param amount dollar amount removed from the account
+     * @param amount amount removed from the account, in cents
      */
-    public void removeMoney(double amount){
-        if(checkFundsSufficient(amount)) {
-            balance -= amount;
-        }else {
-            System.out.println("Insufficient funds in Savings! Please try another amount or account.");
+    public void removeMoney(long amount){
+        if(!tryRemoveMoney(amount)) {
+            AsyncOutput.getDefault().println("Insufficient funds in Savings! Please try another amount or account.");
         }
     }
+
+    /**
+     * Money can be removed from a savings account as long as the balance covers it.
+     */
+    boolean allowsRemoval(long balance, long amount) {
+        return balance >= amount;
+    }
 }
@@ -18,16 +18,17 @@ public class StockAccount extends Asset {
     }
 
     /**
-     * Decreases the balance of the stock account by a specified amount
-     * @param amount dollar amount removed from the account
+     * The balance of a stock account can never go below 0.
      */
-    public void removeMoney(double amount) {
-        if (balance - amount >= 0) {
-            balance -= amount;
-        }
+    boolean allowsRemoval(long balance, long amount) {
+        return balance - amount >= 0;
     }
 
-    public void payBill(double amount, String receiver) {
+    public void payBill(long amount, String receiver) {
         System.out.println("\nYou cannot pay bills from a Stock account. Please try again.");
     }
+
+    public boolean tryPayBill(long amount, String receiver) {
+        return false;
+    }
 }
@@ -0,0 +1,229 @@
+package account;
+
+import metrics.Metrics;
+import metrics.Timer;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Makes changes to account balances safe when many sessions use the ATM at the same time.
+ *
+ * <p>
+ *     Accounts are spread over a fixed number of locks (stripes) by account number, so changes to different accounts
+ *     rarely wait for each other and no lock has to be stored in an account. A change to one account holds the stripe
+ *     of that account. A transfer holds the stripes of both accounts, always taken in increasing stripe order, so
+ *     two transfers going opposite ways between the same accounts can never deadlock. Joint accounts are shared by
+ *     two users but have one account number, so both users' sessions use the same stripe.
+ * </p>
+ *
+ * <p>
+ *     Every change also holds the engine's snapshot lock shared, and a snapshot of the ATM holds it exclusively, so a
+ *     snapshot never sees a change half made, or a change whose journal record is not written yet. Changes that
+ *     touch no account, such as creating a user or buying stocks, are run through {@link #change(BooleanSupplier)}.
+ * </p>
+ *
+ * <p>
+ *     The number of stripes can be set with the atm.transfer.stripes system property, and is rounded up to a power of
+ *     two.
+ * </p>
+ */
+public class TransferEngine {
+
+    /**
+     * Times every transfer, including waiting for the locks.
+     */
+    private static final Timer TRANSFERS = Metrics.getDefault().timer("account.transfer");
+
+    /**
+     * The engine used by every account unless another one is set.
+     */
+    private static TransferEngine defaultEngine;
+
+    /**
+     * The locks accounts are spread over.
+     */
+    private final ReentrantLock[] stripes;
+
+    /**
+     * stripes.length - 1, used to pick a stripe from a hash.
+     */
+    private final int mask;
+
+    /**
+     * Held shared by every change and exclusively while a snapshot is taken.
+     */
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    /**
+     * TransferEngine constructor.
+     *
+     * @param stripes the number of locks accounts are spread over, rounded up to a power of two
+     */
+    public TransferEngine(int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the engine used by every account. By default there are 16 stripes for every processor, and at least
+     * 64.
+     *
+     * @return the engine used by every account
+     */
+    public static synchronized TransferEngine getDefault() {
+        if (defaultEngine == null) {
+            int stripes = Integer.getInteger("atm.transfer.stripes",
+                    Math.max(64, 16 * Runtime.getRuntime().availableProcessors()));
+            defaultEngine = new TransferEngine(stripes);
+        }
+        return defaultEngine;
+    }
+
+    /**
+     * Replaces the engine used by every account.
+     *
+     * @param engine the engine used by every account
+     */
+    public static synchronized void setDefault(TransferEngine engine) {
+        defaultEngine = engine;
+    }
+
+    /**
+     * @return the number of locks accounts are spread over
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Returns the stripe of an account. Account numbers are handed out in order, so they are mixed first to keep
+     * neighbouring accounts on different stripes.
+     *
+     * @param accountNum the account number
+     * @return the index of the account's lock
+     */
+    int stripeOf(int accountNum) {
+        int h = accountNum * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Moves money between two accounts, taking it out of one and putting it into the other as a single change that
+     * no other session can see half done. Nothing changes if the account the money comes from does not have enough,
+     * including when its own rules (such as the overdraft limit of a chequing account) refuse the withdrawal.
+     *
+     * @param from the account the money comes from
+     * @param to the account the money goes to
+     * @param amount the amount, in cents
+     * @param record run while both accounts are still locked once the money has moved, to record the transfer, or
+     *               null
+     * @return true if the money was moved
+     */
+    public boolean transfer(Account from, Account to, long amount, Runnable record) {
+        long start = TRANSFERS.start();
+        boolean transferred = withLocks(from.getAccountNum(), to.getAccountNum(), () -> {
+            if (!from.checkFundsSufficient(amount)) {
+                return false;
+            }
+            if (!from.tryRemoveMoney(amount)) {
+                return false;
+            }
+            to.addMoney(amount);
+            if (record != null) {
+                record.run();
+            }
+            return true;
+        });
+        TRANSFERS.stop(start);
+        return transferred;
+    }
+
+    /**
+     * Runs a change to one account with the account locked.
+     *
+     * @param account the account being changed
+     * @param change the change, returning whether it was made
+     * @return the result of the change
+     */
+    public boolean withLock(Account account, BooleanSupplier change) {
+        return withLocks(account.getAccountNum(), account.getAccountNum(), change);
+    }
+
+    /**
+     * Runs a change to two accounts with both accounts locked.
+     *
+     * @param accountA the number of one of the accounts being changed
+     * @param accountB the number of the other account being changed
+     * @param change the change, returning whether it was made
+     * @return the result of the change
+     */
+    boolean withLocks(int accountA, int accountB, BooleanSupplier change) {
+        int first = stripeOf(accountA);
+        int second = stripeOf(accountB);
+        snapshotLock.readLock().lock();
+        lock(first, second);
+        try {
+            return change.getAsBoolean();
+        } finally {
+            unlock(first, second);
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a change to the ATM that is not a change to an account's balance, such as creating a user or buying
+     * stocks, so that no snapshot is taken while it is half made. Changes can be nested.
+     *
+     * @param change the change, returning whether it was made
+     * @return the result of the change
+     */
+    public boolean change(BooleanSupplier change) {
+        snapshotLock.readLock().lock();
+        try {
+            return change.getAsBoolean();
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a snapshot once every change in progress has finished, with no new change allowed to start until it is
+     * done. Must not be called from inside a change.
+     *
+     * @param snapshot writes the snapshot
+     */
+    public void quiesce(Runnable snapshot) {
+        snapshotLock.writeLock().lock();
+        try {
+            snapshot.run();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the locks of two stripes, lowest stripe first. Takes the lock once if both are the same stripe.
+     */
+    private void lock(int a, int b) {
+        stripes[Math.min(a, b)].lock();
+        if (a != b) {
+            stripes[Math.max(a, b)].lock();
+        }
+    }
+
+    private void unlock(int a, int b) {
+        if (a != b) {
+            stripes[Math.max(a, b)].unlock();
+        }
+        stripes[Math.min(a, b)].unlock();
+    }
+}
@@ -3,31 +3,47 @@ package atm;
 import account.*;
 import bankmanager.*;
 import broker.Broker;
+import broker.PriceRefresher;
 import interfaces.*;
+import metrics.Metrics;
+import metrics.Timer;
 import subscriptions.Subscriber;
 import subscriptions.AvailableSubscriptions;
 
 import java.io.*;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /** This class represents an ATM machine.*/
 
 public class ATM implements Serializable {
 
-    /**Stores the total amount of the bills in the ATM in an array with the following order:
+    /**
+     * Times shutting down, most of which is writing the final snapshot.
+     */
+    private static final Timer SHUT_DOWN = Metrics.getDefault().timer("atm.shutdown");
+
+    /**Stores the number of bills in each cassette of the ATM. By default the cassettes hold
      *  [5 dollar bills, 10, dollar bills, 20 dollar bills, 50 dollar bills].
      */
     private final Bills bills;
 
     /**
-     * The list of all users who can use the ATM.
+     * The directory of all users who can use the ATM. Users can be looked up from many sessions at once.
      */
-    private final ArrayList<User> listOfUsers;
+    private final UserDirectory users;
 
     /**
      * The Bank Manager.
@@ -59,20 +75,109 @@ public class ATM implements Serializable {
      */
     private final Subscriber subscriber;
 
+    /**
+     * The file the state of the ATM is written to every time a snapshot is taken.
+     */
+    static final String SNAPSHOT_FILE = "snapshot.blob";
+
+    /**
+     * The file every change made since the last snapshot is written to.
+     */
+    static final String JOURNAL_FILE = "journal.log";
+
+    /**
+     * The sequence number of the last journal record contained in this ATM's latest snapshot.
+     */
+    private long journalSequence = 0;
+
+    /**
+     * The date whose boot jobs, adding interest and charging subscriptions, have all been run, in milliseconds since
+     * the epoch, or 0 if none have.
+     */
+    private long bootJobsDate = 0;
+
+    /**
+     * The savings accounts paid interest, and the users charged for their subscriptions, by boot jobs that a crash cut
+     * short. Filled while the journal is replayed, so the boot jobs are not run twice for them.
+     */
+    private final transient HashSet<Integer> interestPaid = new HashSet<>();
+    private final transient HashSet<String> subscriptionsCharged = new HashSet<>();
+
+    /**
+     * Records every change to the ATM's state between snapshots. Null until {@link #openJournal()} is called.
+     */
+    private transient Journal journal;
+
+    /**
+     * The older transactions of every account. Null until {@link #openJournal()} is called.
+     */
+    private transient HistoryStore history;
+
+    /**
+     * Takes the snapshots the journal asks for, one at a time. Null until {@link #openJournal()} is called.
+     */
+    private transient ExecutorService snapshotter;
+
     /**
      * ATM constructor.
      */
     public ATM() {
         this.interfaces = new Interface(this);
         this.BM = new BankManager(this);
-        this.listOfUsers = new ArrayList<User>();
+        this.users = newUserDirectory();
         this.date = Calendar.getInstance();
         this.date.add(Calendar.YEAR, -1);
         this.date.add(Calendar.MONTH, -3);
         this.broker = new Broker(this, BM);
         this.subscriptions = new AvailableSubscriptions();
         this.subscriber = new Subscriber(this);
-        bills = new Bills(100, 100, 100, 100);
+        bills = Bills.fromProperties();
+    }
+
+    /**
+     * ATM constructor for an ATM read back by {@link SnapshotCodec}. No users are created, not even the broker, since
+     * they are all read from the snapshot.
+     *
+     * @param bills the bills in the ATM
+     * @param fundsDate the date the broker's mutual funds were set up, in milliseconds since the epoch
+     * @param date today's date, in milliseconds since the epoch
+     * @param journalSequence the sequence number of the last journal record contained in the snapshot
+     * @param bootJobsDate the date whose boot jobs have all been run, in milliseconds since the epoch, or 0 if none
+     */
+    ATM(Bills bills, long fundsDate, long date, long journalSequence, long bootJobsDate) {
+        this.interfaces = new Interface(this);
+        this.BM = new BankManager(this);
+        this.users = newUserDirectory();
+        this.date = Calendar.getInstance();
+        this.date.setTimeInMillis(fundsDate);
+        this.broker = new Broker(this);
+        this.date.setTimeInMillis(date);
+        this.subscriptions = new AvailableSubscriptions();
+        this.subscriber = new Subscriber(this);
+        this.bills = bills;
+        this.journalSequence = journalSequence;
+        this.bootJobsDate = bootJobsDate;
+    }
+
+    /**
+     * Creates the directory of users. If the atm.users.store system property names a file, the users are kept in that
+     * file by a {@link PagedUserDirectory}, with the atm.users.cache most recently used users (10000 by default) in
+     * memory. Otherwise every user is kept in memory by a {@link ConcurrentUserDirectory}.
+     *
+     * @return the directory of users
+     */
+    private UserDirectory newUserDirectory() {
+        String store = System.getProperty("atm.users.store");
+        if (store == null) {
+            return new ConcurrentUserDirectory();
+        }
+        try {
+            return new PagedUserDirectory(this, new File(store), Integer.getInteger("atm.users.cache", 10000));
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+            return null;
+        }
     }
 
     /**
@@ -91,6 +196,13 @@ public class ATM implements Serializable {
         return BM;
     }
 
+    /**
+     * @return the older transactions of every account, or null if the journal has not been opened
+     */
+    public HistoryStore getHistory() {
+        return history;
+    }
+
     /**
      * @return the Broker responsible for investments done through the ATM
      */
@@ -123,28 +235,61 @@ public class ATM implements Serializable {
     }
 
     /**
+     * @return the sequence number of the last journal record contained in the ATM's latest snapshot
+     */
+    long getJournalSequence() {
+        return journalSequence;
+    }
+
+    /**
+     * @return the date whose boot jobs have all been run, in milliseconds since the epoch, or 0 if none have
+     */
+    long getBootJobsDate() {
+        return bootJobsDate;
+    }
+
+    /**
+     * @param user a user
+     * @return true if the boot jobs of today already charged the user for their subscriptions before a crash
+     */
+    public boolean subscriptionsCharged(User user) {
+        return subscriptionsCharged.contains(user.getUsername());
+    }
+
+    /**
+     *
+     * @return the journal that changes to the ATM are recorded in, or null if changes are not being recorded
+     */
+    public Journal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns every user. With a {@link PagedUserDirectory} this reads every user into memory, so jobs that go
+     * through the whole bank go through {@link #getUserDirectory()} instead.
      *
-     * @return list of all users who can use the ATM
+     * @return list of all users who can use the ATM, in the order they were added
      */
-    public ArrayList<User> getListOfUsers(){
-        return listOfUsers;
+    public List<User> getListOfUsers(){
+        return users.users();
+    }
+
+    /**
+     *
+     * @return the directory of all users who can use the ATM
+     */
+    public UserDirectory getUserDirectory(){
+        return users;
     }
 
     /**
      * Returns a user if they are recognized by the ATM.
      *
      * @param username the username of the person trying to use the ATM
-     * @return the verified {@link User}
+     * @return the verified {@link User}, or null if no user has this username
      */
     public User getUser(String username) {
-        for (User usr : listOfUsers) {
-            if (usr.getUsername().equals(username)) {
-                return usr;
-            }
-        }
-        // This will never happen because we have a previous function that already checks if the user is in the
-        // listOfUser in Interface class.
-        return null;
+        return users.get(username);
     }
 
     /**
@@ -157,12 +302,7 @@ public class ATM implements Serializable {
      */
     public void run(){
         boolean running = true;
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        System.out.println("Booting on " + sdf.format(date.getTime()));
-        addSavingsInterest();
-        this.broker.getStockBroker().updateAllStocks();
-        this.subscriber.updateAllSubscriptions();
-        this.getBroker().getMutualFundsBroker().updateMutualFunds();
+        startUp();
         while (running){
             String username = interfaces.displayLoginMenu();
             if (username.equals("manager")) {
@@ -170,28 +310,125 @@ public class ATM implements Serializable {
             } else if (username.equals("broker")) {
                 interfaces.displayBrokerOrUserChoice();
             } else if (!username.equals("")){
-                interfaces.displayUserMenu(getUser(username));
+                User user = users.getPinned(username);
+                try {
+                    interfaces.displayUserMenu(user);
+                } finally {
+                    users.unpin(user);
+                }
+            }
+        }
+    }
+
+    /**
+     * Brings the ATM up to date when it boots: adds interest to savings at the start of the month, refreshes the
+     * prices of stocks and mutual funds and charges subscriptions. Called by {@link ATM#run()}, and by anything else
+     * that serves the ATM instead of the console. Interest and subscriptions are left alone if the ATM already booted
+     * today, which it only does after a crash, since shutting down moves on to the next day.
+     */
+    public void startUp() {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        System.out.println("Booting on " + sdf.format(date.getTime()));
+        // prices only feed the value of stocks, so they are fetched outside the change, where a snapshot waiting
+        // for changes to finish, and every change queued behind it, does not wait on the market data provider.
+        System.out.println(new PriceRefresher(this).refreshAll());
+        if (bootJobsDate != date.getTimeInMillis()) {
+            TransferEngine.getDefault().change(() -> {
+                addSavingsInterest();
+                this.subscriber.updateAllSubscriptions();
+                markBootJobsDone(date.getTimeInMillis());
+                if (journal != null) {
+                    journal.logDate(Journal.BOOT_JOBS, bootJobsDate);
+                }
+                return true;
+            });
+        }
+        AsyncOutput.getDefault().flush();
+    }
+
+    /**
+     * Loads the ATM from its last snapshot, or creates a new one if it is booting for the first time, and replays
+     * the journal on top of it. An ATM that was saved to {@link LegacyBlob#FILE} before snapshots were used and has
+     * no snapshot yet is read from there instead, and a snapshot of it is taken right away. The old file is left as
+     * it is.
+     *
+     * @return the ATM, ready to be run
+     */
+    public static ATM load() {
+        ATM atm = null;
+        boolean migrated = false;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(new File(SNAPSHOT_FILE)))) {
+            atm = SnapshotCodec.read(in);
+        }
+
+        catch (FileNotFoundException e){
+            try (InputStream in = new FileInputStream(new File(LegacyBlob.FILE))) {
+                atm = LegacyBlob.read(in);
+                migrated = true;
+                System.out.println("Moved the ATM over from " + LegacyBlob.FILE + ".");
+            } catch (FileNotFoundException notFound) {
+                System.out.println("System booting up for the first time!");
+                atm = new ATM();
+            } catch (Exception legacy) {
+                System.out.println(legacy.getMessage());
+                System.exit(-1);
             }
         }
+
+        catch (Exception e){
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+        atm.openJournal();
+        if (migrated) {
+            atm.writeSnapshot();
+        }
+        atm.registerMetrics();
+        Metrics.getDefault().registerMBeans();
+        return atm;
+    }
+
+    /**
+     * Points the gauges of the default {@link Metrics} at this ATM: the cash in it, the number of bills in each
+     * cassette, and the number of users and accounts.
+     */
+    public void registerMetrics() {
+        Metrics metrics = Metrics.getDefault();
+        metrics.gauge("atm.cash", bills::getTotalAmount);
+        for (int i = 0; i < bills.getLayout().size(); i++) {
+            int cassette = i;
+            metrics.gauge("atm.cassette." + (i + 1), () -> bills.getNumBills(cassette));
+        }
+        metrics.gauge("atm.users", users::size);
+        metrics.gauge("bankmanager.accounts", BM::getNumberOfAccounts);
     }
 
     /**
      * Adds the specified interestRate to the balances
-     * of all savings account at the beginning of each month.
+     * of all savings account at the beginning of each month. Each account is locked while its interest is added and
+     * recorded, so its record is not written out of order with another change to it.
      *
      * @see Savings
      */
     private void addSavingsInterest(){
         if (date.get(Calendar.DAY_OF_MONTH) == 1){
-            for (User user : listOfUsers){
+            int savings = 0;
+            for (User user : users){
                 ArrayList<Account> listOfAccounts = user.getAccounts();
-                System.out.println(user.getUsername());
                 for (Account account: listOfAccounts){
-                    if (account instanceof Savings){
-                        ((Savings)account).addInterest();
+                    if (account instanceof Savings && !interestPaid.contains(account.getAccountNum())){
+                        TransferEngine.getDefault().withLock(account, () -> {
+                            ((Savings)account).addInterest();
+                            if (journal != null) {
+                                journal.logInterest(account);
+                            }
+                            return true;
+                        });
+                        savings++;
                     }
                 }
             }
+            AsyncOutput.getDefault().println("Interest added to " + savings + " savings accounts");
         }
 
     }
@@ -205,39 +442,201 @@ public class ATM implements Serializable {
     public void setDate(String sdfFormattedDate){
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
         try{
-            date.setTime(sdf.parse(sdfFormattedDate));
+            long millis = sdf.parse(sdfFormattedDate).getTime();
+            changeDate(millis);
         } catch (ParseException e){
             System.out.println("Setdate Parse Exception at ATM, this should never happen!");
             System.exit(-1);
         }
     }
 
+    /**
+     * Sets the date and records it in the journal.
+     *
+     * @param millis the date, in milliseconds since the epoch
+     */
+    private void changeDate(long millis) {
+        TransferEngine.getDefault().change(() -> {
+            restoreDate(millis);
+            if (journal != null) {
+                journal.logDate(Journal.DATE, millis);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Sets the date, forgetting the boot jobs a crash cut short, which were for another day.
+     *
+     * @param millis the date, in milliseconds since the epoch
+     */
+    void restoreDate(long millis) {
+        date.setTimeInMillis(millis);
+        interestPaid.clear();
+        subscriptionsCharged.clear();
+    }
+
+    /**
+     * Records that the boot jobs of a date have all been run.
+     *
+     * @param millis the date, in milliseconds since the epoch
+     */
+    void markBootJobsDone(long millis) {
+        bootJobsDate = millis;
+        interestPaid.clear();
+        subscriptionsCharged.clear();
+    }
+
+    /**
+     * Records that the boot jobs added interest to a savings account before the ATM crashed.
+     *
+     * @param accountNum the number of the account
+     */
+    void markInterestPaid(int accountNum) {
+        interestPaid.add(accountNum);
+    }
+
+    /**
+     * Records that the boot jobs charged a user for their subscriptions before the ATM crashed.
+     *
+     * @param username the username of the user
+     */
+    void markSubscriptionsCharged(String username) {
+        subscriptionsCharged.add(username);
+    }
+
     /**
      * Adds a new user to the list of users who can use the ATM.
      *
      * @param u the new user to add to the ATM's list of recognized users
+     * @return true if the user was added and false if their username is already taken
      */
-    public void addUserToList(User u){
-        getListOfUsers().add(u);
+    public boolean addUserToList(User u){
+        return users.add(u);
     }
 
     /**
-     * Shuts down the ATM. Uses serialization to store the current state of the ATM machine.
+     * Replays every change recorded in the journal since this ATM's snapshot was taken and then starts recording
+     * new changes. Must be called after the ATM is loaded and before it is run.
      */
-    public void shutDown(){
-        date.add(Calendar.DATE, 1);
+    void openJournal() {
+        try {
+            history = HistoryStore.openDefault();
+        } catch (IOException e){
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+        Journal replaying = new Journal(this, new File(JOURNAL_FILE), journalSequence, false);
+        int replayed = replaying.replay();
+        if (replayed > 0) {
+            System.out.println("Replayed " + replayed + " journal records");
+        }
+        replaying.open();
+        journal = replaying;
+        bills.setJournal(journal);
+        snapshotter = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "atm-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Takes a snapshot on the ATM's snapshot thread. Called by the journal once enough records have been written,
+     * from inside the change that wrote the last of them, so the snapshot cannot be taken there.
+     */
+    void requestSnapshot() {
+        if (snapshotter == null) {
+            return;
+        }
+        try {
+            snapshotter.execute(this::writeSnapshot);
+        } catch (RejectedExecutionException e) {
+            // the ATM is shutting down, which takes a final snapshot.
+        }
+    }
+
+    /**
+     * Writes the current state of the ATM to the snapshot file and empties the journal, since every change in it
+     * is now part of the snapshot. The snapshot is written by {@link SnapshotCodec} to a temporary file first and then
+     * renamed, so a crash while writing it leaves the previous snapshot and the journal untouched.
+     *
+     * <p>
+     *     Every session is held off while the snapshot is taken, see {@link TransferEngine#quiesce(Runnable)}, so the
+     *     snapshot contains exactly the changes recorded in the journal up to the sequence number it is saved with.
+     *     Must not be called from inside a change.
+     * </p>
+     */
+    void writeSnapshot() {
+        TransferEngine.getDefault().quiesce(this::writeSnapshotQuiesced);
+    }
+
+    /**
+     * Writes the snapshot for {@link #writeSnapshot()} once no change is in progress.
+     */
+    private void writeSnapshotQuiesced() {
+        if (journal != null) {
+            journalSequence = journal.getSequence();
+        }
         try {
-            File file = new File("serialized.blob");
-            file.delete();
-            file.createNewFile();
-            FileOutputStream fos = new FileOutputStream(file);
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(this);
-            oos.close();
+            if (history != null) {
+                // only users in memory are trimmed: a user written out to a PagedUserDirectory has not changed since,
+                // and is trimmed at the next snapshot they are in memory for. They are pinned while they are trimmed.
+                List<User> resident = users.pinResident();
+                try {
+                    history.spill(resident);
+                } finally {
+                    for (User user : resident) {
+                        users.unpin(user);
+                    }
+                }
+            }
+            File temp = new File(SNAPSHOT_FILE + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(temp)) {
+                SnapshotCodec.write(this, fos);
+                fos.getFD().sync();
+            }
+            Files.move(temp.toPath(), new File(SNAPSHOT_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e){
             System.out.println(e.getMessage());
             System.exit(-1);
         }
+        if (journal != null) {
+            journal.reset();
+        }
+    }
+
+    /**
+     * Shuts down the ATM. Writes every bill payment still waiting to outgoing.txt and every new alert to alerts.txt,
+     * takes a final snapshot of the current state of the ATM machine, closes the journal and prints every message
+     * still waiting in the {@link AsyncOutput}.
+     */
+    public void shutDown(){
+        long start = SHUT_DOWN.start();
+        Calendar tomorrow = getDate();
+        tomorrow.add(Calendar.DATE, 1);
+        changeDate(tomorrow.getTimeInMillis());
+        try {
+            OutgoingPayments.getDefault().close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        bills.getAlerts().close();
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+            try {
+                snapshotter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeSnapshot();
+        if (journal != null) {
+            journal.close();
+        }
+        AsyncOutput.getDefault().flush();
+        SHUT_DOWN.stop(start);
     }
 
     /**
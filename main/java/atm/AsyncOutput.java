@@ -0,0 +1,148 @@
+package atm;
+
+import metrics.Counter;
+import metrics.Metrics;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * An {@link OutputSink} that prints messages on a background thread, so that a transaction reporting a message only
+ * pays for putting it on a queue.
+ *
+ * <p>
+ *     Messages wait on a bounded queue. The background thread takes every message waiting, joins them and prints them
+ *     with one write, so many sessions reporting at the same time share a single write to the terminal. When the
+ *     queue is full the message is dropped rather than making the transaction wait, and counted in the
+ *     atm.output.dropped metric.
+ * </p>
+ */
+public class AsyncOutput implements OutputSink {
+
+    /**
+     * The most messages printed in one write.
+     */
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * Counts messages dropped because the queue was full.
+     */
+    private static final Counter DROPPED = Metrics.getDefault().counter("atm.output.dropped");
+
+    /**
+     * The sink used by every part of the ATM unless another one is set.
+     */
+    private static OutputSink defaultOutput;
+
+    /**
+     * Where messages are printed.
+     */
+    private final PrintStream out;
+
+    /**
+     * Messages waiting to be printed.
+     */
+    private final BlockingQueue<Pending> queue;
+
+    /**
+     * AsyncOutput constructor. Starts the background thread.
+     *
+     * @param out where messages are printed
+     * @param capacity the most messages that can wait to be printed
+     */
+    public AsyncOutput(PrintStream out, int capacity) {
+        this.out = out;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Thread writer = new Thread(this::run, "atm-output");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the sink used by every part of the ATM. Prints to standard output, with a queue of atm.output.queue
+     * messages.
+     *
+     * @return the sink used by every part of the ATM
+     */
+    public static synchronized OutputSink getDefault() {
+        if (defaultOutput == null) {
+            defaultOutput = new AsyncOutput(System.out, Integer.getInteger("atm.output.queue", 1024));
+        }
+        return defaultOutput;
+    }
+
+    /**
+     * Replaces the sink used by every part of the ATM.
+     *
+     * @param output the sink used by every part of the ATM, or null to go back to printing to standard output
+     */
+    public static synchronized void setDefault(OutputSink output) {
+        defaultOutput = output;
+    }
+
+    @Override
+    public void println(String line) {
+        if (!queue.offer(new Pending(line, null))) {
+            DROPPED.increment();
+        }
+    }
+
+    @Override
+    public void flush() {
+        Pending marker = new Pending(null, new CountDownLatch(1));
+        try {
+            queue.put(marker);
+            marker.printed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints messages for as long as the program runs.
+     */
+    private void run() {
+        ArrayList<Pending> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            sb.setLength(0);
+            for (Pending pending : batch) {
+                if (pending.line != null) {
+                    sb.append(pending.line).append(System.lineSeparator());
+                }
+            }
+            if (sb.length() > 0) {
+                out.print(sb);
+                out.flush();
+            }
+            for (Pending pending : batch) {
+                if (pending.printed != null) {
+                    pending.printed.countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * A message waiting to be printed, or a marker that {@link AsyncOutput#flush()} waits on.
+     */
+    private static final class Pending {
+        private final String line;
+        private final CountDownLatch printed;
+
+        Pending(String line, CountDownLatch printed) {
+            this.line = line;
+            this.printed = printed;
+        }
+    }
+}
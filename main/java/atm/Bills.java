@@ -1,160 +1,314 @@
 package atm;
 
+import account.TransferEngine;
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+
 import java.io.*;
 
 /**
- * Bills represents the bills in the ATM machine.
+ * Bills represents the bills (and coins) in the ATM machine, one cassette for each type of bill as described by a
+ * {@link CassetteLayout}.
  */
 public class Bills implements Serializable {
 
     /**
-     * A list that stores the number of each type of bill available in the ATM.
+     * Times every withdrawal of bills, and counts those the bills in the ATM could not make.
+     */
+    private static final Timer WITHDRAWALS = Metrics.getDefault().timer("atm.bills.withdraw");
+    private static final Counter DECLINED = Metrics.getDefault().counter("atm.bills.declined");
+
+    /**
+     * The cassettes of the ATM.
+     */
+    private final CassetteLayout layout;
+
+    /**
+     * A list that stores the number of each type of bill available in the ATM, in the order of the cassettes.
+     */
+    private final int[] bills;
+
+    /**
+     * The amount of money in the ATM, in cents. Kept up to date on every change to {@link #bills}.
      */
-    private final int[] bills = new int[4];
+    private long totalAmount;
+
+    /**
+     * The journal every change to the number of bills is recorded in. Null while changes are not being recorded.
+     */
+    private transient Journal journal;
+
+    /**
+     * Alerts the bank manager when a type of bill is running low. Created when first needed.
+     */
+    private transient CashAlerts alerts;
+
+    /**
+     * Works out which bills to dispense for a withdrawal. Created when first needed.
+     */
+    private transient DispensePlanner planner;
 
     /**
      * Bills constructor.
+     * @param layout the cassettes of the ATM
+     * @param counts the number of bills in each cassette
+     */
+    public Bills(CassetteLayout layout, int[] counts) {
+        if (counts.length != layout.size()) {
+            throw new IllegalArgumentException("There are " + layout.size() + " cassettes but "
+                    + counts.length + " counts");
+        }
+        this.layout = layout;
+        this.bills = counts.clone();
+        this.totalAmount = layout.valueOf(bills);
+    }
+
+    /**
+     * Bills constructor for the standard $5, $10, $20 and $50 cassettes.
      * @param five number of $5 bills in the ATM
      * @param ten number of $10 bills in the ATM
      * @param twenty number of $20 bills in the ATM
      * @param fifty number of $50 bills in the ATM
      */
     Bills(int five, int ten, int twenty, int fifty) {
-        bills[0] = five;
-        bills[1] = ten;
-        bills[2] = twenty;
-        bills[3] = fifty;
+        this(CassetteLayout.standard(), new int[]{five, ten, twenty, fifty});
+    }
+
+    /**
+     * Creates stocked cassettes for the layout named by the atm.cassettes system property.
+     *
+     * @return the bills of a newly stocked ATM
+     */
+    static Bills fromProperties() {
+        CassetteLayout layout = CassetteLayout.fromProperties();
+        int[] counts = new int[layout.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = layout.getFill(i);
+        }
+        return new Bills(layout, counts);
+    }
+
+    /**
+     * Starts recording every change to the number of bills in journal.
+     *
+     * @param journal the journal changes are recorded in
+     */
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Records the current number of each type of bill in the journal, if there is one.
+     */
+    private void journalBills() {
+        if (journal != null) {
+            journal.logBills(bills);
+        }
+    }
+
+    /**
+     * @return the cassettes of the ATM
+     */
+    public CassetteLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the number of bills in a cassette.
+     *
+     * @param index the number of the cassette, from 0
+     * @return the number of bills in the cassette
+     */
+    public synchronized int getNumBills(int index) {
+        return bills[index];
+    }
+
+    /**
+     * Returns the alerts raised when a type of bill runs low.
+     *
+     * @return the alerts of the ATM
+     */
+    public synchronized CashAlerts getAlerts() {
+        if (alerts == null) {
+            alerts = CashAlerts.createDefault(layout);
+            alerts.prime(bills);
+        }
+        return alerts;
+    }
+
+    /**
+     * Returns the planner working out which bills to dispense. Uses the policy named by the atm.dispense.policy system
+     * property, either "fewest" (the default) or "preserve", with plans worked out ahead of time for amounts up to
+     * atm.dispense.max dollars.
+     *
+     * @return the dispense planner of the ATM
+     */
+    private synchronized DispensePlanner getPlanner() {
+        if (planner == null) {
+            DispensePolicy policy = "preserve".equals(System.getProperty("atm.dispense.policy"))
+                    ? DispensePolicy.PRESERVE_SCARCE : DispensePolicy.FEWEST_BILLS;
+            planner = new DispensePlanner(layout.getDenominations(), policy,
+                    Long.getLong("atm.dispense.max", 2000) * Money.CENTS_PER_DOLLAR);
+        }
+        return planner;
+    }
+
+    /**
+     * Changes which bills the ATM prefers to dispense.
+     *
+     * @param policy the policy used to pick the bills for a withdrawal
+     */
+    public synchronized void setDispensePolicy(DispensePolicy policy) {
+        planner = new DispensePlanner(layout.getDenominations(), policy, getPlanner().getMaxAmount());
+    }
+
+    /**
+     * Changes the number of bills in a cassette, keeping the total amount and the alerts up to date.
+     *
+     * @param index the number of the cassette, from 0
+     * @param number the new number of bills in the cassette
+     */
+    private void changeBills(int index, int number) {
+        totalAmount += (long) (number - bills[index]) * layout.getDenomination(index);
+        bills[index] = number;
+        getAlerts().update(index, number);
     }
 
     /***
      * Sets the number of bills of a certain type of bill to number
      *
-     * @param bill the index at which the type of bill (50, 20, 10, 5 dollar bill) is located
+     * @param bill the number of the cassette, counting from 1
      * @param number the number of bills to set the type of bill to
      */
     public void setBills(int bill, int number){
-        bills[bill - 1] = number;
+        TransferEngine.getDefault().change(() -> {
+            synchronized (this) {
+                changeBills(bill - 1, number);
+                journalBills();
+            }
+            return true;
+        });
     }
 
-    /***
-     * Returns the number of a certain type of bill the ATM has.
+    /**
+     * Tops a cassette up to its fill level. Bills already above the fill level are left in the cassette.
      *
-     * @param index the index at which the type of bill is located in the bills array
-     * @return the number of bills that the type of bill specified at index has
+     * @param index the number of the cassette, from 0
      */
-    private int getNumBills(int index) {
-        return bills[index];
+    public void restock(int index) {
+        TransferEngine.getDefault().change(() -> {
+            synchronized (this) {
+                changeBills(index, Math.max(bills[index], layout.getFill(index)));
+                journalBills();
+            }
+            return true;
+        });
     }
 
     /***
      * Returns the total amount of money the ATM has
      *
-     * @return the amount of money the ATM has
+     * @return the amount of money the ATM has, in cents
      */
-    public double getTotalAmount(){
-        return (bills[0]*5.0 + bills[1]*10.0 + bills[2]*20.0 + bills[3]* 50.0);
+    public synchronized long getTotalAmount(){
+        return totalAmount;
     }
 
     /***
      * Adds a certain number of a type of bill to the ATM. Updates the bills array.
      *
-     * @param index the index at which the type of bill (50, 20, 10, 5 dollar bill) is located in the bills array
+     * @param index the number of the cassette, from 0
      * @param number the number of bills to add to the ATM
      */
     public void addBills(int index, int number){
-        bills[index] += number;
+        TransferEngine.getDefault().change(() -> {
+            synchronized (this) {
+                changeBills(index, bills[index] + number);
+                journalBills();
+            }
+            return true;
+        });
     }
 
-    /***
-     * Decreases the number of bills in the ATM.
+    /**
+     * Adds the bills of a cash deposit to the ATM, unless a cassette does not have room for them, in which case no
+     * bills are added.
      *
-     * @param index the index at which the type of bill ($50, $20, $10, $5 bill) is located in the bills array
-     * @param number the number of bills to remove from the ATM
+     * @param counts the number of bills of each cassette being deposited
+     * @return true if the bills were added, false if a cassette is too full to take them
      */
-    private void removeBills(int index, int number){
-        bills[index] -= number;
+    public synchronized boolean depositBills(int[] counts) {
+        for (int i = 0; i < bills.length; i++) {
+            if (bills[i] + counts[i] > layout.getCapacity(i)) {
+                AsyncOutput.getDefault().println("The ATM does not have room for " + counts[i] + " more "
+                        + layout.getLabel(i));
+                return false;
+            }
+        }
+        for (int i = 0; i < bills.length; i++) {
+            if (counts[i] != 0) {
+                changeBills(i, bills[i] + counts[i]);
+            }
+        }
+        journalBills();
+        return true;
     }
 
     /***
-     * Withdraws a certain amount from the ATM. This method will optimize the amount of bills to withdraw from the ATM.
-     * The user will receive the smallest number of bills possible.
+     * Withdraws a certain amount from the ATM. The bills to dispense are picked by the {@link DispensePlanner}
+     * before any bill is removed, so either the whole amount is dispensed or nothing is.
      *
-     * @param amount the total amount the user wants to withdraw, this amount has to be an integer that is divisible by
-     *              5 because you cannot withdraw cents from the ATM and there are only 5, 10, 20, 50 dollar bills
-     *               available in the ATM
+     * @param amount the total amount the user wants to withdraw in cents. It has to be a sum the bills in the
+     *               cassettes can make, because you cannot withdraw cents from the ATM unless it has coins
+     * @return true if the amount was dispensed, false if the bills in the ATM cannot make it
      */
-
-    public void withdrawBills(double amount){
-        int amountToWithdraw = (int) amount;
-
-        amountToWithdraw = maximizeBillWithdrawal(amountToWithdraw, 50, 3);
-        amountToWithdraw = maximizeBillWithdrawal(amountToWithdraw, 20, 2);
-        amountToWithdraw = maximizeBillWithdrawal(amountToWithdraw, 10, 1);
-        maximizeBillWithdrawal(amountToWithdraw, 5, 0);
-        alertManager();
-
+    public boolean withdrawBills(long amount){
+        return dispense(amount) != null;
     }
 
     /***
-     * Returns the number of a certain type of bill to withdraw from the ATM and updates bills array with the new
-     * amount of bills in the ATM after withdrawal.
-     *
-     * <p>
-     *     Depending on the amount of money that the user wants to withdraw, this method will maximize how many
-     *     of a certain type of bill (either a 50, 20, 10, or 5) the ATM will withdraw.
-     * </p>
-     *
-     *
-     * @param amountToWithdraw the amount of money the user wants to withdraw from the ATM
-     * @param typeOfBill the type of bill to withdraw (either a 50, 20, 10 or 5 dollar bill)
-     * @param index the index where typeOfBill is stored in {@link #bills} array
-     * @return the number of a certain type of bill to withdraw
-     */
-    private int maximizeBillWithdrawal(int amountToWithdraw, int typeOfBill, int index) {
-
-        if (amountToWithdraw/typeOfBill > bills[index]) {
-            // Go to this if statement if there are not enough bills of this typeOfBill in the ATM.
-            amountToWithdraw -= bills[index] * typeOfBill;
-            System.out.println("You have received " + bills[index] + " " + typeOfBill + "$ bills");
-            setBills(index, 0);
-        } else {
-            int billsToWithdraw = (amountToWithdraw/typeOfBill);
-            amountToWithdraw -= (billsToWithdraw * typeOfBill);
-            removeBills(index, billsToWithdraw);
-            System.out.println("You have received " + (billsToWithdraw) + " " + typeOfBill + "$ bills");
+     * Withdraws a certain amount from the ATM like {@link #withdrawBills(long)}, and returns the bills dispensed so
+     * the caller can show them once the withdrawal is over.
+     *
+     * @param amount the total amount the user wants to withdraw in cents
+     * @return the number of bills dispensed from each cassette, or null if the bills in the ATM cannot make the amount
+     * @see #describe(int[])
+     */
+    public synchronized int[] dispense(long amount){
+        long start = WITHDRAWALS.start();
+        int[] plan = getPlanner().plan(amount, bills);
+        if (plan == null) {
+            WITHDRAWALS.stop(start);
+            DECLINED.increment();
+            return null;
         }
-
-        return amountToWithdraw;
+        for (int index = bills.length - 1; index >= 0; index--) {
+            changeBills(index, bills[index] - plan[index]);
+        }
+        journalBills();
+        WITHDRAWALS.stop(start);
+        return plan;
     }
 
-    /**Alerts the manager when the amount of any denomination of bills goes below 20.
-     * The alert is written alerts.txt to which the Bank Manager has accessed to.
-     * */
-    private void alertManager() {
-        boolean fiveBills = true;
-        boolean tenBills = true;
-        boolean twentyBills = true;
-        boolean fiftyBills = true;
-
-        if(getNumBills(0)*5 < 20){fiveBills = false;}
-        if(getNumBills(1)*10 < 20){tenBills = false;}
-        if(getNumBills(2)*20 < 20){twentyBills = false;}
-        if(getNumBills(3)*50 < 20){fiftyBills = false;}
-
-        try {
-            //System.out.println(System.getProperty("user.dir"));
-            File file = new File(System.getProperty("user.dir") + "/phase1/src/main/Text Files/alerts.txt");
-            FileOutputStream is = new FileOutputStream(file);
-            OutputStreamWriter osw = new OutputStreamWriter(is);
-            Writer w = new BufferedWriter(osw);
-            if(!fiveBills){w.write("ALERT 5$ bills are low \n");}
-            if(!tenBills){w.write("ALERT 10$ bills are low \n");}
-            if(!twentyBills){w.write("ALERT 20$ bills are low \n");}
-            if(!fiftyBills){w.write("ALERT 50$ bills are low \n");}
-            w.close();
-        } catch (IOException e) {
-            System.err.println("Problem writing to the file alert.txt");
+    /**
+     * Describes the bills of a withdrawal, one line for each type of bill dispensed, largest first, for example
+     * "You have received 2 20$ bills".
+     *
+     * @param plan the number of bills dispensed from each cassette, as returned by {@link #dispense(long)}
+     * @return the description
+     */
+    public String describe(int[] plan) {
+        StringBuilder sb = new StringBuilder();
+        for (int index = plan.length - 1; index >= 0; index--) {
+            if (plan[index] != 0) {
+                if (sb.length() > 0) {
+                    sb.append('\n');
+                }
+                sb.append("You have received ").append(plan[index]).append(' ').append(layout.getLabel(index));
+            }
         }
+        return sb.toString();
     }
 
     /**
@@ -0,0 +1,306 @@
+package atm;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alerts the bank manager when the ATM is running low on a type of bill.
+ *
+ * <p>
+ *     An alert is only raised when the number of bills of a type falls below its low threshold, and is only cleared
+ *     when the number rises back to its clear threshold, so a count going up and down around one number does not
+ *     raise an alert every time. Alerts are kept in memory in a ring of the most recent alerts, which is what the bank
+ *     manager reads, and a background task appends new alerts to alerts.txt every few seconds.
+ * </p>
+ *
+ * <p>
+ *     The thresholds are numbers of bills and can be set with the atm.alerts.low and atm.alerts.clear system
+ *     properties as a comma separated list with one number per cassette.
+ * </p>
+ */
+public class CashAlerts {
+
+    /**
+     * The number of alerts kept in memory.
+     */
+    private static final int CAPACITY = 64;
+
+    /**
+     * The cassettes of the ATM.
+     */
+    private final CassetteLayout layout;
+
+    /**
+     * The number of bills of each type below which an alert is raised.
+     */
+    private final int[] lowThresholds;
+
+    /**
+     * The number of bills of each type at or above which an alert is cleared.
+     */
+    private final int[] clearThresholds;
+
+    /**
+     * True for each type of bill there is an alert for.
+     */
+    private final boolean[] low;
+
+    /**
+     * The most recent alerts. Alert number n is at n % CAPACITY.
+     */
+    private final Alert[] ring = new Alert[CAPACITY];
+
+    /**
+     * The number of alerts ever raised.
+     */
+    private long raised = 0;
+
+    /**
+     * The number of alerts written to alerts.txt.
+     */
+    private long flushed = 0;
+
+    /**
+     * The file alerts are appended to.
+     */
+    private final File file;
+
+    /**
+     * How often new alerts are written to alerts.txt, in milliseconds.
+     */
+    private final long flushMillis;
+
+    /**
+     * Writes new alerts to alerts.txt, or null if no alert has been raised yet.
+     */
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Held while alerts are written, so two flushes never write the same alerts.
+     */
+    private final Object writing = new Object();
+
+    /**
+     * CashAlerts constructor.
+     *
+     * @param layout the cassettes of the ATM
+     * @param lowThresholds the number of bills of each type below which an alert is raised
+     * @param clearThresholds the number of bills of each type at or above which an alert is cleared
+     * @param file the file alerts are appended to
+     * @param flushMillis how often new alerts are written to the file, in milliseconds
+     */
+    public CashAlerts(CassetteLayout layout, int[] lowThresholds, int[] clearThresholds, File file, long flushMillis) {
+        this.layout = layout;
+        this.lowThresholds = lowThresholds.clone();
+        this.clearThresholds = clearThresholds.clone();
+        for (int i = 0; i < layout.size(); i++) {
+            this.clearThresholds[i] = Math.max(this.clearThresholds[i], this.lowThresholds[i]);
+        }
+        this.low = new boolean[layout.size()];
+        this.file = file;
+        this.flushMillis = flushMillis;
+    }
+
+    /**
+     * Creates the alerts for the cassettes of an ATM. By default a type of bill is low when it is worth less than $20
+     * (with at least one bill) and is cleared once there are 20 bills of it again, or the cassette is full.
+     *
+     * @param layout the cassettes of the ATM
+     * @return the alerts for an ATM
+     */
+    static CashAlerts createDefault(CassetteLayout layout) {
+        int[] lowDefaults = new int[layout.size()];
+        int[] clearDefaults = new int[layout.size()];
+        for (int i = 0; i < layout.size(); i++) {
+            int denomination = layout.getDenomination(i);
+            lowDefaults[i] = (int) Math.max(1, (20 * Money.CENTS_PER_DOLLAR + denomination - 1) / denomination);
+            clearDefaults[i] = Math.min(20, layout.getCapacity(i));
+        }
+        return new CashAlerts(layout,
+                thresholds("atm.alerts.low", lowDefaults),
+                thresholds("atm.alerts.clear", clearDefaults),
+                new File(System.getProperty("user.dir") + "/phase1/src/main/Text Files/alerts.txt"),
+                Long.getLong("atm.alerts.flush", 5000));
+    }
+
+    private static int[] thresholds(String property, int[] defaults) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            return defaults;
+        }
+        String[] parts = value.split(",");
+        int[] thresholds = defaults.clone();
+        for (int i = 0; i < parts.length && i < thresholds.length; i++) {
+            thresholds[i] = Integer.parseInt(parts[i].trim());
+        }
+        return thresholds;
+    }
+
+    /**
+     * Sets which types of bill are low without raising alerts, when the ATM starts.
+     *
+     * @param counts the number of bills of each type in the ATM
+     */
+    synchronized void prime(int[] counts) {
+        for (int i = 0; i < low.length; i++) {
+            low[i] = counts[i] < lowThresholds[i];
+        }
+    }
+
+    /**
+     * Checks the new number of bills of one type against its thresholds, raising or clearing an alert if it crossed
+     * one.
+     *
+     * @param index the type of bill
+     * @param count the number of bills of that type in the ATM
+     */
+    synchronized void update(int index, int count) {
+        if (!low[index] && count < lowThresholds[index]) {
+            low[index] = true;
+            raise(new Alert(System.currentTimeMillis(), layout.getLabel(index), count, true));
+        } else if (low[index] && count >= clearThresholds[index]) {
+            low[index] = false;
+            raise(new Alert(System.currentTimeMillis(), layout.getLabel(index), count, false));
+        }
+    }
+
+    private void raise(Alert alert) {
+        ring[(int) (raised % CAPACITY)] = alert;
+        raised++;
+        if (flusher == null && flushMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "alert-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the alerts still in memory, oldest first
+     */
+    public synchronized ArrayList<Alert> recent() {
+        ArrayList<Alert> alerts = new ArrayList<>();
+        for (long n = Math.max(0, raised - CAPACITY); n < raised; n++) {
+            alerts.add(ring[(int) (n % CAPACITY)]);
+        }
+        return alerts;
+    }
+
+    /**
+     * @return the name of every type of bill that is low, for example "20$ bills"
+     */
+    public synchronized ArrayList<String> lowDenominations() {
+        ArrayList<String> lowDenominations = new ArrayList<>();
+        for (int i = 0; i < low.length; i++) {
+            if (low[i]) {
+                lowDenominations.add(layout.getLabel(i));
+            }
+        }
+        return lowDenominations;
+    }
+
+    /**
+     * Appends every alert not yet written to alerts.txt. Alerts that were pushed out of the ring before they were
+     * written are lost.
+     */
+    public void flush() {
+        synchronized (writing) {
+            ArrayList<Alert> pending = new ArrayList<>();
+            long upTo;
+            synchronized (this) {
+                upTo = raised;
+                for (long n = Math.max(flushed, raised - CAPACITY); n < raised; n++) {
+                    pending.add(ring[(int) (n % CAPACITY)]);
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true)))) {
+                for (Alert alert : pending) {
+                    w.write(alert + "\n");
+                }
+            } catch (IOException e) {
+                System.err.println("Problem writing to the file alerts.txt");
+                return;
+            }
+            synchronized (this) {
+                flushed = Math.max(flushed, upTo);
+            }
+        }
+    }
+
+    /**
+     * Stops the background task, waiting for a write it is in the middle of, and writes every remaining alert to
+     * alerts.txt.
+     */
+    public void close() {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = flusher;
+            flusher = null;
+        }
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                stopping.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * A type of bill becoming low, or being restocked after being low.
+     */
+    public static final class Alert {
+        private final long time;
+        private final String denomination;
+        private final int count;
+        private final boolean low;
+
+        Alert(long time, String denomination, int count, boolean low) {
+            this.time = time;
+            this.denomination = denomination;
+            this.count = count;
+            this.low = low;
+        }
+
+        /**
+         * @return the name of the type of bill, for example "20$ bills"
+         */
+        public String getDenomination() {
+            return denomination;
+        }
+
+        /**
+         * @return the number of bills of the type when the alert was raised
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return true if the type of bill became low, false if it was restocked
+         */
+        public boolean isLow() {
+            return low;
+        }
+
+        public String toString() {
+            String when = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time));
+            if (low) {
+                return when + " ALERT " + denomination + " are low (" + count + " left)";
+            }
+            return when + " Alert addressed: " + denomination + " restocked (" + count + " left)";
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package atm;
+
+import java.io.*;
+
+/**
+ * The cassettes of an ATM: the value of the bill or coin each cassette holds, how many it can hold and how many it is
+ * filled with when the ATM is stocked.
+ *
+ * <p>
+ *     Cassettes are numbered from 0 in the order they are listed, and every part of the ATM handling cash (deposits,
+ *     withdrawals, restocking and alerts) works through the layout rather than assuming particular bills. The layout
+ *     is read from the atm.cassettes system property as a comma separated list of value:capacity:fill, with the value
+ *     in dollars, for example 5:200:100,10:200:100,20:200:100,50:200:100,100:100:50 or 0.25:500,1:200,20:100. When
+ *     the fill is left out the cassette is filled to its capacity.
+ * </p>
+ */
+public final class CassetteLayout implements Serializable {
+
+    /**
+     * The value of the bill or coin in each cassette, in cents.
+     */
+    private final int[] denominations;
+
+    /**
+     * The most bills or coins each cassette can hold.
+     */
+    private final int[] capacities;
+
+    /**
+     * The number of bills or coins each cassette is filled with when the ATM is stocked or restocked.
+     */
+    private final int[] fills;
+
+    /**
+     * CassetteLayout constructor for cassettes that are filled to their capacity.
+     *
+     * @param denominations the value of the bill or coin in each cassette, in cents
+     * @param capacities the most bills or coins each cassette can hold
+     */
+    public CassetteLayout(int[] denominations, int[] capacities) {
+        this(denominations, capacities, capacities);
+    }
+
+    /**
+     * CassetteLayout constructor.
+     *
+     * @param denominations the value of the bill or coin in each cassette, in cents
+     * @param capacities the most bills or coins each cassette can hold
+     * @param fills the number of bills or coins each cassette is filled with when the ATM is stocked
+     */
+    public CassetteLayout(int[] denominations, int[] capacities, int[] fills) {
+        if (denominations.length != capacities.length || denominations.length != fills.length
+                || denominations.length == 0) {
+            throw new IllegalArgumentException("Every cassette needs a value, a capacity and a fill");
+        }
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] <= 0 || capacities[i] < 0 || fills[i] < 0 || fills[i] > capacities[i]) {
+                throw new IllegalArgumentException("Cassette " + i + " has a value of " + denominations[i]
+                        + ", a capacity of " + capacities[i] + " and a fill of " + fills[i]);
+            }
+        }
+        this.denominations = denominations.clone();
+        this.capacities = capacities.clone();
+        this.fills = fills.clone();
+    }
+
+    /**
+     * @return the $5, $10, $20 and $50 cassettes the ATM has always had, stocked with 100 bills each and with room
+     * for 100 more from deposits
+     */
+    public static CassetteLayout standard() {
+        return new CassetteLayout(new int[]{500, 1000, 2000, 5000}, new int[]{200, 200, 200, 200},
+                new int[]{100, 100, 100, 100});
+    }
+
+    /**
+     * @return the layout named by the atm.cassettes system property, or the standard layout if there is none
+     */
+    public static CassetteLayout fromProperties() {
+        String value = System.getProperty("atm.cassettes");
+        if (value == null || value.trim().isEmpty()) {
+            return standard();
+        }
+        return parse(value);
+    }
+
+    /**
+     * Reads a layout written as a comma separated list of value:capacity:fill, with the value in dollars and the fill
+     * optional.
+     *
+     * @param layout the layout, for example 5:200:100,10:200:100,20:200:100,50:200:100
+     * @return the layout
+     * @throws IllegalArgumentException if the layout is not written that way
+     */
+    public static CassetteLayout parse(String layout) {
+        String[] cassettes = layout.split(",");
+        int[] denominations = new int[cassettes.length];
+        int[] capacities = new int[cassettes.length];
+        int[] fills = new int[cassettes.length];
+        for (int i = 0; i < cassettes.length; i++) {
+            String[] parts = cassettes[i].trim().split(":");
+            if (parts.length != 2 && parts.length != 3) {
+                throw new IllegalArgumentException("Cassette " + cassettes[i].trim() + " is not value:capacity:fill");
+            }
+            denominations[i] = Math.toIntExact(Money.parse(parts[0].trim()));
+            capacities[i] = Integer.parseInt(parts[1].trim());
+            fills[i] = parts.length == 3 ? Integer.parseInt(parts[2].trim()) : capacities[i];
+        }
+        return new CassetteLayout(denominations, capacities, fills);
+    }
+
+    /**
+     * @return the number of cassettes
+     */
+    public int size() {
+        return denominations.length;
+    }
+
+    /**
+     * @param cassette the number of the cassette
+     * @return the value of the bill or coin in the cassette, in cents
+     */
+    public int getDenomination(int cassette) {
+        return denominations[cassette];
+    }
+
+    /**
+     * @param cassette the number of the cassette
+     * @return the most bills or coins the cassette can hold
+     */
+    public int getCapacity(int cassette) {
+        return capacities[cassette];
+    }
+
+    /**
+     * @param cassette the number of the cassette
+     * @return the number of bills or coins the cassette is filled with when the ATM is stocked or restocked
+     */
+    public int getFill(int cassette) {
+        return fills[cassette];
+    }
+
+    /**
+     * @return the value of the bill or coin in each cassette, in cents
+     */
+    public int[] getDenominations() {
+        return denominations.clone();
+    }
+
+    /**
+     * @param cassette the number of the cassette
+     * @return a name for what the cassette holds, for example "20$ bills" or "0.25$ coins"
+     */
+    public String getLabel(int cassette) {
+        int denomination = denominations[cassette];
+        if (denomination % Money.CENTS_PER_DOLLAR == 0) {
+            return denomination / Money.CENTS_PER_DOLLAR + "$ bills";
+        }
+        return Money.format(denomination) + "$ coins";
+    }
+
+    /**
+     * Works out the value of some bills and coins.
+     *
+     * @param counts the number of bills or coins of each cassette
+     * @return their value, in cents
+     */
+    public long valueOf(int[] counts) {
+        long value = 0;
+        for (int i = 0; i < denominations.length; i++) {
+            value += (long) counts[i] * denominations[i];
+        }
+        return value;
+    }
+
+    /**
+     * Reads the number of bills or coins of each cassette in a cash deposit from deposits.txt. The numbers are either
+     * one digit per cassette, like 0111, or separated by spaces or commas, like 0 1 1 12. Missing numbers are 0.
+     *
+     * @param line the line describing the deposit
+     * @return the number of bills or coins of each cassette
+     * @throws NumberFormatException if the line is not a list of numbers
+     */
+    public int[] parseCash(String line) {
+        int[] counts = new int[denominations.length];
+        String trimmed = line.trim();
+        if (trimmed.contains(" ") || trimmed.contains(",")) {
+            String[] parts = trimmed.split("[\\s,]+");
+            for (int i = 0; i < parts.length && i < counts.length; i++) {
+                counts[i] = Integer.parseInt(parts[i]);
+            }
+        } else {
+            for (int i = 0; i < trimmed.length() && i < counts.length; i++) {
+                int digit = Character.digit(trimmed.charAt(i), 10);
+                if (digit < 0) {
+                    throw new NumberFormatException("Not a cash deposit: " + line);
+                }
+                counts[i] = digit;
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,47 @@
+package atm;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link UserDirectory} that can be used from many threads at once.
+ *
+ * <p>
+ *     Lookups go straight to a {@link ConcurrentHashMap} and never block. Adding a user and enumerating the users
+ *     take a lock on the directory; enumeration returns a copy of the list so that callers can go through it while
+ *     other threads keep adding users.
+ * </p>
+ */
+public class ConcurrentUserDirectory extends UserDirectory {
+
+    /**
+     * ConcurrentUserDirectory constructor for a directory that is not case folded.
+     */
+    public ConcurrentUserDirectory() {
+        super(false);
+    }
+
+    /**
+     * ConcurrentUserDirectory constructor.
+     *
+     * @param caseFolded whether users can also be looked up regardless of the case of their username
+     */
+    public ConcurrentUserDirectory(boolean caseFolded) {
+        super(caseFolded);
+    }
+
+    @Override
+    Map<String, User> newIndex(int expectedSize) {
+        return new ConcurrentHashMap<>(Math.max(16, expectedSize));
+    }
+
+    @Override
+    public synchronized boolean add(User user) {
+        return super.add(user);
+    }
+
+    @Override
+    public synchronized List<User> users() {
+        return Collections.unmodifiableList(new ArrayList<>(usersList()));
+    }
+}
@@ -0,0 +1,350 @@
+package atm;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Works out which bills to dispense for a withdrawal before any bill leaves the ATM.
+ *
+ * <p>
+ *     A plan is the mix of bills making up the amount exactly with the lowest total cost under a
+ *     {@link DispensePolicy}. Plans are looked up in tables worked out ahead of time for every amount up to
+ *     {@link DispensePlanner#maxAmount}. The ATM's number of each type of bill is rounded down to a bucket
+ *     (0, 1, 2, 5, 10, 20, 50 or 100 bills) and there is one table per combination of buckets, so a table stays valid
+ *     while the numbers of bills change within their buckets and a withdrawal is usually a single lookup. Tables are
+ *     built the first time they are needed and the least recently used ones are dropped.
+ * </p>
+ *
+ * <p>
+ *     Since a bucket never counts more bills than the ATM has, any plan found in a table can be dispensed. When the
+ *     table has no plan, or the amount is larger than the tables cover, the plan is worked out from the exact number
+ *     of bills instead.
+ * </p>
+ *
+ * <p>
+ *     Tables count amounts in {@link #billUnit}, the largest unit every bill of a whole number of dollars is a
+ *     multiple of, so a table has one entry per $5 rather than per cent. Coins, and any other denomination that is
+ *     not a multiple of it, are planned separately from their exact numbers and only make up the cents of the amount
+ *     and at most {@link #MAX_COIN_UNITS} of their smallest unit, which keeps every table small even when the ATM
+ *     holds pennies.
+ * </p>
+ */
+public class DispensePlanner {
+
+    /**
+     * The lower bound of each bucket of numbers of bills.
+     */
+    private static final int[] BUCKETS = {0, 1, 2, 5, 10, 20, 50, 100};
+
+    /**
+     * The most tables kept in memory.
+     */
+    private static final int CACHED_TABLES = 256;
+
+    /**
+     * The most amounts a cached table covers, whatever {@link #maxAmount} is.
+     */
+    private static final int MAX_TABLE_UNITS = 1 << 16;
+
+    /**
+     * The most coins make up in a plan, in units of {@link #unit}.
+     */
+    private static final int MAX_COIN_UNITS = 1 << 12;
+
+    private static final int NO_PLAN = Integer.MAX_VALUE;
+
+    /**
+     * The value of each type of bill, in cents.
+     */
+    private final int[] denominations;
+
+    /**
+     * The greatest common divisor of the denominations. Every amount that can be dispensed is a multiple of it.
+     */
+    private final int unit;
+
+    /**
+     * The greatest common divisor of the denominations that are a whole number of dollars, which the tables count
+     * amounts in, or {@link #unit} if there are none.
+     */
+    private final int billUnit;
+
+    /**
+     * The value of each denomination in {@link #billUnit}, or 0 for coins.
+     */
+    private final int[] billSizes;
+
+    /**
+     * The value of each coin in {@link #unit}, or 0 for bills. Null if there are no coins.
+     */
+    private final int[] coinSizes;
+
+    /**
+     * The largest amount the tables cover, in cents.
+     */
+    private final long maxAmount;
+
+    /**
+     * How the cost of a plan is worked out.
+     */
+    private final DispensePolicy policy;
+
+    /**
+     * The tables built so far keyed by combination of buckets, least recently used first.
+     */
+    private final LinkedHashMap<Long, Table> tables = new LinkedHashMap<Long, Table>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<Long, Table> eldest) {
+            return size() > CACHED_TABLES;
+        }
+    };
+
+    /**
+     * DispensePlanner constructor.
+     *
+     * @param denominations the value of each type of bill, in cents
+     * @param policy how the cost of a plan is worked out
+     * @param maxAmount the largest amount the tables cover, in cents
+     */
+    public DispensePlanner(int[] denominations, DispensePolicy policy, long maxAmount) {
+        this.denominations = denominations.clone();
+        this.policy = policy;
+        int gcd = 0;
+        int dollarGcd = 0;
+        for (int denomination : denominations) {
+            gcd = gcd(gcd, denomination);
+            if (denomination % Money.CENTS_PER_DOLLAR == 0) {
+                dollarGcd = gcd(dollarGcd, denomination);
+            }
+        }
+        this.unit = Math.max(1, gcd);
+        this.billUnit = dollarGcd == 0 ? unit : dollarGcd;
+        this.billSizes = new int[denominations.length];
+        int[] coins = new int[denominations.length];
+        boolean hasCoins = false;
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] % billUnit == 0) {
+                billSizes[i] = denominations[i] / billUnit;
+            } else {
+                coins[i] = denominations[i] / unit;
+                hasCoins = true;
+            }
+        }
+        this.coinSizes = hasCoins ? coins : null;
+        this.maxAmount = maxAmount;
+    }
+
+    /**
+     * @return how the cost of a plan is worked out
+     */
+    public DispensePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the largest amount the tables cover, in cents
+     */
+    public long getMaxAmount() {
+        return maxAmount;
+    }
+
+    /**
+     * Works out the bills to dispense for an amount.
+     *
+     * @param amount the amount to dispense, in cents
+     * @param counts the number of each type of bill in the ATM
+     * @return the number of each type of bill to dispense, or null if the amount cannot be made exactly
+     */
+    public int[] plan(long amount, int[] counts) {
+        if (amount < 0 || amount % unit != 0) {
+            return null;
+        }
+        long total = 0;
+        long coinTotal = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += (long) counts[i] * denominations[i];
+            if (billSizes[i] == 0) {
+                coinTotal += (long) counts[i] * denominations[i];
+            }
+        }
+        if (amount > total) {
+            return null;
+        }
+        long remainder = amount % billUnit;
+        long mostInCoins = Math.min(Math.min(amount, coinTotal), (long) MAX_COIN_UNITS * unit);
+        if (remainder > mostInCoins) {
+            return null;
+        }
+        Table coins = coinSizes == null ? null : new Table(counts, coinSizes, (int) (mostInCoins / unit));
+        Table cached = amount <= maxAmount ? cachedTable(counts) : null;
+        Table exact = null;
+
+        int[] best = null;
+        long bestCost = Long.MAX_VALUE;
+        // each amount in coins leaves a whole number of billUnits to the bills.
+        for (long inCoins = remainder; inCoins <= mostInCoins; inCoins += billUnit) {
+            int coinCost = coins == null ? 0 : coins.cost((int) (inCoins / unit));
+            if (coinCost == NO_PLAN) {
+                continue;
+            }
+            int units = (int) ((amount - inCoins) / billUnit);
+            Table bills = cached;
+            if (bills == null || bills.cost(units) == NO_PLAN) {
+                if (exact == null) {
+                    // the buckets undercount the bills, so the exact numbers may still make the amount.
+                    exact = new Table(counts, billSizes, (int) ((amount - remainder) / billUnit));
+                }
+                bills = exact;
+            }
+            int billCost = bills.cost(units);
+            if (billCost != NO_PLAN && (long) billCost + coinCost < bestCost) {
+                bestCost = (long) billCost + coinCost;
+                best = bills.plan(units);
+                if (coins != null) {
+                    int[] coinPlan = coins.plan((int) (inCoins / unit));
+                    for (int i = 0; i < best.length; i++) {
+                        best[i] += coinPlan[i];
+                    }
+                }
+            }
+            if (coins == null) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param counts the number of each type of bill in the ATM
+     * @return the table for the buckets of the bills, built if it is not cached
+     */
+    private Table cachedTable(int[] counts) {
+        int[] lower = new int[counts.length];
+        long key = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (billSizes[i] != 0) {
+                int bucket = bucket(counts[i]);
+                lower[i] = BUCKETS[bucket];
+                key = key * BUCKETS.length + bucket;
+            }
+        }
+        Table table;
+        synchronized (tables) {
+            table = tables.get(key);
+        }
+        if (table == null) {
+            table = new Table(lower, billSizes, (int) Math.min(maxAmount / billUnit, MAX_TABLE_UNITS));
+            synchronized (tables) {
+                tables.put(key, table);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @param count a number of bills
+     * @return the index of the largest bucket whose lower bound is at most count
+     */
+    private static int bucket(int count) {
+        int bucket = 0;
+        while (bucket + 1 < BUCKETS.length && BUCKETS[bucket + 1] <= count) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * The cheapest plan for every amount up to a limit, given the number of each type of bill available, using only
+     * the types of bill with a size.
+     */
+    private final class Table {
+
+        /**
+         * The value of each type of bill in the units of the table, or 0 if it is not used.
+         */
+        private final int[] sizes;
+
+        /**
+         * choice[i][a] is the number of bills of type i in the cheapest plan for a units using types 0 to i.
+         */
+        private final int[][] choice;
+
+        /**
+         * The cost of the cheapest plan for each amount, or NO_PLAN.
+         */
+        private final int[] cost;
+
+        /**
+         * Works out the table with one pass over the amounts per type of bill. Since every bill of a type costs the
+         * same, the cheapest number of bills of a type for an amount is found from a sliding window over the amounts
+         * that differ from it by whole bills, instead of trying every number of bills.
+         */
+        Table(int[] available, int[] sizes, int maxUnits) {
+            this.sizes = sizes;
+            choice = new int[denominations.length][maxUnits + 1];
+            int[] best = new int[maxUnits + 1];
+            Arrays.fill(best, NO_PLAN);
+            best[0] = 0;
+            int[] window = new int[maxUnits + 1];
+            for (int i = 0; i < denominations.length; i++) {
+                int size = sizes[i];
+                if (size == 0) {
+                    continue;
+                }
+                long billCost = policy.billCost(denominations[i], available[i]);
+                int[] next = new int[maxUnits + 1];
+                for (int start = 0; start < size && start <= maxUnits; start++) {
+                    // window holds the numbers of bills j, oldest first, whose best[start + j * size] - j * billCost
+                    // increase, so the head is the cheapest plan within reach.
+                    int head = 0;
+                    int tail = 0;
+                    for (int k = 0, a = start; a <= maxUnits; k++, a += size) {
+                        if (best[a] != NO_PLAN) {
+                            long value = best[a] - k * billCost;
+                            while (tail > head && best[start + window[tail - 1] * size] - window[tail - 1] * billCost
+                                    >= value) {
+                                tail--;
+                            }
+                            window[tail++] = k;
+                        }
+                        while (tail > head && k - window[head] > available[i]) {
+                            head++;
+                        }
+                        if (tail > head) {
+                            int j = window[head];
+                            next[a] = (int) (best[start + j * size] + (k - j) * billCost);
+                            choice[i][a] = k - j;
+                        } else {
+                            next[a] = NO_PLAN;
+                        }
+                    }
+                }
+                best = next;
+            }
+            cost = best;
+        }
+
+        int cost(int units) {
+            return units >= cost.length ? NO_PLAN : cost[units];
+        }
+
+        int[] plan(int units) {
+            if (cost(units) == NO_PLAN) {
+                return null;
+            }
+            int[] plan = new int[denominations.length];
+            int a = units;
+            for (int i = denominations.length - 1; i >= 0; i--) {
+                if (sizes[i] != 0) {
+                    plan[i] = choice[i][a];
+                    a -= plan[i] * sizes[i];
+                }
+            }
+            return plan;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package atm;
+
+/**
+ * Decides which bills the ATM prefers to dispense. The {@link DispensePlanner} picks the mix of bills making up an
+ * amount with the lowest total cost, where each bill costs what the policy says it does.
+ */
+public interface DispensePolicy {
+
+    /**
+     * Dispenses as few bills as possible.
+     */
+    DispensePolicy FEWEST_BILLS = new DispensePolicy() {
+        public int billCost(int denomination, int available) {
+            return 1;
+        }
+
+        public String toString() {
+            return "fewest";
+        }
+    };
+
+    /**
+     * Dispenses few bills, but avoids the types of bill the ATM is running out of, so it can keep making change for
+     * longer before it is restocked.
+     */
+    DispensePolicy PRESERVE_SCARCE = new DispensePolicy() {
+        public int billCost(int denomination, int available) {
+            return 1 + 1000 / (available + 1);
+        }
+
+        public String toString() {
+            return "preserve";
+        }
+    };
+
+    /**
+     * Returns the cost of dispensing one bill. The cost may only depend on the arguments, so plans can be worked out
+     * ahead of time.
+     *
+     * @param denomination the value of the bill, in cents
+     * @param available the number of bills of that type the ATM has, or a lower bound on it
+     * @return the cost of dispensing one bill of the type, at least 1
+     */
+    int billCost(int denomination, int available);
+}
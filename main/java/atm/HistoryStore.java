@@ -0,0 +1,336 @@
+package atm;
+
+import account.Account;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+
+/**
+ * Keeps the older transactions of every account on disk, so only the most recent ones stay in each account's
+ * {@link TransactionLog} and in the snapshot.
+ *
+ * <p>
+ *     Every time a snapshot is taken the transactions of each account beyond the last {@link HistoryStore#tailSize}
+ *     are written to a new segment file in the history directory. Segments are never changed once written and are
+ *     memory mapped to be read. In a segment the records of an account are next to each other in sequence order, and
+ *     the store keeps an index of where each account's records are in each segment, so reading a page of history
+ *     only touches the records in that page.
+ * </p>
+ *
+ * <p>
+ *     A record on disk only counts if its sequence number is before the first sequence number of the account's
+ *     log. A crash after a segment is written but before the snapshot leaves those transactions in the snapshot as
+ *     well; the copies in the segment are ignored and written again by the next snapshot. When the same transaction
+ *     is in more than one segment the newest segment is used.
+ * </p>
+ */
+public class HistoryStore {
+
+    /**
+     * The directory segments are written to.
+     */
+    static final String HISTORY_DIR = "history";
+
+    /**
+     * The number of most recent transactions of each account kept in memory when no other number is configured.
+     */
+    static final int DEFAULT_TAIL_SIZE = 100;
+
+    private static final int MAGIC = 0x48495354;
+
+    private static final int VERSION = 1;
+
+    /**
+     * The size of a record: account number, sequence number, type code, amount and counterparty.
+     */
+    private static final int RECORD_SIZE = 4 + 8 + 1 + 8 + 4;
+
+    /**
+     * The directory segments are written to.
+     */
+    private final File dir;
+
+    /**
+     * The number of most recent transactions of each account kept in memory.
+     */
+    private final int tailSize;
+
+    /**
+     * Where the records of each account are, keyed by account number, oldest segment first.
+     */
+    private final HashMap<Integer, ArrayList<Run>> index = new HashMap<>();
+
+    /**
+     * The number the next segment written will have.
+     */
+    private int nextSegment = 1;
+
+    /**
+     * Opens the segments already in the directory, creating the directory if there is none.
+     *
+     * @param dir the directory segments are written to
+     * @param tailSize the number of most recent transactions of each account kept in memory
+     * @throws IOException if a segment cannot be read
+     */
+    HistoryStore(File dir, int tailSize) throws IOException {
+        this.dir = dir;
+        this.tailSize = Math.max(1, tailSize);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File[] files = dir.listFiles((d, name) -> name.startsWith("segment-") && name.endsWith(".seg"));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                open(file);
+            }
+        }
+    }
+
+    /**
+     * Opens the history directory of the ATM, keeping the number of transactions in memory set by the
+     * atm.history.tail system property.
+     *
+     * @return the history store of the ATM
+     * @throws IOException if a segment cannot be read
+     */
+    static HistoryStore openDefault() throws IOException {
+        return new HistoryStore(new File(HISTORY_DIR), Integer.getInteger("atm.history.tail", DEFAULT_TAIL_SIZE));
+    }
+
+    /**
+     * @return the number of most recent transactions of each account kept in memory
+     */
+    public int getTailSize() {
+        return tailSize;
+    }
+
+    /**
+     * Moves every transaction beyond the last {@link HistoryStore#tailSize} of each account into a new segment.
+     * The transactions are only removed from the accounts once the segment has been written.
+     *
+     * @param users every user of the ATM
+     * @return the number of transactions moved
+     * @throws IOException if the segment cannot be written
+     */
+    synchronized int spill(Iterable<User> users) throws IOException {
+        TreeMap<Integer, Account> accounts = new TreeMap<>();
+        for (User user : users) {
+            for (Account account : user.getAccounts()) {
+                if (account.getTransactionLog().size() > tailSize) {
+                    accounts.put(account.getAccountNum(), account);
+                }
+            }
+        }
+        if (accounts.isEmpty()) {
+            return 0;
+        }
+
+        LinkedHashMap<String, Integer> payees = new LinkedHashMap<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(records);
+        int count = 0;
+        for (Account account : accounts.values()) {
+            TransactionLog log = account.getTransactionLog();
+            int moved = log.size() - tailSize;
+            for (int i = 0; i < moved; i++) {
+                int counterparty = log.counterpartyAt(i);
+                if (log.typeAt(i) == TransactionType.PAY_BILL) {
+                    counterparty = payees.computeIfAbsent(log.payeeAt(i), p -> payees.size());
+                }
+                out.writeInt(account.getAccountNum());
+                out.writeLong(log.getFirstSequence() + i);
+                out.writeByte(log.typeAt(i).code());
+                out.writeLong(log.amountAt(i));
+                out.writeInt(counterparty);
+            }
+            count += moved;
+        }
+        out.flush();
+
+        File segment = new File(dir, String.format("segment-%06d.seg", nextSegment));
+        File temp = new File(dir, segment.getName() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(temp);
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeInt(payees.size());
+        for (String payee : payees.keySet()) {
+            byte[] bytes = payee.getBytes(StandardCharsets.UTF_8);
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+        dos.writeInt(count);
+        records.writeTo(dos);
+        dos.flush();
+        fos.getFD().sync();
+        dos.close();
+        Files.move(temp.toPath(), segment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        open(segment);
+
+        for (Account account : accounts.values()) {
+            TransactionLog log = account.getTransactionLog();
+            log.dropOldest(log.size() - tailSize);
+        }
+        return count;
+    }
+
+    /**
+     * Reads transactions of an account from disk.
+     *
+     * @param accountNum the number of the account
+     * @param fromSequence the sequence number of the first transaction to read
+     * @param count the number of transactions to read
+     * @return the transactions, oldest first. Stops early at the first transaction that is not on disk.
+     */
+    public synchronized ArrayList<Transaction> read(int accountNum, long fromSequence, int count) {
+        ArrayList<Transaction> transactions = new ArrayList<>(Math.max(0, count));
+        ArrayList<Run> runs = index.get(accountNum);
+        if (runs == null) {
+            return transactions;
+        }
+        for (long seq = fromSequence; seq < fromSequence + count; seq++) {
+            Transaction transaction = null;
+            for (int r = runs.size() - 1; r >= 0 && transaction == null; r--) {
+                transaction = runs.get(r).read(seq);
+            }
+            if (transaction == null) {
+                break;
+            }
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    /**
+     * Reads the most recent transactions on disk back into the log of an account when the log is empty, so the
+     * last transaction of the account can still be undone.
+     *
+     * @param account the account whose log is refilled
+     */
+    public synchronized void restoreTail(Account account) {
+        TransactionLog log = account.getTransactionLog();
+        if (!log.isEmpty() || log.getFirstSequence() == 0) {
+            return;
+        }
+        int count = (int) Math.min(tailSize, log.getFirstSequence());
+        ArrayList<Transaction> older = read(account.getAccountNum(), log.getFirstSequence() - count, count);
+        if (older.size() != count) {
+            AsyncOutput.getDefault().println("History of account " + account.getAccountNum()
+                    + " is missing transactions");
+            return;
+        }
+        log.prepend(older);
+    }
+
+    /**
+     * Maps a segment into memory and adds its records to the index.
+     *
+     * @param file the segment file
+     * @throws IOException if the segment cannot be read or is not a segment
+     */
+    private void open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException(file + " is not a history segment");
+        }
+        String[] payees = new String[buffer.getInt()];
+        for (int i = 0; i < payees.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            payees[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int count = buffer.getInt();
+        Segment segment = new Segment(buffer, buffer.position(), payees);
+
+        Run run = null;
+        for (int i = 0; i < count; i++) {
+            int accountNum = segment.accountAt(i);
+            if (run == null || run.accountNum != accountNum) {
+                run = new Run(segment, accountNum, i, segment.sequenceAt(i));
+                index.computeIfAbsent(accountNum, a -> new ArrayList<>()).add(run);
+            }
+            run.count++;
+        }
+
+        String name = file.getName();
+        int number = Integer.parseInt(name.substring("segment-".length(), name.length() - ".seg".length()));
+        nextSegment = Math.max(nextSegment, number + 1);
+    }
+
+    /**
+     * A memory mapped segment file.
+     */
+    private static final class Segment {
+        private final ByteBuffer buffer;
+        private final int recordsStart;
+        private final String[] payees;
+
+        Segment(ByteBuffer buffer, int recordsStart, String[] payees) {
+            this.buffer = buffer;
+            this.recordsStart = recordsStart;
+            this.payees = payees;
+        }
+
+        int accountAt(int record) {
+            return buffer.getInt(recordsStart + record * RECORD_SIZE);
+        }
+
+        long sequenceAt(int record) {
+            return buffer.getLong(recordsStart + record * RECORD_SIZE + 4);
+        }
+
+        Transaction transactionAt(int record) {
+            int position = recordsStart + record * RECORD_SIZE + 12;
+            TransactionType type = TransactionType.fromCode(buffer.get(position));
+            long amount = buffer.getLong(position + 1);
+            int counterparty = buffer.getInt(position + 9);
+            if (type == TransactionType.PAY_BILL) {
+                return new Transaction(payees[counterparty], amount);
+            }
+            return new Transaction(type, amount, counterparty);
+        }
+    }
+
+    /**
+     * The records of one account in one segment, which have consecutive sequence numbers.
+     */
+    private static final class Run {
+        private final Segment segment;
+        private final int accountNum;
+        private final int firstRecord;
+        private final long firstSequence;
+        private int count;
+
+        Run(Segment segment, int accountNum, int firstRecord, long firstSequence) {
+            this.segment = segment;
+            this.accountNum = accountNum;
+            this.firstRecord = firstRecord;
+            this.firstSequence = firstSequence;
+        }
+
+        /**
+         * @param seq a sequence number of the account
+         * @return the transaction with that sequence number, or null if it is not in this run
+         */
+        Transaction read(long seq) {
+            if (seq < firstSequence || seq >= firstSequence + count) {
+                return null;
+            }
+            return segment.transactionAt(firstRecord + (int) (seq - firstSequence));
+        }
+    }
+}
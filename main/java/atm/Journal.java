@@ -0,0 +1,835 @@
+package atm;
+
+import account.Account;
+import investments.InvestmentPortfolio;
+import investments.Position;
+import investments.Quote;
+import subscriptions.Subscription;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead journal of the changes made to the ATM's state.
+ *
+ * <p>
+ *     Every state change is appended to journal.log as a small binary record as soon as it happens. Each record
+ *     carries the state of the account after the change (not the change itself), so replaying a record more than
+ *     once leaves the account with the same balance. When enough records have been written, the ATM is asked to
+ *     write the whole ATM to a snapshot, which it does on its own thread once every change in progress has finished,
+ *     and the journal is started again from empty. On boot the snapshot is loaded and the records written after it
+ *     are replayed on top of it.
+ * </p>
+ *
+ * <p>
+ *     The jobs run once a day on boot, adding interest to savings and charging subscriptions, write a record for
+ *     every account or user they change, and a {@link #BOOT_JOBS} record once they are done. If the ATM crashes
+ *     part way through them, the next boot only runs them for the accounts and users they had not reached.
+ * </p>
+ *
+ * <p>
+ *     A record is laid out as: [int length][byte type][long sequence][payload][int CRC32]. The length covers the
+ *     type, sequence and payload. A record that was only partly written when the machine crashed fails its checksum
+ *     and is cut off the end of the journal during replay.
+ * </p>
+ *
+ * <p>
+ *     Records can be written by many sessions at the same time; each record is written whole before the next begins.
+ * </p>
+ */
+public class Journal {
+
+    /** Record types. */
+    public static final byte TRANSFER_IN = 1;
+    public static final byte TRANSFER_OUT = 2;
+    public static final byte WITHDRAW = 3;
+    public static final byte DEPOSIT = 4;
+    public static final byte PAY_BILL = 5;
+    public static final byte UNDO = 6;
+    public static final byte CREATE_USER = 7;
+    public static final byte CREATE_ACCOUNT = 8;
+    public static final byte JOIN_ACCOUNT = 9;
+    public static final byte BILLS = 10;
+    public static final byte INTEREST = 11;
+    public static final byte CHARGE_SUBSCRIPTIONS = 12;
+    public static final byte SUBSCRIPTIONS = 13;
+    public static final byte OFFER_SUBSCRIPTION = 14;
+    public static final byte TRADE = 15;
+    public static final byte DATE = 16;
+    public static final byte BOOT_JOBS = 17;
+
+    /**
+     * The number of records written before the ATM takes a new snapshot and starts the journal again.
+     */
+    static final int SNAPSHOT_INTERVAL = 10000;
+
+    /**
+     * The ATM whose changes are recorded.
+     */
+    private final ATM atm;
+
+    /**
+     * The file the journal is written to.
+     */
+    private final File file;
+
+    /**
+     * If true, every record is forced to the disk before the operation that wrote it returns. Otherwise records
+     * are only flushed to the operating system, which survives the program crashing but not the machine.
+     */
+    private final boolean forceEveryRecord;
+
+    /**
+     * The stream records are appended to. Null until {@link #open()} is called.
+     */
+    private FileOutputStream fileOut;
+
+    /**
+     * Buffered stream on top of {@link #fileOut}.
+     */
+    private DataOutputStream out;
+
+    /**
+     * Reused buffer that a record is built in before it is written.
+     */
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(64);
+
+    /**
+     * Writes into {@link #recordBuffer}.
+     */
+    private final DataOutputStream record = new DataOutputStream(recordBuffer);
+
+    /**
+     * Used to checksum each record.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * The sequence number of the last record written or replayed.
+     */
+    private long sequence;
+
+    /**
+     * The number of records written since the last snapshot.
+     */
+    private int recordsSinceSnapshot = 0;
+
+    /**
+     * Whether the ATM has been asked for a snapshot that has not been taken yet.
+     */
+    private boolean snapshotRequested = false;
+
+    /**
+     * Journal constructor.
+     *
+     * @param atm the ATM whose changes are recorded
+     * @param file the file the journal is written to
+     * @param sequence the sequence number of the last record contained in the snapshot the ATM was loaded from
+     * @param forceEveryRecord whether every record is forced to the disk as soon as it is written
+     */
+    Journal(ATM atm, File file, long sequence, boolean forceEveryRecord) {
+        this.atm = atm;
+        this.file = file;
+        this.sequence = sequence;
+        this.forceEveryRecord = forceEveryRecord;
+    }
+
+    /**
+     * @return the sequence number of the last record written or replayed
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Opens the journal for appending. Must be called after {@link #replay()}.
+     */
+    void open() {
+        try {
+            fileOut = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        } catch (IOException e) {
+            System.out.println("Journal open failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Empties the journal. Called once a snapshot containing every record written so far is safely on disk.
+     */
+    synchronized void reset() {
+        close();
+        try {
+            fileOut = new FileOutputStream(file, false);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            recordsSinceSnapshot = 0;
+            snapshotRequested = false;
+        } catch (IOException e) {
+            System.out.println("Journal reset failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Flushes and closes the journal.
+     */
+    synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+        } catch (IOException e) {
+            System.out.println("Journal close failed!");
+            System.out.println(e.getMessage());
+        }
+        out = null;
+        fileOut = null;
+    }
+
+    /**
+     * Records money being transferred between two accounts.
+     *
+     * @param type either {@link #TRANSFER_IN} or {@link #TRANSFER_OUT}
+     * @param account the account the transfer was made from the point of view of
+     * @param other the other account in the transfer
+     * @param amount the amount transferred, in cents
+     */
+    public synchronized void logTransfer(byte type, Account account, Account other, long amount) {
+        try {
+            begin(type);
+            record.writeInt(account.getAccountNum());
+            record.writeInt(other.getAccountNum());
+            record.writeLong(amount);
+            record.writeLong(account.getBalance());
+            record.writeLong(other.getBalance());
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records a withdrawal. Deposits are recorded by {@link #logDeposit(Account, long, long)}.
+     *
+     * @param type {@link #WITHDRAW}
+     * @param account the account withdrawn from
+     * @param amount the amount, in cents
+     */
+    public synchronized void logCash(byte type, Account account, long amount) {
+        try {
+            begin(type);
+            record.writeInt(account.getAccountNum());
+            record.writeLong(amount);
+            record.writeLong(account.getBalance());
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records a deposit and where the account has read up to in the deposit feed, so a deposit is not read again
+     * after a crash.
+     *
+     * @param account the account deposited into
+     * @param amount the amount, in cents
+     * @param depositOffset the byte offset of the next deposit the account reads
+     */
+    public synchronized void logDeposit(Account account, long amount, long depositOffset) {
+        try {
+            begin(DEPOSIT);
+            record.writeInt(account.getAccountNum());
+            record.writeLong(amount);
+            record.writeLong(account.getBalance());
+            record.writeLong(depositOffset);
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records a bill payment.
+     *
+     * @param account the account the bill was paid from
+     * @param payee who the bill was paid to
+     * @param amount the amount of the bill, in cents
+     */
+    public synchronized void logPayBill(Account account, String payee, long amount) {
+        try {
+            begin(PAY_BILL);
+            record.writeInt(account.getAccountNum());
+            record.writeUTF(payee);
+            record.writeLong(amount);
+            record.writeLong(account.getBalance());
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records the last transaction of an account being undone.
+     *
+     * @param account the account whose last transaction was undone
+     * @param counterparty the other account affected by the undo, or null if there is none
+     */
+    public synchronized void logUndo(Account account, Account counterparty) {
+        try {
+            begin(UNDO);
+            record.writeInt(account.getAccountNum());
+            record.writeLong(account.getBalance());
+            record.writeInt(counterparty == null ? 0 : counterparty.getAccountNum());
+            record.writeLong(counterparty == null ? 0 : counterparty.getBalance());
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records a new user.
+     *
+     * @param user the user that was created
+     */
+    public synchronized void logCreateUser(User user) {
+        try {
+            begin(CREATE_USER);
+            record.writeUTF(user.getUsername());
+            record.writeUTF(user.getPassword());
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records a new account.
+     *
+     * @param user the owner of the account
+     * @param account the account that was created
+     */
+    public synchronized void logCreateAccount(User user, Account account) {
+        try {
+            begin(CREATE_ACCOUNT);
+            record.writeUTF(user.getUsername());
+            record.writeInt(account.getAccountNum());
+            record.writeUTF(account.getType());
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records a user being added to an existing account.
+     *
+     * @param user the user that was added
+     * @param account the account that is now joint
+     */
+    public synchronized void logJoinAccount(User user, Account account) {
+        try {
+            begin(JOIN_ACCOUNT);
+            record.writeUTF(user.getUsername());
+            record.writeInt(account.getAccountNum());
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records the number of each type of bill in the ATM.
+     *
+     * @param bills the number of $5, $10, $20 and $50 bills, in that order
+     */
+    synchronized void logBills(int[] bills) {
+        try {
+            begin(BILLS);
+            record.writeByte(bills.length);
+            for (int count : bills) {
+                record.writeInt(count);
+            }
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records interest being added to a savings account by the boot jobs.
+     *
+     * @param account the savings account
+     */
+    synchronized void logInterest(Account account) {
+        try {
+            begin(INTEREST);
+            record.writeInt(account.getAccountNum());
+            record.writeLong(account.getBalance());
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records a user's subscriptions, and the balance of the credit card they are charged to, after they were
+     * charged by the boot jobs, subscribed or unsubscribed.
+     *
+     * @param type {@link #CHARGE_SUBSCRIPTIONS} if the boot jobs charged the user, otherwise {@link #SUBSCRIPTIONS}
+     * @param user the user
+     * @param card the user's credit card, or null if they have none
+     */
+    public synchronized void logSubscriptions(byte type, User user, Account card) {
+        try {
+            begin(type);
+            record.writeUTF(user.getUsername());
+            record.writeInt(card == null ? 0 : card.getAccountNum());
+            record.writeLong(card == null ? 0 : card.getBalance());
+            record.writeInt(user.getSubscriptions().size());
+            for (Subscription subscription : user.getSubscriptions()) {
+                record.writeUTF(subscription.getName());
+                record.writeLong(subscription.getCost());
+            }
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records the ATM offering a new subscription.
+     *
+     * @param name the name of the subscription
+     * @param cost the cost of the subscription, in cents
+     */
+    public synchronized void logOfferSubscription(String name, long cost) {
+        try {
+            begin(OFFER_SUBSCRIPTION);
+            record.writeUTF(name);
+            record.writeLong(cost);
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records stocks being bought or sold: the user's shares of the stock and the balance of their stock account
+     * after the trade.
+     *
+     * @param user the user who traded
+     * @param stockAccount the account the stocks were paid from or sold into
+     * @param position the user's position in the stock
+     */
+    public synchronized void logTrade(User user, Account stockAccount, Position position) {
+        try {
+            begin(TRADE);
+            record.writeUTF(user.getUsername());
+            record.writeInt(stockAccount.getAccountNum());
+            record.writeLong(stockAccount.getBalance());
+            record.writeUTF(position.getSymbol());
+            record.writeUTF(position.getName());
+            record.writeLong(position.getValue());
+            record.writeInt(position.getNumShares());
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Records the ATM's date changing.
+     *
+     * @param type {@link #DATE} if the date was changed, or {@link #BOOT_JOBS} if the boot jobs of the date have all
+     *             been run
+     * @param millis the date, in milliseconds since the epoch
+     */
+    synchronized void logDate(byte type, long millis) {
+        try {
+            begin(type);
+            record.writeLong(millis);
+            end();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Starts building a new record.
+     *
+     * @param type the type of the record
+     * @throws IOException if an IO error occurs
+     */
+    private void begin(byte type) throws IOException {
+        recordBuffer.reset();
+        record.writeByte(type);
+        record.writeLong(sequence + 1);
+    }
+
+    /**
+     * Writes the record that has been built to the journal. Asks the ATM for a snapshot if enough records have been
+     * written since the last one. The snapshot is not taken here, since the change that wrote the record, and other
+     * changes waiting for the journal, are still in progress.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    private void end() throws IOException {
+        if (out == null) {
+            return;
+        }
+        byte[] bytes = recordBuffer.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt((int) crc.getValue());
+        out.flush();
+        if (forceEveryRecord) {
+            fileOut.getFD().sync();
+        }
+        sequence += 1;
+        recordsSinceSnapshot += 1;
+        if (recordsSinceSnapshot >= SNAPSHOT_INTERVAL && !snapshotRequested) {
+            snapshotRequested = true;
+            atm.requestSnapshot();
+        }
+    }
+
+    /**
+     * Stops the ATM when a record cannot be written, since continuing would lose the change on the next crash.
+     *
+     * @param e the error that occurred
+     */
+    private void failed(IOException e) {
+        System.out.println("Journal write failed!");
+        System.out.println(e.getMessage());
+        System.exit(-1);
+    }
+
+    /**
+     * Replays every record written after the snapshot the ATM was loaded from. Any partly written record at the
+     * end of the journal is removed.
+     *
+     * @return the number of records replayed
+     */
+    int replay() {
+        if (!file.exists()) {
+            return 0;
+        }
+        int replayed = 0;
+        long validLength = 0;
+        ReplayAccounts accounts = new ReplayAccounts();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                byte[] bytes;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    if (length <= 0 || length > file.length()) {
+                        break;
+                    }
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(bytes, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                DataInputStream rec = new DataInputStream(new ByteArrayInputStream(bytes));
+                byte type = rec.readByte();
+                long seq = rec.readLong();
+                if (seq > sequence) {
+                    apply(type, rec, accounts);
+                    sequence = seq;
+                    replayed += 1;
+                }
+                validLength += 4 + length + 4;
+            }
+        } catch (IOException e) {
+            System.out.println("Journal replay failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        } finally {
+            accounts.release();
+        }
+        if (validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                System.out.println("Journal truncate failed!");
+                System.out.println(e.getMessage());
+                System.exit(-1);
+            }
+        }
+        recordsSinceSnapshot = replayed;
+        return replayed;
+    }
+
+    /**
+     * Applies one record to the ATM.
+     *
+     * @param type the type of the record
+     * @param rec the payload of the record
+     * @param accounts finds every account in the ATM by account number
+     * @throws IOException if the record is malformed
+     */
+    private void apply(byte type, DataInputStream rec, ReplayAccounts accounts) throws IOException {
+        switch (type) {
+            case TRANSFER_IN:
+            case TRANSFER_OUT: {
+                Account account = accounts.get(rec.readInt());
+                Account other = accounts.get(rec.readInt());
+                long amount = rec.readLong();
+                account.restoreBalance(rec.readLong());
+                other.restoreBalance(rec.readLong());
+                TransactionType transactionType = type == TRANSFER_IN
+                        ? TransactionType.TRANSFER_IN : TransactionType.TRANSFER_OUT;
+                account.getTransactionLog().add(transactionType, amount, other.getAccountNum());
+                break;
+            }
+            case WITHDRAW: {
+                Account account = accounts.get(rec.readInt());
+                long amount = rec.readLong();
+                account.restoreBalance(rec.readLong());
+                account.getTransactionLog().add(TransactionType.WITHDRAW, amount, 0);
+                break;
+            }
+            case DEPOSIT: {
+                Account account = accounts.get(rec.readInt());
+                rec.readLong();
+                account.restoreBalance(rec.readLong());
+                account.restoreDepositOffset(rec.readLong());
+                break;
+            }
+            case PAY_BILL: {
+                Account account = accounts.get(rec.readInt());
+                String payee = rec.readUTF();
+                long amount = rec.readLong();
+                account.restoreBalance(rec.readLong());
+                account.getTransactionLog().addPayBill(payee, amount);
+                break;
+            }
+            case UNDO: {
+                Account account = accounts.get(rec.readInt());
+                account.restoreBalance(rec.readLong());
+                Account counterparty = accounts.get(rec.readInt());
+                long counterpartyBalance = rec.readLong();
+                if (counterparty != null) {
+                    counterparty.restoreBalance(counterpartyBalance);
+                }
+                account.removeLastTransaction();
+                break;
+            }
+            case CREATE_USER: {
+                atm.getBM().restoreUser(rec.readUTF(), rec.readUTF());
+                break;
+            }
+            case CREATE_ACCOUNT: {
+                User user = atm.getUser(rec.readUTF());
+                int accountNum = rec.readInt();
+                accounts.put(user, atm.getBM().restoreAccount(user, rec.readUTF(), accountNum));
+                break;
+            }
+            case JOIN_ACCOUNT: {
+                User user = atm.getUser(rec.readUTF());
+                atm.getBM().addExistingUserToAccount(user, accounts.get(rec.readInt()));
+                break;
+            }
+            case BILLS: {
+                int denominations = rec.readByte();
+                for (int i = 0; i < denominations; i++) {
+                    atm.getBills().setBills(i + 1, rec.readInt());
+                }
+                break;
+            }
+            case INTEREST: {
+                int accountNum = rec.readInt();
+                accounts.get(accountNum).restoreBalance(rec.readLong());
+                atm.markInterestPaid(accountNum);
+                break;
+            }
+            case CHARGE_SUBSCRIPTIONS:
+            case SUBSCRIPTIONS: {
+                User user = accounts.user(rec.readUTF());
+                int cardNum = rec.readInt();
+                Account card = cardNum == 0 ? null : accounts.get(cardNum);
+                long cardBalance = rec.readLong();
+                if (card != null) {
+                    card.restoreBalance(cardBalance);
+                }
+                user.removeAllSubscriptions();
+                int subscriptions = rec.readInt();
+                for (int i = 0; i < subscriptions; i++) {
+                    user.addSubscription(offered(rec.readUTF(), rec.readLong()));
+                }
+                if (type == CHARGE_SUBSCRIPTIONS) {
+                    atm.markSubscriptionsCharged(user.getUsername());
+                }
+                break;
+            }
+            case OFFER_SUBSCRIPTION: {
+                String name = rec.readUTF();
+                long cost = rec.readLong();
+                if (offered(name) == null) {
+                    atm.getSubscriptions().getListOfSubscriptions().add(new Subscription(name, cost));
+                }
+                break;
+            }
+            case TRADE: {
+                User user = accounts.user(rec.readUTF());
+                accounts.get(rec.readInt()).restoreBalance(rec.readLong());
+                String symbol = rec.readUTF();
+                String name = rec.readUTF();
+                long price = rec.readLong();
+                int shares = rec.readInt();
+                InvestmentPortfolio portfolio = user.getInvestmentPortfolio();
+                Position position = null;
+                for (Position held : portfolio.getStockPortfolio()) {
+                    if (held.getSymbol().equalsIgnoreCase(symbol)) {
+                        position = held;
+                    }
+                }
+                if (position == null) {
+                    Quote quote = atm.getBroker().getQuoteBook().intern(symbol, name);
+                    quote.setCurrentPrice(price);
+                    portfolio.getStockPortfolio().add(new Position(quote, shares));
+                } else {
+                    position.setNumShares(shares);
+                }
+                break;
+            }
+            case DATE: {
+                atm.restoreDate(rec.readLong());
+                break;
+            }
+            case BOOT_JOBS: {
+                atm.markBootJobsDone(rec.readLong());
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * @param name the name of a subscription
+     * @return the subscription of that name the ATM offers, or null if it offers none
+     */
+    private Subscription offered(String name) {
+        for (Subscription subscription : atm.getSubscriptions().getListOfSubscriptions()) {
+            if (subscription.getName().equals(name)) {
+                return subscription;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name the name of a subscription a user has
+     * @param cost the cost of the subscription, in cents
+     * @return the subscription the ATM offers, if it offers one of that name and cost, or else a new subscription
+     */
+    private Subscription offered(String name, long cost) {
+        Subscription subscription = offered(name);
+        return subscription != null && subscription.getCost() == cost ? subscription : new Subscription(name, cost);
+    }
+
+    /**
+     * Finds the accounts journal records refer to while the journal is replayed. An owner of every account is only
+     * looked up in the {@link UserDirectory} the first time a record refers to an account that was not created during
+     * the replay, so an empty journal costs nothing. An account is then looked up in the owner's user, and the owner
+     * is pinned until the replay ends, so that a {@link PagedUserDirectory} does not write them out while records
+     * still change their accounts.
+     */
+    private final class ReplayAccounts {
+
+        /**
+         * The username of an owner of every account, by account number, or null until a record needs it.
+         */
+        private Map<Integer, String> owners;
+
+        /**
+         * Every account looked up so far, by account number.
+         */
+        private final HashMap<Integer, Account> found = new HashMap<>();
+
+        /**
+         * Every user pinned so far.
+         */
+        private final ArrayList<User> pinned = new ArrayList<>();
+
+        /**
+         * @param accountNum an account number
+         * @return the account, or null if no user has it
+         */
+        Account get(int accountNum) {
+            Account account = found.get(accountNum);
+            if (account != null) {
+                return account;
+            }
+            if (owners == null) {
+                owners = atm.getUserDirectory().accountOwners();
+            }
+            String owner = owners.get(accountNum);
+            if (owner == null) {
+                return null;
+            }
+            User user = atm.getUser(owner);
+            pin(user);
+            for (Account held : user.getAccounts()) {
+                found.putIfAbsent(held.getAccountNum(), held);
+            }
+            return found.get(accountNum);
+        }
+
+        /**
+         * @param username the username of a user
+         * @return the user, pinned until the replay ends
+         */
+        User user(String username) {
+            User user = atm.getUser(username);
+            pin(user);
+            return user;
+        }
+
+        /**
+         * Records an account created while the journal is replayed.
+         *
+         * @param user the owner of the account
+         * @param account the account
+         */
+        void put(User user, Account account) {
+            pin(user);
+            found.put(account.getAccountNum(), account);
+        }
+
+        private void pin(User user) {
+            atm.getUserDirectory().pin(user);
+            pinned.add(user);
+        }
+
+        /**
+         * Unpins every user pinned during the replay.
+         */
+        void release() {
+            for (User user : pinned) {
+                atm.getUserDirectory().unpin(user);
+            }
+            pinned.clear();
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package atm;
+
+import account.Account;
+import account.Chequing;
+import account.DepositFeed;
+import broker.MutualFundsBroker;
+import investments.Investment;
+import investments.MutualFund;
+import investments.Position;
+import investments.Quote;
+import investments.QuoteBook;
+import subscriptions.Subscription;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Reads serialized.blob, the file the ATM was saved to with Java serialization before it kept a {@link Journal} and
+ * snapshots, so that an ATM that was set up then keeps its users when it boots for the first time since.
+ *
+ * <p>
+ *     The classes the blob was written with no longer exist in the form they were written in, so it cannot be read
+ *     back with an {@link ObjectInputStream}. Instead the stream is parsed following the Java serialization protocol
+ *     into a tree of {@link Instance}s holding each object's fields by name, and the state of the bank is copied out
+ *     of that tree: the date, the bills, the users with their accounts, transactions, stocks and subscriptions, the
+ *     subscriptions offered, and the mutual funds with their stocks and investors. Amounts were kept in dollars as
+ *     doubles and are rounded to cents, and the deposit feed position of each account, which was kept as a number of
+ *     lines, is turned into a byte offset.
+ * </p>
+ */
+final class LegacyBlob {
+
+    /**
+     * The file the ATM was saved to before snapshots were used.
+     */
+    static final String FILE = "serialized.blob";
+
+    /**
+     * Cassettes of the ATM when it was saved to the blob: $5, $10, $20 and $50 bills.
+     */
+    private static final int LEGACY_CASSETTES = 4;
+
+    private LegacyBlob() {
+    }
+
+    /**
+     * Reads an ATM from a blob written by the old ATM's shutDown. The journal is not opened.
+     *
+     * @param in the blob
+     * @return the ATM
+     * @throws IOException if the blob cannot be read or does not hold an ATM
+     */
+    static ATM read(InputStream in) throws IOException {
+        Object root = new Parser(new DataInputStream(new BufferedInputStream(in))).readRoot();
+        if (!(root instanceof Instance) || !((Instance) root).className.equals("atm.ATM")) {
+            throw new IOException(FILE + " does not hold an ATM");
+        }
+        Instance old = (Instance) root;
+        int[] counts = (int[]) old.instance("bills").get("bills");
+        if (counts == null || counts.length != LEGACY_CASSETTES) {
+            throw new IOException(FILE + " does not hold the bills of the ATM");
+        }
+        Instance oldFunds = old.instance("broker").instance("mutualFundsBroker");
+        ATM atm = new ATM(new Bills(CassetteLayout.standard(), counts), millis(oldFunds.instance("date")),
+                millis(old.instance("date")), 0, 0);
+        atm.getBM().restoreNumberOfAccounts(
+                (Integer) old.instance("BM").instance("accountManager").get("acct_counter") - 1000);
+        return new Migration(atm).copy(old, oldFunds);
+    }
+
+    /**
+     * @return the time of a serialized Calendar, in milliseconds since the epoch
+     */
+    private static long millis(Instance calendar) {
+        return (Long) calendar.get("time");
+    }
+
+    /**
+     * Copies the state of an old ATM into a new one. Objects shared in the old ATM, such as joint accounts,
+     * subscriptions and the investments held in both a portfolio and a fund, are shared in the new one too.
+     */
+    private static final class Migration {
+        private final ATM atm;
+        private final IdentityHashMap<Instance, Account> accounts = new IdentityHashMap<>();
+        private final IdentityHashMap<Instance, Subscription> subscriptions = new IdentityHashMap<>();
+        private final IdentityHashMap<Instance, MutualFund> funds = new IdentityHashMap<>();
+
+        Migration(ATM atm) {
+            this.atm = atm;
+        }
+
+        ATM copy(Instance old, Instance oldFunds) throws IOException {
+            ArrayList<Subscription> available = atm.getSubscriptions().getListOfSubscriptions();
+            available.clear();
+            for (Instance subscription : old.instance("subscriptions").instance("listOfSubscriptions").elements()) {
+                available.add(subscription(subscription));
+            }
+            MutualFundsBroker broker = atm.getBroker().getMutualFundsBroker();
+            fund(oldFunds.instance("lowRiskFund"), broker.getLowRiskFund());
+            fund(oldFunds.instance("mediumRiskFund"), broker.getMediumRiskFund());
+            fund(oldFunds.instance("highRiskFund"), broker.getHighRiskFund());
+
+            for (Instance oldUser : old.instance("listOfUsers").elements()) {
+                User user = atm.getBM().restoreUser((String) oldUser.get("username"), (String) oldUser.get("pass"));
+                for (Instance oldAccount : oldUser.instance("accounts").elements()) {
+                    Account account = accounts.get(oldAccount);
+                    if (account == null) {
+                        account = atm.getBM().restoreAccount(user, (String) oldAccount.get("type"),
+                                (Integer) oldAccount.get("accountNum"));
+                        accounts.put(oldAccount, account(oldAccount, account));
+                    } else {
+                        user.getAccounts().add(account);
+                    }
+                }
+                Instance portfolio = oldUser.instance("investmentPortfolio");
+                positions(portfolio.instance("stockPortfolio"), user.getInvestmentPortfolio().getStockPortfolio());
+                List<Object> investments = portfolio.instance("mutualFundsPortfolio").annotationObjects();
+                for (int i = 0; i + 1 < investments.size(); i += 2) {
+                    MutualFund fund = funds.get((Instance) investments.get(i));
+                    List<Instance> amounts = ((Instance) investments.get(i + 1)).elements();
+                    if (fund == null || amounts.size() < 2) {
+                        throw new IOException(FILE + " holds an investment in an unknown fund");
+                    }
+                    Investment investment = new Investment(Money.fromDollars((Double) amounts.get(0).get("value")),
+                            (Double) amounts.get(1).get("value"));
+                    fund.setInvestors(user, investment);
+                    user.getInvestmentPortfolio().setMutualFundsPortfolio(fund, investment);
+                }
+                Instance userSubscriptions = oldUser.instance("subscriptions");
+                if (userSubscriptions != null) {
+                    for (Instance subscription : userSubscriptions.elements()) {
+                        user.addSubscription(subscription(subscription));
+                    }
+                }
+            }
+            return atm;
+        }
+
+        private Account account(Instance old, Account account) throws IOException {
+            account.setIsJoint((Boolean) old.get("isJoint"));
+            if (account instanceof Chequing) {
+                ((Chequing) account).primaryStatus = Boolean.TRUE.equals(old.get("primaryStatus"));
+            }
+            account.restoreBalance(Money.fromDollars((Double) old.get("balance")));
+            account.restoreDateCreated(millis(old.instance("dateCreated")));
+            Instance readAndWrite = old.instance("readAndWrite");
+            if (readAndWrite != null) {
+                account.restoreDepositOffset(DepositFeed.getDefault().offsetOfLine((Integer) readAndWrite.get("depositNum")));
+            }
+            TransactionLog log = account.getTransactionLog();
+            for (Instance transaction : old.instance("listOfTransactions").elements()) {
+                String label = (String) transaction.get("type");
+                long amount = Money.fromDollars((Double) transaction.get("amount"));
+                TransactionType type = typeOf(label);
+                if (type == TransactionType.PAY_BILL) {
+                    log.addPayBill((String) transaction.get("billPayee"), amount);
+                } else {
+                    log.add(type, amount, (Integer) transaction.get("accountNum"));
+                }
+            }
+            return account;
+        }
+
+        private Subscription subscription(Instance old) {
+            Subscription subscription = subscriptions.get(old);
+            if (subscription == null) {
+                subscription = new Subscription((String) old.get("name"), Money.fromDollars((Double) old.get("cost")));
+                subscriptions.put(old, subscription);
+            }
+            return subscription;
+        }
+
+        private void fund(Instance old, MutualFund fund) {
+            funds.put(old, fund);
+            fund.getStocks().clear();
+            positions(old.instance("stocks"), fund.getStocks());
+        }
+
+        private void positions(Instance stocks, ArrayList<Position> positions) {
+            QuoteBook book = atm.getBroker().getQuoteBook();
+            for (Instance stock : stocks.elements()) {
+                Quote quote = book.intern((String) stock.get("symbol"), (String) stock.get("name"));
+                quote.setCurrentPrice(Money.fromDollars((Double) stock.get("currentPrice")));
+                positions.add(new Position(quote, (Integer) stock.get("numShares")));
+            }
+        }
+
+        private static TransactionType typeOf(String label) throws IOException {
+            for (TransactionType type : TransactionType.values()) {
+                if (type.getLabel().equals(label)) {
+                    return type;
+                }
+            }
+            throw new IOException(FILE + " holds a transaction of unknown type " + label);
+        }
+    }
+
+    /**
+     * An object read from the blob: the name of its class, the value of every field of the class and of the classes
+     * it extends, and whatever the class's writeObject wrote after its fields, such as the elements of a list.
+     */
+    private static final class Instance {
+        private final String className;
+        private final HashMap<String, Object> fields = new HashMap<>();
+        private final ArrayList<Object> annotations = new ArrayList<>();
+
+        Instance(String className) {
+            this.className = className;
+        }
+
+        Object get(String field) {
+            return fields.get(field);
+        }
+
+        Instance instance(String field) {
+            return (Instance) fields.get(field);
+        }
+
+        /**
+         * @return the objects written after the fields, leaving out the primitive data written between them
+         */
+        List<Object> annotationObjects() {
+            ArrayList<Object> objects = new ArrayList<>();
+            for (Object annotation : annotations) {
+                if (!(annotation instanceof byte[])) {
+                    objects.add(annotation);
+                }
+            }
+            return objects;
+        }
+
+        /**
+         * @return the elements of a serialized ArrayList
+         */
+        List<Instance> elements() {
+            ArrayList<Instance> elements = new ArrayList<>();
+            for (Object element : annotationObjects()) {
+                elements.add((Instance) element);
+            }
+            return elements;
+        }
+    }
+
+    /**
+     * The description of a serialized class.
+     */
+    private static final class ClassDesc {
+        private final String name;
+        private byte flags;
+        private char[] typeCodes;
+        private String[] fieldNames;
+        private ClassDesc superDesc;
+
+        ClassDesc(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Parses a Java serialization stream into {@link Instance}s. Strings and boxed or primitive values are returned
+     * as themselves, arrays of primitives as arrays and arrays of objects as Object[].
+     */
+    private static final class Parser {
+
+        /**
+         * Marks the end of the data a class's writeObject wrote.
+         */
+        private static final Object END = new Object();
+
+        private final DataInputStream in;
+        private final ArrayList<Object> handles = new ArrayList<>();
+
+        Parser(DataInputStream in) {
+            this.in = in;
+        }
+
+        Object readRoot() throws IOException {
+            if (in.readShort() != ObjectStreamConstants.STREAM_MAGIC
+                    || in.readShort() != ObjectStreamConstants.STREAM_VERSION) {
+                throw new IOException(FILE + " is not a serialized object");
+            }
+            return readContent();
+        }
+
+        private Object readContent() throws IOException {
+            byte tc = in.readByte();
+            switch (tc) {
+                case ObjectStreamConstants.TC_NULL:
+                    return null;
+                case ObjectStreamConstants.TC_REFERENCE: {
+                    int handle = in.readInt() - ObjectStreamConstants.baseWireHandle;
+                    if (handle < 0 || handle >= handles.size()) {
+                        throw new IOException("Bad handle in " + FILE);
+                    }
+                    return handles.get(handle);
+                }
+                case ObjectStreamConstants.TC_STRING:
+                    return handle(in.readUTF());
+                case ObjectStreamConstants.TC_LONGSTRING: {
+                    byte[] bytes = new byte[(int) in.readLong()];
+                    in.readFully(bytes);
+                    return handle(new String(bytes, StandardCharsets.UTF_8));
+                }
+                case ObjectStreamConstants.TC_CLASSDESC:
+                case ObjectStreamConstants.TC_PROXYCLASSDESC:
+                    return readClassDesc(tc);
+                case ObjectStreamConstants.TC_CLASS: {
+                    ClassDesc desc = readClassDesc(in.readByte());
+                    return handle(desc);
+                }
+                case ObjectStreamConstants.TC_OBJECT:
+                    return readObject();
+                case ObjectStreamConstants.TC_ARRAY:
+                    return readArray();
+                case ObjectStreamConstants.TC_ENUM: {
+                    readClassDesc(in.readByte());
+                    int handle = handles.size();
+                    handles.add(null);
+                    String name = (String) readContent();
+                    handles.set(handle, name);
+                    return name;
+                }
+                case ObjectStreamConstants.TC_BLOCKDATA: {
+                    byte[] bytes = new byte[in.readUnsignedByte()];
+                    in.readFully(bytes);
+                    return bytes;
+                }
+                case ObjectStreamConstants.TC_BLOCKDATALONG: {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    return bytes;
+                }
+                case ObjectStreamConstants.TC_ENDBLOCKDATA:
+                    return END;
+                case ObjectStreamConstants.TC_RESET:
+                    handles.clear();
+                    return readContent();
+                default:
+                    throw new IOException("Unexpected byte " + tc + " in " + FILE);
+            }
+        }
+
+        private <T> T handle(T object) {
+            handles.add(object);
+            return object;
+        }
+
+        /**
+         * Reads a class description, given the byte that starts it.
+         */
+        private ClassDesc readClassDesc(byte tc) throws IOException {
+            switch (tc) {
+                case ObjectStreamConstants.TC_NULL:
+                    return null;
+                case ObjectStreamConstants.TC_REFERENCE: {
+                    int handle = in.readInt() - ObjectStreamConstants.baseWireHandle;
+                    if (handle < 0 || handle >= handles.size() || !(handles.get(handle) instanceof ClassDesc)) {
+                        throw new IOException("Bad class handle in " + FILE);
+                    }
+                    return (ClassDesc) handles.get(handle);
+                }
+                case ObjectStreamConstants.TC_CLASSDESC: {
+                    ClassDesc desc = new ClassDesc(in.readUTF());
+                    in.readLong();
+                    handle(desc);
+                    desc.flags = in.readByte();
+                    int count = in.readShort();
+                    desc.typeCodes = new char[count];
+                    desc.fieldNames = new String[count];
+                    for (int i = 0; i < count; i++) {
+                        desc.typeCodes[i] = (char) in.readByte();
+                        desc.fieldNames[i] = in.readUTF();
+                        if (desc.typeCodes[i] == 'L' || desc.typeCodes[i] == '[') {
+                            readContent();
+                        }
+                    }
+                    skipAnnotation();
+                    desc.superDesc = readClassDesc(in.readByte());
+                    return desc;
+                }
+                case ObjectStreamConstants.TC_PROXYCLASSDESC: {
+                    ClassDesc desc = handle(new ClassDesc("proxy"));
+                    int interfaces = in.readInt();
+                    for (int i = 0; i < interfaces; i++) {
+                        in.readUTF();
+                    }
+                    desc.typeCodes = new char[0];
+                    desc.fieldNames = new String[0];
+                    skipAnnotation();
+                    desc.superDesc = readClassDesc(in.readByte());
+                    return desc;
+                }
+                default:
+                    throw new IOException("Expected a class description in " + FILE);
+            }
+        }
+
+        private void skipAnnotation() throws IOException {
+            while (readContent() != END) {
+                // class annotations are written by custom streams only.
+            }
+        }
+
+        private Instance readObject() throws IOException {
+            ClassDesc desc = readClassDesc(in.readByte());
+            Instance object = handle(new Instance(desc.name));
+            ArrayList<ClassDesc> hierarchy = new ArrayList<>();
+            for (ClassDesc d = desc; d != null; d = d.superDesc) {
+                hierarchy.add(0, d);
+            }
+            for (ClassDesc d : hierarchy) {
+                if ((d.flags & ObjectStreamConstants.SC_EXTERNALIZABLE) != 0) {
+                    if ((d.flags & ObjectStreamConstants.SC_BLOCK_DATA) == 0) {
+                        throw new IOException(d.name + " in " + FILE + " cannot be read");
+                    }
+                    readAnnotation(object);
+                    continue;
+                }
+                for (int i = 0; i < d.fieldNames.length; i++) {
+                    object.fields.put(d.fieldNames[i], readValue(d.typeCodes[i]));
+                }
+                if ((d.flags & ObjectStreamConstants.SC_WRITE_METHOD) != 0) {
+                    readAnnotation(object);
+                }
+            }
+            return object;
+        }
+
+        private void readAnnotation(Instance object) throws IOException {
+            for (Object content = readContent(); content != END; content = readContent()) {
+                object.annotations.add(content);
+            }
+        }
+
+        private Object readArray() throws IOException {
+            ClassDesc desc = readClassDesc(in.readByte());
+            int size = in.readInt();
+            char type = desc.name.charAt(1);
+            Object array;
+            switch (type) {
+                case 'I': array = new int[size]; break;
+                case 'J': array = new long[size]; break;
+                case 'D': array = new double[size]; break;
+                case 'Z': array = new boolean[size]; break;
+                case 'B': array = new byte[size]; break;
+                case 'C': array = new char[size]; break;
+                case 'S': array = new short[size]; break;
+                case 'F': array = new float[size]; break;
+                default: array = new Object[size];
+            }
+            handle(array);
+            for (int i = 0; i < size; i++) {
+                java.lang.reflect.Array.set(array, i, readValue(type));
+            }
+            return array;
+        }
+
+        private Object readValue(char type) throws IOException {
+            switch (type) {
+                case 'B': return in.readByte();
+                case 'C': return in.readChar();
+                case 'D': return in.readDouble();
+                case 'F': return in.readFloat();
+                case 'I': return in.readInt();
+                case 'J': return in.readLong();
+                case 'S': return in.readShort();
+                case 'Z': return in.readBoolean();
+                case 'L':
+                case '[': return readContent();
+                default: throw new IOException("Unknown field type " + type + " in " + FILE);
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package atm;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * A dollar amount held as a whole number of cents.
+ *
+ * <p>
+ *     Every balance, transaction amount, price and fee in the ATM is a primitive long of cents, so that arithmetic
+ *     on the transaction path is exact and does not allocate. The static methods of this class convert to and from
+ *     the dollar amounts users type and read, and do the few operations that need rounding (interest, fees,
+ *     shares of a fund). Rounding is always half-even, so repeated rounding does not drift in either direction.
+ * </p>
+ *
+ * <p>
+ *     Money objects are a small immutable wrapper around a number of cents, for code that wants a value type
+ *     rather than a bare long; they are never needed on the transaction path.
+ * </p>
+ */
+public final class Money implements Serializable, Comparable<Money> {
+
+    /**
+     * Number of cents in a dollar.
+     */
+    public static final long CENTS_PER_DOLLAR = 100;
+
+    /**
+     * No money.
+     */
+    public static final Money ZERO = new Money(0);
+
+    /**
+     * The amount, in cents.
+     */
+    private final long cents;
+
+    /**
+     * Money constructor.
+     *
+     * @param cents the amount, in cents
+     */
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    /**
+     * @param cents an amount in cents
+     * @return the amount as a Money object
+     */
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * @param text an amount in dollars, as typed by a user or read from a file, for example "12", "12.5" or "12.50"
+     * @return the amount as a Money object
+     * @throws NumberFormatException if text is not a number or has more than two decimal places
+     */
+    public static Money of(String text) {
+        return ofCents(parse(text));
+    }
+
+    /**
+     * @return the amount, in cents
+     */
+    public long cents() {
+        return cents;
+    }
+
+    /**
+     * @param other the amount to add
+     * @return this amount plus other
+     */
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    /**
+     * @param other the amount to subtract
+     * @return this amount minus other
+     */
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    /**
+     * @param quantity the number of times to count this amount, for example a number of shares
+     * @return this amount times quantity
+     */
+    public Money times(long quantity) {
+        return ofCents(Math.multiplyExact(cents, quantity));
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    public String toString() {
+        return format(cents);
+    }
+
+    /**
+     * Converts an amount in dollars, as typed by a user or read from a file, to cents.
+     *
+     * @param text the amount in dollars, for example "12", "12.5" or "12.50"
+     * @return the amount in cents
+     * @throws NumberFormatException if text is not a number or has more than two decimal places
+     */
+    public static long parse(String text) {
+        BigDecimal dollars = new BigDecimal(text.trim());
+        if (dollars.scale() > 2) {
+            throw new NumberFormatException("More than two decimal places: " + text);
+        }
+        return dollars.movePointRight(2).longValueExact();
+    }
+
+    /**
+     * Converts an amount in dollars that is already a double, such as a stock price from a market data provider,
+     * to the nearest cent.
+     *
+     * @param dollars the amount in dollars
+     * @return the amount in cents
+     */
+    public static long fromDollars(double dollars) {
+        return BigDecimal.valueOf(dollars).movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /**
+     * Converts an amount in cents to dollars, only for display and ratios; never use the result as money.
+     *
+     * @param cents the amount in cents
+     * @return the amount in dollars
+     */
+    public static double toDollars(long cents) {
+        return cents / (double) CENTS_PER_DOLLAR;
+    }
+
+    /**
+     * Formats an amount in cents as dollars with exactly two decimal places, for example "-12.05".
+     *
+     * @param cents the amount in cents
+     * @return the formatted amount
+     */
+    public static String format(long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % CENTS_PER_DOLLAR;
+        return (cents < 0 ? "-" : "") + (abs / CENTS_PER_DOLLAR) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Multiplies an amount by the ratio numerator / denominator, rounding half-even to the nearest cent. Used for
+     * interest, fees and shares of a fund, so that they are exact rather than accumulating floating point error.
+     *
+     * @param cents the amount in cents
+     * @param numerator the numerator of the ratio
+     * @param denominator the denominator of the ratio, which must be positive
+     * @return the scaled amount in cents
+     */
+    public static long scale(long cents, long numerator, long denominator) {
+        long product = Math.multiplyExact(cents, numerator);
+        long quotient = Math.floorDiv(product, denominator);
+        long twiceRemainder = 2 * Math.floorMod(product, denominator);
+        if (twiceRemainder > denominator || (twiceRemainder == denominator && (quotient & 1) != 0)) {
+            quotient += 1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Multiplies an amount by a fraction, such as the part of a mutual fund a user owns, rounding half-even to the
+     * nearest cent.
+     *
+     * @param cents the amount in cents
+     * @param fraction the fraction to take
+     * @return the scaled amount in cents
+     */
+    public static long scale(long cents, double fraction) {
+        return BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(fraction))
+                .setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+        ois.defaultReadObject();
+    }
+
+    private void readObjectNoData() throws ObjectStreamException {
+        System.out.println("Money readObjectNoData, this should never happen!");
+        System.exit(-1);
+    }
+}
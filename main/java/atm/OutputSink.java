@@ -0,0 +1,27 @@
+package atm;
+
+/**
+ * Where the ATM sends the messages it reports while it works, such as a declined debit or a subscription cancelled
+ * for lack of funds. Transactions never print these themselves, they hand them to the sink and carry on, see
+ * {@link AsyncOutput}.
+ *
+ * <p>
+ *     The outcome of a transaction is not a message: it is returned to the caller, who decides how to show it.
+ * </p>
+ */
+public interface OutputSink {
+
+    /**
+     * Reports a message. Must not wait for the message to be shown.
+     *
+     * @param line the message, without a newline
+     */
+    void println(String line);
+
+    /**
+     * Waits until every message reported before this call has been shown, so that a terminal can print what comes
+     * next after them. Does nothing by default.
+     */
+    default void flush() {
+    }
+}
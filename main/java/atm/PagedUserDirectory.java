@@ -0,0 +1,543 @@
+package atm;
+
+import account.Account;
+
+import java.io.*;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A {@link UserDirectory} that keeps only an index of its users in memory and the users themselves in a file, so that
+ * the heap holds the users being worked with rather than every customer of the bank.
+ *
+ * <p>
+ *     Each user is written to the file as a record laid out like a user in a shard of a {@link SnapshotCodec}
+ *     snapshot. The file is mapped into memory in segments of {@link #SEGMENT_SIZE} bytes, and the index gives where
+ *     each user's record is. A record is rewritten in place if it fits in the room it was given, which is a quarter
+ *     more than it needed when it was written there, and moved to the end of the file otherwise. The file only holds
+ *     users while the ATM runs: the snapshot and the journal remain the record of the bank, and the file is emptied
+ *     when the directory is opened. The index also gives a user holding each account, so that the journal can find
+ *     the accounts its records refer to on boot without reading every user back.
+ * </p>
+ *
+ * <p>
+ *     Up to capacity recently used users are kept in memory, the least recently used being pushed out first. A user
+ *     pushed out is written back if their record no longer matches them. A user who is pinned, who shares an account
+ *     with another user or who has invested in a mutual fund is never pushed out, since something else holds on to
+ *     them: a terminal, the other owner of the account or the fund. A user pushed out while someone still holds them
+ *     is handed back by the next lookup instead of being read again, so there is never more than one copy of a user
+ *     in memory. Changes made to a user after they were written back are only saved if they are looked up again, so
+ *     a caller that holds on to a user while many other users are looked up must pin them.
+ * </p>
+ *
+ * <p>
+ *     Going through the directory streams through the file: users who are not in memory are read one at a time
+ *     without pushing anyone else out, and written back if they changed once the iteration moves past them. Batch
+ *     jobs such as adding interest to savings accounts go through the whole bank with one extra user in memory at a
+ *     time, and must go through to the end. {@link #users()} reads every user into memory.
+ * </p>
+ *
+ * <p>
+ *     Every method locks the directory, and a user who has to be read from the file is read while the lock is held,
+ *     so lookups are slower than in a {@link ConcurrentUserDirectory}. A directory cannot be serialized.
+ * </p>
+ */
+public class PagedUserDirectory extends UserDirectory {
+
+    /**
+     * The size of each segment of the file mapped into memory, and so the largest record a user can have.
+     */
+    static final int SEGMENT_SIZE = 1 << 26;
+
+    /**
+     * The ATM the users belong to.
+     */
+    private final ATM atm;
+
+    /**
+     * The file the records are written to.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Every segment of the file mapped so far, in order.
+     */
+    private final ArrayList<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * Where the next record moved to the end of the file is written.
+     */
+    private long end = 0;
+
+    /**
+     * Where the record of each user is, by username.
+     */
+    private final HashMap<String, Slot> slots = new HashMap<>();
+
+    /**
+     * A user holding each account, by account number, as of when the user was added or their record last written.
+     * Accounts opened since then by users held in memory are found by going through those users.
+     */
+    private final HashMap<Integer, String> owners = new HashMap<>();
+
+    /**
+     * Every username in the order the users were added.
+     */
+    private final ArrayList<String> usernames = new ArrayList<>();
+
+    /**
+     * The most users {@link #cache} holds.
+     */
+    private final int capacity;
+
+    /**
+     * The users most recently looked up, least recently used first.
+     */
+    private final LinkedHashMap<String, User> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Users who would have been pushed out of {@link #cache} but must be kept in memory.
+     */
+    private final HashMap<String, User> kept = new HashMap<>();
+
+    /**
+     * The number of times each pinned user has been pinned.
+     */
+    private final HashMap<String, Integer> pins = new HashMap<>();
+
+    /**
+     * Users who are not in {@link #cache} or {@link #kept} but may still be held by someone.
+     */
+    private final HashMap<String, Handed> handedOut = new HashMap<>();
+
+    /**
+     * Where the entries of {@link #handedOut} go once nobody holds their user any more.
+     */
+    private final ReferenceQueue<User> released = new ReferenceQueue<>();
+
+    /**
+     * PagedUserDirectory constructor. Empties the file if it exists.
+     *
+     * @param atm the ATM the users belong to
+     * @param file the file the records are written to
+     * @param capacity the most recently used users kept in memory
+     * @throws IOException if the file cannot be opened
+     */
+    public PagedUserDirectory(ATM atm, File file, int capacity) throws IOException {
+        super(false);
+        this.atm = atm;
+        this.capacity = Math.max(1, capacity);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public synchronized boolean add(User user) {
+        if (slots.containsKey(user.getUsername())) {
+            return false;
+        }
+        // the record is written when the user is first pushed out.
+        slots.put(user.getUsername(), new Slot());
+        usernames.add(user.getUsername());
+        addOwner(user);
+        cache.put(user.getUsername(), user);
+        evict();
+        return true;
+    }
+
+    @Override
+    public synchronized User get(String username) {
+        if (!slots.containsKey(username)) {
+            return null;
+        }
+        User user = cache.get(username);
+        if (user == null) {
+            user = kept.get(username);
+        }
+        if (user == null) {
+            user = inMemory(username);
+            if (user == null) {
+                user = read(username);
+            }
+            handedOut.remove(username);
+            cache.put(username, user);
+            evict();
+        }
+        return user;
+    }
+
+    @Override
+    public synchronized User getIgnoreCase(String username) {
+        for (String name : usernames) {
+            if (name.equalsIgnoreCase(username)) {
+                return get(name);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized boolean contains(String username) {
+        return slots.containsKey(username);
+    }
+
+    @Override
+    public synchronized User authenticate(String username, String password) {
+        User user = get(username);
+        if (user != null && user.getPassword().equals(password)) {
+            return user;
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /**
+     * Reads every user into memory. Use {@link #iterator()} to go through the users one at a time instead.
+     *
+     * @return every user in the order they were added. The list cannot be modified.
+     */
+    @Override
+    public List<User> users() {
+        ArrayList<User> users = new ArrayList<>();
+        for (User user : this) {
+            users.add(user);
+        }
+        return Collections.unmodifiableList(users);
+    }
+
+    /**
+     * Goes through every user in the order they were added, reading the users who are not in memory one at a time.
+     * A user read for the iteration is written back, if they changed, when the iteration moves past them, unless they
+     * were looked up in the meantime.
+     *
+     * @return an iterator over every user added before it was created
+     */
+    @Override
+    public Iterator<User> iterator() {
+        ArrayList<String> names;
+        synchronized (this) {
+            names = new ArrayList<>(usernames);
+        }
+        return new Iterator<User>() {
+            private int next = 0;
+
+            /**
+             * The user last returned, if the directory did not hold them.
+             */
+            private User streamed;
+
+            @Override
+            public boolean hasNext() {
+                if (next < names.size()) {
+                    return true;
+                }
+                release();
+                return false;
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                release();
+                synchronized (PagedUserDirectory.this) {
+                    String username = names.get(next++);
+                    User user = cache.get(username);
+                    if (user == null) {
+                        user = kept.get(username);
+                    }
+                    if (user == null) {
+                        user = inMemory(username);
+                        if (user == null) {
+                            user = read(username);
+                            handOut(username, user);
+                        }
+                        streamed = user;
+                    }
+                    return user;
+                }
+            }
+
+            private void release() {
+                if (streamed == null) {
+                    return;
+                }
+                synchronized (PagedUserDirectory.this) {
+                    String username = streamed.getUsername();
+                    if (!cache.containsKey(username) && !kept.containsKey(username)) {
+                        write(username, streamed);
+                    }
+                }
+                streamed = null;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void pin(User user) {
+        pins.merge(user.getUsername(), 1, Integer::sum);
+    }
+
+    @Override
+    public synchronized User getPinned(String username) {
+        return super.getPinned(username);
+    }
+
+    @Override
+    public synchronized void unpin(User user) {
+        String username = user.getUsername();
+        Integer count = pins.get(username);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            pins.put(username, count - 1);
+            return;
+        }
+        pins.remove(username);
+        if (kept.containsKey(username) && !mustKeep(user)) {
+            kept.remove(username);
+            cache.put(username, user);
+            evict();
+        }
+    }
+
+    @Override
+    public synchronized List<User> pinResident() {
+        ArrayList<User> resident = new ArrayList<>(cache.values());
+        resident.addAll(kept.values());
+        for (User user : resident) {
+            pin(user);
+        }
+        return resident;
+    }
+
+    /**
+     * Answers from the index of owners and the users in memory, without reading any user from the file.
+     */
+    @Override
+    public synchronized Map<Integer, String> accountOwners() {
+        HashMap<Integer, String> found = new HashMap<>(owners);
+        ArrayList<User> resident = new ArrayList<>(cache.values());
+        resident.addAll(kept.values());
+        expunge();
+        for (Handed handed : handedOut.values()) {
+            User user = handed.get();
+            if (user != null) {
+                resident.add(user);
+            }
+        }
+        for (User user : resident) {
+            for (Account account : user.getAccounts()) {
+                found.putIfAbsent(account.getAccountNum(), user.getUsername());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds the accounts of a user to {@link #owners}.
+     */
+    private void addOwner(User user) {
+        for (Account account : user.getAccounts()) {
+            owners.putIfAbsent(account.getAccountNum(), user.getUsername());
+        }
+    }
+
+    /**
+     * @return the number of users held in memory by the directory, not counting users it has handed out
+     */
+    synchronized int resident() {
+        return cache.size() + kept.size();
+    }
+
+    /**
+     * Pushes the least recently used users out of {@link #cache} until it is no larger than {@link #capacity}.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, User>> eldest = cache.entrySet().iterator();
+        while (cache.size() > capacity && eldest.hasNext()) {
+            Map.Entry<String, User> entry = eldest.next();
+            eldest.remove();
+            if (mustKeep(entry.getValue())) {
+                kept.put(entry.getKey(), entry.getValue());
+            } else {
+                write(entry.getKey(), entry.getValue());
+                handOut(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @param user a user
+     * @return true if the user is pinned, shares an account with another user or has invested in a mutual fund
+     */
+    private boolean mustKeep(User user) {
+        if (pins.containsKey(user.getUsername())
+                || !user.getInvestmentPortfolio().getMutualFundPortfolio().isEmpty()) {
+            return true;
+        }
+        for (Account account : user.getAccounts()) {
+            if (account.getIsJoint()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remembers a user who may still be held by someone, until nobody does.
+     */
+    private void handOut(String username, User user) {
+        expunge();
+        handedOut.put(username, new Handed(username, user, released));
+    }
+
+    /**
+     * @return the user if someone still holds them although the directory does not, or null
+     */
+    private User inMemory(String username) {
+        expunge();
+        Handed handed = handedOut.get(username);
+        return handed == null ? null : handed.get();
+    }
+
+    /**
+     * Forgets the users nobody holds any more.
+     */
+    private void expunge() {
+        Handed handed;
+        while ((handed = (Handed) released.poll()) != null) {
+            handedOut.remove(handed.username, handed);
+        }
+    }
+
+    /**
+     * Reads a user from their record.
+     */
+    private User read(String username) {
+        Slot slot = slots.get(username);
+        byte[] record = new byte[slot.length];
+        region(slot.position, slot.length).get(record);
+        try {
+            return SnapshotCodec.readUser(record, atm);
+        } catch (IOException e) {
+            failed(e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a user's record if it does not match them.
+     */
+    private void write(String username, User user) {
+        addOwner(user);
+        try {
+            byte[] record = SnapshotCodec.writeUser(user, atm);
+            Slot slot = slots.get(username);
+            if (slot.length == record.length && region(slot.position, slot.length).equals(ByteBuffer.wrap(record))) {
+                return;
+            }
+            if (record.length > slot.room) {
+                slot.room = Math.min(SEGMENT_SIZE, record.length + record.length / 4);
+                slot.position = allocate(slot.room, record.length);
+            }
+            region(slot.position, record.length).put(record);
+            slot.length = record.length;
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Finds room at the end of the file, in a single segment, mapping a new segment if needed.
+     *
+     * @param room the number of bytes to set aside
+     * @param length the length of the record to be written there
+     * @return where the room starts in the file
+     * @throws IOException if the record is larger than a segment or the file cannot be mapped
+     */
+    private long allocate(int room, int length) throws IOException {
+        if (length > SEGMENT_SIZE) {
+            throw new IOException("The record of a user is larger than " + SEGMENT_SIZE + " bytes");
+        }
+        long left = SEGMENT_SIZE - end % SEGMENT_SIZE;
+        if (left < room) {
+            end += left;
+        }
+        long position = end;
+        end += room;
+        while ((long) segments.size() * SEGMENT_SIZE < end) {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * SEGMENT_SIZE,
+                    SEGMENT_SIZE));
+        }
+        return position;
+    }
+
+    /**
+     * @return a buffer over part of the file, which must lie within one segment
+     */
+    private ByteBuffer region(long position, int length) {
+        ByteBuffer region = segments.isEmpty() ? ByteBuffer.allocate(0)
+                : segments.get((int) (position / SEGMENT_SIZE)).duplicate();
+        int offset = (int) (position % SEGMENT_SIZE);
+        region.limit(offset + length).position(offset);
+        return region.slice();
+    }
+
+    /**
+     * Stops the ATM when a user cannot be written or read, since carrying on would lose changes to them.
+     *
+     * @param e the error that occurred
+     */
+    private void failed(IOException e) {
+        System.out.println("User store failed!");
+        System.out.println(e.getMessage());
+        System.exit(-1);
+    }
+
+    /**
+     * The directory holds on to a file and to users it hands out, neither of which can be serialized.
+     *
+     * @param oos instance of the ObjectOutputStream class
+     * @throws IOException always
+     */
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        throw new NotSerializableException("PagedUserDirectory");
+    }
+
+    /**
+     * Where a user's record is in the file.
+     */
+    private static final class Slot {
+        private long position;
+        private int length;
+
+        /**
+         * The number of bytes set aside for the record at {@link #position}.
+         */
+        private int room;
+    }
+
+    /**
+     * A user the directory handed out or pushed out, remembered until nobody holds them.
+     */
+    private static final class Handed extends WeakReference<User> {
+        private final String username;
+
+        Handed(String username, User user, ReferenceQueue<User> queue) {
+            super(user, queue);
+            this.username = username;
+        }
+    }
+}
@@ -0,0 +1,920 @@
+package atm;
+
+import account.Account;
+import account.Chequing;
+import broker.MutualFundsBroker;
+import investments.Investment;
+import investments.MutualFund;
+import investments.Position;
+import investments.Quote;
+import investments.QuoteBook;
+import subscriptions.Subscription;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Writes the state of an ATM to a snapshot and reads it back, in a compact binary format instead of Java
+ * serialization.
+ *
+ * <p>
+ *     Only the state of the bank is written: the cash, the users with their accounts, transactions, stocks and
+ *     subscriptions, the prices of stocks and the mutual funds. The interfaces, the bank manager and the broker are
+ *     not written, since they are rebuilt when the ATM is read back, and neither are class or field names. Instead
+ *     the layout below is fixed for each {@link #VERSION}, and a snapshot of any other version is refused.
+ * </p>
+ * <pre>
+ * snapshot     = "ATMS" version header shard*
+ * header       = date fundsDate journalSequence bootJobsDate accounts bills subscriptions quotes funds
+ *                count (users length)*
+ * bills        = count (denomination capacity fill bills)*
+ * subscriptions= count subscription*
+ * quotes       = count (symbol:string name:string price:signed)*
+ * funds        = count position* for the low, medium and high risk funds
+ * shard        = (username:string password:string count account* count position* count subscription*
+ *                count investment*)*
+ * account      = accountNum &lt;&lt; 1 | 1 type:string flags balance:signed created depositOffset firstSequence
+ *                count transaction*
+ *              | accountNum &lt;&lt; 1
+ * transaction  = type:byte amount:signed (counterparty:signed | payee:string)
+ * position     = symbol:string shares:signed
+ * subscription = index [name:string cost:signed]
+ * investment   = fund:byte invested:signed percentOwned:double
+ * </pre>
+ * <p>
+ *     The users are split into shards of {@link #USERS_PER_SHARD} users, set with atm.snapshot.shard. Each shard only
+ *     refers to the header and to itself, so the shards are written and read on the common fork-join pool, one
+ *     task per shard, while the header is written and read on the calling thread. The header gives the number of
+ *     users and bytes in each shard, so a shard can be handed to a task as soon as its bytes are read. Each shard is
+ *     linked on the calling thread as soon as it and every shard before it have been read: its users are added to the
+ *     ATM and the mutual funds are given its investors. An account shared by two users is written in full under the
+ *     first of them and as its number alone under the others, who may be in a later shard, so a shard's references
+ *     are linked to the accounts of the shards linked before it in that same step.
+ * </p>
+ * <p>
+ *     Numbers are varints: seven bits to a byte, with the top bit set on every byte but the last, so most numbers take
+ *     one to three bytes. Signed numbers are zigzag encoded first so small negative numbers stay small. Strings are
+ *     interned within the header and within each shard: the first time a string is written it is given the next
+ *     index and written as that index, its length and its UTF-8 bytes; after that only the index is written.
+ *     Subscriptions are interned the same way, and every shard starts with the subscriptions of the header. A user's
+ *     investment names its fund by 0, 1 or 2 for the low, medium and high risk funds.
+ * </p>
+ */
+public final class SnapshotCodec {
+
+    /**
+     * The first bytes of every snapshot, "ATMS".
+     */
+    private static final byte[] MAGIC = {'A', 'T', 'M', 'S'};
+
+    /**
+     * The version of the layout written.
+     */
+    static final int VERSION = 3;
+
+    /**
+     * The number of users written in each shard.
+     */
+    static final int USERS_PER_SHARD = Integer.getInteger("atm.snapshot.shard", 8192);
+
+    /**
+     * The most shards being written or read at once, beyond which the calling thread waits for the oldest.
+     */
+    private static final int SHARDS_IN_FLIGHT = 2 * ForkJoinPool.getCommonPoolParallelism();
+
+    /**
+     * Set in the flags of an account shared by two users.
+     */
+    private static final int JOINT = 1;
+
+    /**
+     * Set in the flags of a user's primary chequing account.
+     */
+    private static final int PRIMARY = 2;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Writes a snapshot of an ATM, in shards of {@link #USERS_PER_SHARD} users. The stream is flushed but not closed.
+     *
+     * @param atm the ATM
+     * @param out where the snapshot is written
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(ATM atm, OutputStream out) throws IOException {
+        write(atm, out, USERS_PER_SHARD);
+    }
+
+    /**
+     * Writes a snapshot of an ATM. The stream is flushed but not closed.
+     *
+     * @param atm the ATM
+     * @param out where the snapshot is written
+     * @param usersPerShard the number of users written in each shard
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(ATM atm, OutputStream out, int usersPerShard) throws IOException {
+        Writer w = new Writer(out, new HashMap<>());
+        w.writeBytes(MAGIC, 0, MAGIC.length);
+        w.writeVarLong(VERSION);
+        MutualFundsBroker fundsBroker = atm.getBroker().getMutualFundsBroker();
+        MutualFund[] funds = funds(fundsBroker);
+        w.writeVarLong(atm.getDate().getTimeInMillis());
+        w.writeVarLong(fundsBroker.getDate().getTimeInMillis());
+        w.writeVarLong(atm.getJournalSequence());
+        w.writeVarLong(atm.getBootJobsDate());
+        w.writeVarLong(atm.getBM().getNumberOfAccounts());
+
+        Bills bills = atm.getBills();
+        CassetteLayout layout = bills.getLayout();
+        w.writeVarLong(layout.size());
+        for (int i = 0; i < layout.size(); i++) {
+            w.writeVarLong(layout.getDenomination(i));
+            w.writeVarLong(layout.getCapacity(i));
+            w.writeVarLong(layout.getFill(i));
+            w.writeVarLong(bills.getNumBills(i));
+        }
+
+        ArrayList<Subscription> available = atm.getSubscriptions().getListOfSubscriptions();
+        w.writeVarLong(available.size());
+        for (Subscription subscription : available) {
+            w.writeSubscription(subscription);
+        }
+
+        // a joint account is written in full by the first of its owners only. Owners are recorded in order before
+        // their shard is handed out, so every shard finds the owners of the shards before it.
+        ConcurrentHashMap<Integer, User> jointOwners = new ConcurrentHashMap<>();
+        HashMap<String, Integer> catalog = new HashMap<>(w.subscriptions);
+        ArrayList<EncodedShard> shards = new ArrayList<>();
+        ArrayDeque<ForkJoinTask<EncodedShard>> pending = new ArrayDeque<>();
+        ArrayList<User> next = new ArrayList<>();
+        // going through the directory streams through it, so only the shards being written are held at once.
+        for (User user : atm.getUserDirectory()) {
+            for (Account account : user.getAccounts()) {
+                if (account.getIsJoint()) {
+                    jointOwners.putIfAbsent(account.getAccountNum(), user);
+                }
+            }
+            next.add(user);
+            if (next.size() == usersPerShard) {
+                List<User> users = next;
+                pending.add(ForkJoinPool.commonPool().submit(() -> writeShard(users, jointOwners, funds, catalog)));
+                next = new ArrayList<>();
+                while (pending.size() > SHARDS_IN_FLIGHT) {
+                    shards.add(join(pending.poll(), pending));
+                }
+            }
+        }
+        if (!next.isEmpty()) {
+            List<User> users = next;
+            pending.add(ForkJoinPool.commonPool().submit(() -> writeShard(users, jointOwners, funds, catalog)));
+        }
+        while (!pending.isEmpty()) {
+            shards.add(join(pending.poll(), pending));
+        }
+
+        // every quote held by someone is written, including any a position got without going through the book.
+        LinkedHashMap<String, Quote> quotes = new LinkedHashMap<>();
+        for (Quote quote : atm.getBroker().getQuoteBook().quotes()) {
+            quotes.put(quote.getSymbol(), quote);
+        }
+        for (MutualFund fund : funds) {
+            addQuotes(quotes, fund.getStocks());
+        }
+        for (EncodedShard shard : shards) {
+            for (Quote quote : shard.quotes.values()) {
+                quotes.putIfAbsent(quote.getSymbol(), quote);
+            }
+        }
+        w.writeVarLong(quotes.size());
+        for (Quote quote : quotes.values()) {
+            w.writeString(quote.getSymbol());
+            w.writeString(quote.getName());
+            w.writeSignedVarLong(quote.getValue());
+        }
+        for (MutualFund fund : funds) {
+            writePositions(w, fund.getStocks());
+        }
+
+        w.writeVarLong(shards.size());
+        for (EncodedShard shard : shards) {
+            w.writeVarLong(shard.users);
+            w.writeVarLong(shard.bytes.size());
+        }
+        for (EncodedShard shard : shards) {
+            w.writeBytes(shard.bytes);
+        }
+        w.flush();
+    }
+
+    /**
+     * Reads an ATM back from a snapshot written by {@link #write(ATM, OutputStream)}. The journal is not opened.
+     *
+     * @param in the snapshot
+     * @return the ATM
+     * @throws IOException if the stream cannot be read, is not a snapshot or is a snapshot of another version
+     */
+    public static ATM read(InputStream in) throws IOException {
+        Reader r = new Reader(in);
+        for (byte b : MAGIC) {
+            if (r.readByte() != (b & 0xFF)) {
+                throw new IOException("Not an ATM snapshot");
+            }
+        }
+        long version = r.readVarLong();
+        if (version != VERSION) {
+            throw new IOException("Cannot read snapshots of version " + version + ", only of version " + VERSION);
+        }
+        long date = r.readVarLong();
+        long fundsDate = r.readVarLong();
+        long journalSequence = r.readVarLong();
+        long bootJobsDate = r.readVarLong();
+        int numberOfAccounts = r.readVarInt();
+        ATM atm = new ATM(readBills(r), fundsDate, date, journalSequence, bootJobsDate);
+        atm.getBM().restoreNumberOfAccounts(numberOfAccounts);
+        readSubscriptions(r, atm);
+        HashMap<String, Quote> quotes = readQuotes(r, atm.getBroker().getQuoteBook());
+        MutualFund[] funds = funds(atm.getBroker().getMutualFundsBroker());
+        for (MutualFund fund : funds) {
+            fund.getStocks().clear();
+            readPositions(r, quotes::get, fund.getStocks());
+        }
+
+        int numShards = r.readVarInt();
+        int[] shardUsers = new int[numShards];
+        int[] shardLengths = new int[numShards];
+        for (int i = 0; i < numShards; i++) {
+            shardUsers[i] = r.readVarInt();
+            shardLengths[i] = r.readVarInt();
+        }
+        ArrayList<Subscription> catalog = new ArrayList<>(r.subscriptions);
+        ArrayDeque<ForkJoinTask<DecodedShard>> pending = new ArrayDeque<>();
+        HashMap<Integer, Account> joint = new HashMap<>();
+        try {
+            for (int i = 0; i < numShards; i++) {
+                byte[] bytes = new byte[shardLengths[i]];
+                r.readFully(bytes);
+                int users = shardUsers[i];
+                pending.add(ForkJoinPool.commonPool().submit(
+                        () -> readShard(new Reader(bytes, catalog), users, atm, quotes::get, funds)));
+                // shards are linked in order as they are read, so only the shards being read are held at once.
+                while (pending.size() > SHARDS_IN_FLIGHT) {
+                    link(atm, join(pending.poll(), pending), joint);
+                }
+            }
+            while (!pending.isEmpty()) {
+                link(atm, join(pending.poll(), pending), joint);
+            }
+        } catch (IOException e) {
+            for (ForkJoinTask<DecodedShard> task : pending) {
+                task.cancel(true);
+            }
+            throw e;
+        }
+        return atm;
+    }
+
+    private static Bills readBills(Reader r) throws IOException {
+        int cassettes = r.readVarInt();
+        int[] denominations = new int[cassettes];
+        int[] capacities = new int[cassettes];
+        int[] fills = new int[cassettes];
+        int[] counts = new int[cassettes];
+        for (int i = 0; i < cassettes; i++) {
+            denominations[i] = r.readVarInt();
+            capacities[i] = r.readVarInt();
+            fills[i] = r.readVarInt();
+            counts[i] = r.readVarInt();
+        }
+        return new Bills(new CassetteLayout(denominations, capacities, fills), counts);
+    }
+
+    private static void readSubscriptions(Reader r, ATM atm) throws IOException {
+        ArrayList<Subscription> available = atm.getSubscriptions().getListOfSubscriptions();
+        available.clear();
+        int subscriptions = r.readVarInt();
+        for (int i = 0; i < subscriptions; i++) {
+            available.add(r.readSubscription());
+        }
+    }
+
+    /**
+     * Reads the quotes into the book, and returns them by symbol so that shards can look them up without locking
+     * the book.
+     */
+    private static HashMap<String, Quote> readQuotes(Reader r, QuoteBook book) throws IOException {
+        int size = r.readVarInt();
+        HashMap<String, Quote> quotes = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String symbol = r.readString();
+            String name = r.readString();
+            Quote quote = book.intern(symbol, name);
+            quote.setName(name);
+            quote.setCurrentPrice(r.readSignedVarLong());
+            quotes.put(symbol, quote);
+        }
+        return quotes;
+    }
+
+    /**
+     * Writes one shard of users into a buffer of its own. Runs on the fork-join pool.
+     */
+    private static EncodedShard writeShard(List<User> users, Map<Integer, User> jointOwners, MutualFund[] funds,
+                                           HashMap<String, Integer> catalog) throws IOException {
+        EncodedShard shard = new EncodedShard(users.size());
+        Writer w = new Writer(shard.bytes, catalog);
+        for (User user : users) {
+            w.writeString(user.getUsername());
+            w.writeString(user.getPassword());
+            ArrayList<Account> accounts = user.getAccounts();
+            w.writeVarLong(accounts.size());
+            for (Account account : accounts) {
+                boolean full = !account.getIsJoint() || jointOwners.get(account.getAccountNum()) == user;
+                w.writeVarLong(((long) account.getAccountNum() << 1) | (full ? 1 : 0));
+                if (full) {
+                    writeAccount(w, account);
+                }
+            }
+            ArrayList<Position> positions = user.getInvestmentPortfolio().getStockPortfolio();
+            addQuotes(shard.quotes, positions);
+            writePositions(w, positions);
+            ArrayList<Subscription> subscriptions = user.getSubscriptions();
+            w.writeVarLong(subscriptions.size());
+            for (Subscription subscription : subscriptions) {
+                w.writeSubscription(subscription);
+            }
+            HashMap<MutualFund, Investment> portfolio = user.getInvestmentPortfolio().getMutualFundPortfolio();
+            int numInvestments = 0;
+            for (MutualFund fund : funds) {
+                numInvestments += portfolio.containsKey(fund) ? 1 : 0;
+            }
+            w.writeVarLong(numInvestments);
+            for (int i = 0; i < funds.length; i++) {
+                Investment investment = portfolio.get(funds[i]);
+                if (investment != null) {
+                    w.writeByte(i);
+                    w.writeSignedVarLong(investment.getInvested());
+                    w.writeLong(Double.doubleToLongBits(investment.getPercentOwned()));
+                }
+            }
+        }
+        w.flush();
+        return shard;
+    }
+
+    /**
+     * Reads one shard of users. Runs on the fork-join pool, so it only creates users and accounts and leaves adding
+     * them to the ATM to {@link #link(ATM, DecodedShard, HashMap)}.
+     */
+    private static DecodedShard readShard(Reader r, int numUsers, ATM atm, Function<String, Quote> quotes,
+                                          MutualFund[] funds) throws IOException {
+        DecodedShard shard = new DecodedShard(numUsers);
+        for (int i = 0; i < numUsers; i++) {
+            User user = new User(r.readString(), r.readString(), new ArrayList<>());
+            shard.users.add(user);
+            int numAccounts = r.readVarInt();
+            for (int j = 0; j < numAccounts; j++) {
+                long reference = r.readVarLong();
+                if (reference >>> 1 > Integer.MAX_VALUE) {
+                    throw new IOException("Account number out of range in the snapshot: " + (reference >>> 1));
+                }
+                int accountNum = (int) (reference >>> 1);
+                if ((reference & 1) == 0) {
+                    // written in full under another user, maybe in another shard.
+                    shard.links.add(new Link(user, user.getAccounts().size(), accountNum));
+                    user.getAccounts().add(null);
+                    continue;
+                }
+                Account account = readAccount(r, atm.getBM().newAccount(r.readString(), accountNum));
+                user.getAccounts().add(account);
+                if (account.getIsJoint() && shard.joint.put(accountNum, account) != null) {
+                    throw new IOException("Account " + accountNum + " is written twice");
+                }
+            }
+            readPositions(r, quotes, user.getInvestmentPortfolio().getStockPortfolio());
+            int numSubscriptions = r.readVarInt();
+            for (int j = 0; j < numSubscriptions; j++) {
+                user.addSubscription(r.readSubscription());
+            }
+            int numInvestments = r.readVarInt();
+            for (int j = 0; j < numInvestments; j++) {
+                int fund = r.readByte();
+                if (fund >= funds.length) {
+                    throw new IOException("Unknown mutual fund " + fund);
+                }
+                Investment investment = new Investment(r.readSignedVarLong(), Double.longBitsToDouble(r.readLong()));
+                user.getInvestmentPortfolio().setMutualFundsPortfolio(funds[fund], investment);
+            }
+        }
+        if (!r.atEnd()) {
+            throw new IOException("A shard of the snapshot is longer than its users");
+        }
+        return shard;
+    }
+
+    /**
+     * Adds the users of a shard to the ATM in the order they were written, after giving shared accounts to the users
+     * who only refer to them and giving each mutual fund its investors. Shards must be linked in the order they were
+     * written, since an account is written in full before any reference to it.
+     *
+     * @param joint every joint account of the shards linked so far, by number, which the shard's are added to
+     */
+    private static void link(ATM atm, DecodedShard shard, HashMap<Integer, Account> joint) throws IOException {
+        for (Map.Entry<Integer, Account> account : shard.joint.entrySet()) {
+            if (joint.put(account.getKey(), account.getValue()) != null) {
+                throw new IOException("Account " + account.getKey() + " is written twice");
+            }
+        }
+        for (Link link : shard.links) {
+            Account account = joint.get(link.accountNum);
+            if (account == null) {
+                throw new IOException("Account " + link.accountNum + " is not in the snapshot");
+            }
+            link.user.getAccounts().set(link.slot, account);
+        }
+        for (User user : shard.users) {
+            // the user's portfolio and the fund share the same Investment, as when it was bought.
+            for (Map.Entry<MutualFund, Investment> investment :
+                    user.getInvestmentPortfolio().getMutualFundPortfolio().entrySet()) {
+                investment.getKey().setInvestors(user, investment.getValue());
+            }
+            atm.addUserToList(user);
+        }
+    }
+
+    /**
+     * Waits for a task. If it fails the tasks still pending are cancelled and its exception is thrown.
+     */
+    private static <T> T join(ForkJoinTask<T> task, Collection<ForkJoinTask<T>> pending) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            for (ForkJoinTask<T> other : pending) {
+                other.cancel(true);
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the snapshot");
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Writes the record of one user for {@link PagedUserDirectory}, in the layout of a shard holding only them. A
+     * user who shares an account with another user or has invested in a mutual fund cannot be written this way.
+     *
+     * @param user the user
+     * @param atm the ATM the user belongs to
+     * @return the record
+     * @throws IOException if the record cannot be written
+     */
+    static byte[] writeUser(User user, ATM atm) throws IOException {
+        EncodedShard shard = writeShard(Collections.singletonList(user), Collections.emptyMap(),
+                funds(atm.getBroker().getMutualFundsBroker()), new HashMap<>());
+        return shard.bytes.toByteArray();
+    }
+
+    /**
+     * Reads back a user written by {@link #writeUser(User, ATM)}.
+     *
+     * @param record the record
+     * @param atm the ATM the user belongs to, whose quotes the user's stocks are given
+     * @return the user
+     * @throws IOException if the record is malformed
+     */
+    static User readUser(byte[] record, ATM atm) throws IOException {
+        DecodedShard shard = readShard(new Reader(record, Collections.emptyList()), 1, atm,
+                atm.getBroker().getQuoteBook()::get, funds(atm.getBroker().getMutualFundsBroker()));
+        if (!shard.links.isEmpty()) {
+            throw new IOException("The record of a user refers to an account it does not hold");
+        }
+        return shard.users.get(0);
+    }
+
+    private static MutualFund[] funds(MutualFundsBroker broker) {
+        return new MutualFund[]{broker.getLowRiskFund(), broker.getMediumRiskFund(), broker.getHighRiskFund()};
+    }
+
+    private static void addQuotes(LinkedHashMap<String, Quote> quotes, ArrayList<Position> positions) {
+        for (Position position : positions) {
+            quotes.putIfAbsent(position.getSymbol(), position.getQuote());
+        }
+    }
+
+    private static void writeAccount(Writer w, Account account) throws IOException {
+        w.writeString(account.getType());
+        w.writeVarLong((account.getIsJoint() ? JOINT : 0) | (account.isPrimary() ? PRIMARY : 0));
+        w.writeSignedVarLong(account.getBalance());
+        w.writeVarLong(account.getDateCreated().getTimeInMillis());
+        w.writeVarLong(account.getDepositOffset());
+        TransactionLog log = account.getTransactionLog();
+        w.writeVarLong(log.getFirstSequence());
+        int size = log.size();
+        w.writeVarLong(size);
+        for (int i = 0; i < size; i++) {
+            TransactionType type = log.typeAt(i);
+            w.writeByte(type.code());
+            w.writeSignedVarLong(log.amountAt(i));
+            if (type == TransactionType.PAY_BILL) {
+                w.writeString(log.payeeAt(i));
+            } else {
+                w.writeSignedVarLong(log.counterpartyAt(i));
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of an account written by {@link #writeAccount(Writer, Account)} into a new account of its type.
+     */
+    private static Account readAccount(Reader r, Account account) throws IOException {
+        int flags = r.readVarInt();
+        account.setIsJoint((flags & JOINT) != 0);
+        if (account instanceof Chequing) {
+            ((Chequing) account).primaryStatus = (flags & PRIMARY) != 0;
+        }
+        account.restoreBalance(r.readSignedVarLong());
+        account.restoreDateCreated(r.readVarLong());
+        account.restoreDepositOffset(r.readVarLong());
+        TransactionLog log = account.getTransactionLog();
+        log.restoreFirstSequence(r.readVarLong());
+        int size = r.readVarInt();
+        for (int i = 0; i < size; i++) {
+            int code = r.readByte();
+            if (code >= TransactionType.values().length) {
+                throw new IOException("Unknown transaction type " + code);
+            }
+            TransactionType type = TransactionType.fromCode((byte) code);
+            long amount = r.readSignedVarLong();
+            if (type == TransactionType.PAY_BILL) {
+                log.addPayBill(r.readString(), amount);
+            } else {
+                log.add(type, amount, (int) r.readSignedVarLong());
+            }
+        }
+        return account;
+    }
+
+    private static void writePositions(Writer w, ArrayList<Position> positions) throws IOException {
+        w.writeVarLong(positions.size());
+        for (Position position : positions) {
+            w.writeString(position.getSymbol());
+            w.writeSignedVarLong(position.getNumShares());
+        }
+    }
+
+    private static void readPositions(Reader r, Function<String, Quote> quotes, ArrayList<Position> positions)
+            throws IOException {
+        int size = r.readVarInt();
+        for (int i = 0; i < size; i++) {
+            String symbol = r.readString();
+            Quote quote = quotes.apply(symbol);
+            if (quote == null) {
+                throw new IOException("No quote for " + symbol);
+            }
+            positions.add(new Position(quote, (int) r.readSignedVarLong()));
+        }
+    }
+
+    /**
+     * A shard written by {@link #writeShard(List, Map, MutualFund[], HashMap)}.
+     */
+    private static final class EncodedShard {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final int users;
+
+        /**
+         * The quote of every position held by the users of the shard, by symbol.
+         */
+        private final LinkedHashMap<String, Quote> quotes = new LinkedHashMap<>();
+
+        EncodedShard(int users) {
+            this.users = users;
+        }
+    }
+
+    /**
+     * A shard read by {@link #readShard(Reader, int, ATM, Function, MutualFund[])}, waiting to be linked.
+     */
+    private static final class DecodedShard {
+        private final ArrayList<User> users;
+
+        /**
+         * Every joint account written in full in the shard, by number.
+         */
+        private final HashMap<Integer, Account> joint = new HashMap<>();
+
+        /**
+         * Every account written as its number alone in the shard.
+         */
+        private final ArrayList<Link> links = new ArrayList<>();
+
+        DecodedShard(int users) {
+            this.users = new ArrayList<>(users);
+        }
+    }
+
+    /**
+     * A place in a user's list of accounts that is waiting for an account written in full under another user.
+     */
+    private static final class Link {
+        private final User user;
+        private final int slot;
+        private final int accountNum;
+
+        Link(User user, int slot, int accountNum) {
+            this.user = user;
+            this.slot = slot;
+            this.accountNum = accountNum;
+        }
+    }
+
+    /**
+     * Writes the primitives of a snapshot into a buffer of its own, so that writing a byte is an array store.
+     */
+    private static final class Writer {
+        private final OutputStream out;
+        private final byte[] buf = new byte[1 << 16];
+        private int pos = 0;
+
+        /**
+         * The index of every string written so far. Index 0 is null.
+         */
+        private final HashMap<String, Integer> strings = new HashMap<>();
+
+        /**
+         * The index of every subscription written so far, keyed by name and cost.
+         */
+        private final HashMap<String, Integer> subscriptions = new HashMap<>();
+
+        /**
+         * Writer constructor.
+         *
+         * @param out where the bytes are written
+         * @param subscriptions the subscriptions already written, by index, which are copied
+         */
+        Writer(OutputStream out, Map<String, Integer> subscriptions) {
+            this.out = out;
+            this.subscriptions.putAll(subscriptions);
+        }
+
+        void writeByte(int b) throws IOException {
+            if (pos == buf.length) {
+                drain();
+            }
+            buf[pos++] = (byte) b;
+        }
+
+        void writeVarLong(long v) throws IOException {
+            if (buf.length - pos < 10) {
+                drain();
+            }
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void writeSignedVarLong(long v) throws IOException {
+            writeVarLong((v << 1) ^ (v >> 63));
+        }
+
+        void writeLong(long v) throws IOException {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (v >>> shift));
+            }
+        }
+
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarLong(0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeVarLong(index);
+                return;
+            }
+            index = strings.size() + 1;
+            strings.put(s, index);
+            writeVarLong(index);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        void writeSubscription(Subscription subscription) throws IOException {
+            String key = subscription.getName() + '\0' + subscription.getCost();
+            Integer index = subscriptions.get(key);
+            if (index != null) {
+                writeVarLong(index);
+                return;
+            }
+            index = subscriptions.size();
+            subscriptions.put(key, index);
+            writeVarLong(index);
+            writeString(subscription.getName());
+            writeSignedVarLong(subscription.getCost());
+        }
+
+        void writeBytes(byte[] bytes, int off, int len) throws IOException {
+            if (len > buf.length - pos) {
+                drain();
+                if (len > buf.length) {
+                    out.write(bytes, off, len);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, off, buf, pos, len);
+            pos += len;
+        }
+
+        void writeBytes(ByteArrayOutputStream bytes) throws IOException {
+            drain();
+            bytes.writeTo(out);
+        }
+
+        private void drain() throws IOException {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads the primitives written by {@link Writer} from a buffer of its own.
+     */
+    private static final class Reader {
+        private final InputStream in;
+        private final byte[] buf;
+        private int pos = 0;
+        private int limit;
+
+        /**
+         * Every string read so far, by index.
+         */
+        private final ArrayList<String> strings = new ArrayList<>();
+
+        /**
+         * Every subscription read so far, by index. Subscriptions with the same name and cost are one object.
+         */
+        private final ArrayList<Subscription> subscriptions = new ArrayList<>();
+
+        /**
+         * Reader constructor for a stream.
+         *
+         * @param in where the bytes are read from
+         */
+        Reader(InputStream in) {
+            this.in = in;
+            this.buf = new byte[1 << 16];
+            this.limit = 0;
+            strings.add(null);
+        }
+
+        /**
+         * Reader constructor for a shard that has already been read into memory.
+         *
+         * @param bytes the shard
+         * @param subscriptions the subscriptions read before the shard, by index
+         */
+        Reader(byte[] bytes, List<Subscription> subscriptions) {
+            this.in = null;
+            this.buf = bytes;
+            this.limit = bytes.length;
+            strings.add(null);
+            this.subscriptions.addAll(subscriptions);
+        }
+
+        /**
+         * @return true if every byte of a shard has been read
+         */
+        boolean atEnd() {
+            return pos == limit;
+        }
+
+        int readByte() throws IOException {
+            if (pos == limit) {
+                fill();
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        private void fill() throws IOException {
+            int read = in == null ? -1 : in.read(buf, 0, buf.length);
+            if (read <= 0) {
+                throw new EOFException("The snapshot is cut short");
+            }
+            pos = 0;
+            limit = read;
+        }
+
+        long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new IOException("Malformed number in the snapshot");
+        }
+
+        long readSignedVarLong() throws IOException {
+            long z = readVarLong();
+            return (z >>> 1) ^ -(z & 1);
+        }
+
+        int readVarInt() throws IOException {
+            long v = readVarLong();
+            if (v > Integer.MAX_VALUE) {
+                throw new IOException("Number out of range in the snapshot: " + v);
+            }
+            return (int) v;
+        }
+
+        long readLong() throws IOException {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | readByte();
+            }
+            return v;
+        }
+
+        String readString() throws IOException {
+            int index = readVarInt();
+            if (index < strings.size()) {
+                return strings.get(index);
+            }
+            if (index != strings.size()) {
+                throw new IOException("String " + index + " read before it was written");
+            }
+            int length = readVarInt();
+            String s;
+            if (length <= limit - pos) {
+                s = new String(buf, pos, length, StandardCharsets.UTF_8);
+                pos += length;
+            } else {
+                byte[] bytes = new byte[length];
+                readFully(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            strings.add(s);
+            return s;
+        }
+
+        void readFully(byte[] bytes) throws IOException {
+            int copied = 0;
+            while (copied < bytes.length) {
+                if (pos == limit) {
+                    fill();
+                }
+                int n = Math.min(bytes.length - copied, limit - pos);
+                System.arraycopy(buf, pos, bytes, copied, n);
+                pos += n;
+                copied += n;
+            }
+        }
+
+        Subscription readSubscription() throws IOException {
+            int index = readVarInt();
+            if (index < subscriptions.size()) {
+                return subscriptions.get(index);
+            }
+            if (index != subscriptions.size()) {
+                throw new IOException("Subscription " + index + " read before it was written");
+            }
+            Subscription subscription = new Subscription(readString(), readSignedVarLong());
+            subscriptions.add(subscription);
+            return subscription;
+        }
+    }
+}
@@ -3,14 +3,15 @@ package atm;
 import java.io.*;
 
 /**
- * Represents a transaction completed by a user.
+ * Represents a transaction completed by a user. Accounts store their transactions in a {@link TransactionLog}, which
+ * creates Transaction objects when they are asked for.
  */
 public class Transaction implements Serializable {
 
     /**
      * Type of transaction (i.e Transfer In/Out, Deposit, etc.)
      */
-    private final String type;
+    private final TransactionType type;
 
     /**
      * The number of the account used to perform the transaction.
@@ -18,9 +19,9 @@ public class Transaction implements Serializable {
     private int accountNum = 0;
 
     /**
-     * The dollar amount of the transaction.
+     * The amount of the transaction, in cents.
      */
-    private final double amount;
+    private final long amount;
 
     /**
      * The name of the external account to whom a bill is being paid to.
@@ -28,48 +29,35 @@ public class Transaction implements Serializable {
     private String billPayee = null;
 
     /**
-     * Transaction constructor for Transfer In/Out trasnactions
+     * Transaction constructor for Transfer In/Out and Withdraw/Deposit transactions
      *
-     * @param acctNum the unique account number for the account user used to do the transaction
-     * @param amount the dollar amount of the transaction
      * @param type refers to transaction type
-     *
+     * @param amount the amount of the transaction, in cents
+     * @param acctNum the unique account number for the other account in a transfer, or 0 if there is none
      */
-    public Transaction(int acctNum, Double amount, String type) {
+    public Transaction(TransactionType type, long amount, int acctNum) {
         this.type = type;
         this.amount = amount;
         this.accountNum = acctNum;
     }
 
-    /**
-     * Transaction constructor for Withdraw/Deposit transactions
-     *
-     * @param amount the dollar amount of the transaction
-     * @param type refers to transaction type
-
-     */
-    public Transaction(Double amount, String type) {
-        this.type = type;
-        this.amount = amount;
-    }
-
     /**
      *Transaction constructor for Pay Bill transactions
      *
      * @param billPayee the person/account the bill is being paid to
-     * @param amount the bill's dollar amount
+     * @param amount the bill's amount, in cents
      */
-    public Transaction(String billPayee, Double amount){
+    public Transaction(String billPayee, long amount){
         this.billPayee = billPayee;
-        this.type = "paybill";
+        this.type = TransactionType.PAY_BILL;
         this.amount = amount;
     }
 
     /**
      *
-     * @return the dollar amount of the transaction
+     * @return the amount of the transaction, in cents
      */
-    public double getTransactionAmount() {
+    public long getTransactionAmount() {
         return this.amount;
     }
 
@@ -77,10 +65,26 @@ public class Transaction implements Serializable {
      *
      * @return type of the transaction
      */
-    public String getTransactionType() {
+    public TransactionType getType() {
         return this.type;
     }
 
+    /**
+     *
+     * @return name of the type of the transaction (i.e TransferIn, withdraw, etc.)
+     */
+    public String getTransactionType() {
+        return this.type.getLabel();
+    }
+
+    /**
+     *
+     * @return the name of the external account a bill was paid to, or null if the transaction is not a bill payment
+     */
+    public String getBillPayee() {
+        return this.billPayee;
+    }
+
     /**
      *
      * @return the unique number of the account from which the transaction was performed
@@ -90,16 +94,17 @@ public class Transaction implements Serializable {
     }
 
     public String toString() {
-        if (this.type.equalsIgnoreCase("transferin")) {
-            return "Transferred in " + this.amount +" from account " + this.accountNum;
-        } else if (this.type.equalsIgnoreCase("transferout")) {
-            return "Transferred out " + this.amount + " from account: " + this.accountNum;
-        } else if (this.type.equalsIgnoreCase("withdraw")) {
-            return "Withdrew " + this.amount;
-        } else if (this.type.equals("deposit")) {
-            return "Deposited " + this.amount;
-        } else {
-            return "Paid " + this.amount + " to " + this.billPayee;
+        switch (this.type) {
+            case TRANSFER_IN:
+                return "Transferred in " + Money.format(this.amount) +" from account " + this.accountNum;
+            case TRANSFER_OUT:
+                return "Transferred out " + Money.format(this.amount) + " from account: " + this.accountNum;
+            case WITHDRAW:
+                return "Withdrew " + Money.format(this.amount);
+            case DEPOSIT:
+                return "Deposited " + Money.format(this.amount);
+            default:
+                return "Paid " + Money.format(this.amount) + " to " + this.billPayee;
         }
     }
 
@@ -0,0 +1,441 @@
+package atm;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The transactions performed through one account, stored column by column in primitive arrays rather than as a list
+ * of {@link Transaction} objects.
+ *
+ * <p>
+ *     Every transaction is a type code, an amount in cents and an int which is the number of the other account for
+ *     transfers and the id of the payee for bill payments. Payee names are interned, so an account that pays the same
+ *     bill every month stores the name once. The columns grow a chunk at a time so adding a transaction never copies
+ *     the ones already recorded, and the last transaction can be read or removed without walking the log.
+ *     {@link Transaction} objects are only created when a caller asks for one.
+ * </p>
+ *
+ * <p>
+ *     Every transaction has a sequence number, counting from 0 for the first transaction of the account. The log
+ *     only holds the most recent transactions; older ones are moved to a {@link HistoryStore} and the sequence
+ *     number of the oldest transaction still in the log is {@link TransactionLog#getFirstSequence()}.
+ * </p>
+ */
+public class TransactionLog implements Serializable {
+
+    /**
+     * log2 of the number of transactions in a chunk.
+     */
+    private static final int CHUNK_SHIFT = 6;
+
+    /**
+     * The number of transactions in a chunk.
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * The sequence number of the oldest transaction in the log. Every transaction before it is in the
+     * {@link HistoryStore}.
+     */
+    private long firstSequence = 0;
+
+    /**
+     * The type code of each transaction, see {@link TransactionType#code()}.
+     */
+    private transient byte[][] types;
+
+    /**
+     * The amount of each transaction, in cents.
+     */
+    private transient long[][] amounts;
+
+    /**
+     * The other account of each transfer, or the payee id of each bill payment.
+     */
+    private transient int[][] counterparties;
+
+    /**
+     * The number of transactions in the log.
+     */
+    private transient int size;
+
+    /**
+     * The name of every payee bills have been paid to, indexed by payee id.
+     */
+    private transient ArrayList<String> payees;
+
+    /**
+     * The id of every payee in {@link TransactionLog#payees}.
+     */
+    private transient HashMap<String, Integer> payeeIds;
+
+    /**
+     * Creates an empty log.
+     */
+    public TransactionLog() {
+        init(0);
+    }
+
+    /**
+     * Records a transfer or withdrawal.
+     *
+     * @param type the type of the transaction
+     * @param amount the amount of the transaction, in cents
+     * @param counterparty the number of the other account in a transfer, or 0 if there is none
+     */
+    public void add(TransactionType type, long amount, int counterparty) {
+        addCode(type.code(), amount, counterparty);
+    }
+
+    private void addCode(byte type, long amount, int counterparty) {
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == types.length) {
+            grow();
+        }
+        if (types[chunk] == null) {
+            types[chunk] = new byte[CHUNK_SIZE];
+            amounts[chunk] = new long[CHUNK_SIZE];
+            counterparties[chunk] = new int[CHUNK_SIZE];
+        }
+        int i = size & CHUNK_MASK;
+        types[chunk][i] = type;
+        amounts[chunk][i] = amount;
+        counterparties[chunk][i] = counterparty;
+        size++;
+    }
+
+    /**
+     * Records a bill payment.
+     *
+     * @param payee the external account the bill was paid to
+     * @param amount the bill's amount, in cents
+     */
+    public void addPayBill(String payee, long amount) {
+        add(TransactionType.PAY_BILL, amount, internPayee(payee));
+    }
+
+    /**
+     * Removes the last transaction, if there is one. Used when a transaction is undone.
+     */
+    public void pop() {
+        if (size > 0) {
+            size--;
+        }
+    }
+
+    /**
+     * Removes the oldest transactions from the log, once they have been written to the {@link HistoryStore}.
+     *
+     * @param count the number of transactions to remove
+     */
+    void dropOldest(int count) {
+        count = Math.min(count, size);
+        int keep = size - count;
+        byte[] keptTypes = new byte[keep];
+        long[] keptAmounts = new long[keep];
+        int[] keptCounterparties = new int[keep];
+        for (int i = 0; i < keep; i++) {
+            keptTypes[i] = types[(i + count) >>> CHUNK_SHIFT][(i + count) & CHUNK_MASK];
+            keptAmounts[i] = amountAt(i + count);
+            keptCounterparties[i] = counterpartyAt(i + count);
+        }
+        clearColumns(keep);
+        for (int i = 0; i < keep; i++) {
+            addCode(keptTypes[i], keptAmounts[i], keptCounterparties[i]);
+        }
+        firstSequence += count;
+    }
+
+    /**
+     * Puts transactions read back from the {@link HistoryStore} in front of the oldest transaction in the log.
+     *
+     * @param older the transactions just before the oldest transaction in the log, oldest first
+     */
+    void prepend(ArrayList<Transaction> older) {
+        byte[] keptTypes = new byte[size];
+        long[] keptAmounts = new long[size];
+        int[] keptCounterparties = new int[size];
+        int keep = size;
+        for (int i = 0; i < keep; i++) {
+            keptTypes[i] = types[i >>> CHUNK_SHIFT][i & CHUNK_MASK];
+            keptAmounts[i] = amountAt(i);
+            keptCounterparties[i] = counterpartyAt(i);
+        }
+        clearColumns(keep + older.size());
+        for (Transaction transaction : older) {
+            if (transaction.getType() == TransactionType.PAY_BILL) {
+                addPayBill(transaction.getBillPayee(), transaction.getTransactionAmount());
+            } else {
+                add(transaction.getType(), transaction.getTransactionAmount(), transaction.getTransactionAccount());
+            }
+        }
+        for (int i = 0; i < keep; i++) {
+            addCode(keptTypes[i], keptAmounts[i], keptCounterparties[i]);
+        }
+        firstSequence -= older.size();
+    }
+
+    /**
+     * @return the sequence number of the oldest transaction in the log
+     */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Sets the sequence number of the oldest transaction of an empty log, so that the transactions added next
+     * continue the numbering of a log read back from a snapshot.
+     *
+     * @param firstSequence the sequence number of the oldest transaction still in the log
+     */
+    void restoreFirstSequence(long firstSequence) {
+        if (size != 0) {
+            throw new IllegalStateException("The log already has transactions");
+        }
+        this.firstSequence = firstSequence;
+    }
+
+    /**
+     * @return the sequence number the next transaction added to the log will have
+     */
+    public long getNextSequence() {
+        return firstSequence + size;
+    }
+
+    /**
+     * @return the number of transactions in the log
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if no transactions have been recorded
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index the position of the transaction, 0 being the oldest
+     * @return the type of the transaction
+     */
+    public TransactionType typeAt(int index) {
+        checkIndex(index);
+        return TransactionType.fromCode(types[index >>> CHUNK_SHIFT][index & CHUNK_MASK]);
+    }
+
+    /**
+     * @param index the position of the transaction, 0 being the oldest
+     * @return the amount of the transaction, in cents
+     */
+    public long amountAt(int index) {
+        checkIndex(index);
+        return amounts[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    /**
+     * @param index the position of a transfer, 0 being the oldest
+     * @return the number of the other account in the transfer
+     */
+    public int counterpartyAt(int index) {
+        checkIndex(index);
+        return counterparties[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    /**
+     * @param index the position of a bill payment, 0 being the oldest
+     * @return the name of the payee, or null if the transaction is not a bill payment
+     */
+    public String payeeAt(int index) {
+        if (typeAt(index) != TransactionType.PAY_BILL) {
+            return null;
+        }
+        return payees.get(counterpartyAt(index));
+    }
+
+    /**
+     * Creates a {@link Transaction} for one entry of the log.
+     *
+     * @param index the position of the transaction, 0 being the oldest
+     * @return the transaction at that position
+     */
+    public Transaction get(int index) {
+        TransactionType type = typeAt(index);
+        if (type == TransactionType.PAY_BILL) {
+            return new Transaction(payeeAt(index), amountAt(index));
+        }
+        return new Transaction(type, amountAt(index), counterpartyAt(index));
+    }
+
+    /**
+     * @return the most recent transaction, or null if no transactions have been recorded
+     */
+    public Transaction last() {
+        return size == 0 ? null : get(size - 1);
+    }
+
+    /**
+     * @return the type of the most recent transaction, or null if no transactions have been recorded
+     */
+    public TransactionType lastType() {
+        return size == 0 ? null : typeAt(size - 1);
+    }
+
+    /**
+     * @return every transaction in the log, oldest first
+     */
+    public ArrayList<Transaction> toList() {
+        ArrayList<Transaction> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(get(i));
+        }
+        return list;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(get(i));
+        }
+        return sb.append("]").toString();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Makes room for more chunks. Only the arrays of chunk references are copied, never the transactions.
+     */
+    private void grow() {
+        int chunks = Math.max(4, types.length * 2);
+        byte[][] newTypes = new byte[chunks][];
+        long[][] newAmounts = new long[chunks][];
+        int[][] newCounterparties = new int[chunks][];
+        System.arraycopy(types, 0, newTypes, 0, types.length);
+        System.arraycopy(amounts, 0, newAmounts, 0, amounts.length);
+        System.arraycopy(counterparties, 0, newCounterparties, 0, counterparties.length);
+        types = newTypes;
+        amounts = newAmounts;
+        counterparties = newCounterparties;
+    }
+
+    private int internPayee(String payee) {
+        Integer id = payeeIds.get(payee);
+        if (id == null) {
+            id = payees.size();
+            payees.add(payee);
+            payeeIds.put(payee, id);
+        }
+        return id;
+    }
+
+    private void init(int capacity) {
+        clearColumns(capacity);
+        payees = new ArrayList<>();
+        payeeIds = new HashMap<>();
+    }
+
+    /**
+     * Empties the log, keeping the payee table so payee ids already in use stay valid.
+     *
+     * @param capacity the number of transactions to make room for
+     */
+    private void clearColumns(int capacity) {
+        int chunks = (capacity + CHUNK_MASK) >>> CHUNK_SHIFT;
+        types = new byte[chunks][];
+        amounts = new long[chunks][];
+        counterparties = new int[chunks][];
+        size = 0;
+    }
+
+    /**
+     * Used to serialize a TransactionLog object. Only the recorded transactions are written, one column at a time.
+     *
+     * @param oos instance of the ObjectOutputStream class to write the TransactionLog object
+     * @throws IOException if an IO error occurs.
+     */
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        try {
+            oos.defaultWriteObject();
+            oos.writeInt(payees.size());
+            for (String payee : payees) {
+                oos.writeUTF(payee);
+            }
+            oos.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                oos.writeByte(types[i >>> CHUNK_SHIFT][i & CHUNK_MASK]);
+            }
+            for (int i = 0; i < size; i++) {
+                oos.writeLong(amounts[i >>> CHUNK_SHIFT][i & CHUNK_MASK]);
+            }
+            for (int i = 0; i < size; i++) {
+                oos.writeInt(counterparties[i >>> CHUNK_SHIFT][i & CHUNK_MASK]);
+            }
+        } catch (IOException e){
+            System.out.println("TransactionLog writeObject Failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Used to deserialize TransactionLog objects after ATM machine reboots.
+     *
+     * @param ois instance of the ObjectInputStream class used to deserialize TransactionLog object
+     * @throws ClassNotFoundException if the class of the serialized object could not be found
+     * @throws IOException if an IO error occurs
+     */
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException{
+        try{
+            ois.defaultReadObject();
+            int numPayees = ois.readInt();
+            ArrayList<String> names = new ArrayList<>(numPayees);
+            for (int i = 0; i < numPayees; i++) {
+                names.add(ois.readUTF());
+            }
+            int count = ois.readInt();
+            init(count);
+            for (String name : names) {
+                internPayee(name);
+            }
+            for (int chunk = 0; chunk < types.length; chunk++) {
+                types[chunk] = new byte[CHUNK_SIZE];
+                amounts[chunk] = new long[CHUNK_SIZE];
+                counterparties[chunk] = new int[CHUNK_SIZE];
+            }
+            for (int i = 0; i < count; i++) {
+                types[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = ois.readByte();
+            }
+            for (int i = 0; i < count; i++) {
+                amounts[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = ois.readLong();
+            }
+            for (int i = 0; i < count; i++) {
+                counterparties[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = ois.readInt();
+            }
+            size = count;
+        } catch (Exception e){
+            System.out.println("TransactionLog readObject Failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Used in serialization when class inheritance is not as expected*
+     * @throws ObjectStreamException when an attempt to deserialize a back-reference fails.
+     */
+    private void readObjectNoData() throws ObjectStreamException {
+        System.out.println("TransactionLog readObjectNoData, this should never happen!");
+        System.exit(-1);
+    }
+}
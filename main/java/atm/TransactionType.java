@@ -0,0 +1,51 @@
+package atm;
+
+/**
+ * The kinds of {@link Transaction} an account can record. Each type has a one byte code used to store it in a
+ * {@link TransactionLog}, and the label transactions were known by before the log existed.
+ */
+public enum TransactionType {
+    TRANSFER_IN("TransferIn"),
+    TRANSFER_OUT("TransferOut"),
+    WITHDRAW("withdraw"),
+    DEPOSIT("deposit"),
+    PAY_BILL("paybill");
+
+    /**
+     * Every type, indexed by its code.
+     */
+    private static final TransactionType[] BY_CODE = values();
+
+    /**
+     * The name of the type (i.e TransferIn, withdraw, etc.)
+     */
+    private final String label;
+
+    TransactionType(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return the one byte code the type is stored as
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Returns the type stored as the given code.
+     *
+     * @param code a code returned by {@link TransactionType#code()}
+     * @return the type with that code
+     */
+    public static TransactionType fromCode(byte code) {
+        return BY_CODE[code];
+    }
+
+    /**
+     * @return the name of the type (i.e TransferIn, withdraw, etc.)
+     */
+    public String getLabel() {
+        return label;
+    }
+}
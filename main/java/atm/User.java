@@ -56,10 +56,10 @@ public class User implements Serializable {
     /**
      * Returns the net total across all of the accounts the user owns (Assets-Debts)
      *
-     * @return the net worth of the user
+     * @return the net worth of the user, in cents
      */
-    public double getNetTotal(){
-        double sum = 0;
+    public long getNetTotal(){
+        long sum = 0;
         for (Account acc : accounts){
             if (acc.getType().equals("chequing") || acc.getType().equals("savings") || acc.getType().equals("stock")) {
             sum += acc.getBalance();
@@ -94,7 +94,7 @@ public class User implements Serializable {
      * @return a boolean that is false if the stock account's balance
      *          is less than the amount needed and true otherwise
      */
-    public boolean enoughStockBalance(double amount){
+    public boolean enoughStockBalance(long amount){
         for (Account account : accounts){
             if (account.getType().equals("stock")){
                 if (account.getBalance() >= amount){
@@ -0,0 +1,302 @@
+package atm;
+
+import account.Account;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The directory of every {@link User} recognized by the ATM.
+ *
+ * <p>
+ *     Users are kept in the order they were added, which is the order they are enumerated in, and are also indexed
+ *     by username so that a user can be found without going through the whole list. If the directory is case
+ *     folded, a second index keyed on the lower-cased username is kept as well so that usernames can be looked up
+ *     regardless of case.
+ * </p>
+ *
+ * <p>
+ *     This class is not thread safe. Use {@link ConcurrentUserDirectory} if users are looked up and added from
+ *     more than one thread.
+ * </p>
+ */
+public class UserDirectory implements Serializable, Iterable<User> {
+
+    /**
+     * Every user in the order they were added.
+     */
+    private final ArrayList<User> users = new ArrayList<>();
+
+    /**
+     * Whether the directory also keeps an index of lower-cased usernames.
+     */
+    private final boolean caseFolded;
+
+    /**
+     * Maps each username to its user. Rebuilt from {@link #users} after deserialization.
+     */
+    transient Map<String, User> index;
+
+    /**
+     * Maps each lower-cased username to the first user added with that username. Null if the directory is not
+     * case folded. Rebuilt from {@link #users} after deserialization.
+     */
+    transient Map<String, User> foldedIndex;
+
+    /**
+     * UserDirectory constructor for a directory that is not case folded.
+     */
+    public UserDirectory() {
+        this(false);
+    }
+
+    /**
+     * UserDirectory constructor.
+     *
+     * @param caseFolded whether users can also be looked up regardless of the case of their username
+     */
+    public UserDirectory(boolean caseFolded) {
+        this.caseFolded = caseFolded;
+        buildIndexes();
+    }
+
+    /**
+     * Creates an empty index. Overridden by {@link ConcurrentUserDirectory} to create an index that can be read
+     * and written concurrently.
+     *
+     * @param expectedSize the number of users the index is expected to hold
+     * @return a new, empty index
+     */
+    Map<String, User> newIndex(int expectedSize) {
+        return new HashMap<>(Math.max(16, expectedSize * 4 / 3 + 1));
+    }
+
+    /**
+     * Builds the indexes from the list of users.
+     */
+    private void buildIndexes() {
+        index = newIndex(users.size());
+        foldedIndex = caseFolded ? newIndex(users.size()) : null;
+        for (User user : users) {
+            addToIndexes(user);
+        }
+    }
+
+    /**
+     * Adds a user to the indexes.
+     *
+     * @param user the user to add
+     */
+    void addToIndexes(User user) {
+        index.put(user.getUsername(), user);
+        if (foldedIndex != null) {
+            foldedIndex.putIfAbsent(fold(user.getUsername()), user);
+        }
+    }
+
+    /**
+     * @param username a username
+     * @return the username in the form it is stored in the case folded index
+     */
+    static String fold(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds a user to the directory if their username is not already taken.
+     *
+     * @param user the user to add
+     * @return true if the user was added and false if another user already has the same username
+     */
+    public boolean add(User user) {
+        if (index.containsKey(user.getUsername())) {
+            return false;
+        }
+        users.add(user);
+        addToIndexes(user);
+        return true;
+    }
+
+    /**
+     * Returns the user with the given username.
+     *
+     * @param username the username of the user
+     * @return the user with exactly this username, or null if there is none
+     */
+    public User get(String username) {
+        return index.get(username);
+    }
+
+    /**
+     * Returns the user with the given username, ignoring case. If the directory is not case folded the users are
+     * searched one by one.
+     *
+     * @param username the username of the user in any case
+     * @return the first user added whose username matches ignoring case, or null if there is none
+     */
+    public User getIgnoreCase(String username) {
+        if (foldedIndex != null) {
+            return foldedIndex.get(fold(username));
+        }
+        for (User user : users()) {
+            if (user.getUsername().equalsIgnoreCase(username)) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param username a username
+     * @return true if a user already has exactly this username
+     */
+    public boolean contains(String username) {
+        return index.containsKey(username);
+    }
+
+    /**
+     * Returns the user with the given username and password.
+     *
+     * @param username the username the person logging in typed
+     * @param password the password the person logging in typed
+     * @return the matching user, or null if the username does not exist or the password is wrong
+     */
+    public User authenticate(String username, String password) {
+        User user = index.get(username);
+        if (user != null && user.getPassword().equals(password)) {
+            return user;
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of users in the directory
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return every user in the order they were added. The list cannot be modified.
+     */
+    public List<User> users() {
+        return Collections.unmodifiableList(users);
+    }
+
+    /**
+     * Gives subclasses access to the list of users so they can guard it.
+     *
+     * @return the list of users backing this directory
+     */
+    ArrayList<User> usersList() {
+        return users;
+    }
+
+    @Override
+    public Iterator<User> iterator() {
+        return users().iterator();
+    }
+
+    /**
+     * Keeps a user in memory until they are unpinned, for callers that hold on to a user while other users are
+     * looked up. Pins are counted. Does nothing here, since every user is kept in memory; see
+     * {@link PagedUserDirectory}.
+     *
+     * @param user the user
+     */
+    public void pin(User user) {
+    }
+
+    /**
+     * Looks up a user and pins them in one step, so they cannot be pushed out between being looked up and being
+     * pinned. The user must be unpinned once the caller is done with them.
+     *
+     * @param username the username of the user
+     * @return the user, pinned, or null if there is none
+     */
+    public User getPinned(String username) {
+        User user = get(username);
+        if (user != null) {
+            pin(user);
+        }
+        return user;
+    }
+
+    /**
+     * Undoes one {@link #pin(User)} of a user.
+     *
+     * @param user the user
+     */
+    public void unpin(User user) {
+    }
+
+    /**
+     * Finds a user holding each account, for callers that have an account number but not the user, such as the
+     * journal being replayed. Goes through every user here; see {@link PagedUserDirectory} for a directory that
+     * keeps this as an index instead.
+     *
+     * @return the username of a user holding each account, by account number. The map belongs to the caller.
+     */
+    public Map<Integer, String> accountOwners() {
+        HashMap<Integer, String> owners = new HashMap<>();
+        for (User user : this) {
+            for (Account account : user.getAccounts()) {
+                owners.putIfAbsent(account.getAccountNum(), user.getUsername());
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * Pins every user held in memory and returns them. Each of them must be unpinned once the caller is done.
+     *
+     * @return every user held in memory, which is every user here
+     */
+    public List<User> pinResident() {
+        return users();
+    }
+
+    /**
+     * Used to serialize the UserDirectory object. Only the list of users is written; the indexes are rebuilt when
+     * the directory is read back.
+     *
+     * @param oos instance of the ObjectOutputStream class to serialize the UserDirectory object
+     * @throws IOException if an IO error occurs.
+     */
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        try {
+            oos.defaultWriteObject();
+        } catch (IOException e){
+            System.out.println("UserDirectory writeObject Failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Used to deserialize the UserDirectory object after the ATM reboots, rebuilding its indexes.
+     *
+     * @param ois instance of the ObjectInputStream class used to deserialize the UserDirectory object
+     * @throws ClassNotFoundException if the class of the serialized object could not be found
+     * @throws IOException if an IO error occurs
+     */
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException{
+        try{
+            ois.defaultReadObject();
+            buildIndexes();
+        } catch (Exception e){
+            System.out.println("UserDirectory readObject Failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Used in serialization when class inheritance is not as expected*
+     * @throws ObjectStreamException when an attempt to deserialize a back-reference fails.
+     */
+    private void readObjectNoData() throws ObjectStreamException {
+        System.out.println("UserDirectory readObjectNoData, this should never happen!");
+        System.exit(-1);
+    }
+}
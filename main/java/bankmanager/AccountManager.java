@@ -15,10 +15,15 @@ class AccountManager implements Serializable {
      */
     private final ATM atm;
 
+    /**
+     * The number given to the first account.
+     */
+    private static final int FIRST_ACCOUNT_NUM = 1000;
+
     /**
      * Keeps track of the last account number assigned to an account to generate unique account numbers.
      */
-    private int acct_counter = 1000;
+    private int acct_counter = FIRST_ACCOUNT_NUM;
 
     /**
      * Account Manager constructor.
@@ -29,6 +34,13 @@ class AccountManager implements Serializable {
         this.atm = atm;
     }
 
+    /**
+     * @return the number of accounts opened so far, which is the number of account numbers handed out
+     */
+    int getNumberOfAccounts() {
+        return acct_counter - FIRST_ACCOUNT_NUM;
+    }
+
     /***
      * Creates an account for user. The type of account is specified by acct_type.
      *
@@ -36,6 +48,20 @@ class AccountManager implements Serializable {
      * @param acct_type the type of account that user wants to create
      */
     public void createAccount(User user, String acct_type){
+        TransferEngine.getDefault().change(() -> {
+            addAccount(user, acct_type);
+            return true;
+        });
+    }
+
+    /**
+     * Creates an account for {@link #createAccount(User, String)}.
+     *
+     * @param user the user that wants to create a new account
+     * @param acct_type the type of account that user wants to create
+     */
+    private void addAccount(User user, String acct_type) {
+        int accountNum = acct_counter;
         // Creates a new account as specified by the parameter.
         if (acct_type.equalsIgnoreCase("chequing")) {
             createChequingAccount(user, atm);
@@ -52,6 +78,55 @@ class AccountManager implements Serializable {
             createStockAccount(user, atm);
         }
         setPrimaryAccount(user);
+        if (acct_counter != accountNum && atm.getJournal() != null) {
+            atm.getJournal().logCreateAccount(user, user.getAccounts().get(user.getAccounts().size() - 1));
+        }
+    }
+
+    /**
+     * Recreates an account that was recorded in the journal, keeping the account number it was given originally.
+     *
+     * @param user the owner of the account
+     * @param acct_type the type of the account, as returned by {@link Account#getType()}
+     * @param accountNum the account number the account was given when it was created
+     * @return the recreated account
+     */
+    public Account restoreAccount(User user, String acct_type, int accountNum){
+        Account account = newAccount(acct_type, accountNum);
+        user.getAccounts().add(account);
+        setPrimaryAccount(user);
+        acct_counter = Math.max(acct_counter, accountNum + 1);
+        return account;
+    }
+
+    /**
+     * Creates an account with a number it was already given, without giving it to a user or counting it. Does not
+     * change the Account Manager, so it can be called from several threads at once.
+     *
+     * @param acct_type the type of the account, as returned by {@link Account#getType()}
+     * @param accountNum the account number the account was given when it was created
+     * @return the new account
+     */
+    Account newAccount(String acct_type, int accountNum) {
+        if (acct_type.equalsIgnoreCase("chequing")) {
+            return new Chequing(accountNum, atm);
+        } else if (acct_type.equalsIgnoreCase("creditcard")) {
+            return new CreditCard(accountNum, atm);
+        } else if (acct_type.equalsIgnoreCase("loc")) {
+            return new LOC(accountNum, atm);
+        } else if (acct_type.equalsIgnoreCase("savings")) {
+            return new Savings(accountNum, atm);
+        }
+        return new StockAccount(accountNum, atm);
+    }
+
+    /**
+     * Sets how many accounts have been opened, so that the next account is given the number after them.
+     *
+     * @param numberOfAccounts the number of accounts opened so far
+     */
+    void restoreNumberOfAccounts(int numberOfAccounts) {
+        acct_counter = FIRST_ACCOUNT_NUM + numberOfAccounts;
     }
 
     /**
@@ -83,7 +158,7 @@ class AccountManager implements Serializable {
      */
     private void createChequingAccount(User user, ATM atm){
         user.getAccounts().add(new Chequing(acct_counter, atm));
-        System.out.println("New chequing account created.");
+        AsyncOutput.getDefault().println("New chequing account created.");
         acct_counter+=1;
     }
 
@@ -95,7 +170,7 @@ class AccountManager implements Serializable {
      */
     private void createSavingsAccount(User user, ATM atm) {
         user.getAccounts().add(new Savings(acct_counter, atm));
-        System.out.println("New savings account created.");
+        AsyncOutput.getDefault().println("New savings account created.");
         acct_counter+=1;
     }
 
@@ -107,7 +182,7 @@ class AccountManager implements Serializable {
      */
     private void createCreditCard(User user, ATM atm) {
         user.getAccounts().add(new CreditCard(acct_counter, atm));
-        System.out.println("New credit card created.");
+        AsyncOutput.getDefault().println("New credit card created.");
         acct_counter+=1;
     }
 
@@ -119,7 +194,7 @@ class AccountManager implements Serializable {
      */
     private void createLOC(User user, ATM atm) {
         user.getAccounts().add(new LOC(acct_counter, atm));
-        System.out.println("New Line of Credit created.");
+        AsyncOutput.getDefault().println("New Line of Credit created.");
         acct_counter+=1;
     }
 
@@ -131,7 +206,7 @@ class AccountManager implements Serializable {
      */
     private void createStockAccount(User user, ATM atm) {
         user.getAccounts().add(new StockAccount(acct_counter, atm));
-        System.out.println("New Stock Account created.");
+        AsyncOutput.getDefault().println("New Stock Account created.");
         acct_counter+=1;
     }
 
@@ -160,8 +235,14 @@ class AccountManager implements Serializable {
             System.out.println("Not possible to add a user this account because there are already two users sharing" +
                     "this account!");
         } else {
-            user.getAccounts().add(account);
-            account.setIsJoint(true);
+            TransferEngine.getDefault().change(() -> {
+                user.getAccounts().add(account);
+                account.setIsJoint(true);
+                if (atm.getJournal() != null) {
+                    atm.getJournal().logJoinAccount(user, account);
+                }
+                return true;
+            });
         }
     }
 
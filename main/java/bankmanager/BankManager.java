@@ -1,6 +1,8 @@
 package bankmanager;
 import atm.*;
 import account.*;
+import metrics.Metrics;
+import metrics.Timer;
 
 import java.io.*;
 
@@ -10,6 +12,16 @@ import java.io.*;
  * {@link AccountManager}, {@link TransactionManager}, and {@link UserManager}.
  */
 public class BankManager implements Serializable{
+    /**
+     * Times the creation of users with their five accounts.
+     */
+    private static final Timer CREATE_USER = Metrics.getDefault().timer("bankmanager.createuser");
+
+    /**
+     * Times undoing transactions.
+     */
+    private static final Timer UNDO = Metrics.getDefault().timer("bankmanager.undo");
+
     /**
      * Instance of {@link ATM}
      */
@@ -37,31 +49,18 @@ public class BankManager implements Serializable{
     public BankManager(ATM atm){
         this.atm = atm;
         this.accountManager = new AccountManager(atm);
-        this.transactionManager = new TransactionManager();
+        this.transactionManager = new TransactionManager(atm);
         this.userManager = new UserManager(atm);
 
     }
 
-    //Bank manager will always add 100 new bills when restocking
-
     /**
-     * Restocks the ATM by increasing the number of each type of bill to 100 bills
-     * and updates alerts.txt to confirm restock.
-     * @param index represents the type of bill in {@link Bills} to restock ($5, $10, $20, $50)
+     * Restocks the ATM by topping a cassette up to its fill level (100 bills for the standard cassettes). Restocking a type of bill that was low clears its
+     * alert.
+     * @param index the number of the cassette in {@link Bills} to restock, counting from 1
      */
     public void restock(int index){
-        atm.getBills().setBills(index, 100);
-        try {
-            //System.out.println(System.getProperty("user.dir"));
-            File file = new File(System.getProperty("user.dir") + "/phase1/src/main/Text Files/alerts.txt");
-            FileOutputStream is = new FileOutputStream(file);
-            OutputStreamWriter osw = new OutputStreamWriter(is);
-            Writer w = new BufferedWriter(osw);
-            w.write("Alerts addressed");
-            w.close();
-        } catch (IOException e) {
-            System.err.println("Problem writing to the file alerts.txt");
-        }
+        atm.getBills().restock(index - 1);
     }
 
     /**
@@ -99,28 +98,95 @@ public class BankManager implements Serializable{
      *
      * @param username the username the user uses to log in
      * @param password the password the user uses to log in
-     * @return a new {@link User}
+     * @return a new {@link User}, or null if the username is already taken
      * @see User
      */
     public User createUser(String username, String password) {
-        User user = userManager.createUser(username, password);
+        long start = CREATE_USER.start();
+        User[] created = new User[1];
+        TransferEngine.getDefault().change(() -> {
+            User user = userManager.createUser(username, password);
+            if (user == null) {
+                return false;
+            }
+            if (atm.getJournal() != null) {
+                atm.getJournal().logCreateUser(user);
+            }
+
+            accountManager.createAccount(user, "chequing");
+            accountManager.createAccount(user, "creditcard");
+            accountManager.createAccount(user, "loc");
+            accountManager.createAccount(user, "savings");
+            accountManager.createAccount(user, "stock");
+            created[0] = user;
+            return true;
+        });
+        CREATE_USER.stop(start);
+        return created[0];
+    }
 
-        accountManager.createAccount(user, "chequing");
-        accountManager.createAccount(user, "creditcard");
-        accountManager.createAccount(user, "loc");
-        accountManager.createAccount(user, "savings");
-        accountManager.createAccount(user, "stock");
+    /**
+     * Recreates a user recorded in the journal through {@link UserManager}, without opening any accounts for them.
+     *
+     * @param username the username the user uses to log in
+     * @param password the password the user uses to log in
+     * @return the recreated {@link User}
+     */
+    public User restoreUser(String username, String password) {
+        return userManager.restoreUser(username, password);
+    }
 
-        return user;
+    /**
+     * Recreates an account recorded in the journal through {@link AccountManager}.
+     *
+     * @param user who the account belongs to
+     * @param acct_type type of the account
+     * @param accountNum the account number the account was originally given
+     * @return the recreated account
+     */
+    public Account restoreAccount(User user, String acct_type, int accountNum) {
+        return accountManager.restoreAccount(user, acct_type, accountNum);
+    }
+
+    /**
+     * Creates an account with a number it was already given, without giving it to a user, through
+     * {@link AccountManager}. Can be called from several threads at once.
+     *
+     * @param acct_type type of the account
+     * @param accountNum the account number the account was originally given
+     * @return the new account
+     */
+    public Account newAccount(String acct_type, int accountNum) {
+        return accountManager.newAccount(acct_type, accountNum);
+    }
+
+    /**
+     * Sets how many accounts have been opened, through {@link AccountManager}.
+     *
+     * @param numberOfAccounts the number of accounts opened so far
+     */
+    public void restoreNumberOfAccounts(int numberOfAccounts) {
+        accountManager.restoreNumberOfAccounts(numberOfAccounts);
     }
 
     /**
      * Undoes the last transaction performed by one of the user's accounts.
      * @param user the user who owns the account
      * @param acct the account the user used to perform the transaction
+     * @return true if the transaction was undone
+     */
+    public boolean undoTransaction(User user, Account acct) {
+        long start = UNDO.start();
+        boolean undone = transactionManager.undoTransaction(user, acct);
+        UNDO.stop(start);
+        return undone;
+    }
+
+    /**
+     * @return the number of accounts opened so far
      */
-    public void undoTransaction(User user, Account acct) {
-        transactionManager.undoTransaction(user, acct);
+    public int getNumberOfAccounts() {
+        return accountManager.getNumberOfAccounts();
     }
 
     /**
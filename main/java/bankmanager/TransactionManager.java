@@ -1,37 +1,52 @@
 package bankmanager;
 import account.Account;
+import account.TransferEngine;
 import atm.*;
 
 import java.io.*;
-import java.util.ArrayList;
 
 /**
  * The Transaction Manager handles all requests related to {@link Transaction} as delegated by the {@link BankManager}.
  */
 class TransactionManager implements Serializable {
 
+    /**
+     * Instance of {@link ATM}
+     */
+    private final ATM atm;
+
+    /**
+     * Transaction Manager constructor.
+     *
+     * @param atm Instance of {@link ATM}
+     */
+    public TransactionManager(ATM atm) {
+        this.atm = atm;
+    }
+
     /**
      * Used to undo any type of transaction except Deposits because deposits cannot be reversed.
      * @param usr the user that owns the account
      * @param acct the account used to perform the transaction being reversed
+     * @return true if the transaction was undone
      */
-    public void undoTransaction(User usr, Account acct){
+    public boolean undoTransaction(User usr, Account acct){
         if (acct.getLastTransaction() == null){
-            System.out.println("No previous transactions");
-        } else {
-            String transactionType = acct.getLastTransaction().getTransactionType();
-
-            if (transactionType.equalsIgnoreCase("deposit")) {
-                System.out.println("Deposit Transactions Cannot be undone!");
-            } else if (transactionType.equals("withdraw")) {
-                undoWithdraw(acct);
-            } else if (transactionType.equalsIgnoreCase("transferin")){
-                undoTransferIn(usr, acct);
-            } else if (transactionType.equalsIgnoreCase("transferout")) {
-                undoTransferOut(usr, acct);
-            } else if (transactionType.equalsIgnoreCase("paybill")){
-                undoPayBill(acct);
-            }
+            AsyncOutput.getDefault().println("No previous transactions");
+            return false;
+        }
+        switch (acct.getLastTransaction().getType()) {
+            case WITHDRAW:
+                return undoWithdraw(acct);
+            case TRANSFER_IN:
+                return undoTransferIn(usr, acct);
+            case TRANSFER_OUT:
+                return undoTransferOut(usr, acct);
+            case PAY_BILL:
+                return undoPayBill(acct);
+            default:
+                AsyncOutput.getDefault().println("Deposit Transactions Cannot be undone!");
+                return false;
         }
     }
 
@@ -39,72 +54,98 @@ class TransactionManager implements Serializable {
      * Used to undo transactions of type Withdrawal.
      *
      * @param acct the account from which money was withdrawn
+     * @return true if the withdrawal was undone
      */
-    private void undoWithdraw(Account acct) {
-        acct.addMoney(acct.getLastTransaction().getTransactionAmount());
-        removeLastTransactionFromList(acct);
+    private boolean undoWithdraw(Account acct) {
+        return TransferEngine.getDefault().withLock(acct, () -> {
+            acct.addMoney(acct.getLastTransaction().getTransactionAmount());
+            removeLastTransactionFromList(acct, null);
+            return true;
+        });
     }
 
     /**
-     * Used to undo transactions of type Transfer In.
+     * Used to undo transactions of type Transfer In, by transferring the money back. The undo is refused if the
+     * money has already been spent.
      * @param usr the user who transferred the money
      * @param acct the account the money was transferred into
+     * @return true if the transfer was undone
      */
-    private void undoTransferIn(User usr, Account acct) {
+    private boolean undoTransferIn(User usr, Account acct) {
+        Transaction last = acct.getLastTransaction();
         Account TransferAcct = null;
         for (Account acct2:usr.getAccounts()){
-            if (acct2.getAccountNum() == acct.getLastTransaction().getTransactionAccount()){
+            if (acct2.getAccountNum() == last.getTransactionAccount()){
                 TransferAcct = acct2;
             }
         }
         if (TransferAcct != null) {
-            double amount = acct.getLastTransaction().getTransactionAmount();
-            acct.removeMoney(amount);
-            TransferAcct.addMoney(amount);
-            removeLastTransactionFromList(acct);
+            Account from = TransferAcct;
+            boolean undone = TransferEngine.getDefault().transfer(acct, from, last.getTransactionAmount(),
+                    () -> removeLastTransactionFromList(acct, from));
+            if (!undone) {
+                AsyncOutput.getDefault().println("This transaction cannot be undone: insufficient funds");
+            }
+            return undone;
         }
+        return false;
     }
 
     /**
-     * Used to undor transactions of type Transfer Out.
+     * Used to undo transactions of type Transfer Out, by transferring the money back. The undo is refused if the
+     * money has already been spent.
      *
      * @param usr the user who transferred the money
      * @param acct the account the money was transferred out of
+     * @return true if the transfer was undone
      */
-    private void undoTransferOut(User usr, Account acct) {
+    private boolean undoTransferOut(User usr, Account acct) {
+        Transaction last = acct.getLastTransaction();
         // TransferAct refers to the account that was transferred from.
         Account TransferAcct = null;
         for (Account acct2 : usr.getAccounts()) {
-            if (acct2.getAccountNum() == acct.getLastTransaction().getTransactionAccount()) {
+            if (acct2.getAccountNum() == last.getTransactionAccount()) {
                 TransferAcct = acct2;
             }
         }
         if (TransferAcct != null) {
-            double amount = acct.getLastTransaction().getTransactionAmount();
-            acct.addMoney(amount);
-            TransferAcct.removeMoney(amount);
-            removeLastTransactionFromList(acct);
+            Account to = TransferAcct;
+            boolean undone = TransferEngine.getDefault().transfer(to, acct, last.getTransactionAmount(),
+                    () -> removeLastTransactionFromList(acct, to));
+            if (!undone) {
+                AsyncOutput.getDefault().println("This transaction cannot be undone: insufficient funds");
+            }
+            return undone;
         }
+        return false;
     }
 
     /**
      * Used to undo transactions of type Pay Bill.
      *
      * @param acct the account used to pay a bill from
+     * @return true if the payment was undone
      */
-    private void undoPayBill(Account acct) {
-        acct.addMoney(acct.getLastTransaction().getTransactionAmount());
-        removeLastTransactionFromList(acct);
+    private boolean undoPayBill(Account acct) {
+        return TransferEngine.getDefault().withLock(acct, () -> {
+            acct.addMoney(acct.getLastTransaction().getTransactionAmount());
+            removeLastTransactionFromList(acct, null);
+            return true;
+        });
     }
 
     /**
-     * Deletes the last {@link Transaction} from the account's list of transactions
+     * Deletes the last {@link Transaction} from the account's transactions and records the undo in the
+     * journal.
      *
      * @param account the account the transaction is being removed from
+     * @param counterparty the other account whose balance changed in the undo, or null if there is none
      */
-    private void removeLastTransactionFromList(Account account) {
-        ArrayList<Transaction> lst = account.getListOfTransactions();
-        lst.remove(lst.size() - 1);
+    private void removeLastTransactionFromList(Account account, Account counterparty) {
+        account.removeLastTransaction();
+        if (atm.getJournal() != null) {
+            atm.getJournal().logUndo(account, counterparty);
+        }
     }
 
 
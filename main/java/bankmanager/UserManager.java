@@ -29,26 +29,32 @@ class UserManager implements Serializable {
      *
      * @param username the username this user uses to log in
      * @param password the password this user uses to log in
-     * @return the new {@link User} created
+     * @return the new {@link User} created, or null if a user with that username already exists
      */
     public User createUser(String username, String password){
-        ArrayList<Account> accounts = new ArrayList<>();
-        boolean contains = false;
-        for (User parameter : atm.getListOfUsers()) {
-            if (parameter.getUsername().equals(username)) {
-                contains = true;
-            }
-        } if (!contains){
-            User newUser = new User(username, password, accounts);
-            System.out.println("New user: " + username + " created");
-            atm.addUserToList(newUser);
+        User newUser = new User(username, password, new ArrayList<Account>());
+        // adding the user is the check, so two users with the same name created at once cannot both be added.
+        if (atm.addUserToList(newUser)) {
+            AsyncOutput.getDefault().println("New user: " + username + " created");
             return newUser;
-        } else{
-            System.out.println("User name already exists, please try a different name");
         }
+        AsyncOutput.getDefault().println("User name already exists, please try a different name");
         return null;
     }
 
+    /**
+     * Recreates a user that was recorded in the journal. The user's accounts are recreated separately.
+     *
+     * @param username the username this user uses to log in
+     * @param password the password this user uses to log in
+     * @return the recreated {@link User}
+     */
+    public User restoreUser(String username, String password){
+        User user = new User(username, password, new ArrayList<Account>());
+        atm.addUserToList(user);
+        return user;
+    }
+
     /**
      * Used in serialization to store the User Manager object.
      * @param oos instance of the ObjectOutputStream class to write the user manager object
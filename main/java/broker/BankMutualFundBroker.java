@@ -2,8 +2,10 @@ package broker;
 
 import atm.ATM;
 import atm.User;
+import investments.Investment;
 import investments.MutualFund;
-import investments.Stock;
+import investments.Position;
+import investments.Quote;
 
 import java.io.*;
 import java.util.Calendar;
@@ -59,7 +61,7 @@ public class BankMutualFundBroker implements Serializable {
      * @return true if the broker has successfully bought a valid stock in the mutual fund and false otherwise
      */
     private boolean checkIfStockOwned(MutualFund fund, String symbol, int shares){
-        for(Stock stock : fund.getStocks()){
+        for(Position stock : fund.getStocks()){
             if (stock.getSymbol().equals(symbol)){
                 stock.increaseNumShares(shares);
                 System.out.println("The bank has bought " + shares + " shares of the stock " + stock.getName()
@@ -77,9 +79,9 @@ public class BankMutualFundBroker implements Serializable {
      */
     private void buyStockBank(MutualFund fund, String symbol, int shares){
         String stockName = atm.getBroker().companyNameFromSymbol(symbol);
-        Stock bought = new Stock(stockName, symbol,0.0);
-        bought.setNumShares(shares);
-        bought.updateStock(date);
+        Quote quote = atm.getBroker().getQuoteBook().intern(symbol, stockName);
+        quote.updateStock(date);
+        Position bought = new Position(quote, shares);
         fund.getStocks().add(bought);
         System.out.println("The bank has bought " + shares + " shares of the stock " + bought.getName()
                 + " into the " + fund.getName() + " fund");
@@ -110,7 +112,7 @@ public class BankMutualFundBroker implements Serializable {
      * @return true if it is possible to sell the stock and false otherwise
      */
     private boolean sellPossible(MutualFund fund, String symbol, int shares){
-        for (Stock stock : fund.getStocks()) {
+        for (Position stock : fund.getStocks()) {
             if (stock.getSymbol().equals(symbol)) {
                 if (stock.getNumShares() >= shares) {
                     stock.decreaseNumShares(shares);
@@ -130,11 +132,11 @@ public class BankMutualFundBroker implements Serializable {
      * invest in a fund.
      *
      * @param fund the fund that the broker wants to refill
-     * @param amount the amount to increase the fund buy
+     * @param amount the amount to increase the fund buy, in cents
      */
-    public void refillFunds(MutualFund fund, double amount) {
-        double oldValue = fund.getValue();
-        double newValue = oldValue + amount;
+    public void refillFunds(MutualFund fund, long amount) {
+        long oldValue = fund.getValue();
+        long newValue = oldValue + amount;
         calculateRefill(fund, newValue);
         updateShareHolders(fund, oldValue, newValue);
     }
@@ -143,12 +145,12 @@ public class BankMutualFundBroker implements Serializable {
      * Calculates how many stocks should be bought for each stock in the fund.
      *
      * @param fund the fund that needs to be refilled
-     * @param amount the amount of the fund needs to be
+     * @param amount the amount of the fund needs to be, in cents
      */
-    private void calculateRefill(MutualFund fund, double amount){
-        double netWorth = fund.getValue();
+    private void calculateRefill(MutualFund fund, long amount){
+        long netWorth = fund.getValue();
         int  increase =  (int) (amount / netWorth) + 1;
-        for (Stock stock: fund.getStocks()){
+        for (Position stock: fund.getStocks()){
             stock.setNumShares(stock.getNumShares() * increase);
         }
     }
@@ -160,13 +162,12 @@ public class BankMutualFundBroker implements Serializable {
      * @param oldValue the old value of the fund
      * @param newValue the new value of the fund
      */
-    private void updateShareHolders(MutualFund fund, double oldValue, double newValue){
-        double increase = newValue / oldValue;
+    private void updateShareHolders(MutualFund fund, long oldValue, long newValue){
+        double increase = (double) newValue / oldValue;
         for (User shareholder : fund.getInvestors().keySet()){
-            double oldPercent = fund.getInvestors().get(shareholder).get(1);
-            double newPercent = oldPercent / increase;
-            fund.getInvestors().get(shareholder).set(1, newPercent);
-            shareholder.getInvestmentPortfolio().getMutualFundPortfolio().get(fund).set(1, newPercent);
+            // the fund and the shareholder's portfolio share the same Investment.
+            Investment investment = fund.getInvestors().get(shareholder);
+            investment.setPercentOwned(investment.getPercentOwned() / increase);
         }
     }
 
@@ -2,9 +2,10 @@ package broker;
 
 import atm.*;
 import bankmanager.*;
-// import org.json.JSONObject;
+import investments.QuoteBook;
 
 import java.io.*;
+import java.util.List;
 
 
 /***
@@ -29,19 +30,38 @@ public class Broker implements Serializable {
     private final MutualFundsBroker mutualFundsBroker;
 
     /**
-     * Used for the JSON library.
+     * The one quote of every stock held by a user or a mutual fund.
      */
-    private final String json;
+    private final QuoteBook quotes;
+
+    /**
+     * Every stock symbol we are sourcing from mapped to its company name. Not serialized; it is rebuilt from
+     * stocklist.txt every time the ATM boots.
+     */
+    private transient SymbolTable symbols;
 
     public Broker(ATM atm, BankManager bm) {
         this.atm = atm;
+        this.quotes = new QuoteBook();
         this.stockBroker = new StockBroker(atm);
         this.mutualFundsBroker = new MutualFundsBroker(atm, this);
-        JSONObject jsonObject = loadJSONFromText();
-        json = jsonObject.toString();
+        this.symbols = loadSymbolTable();
         bm.createUser("broker", "password");
 
     }
+
+    /**
+     * Broker constructor for an ATM read back from a snapshot, which already has the broker's user.
+     *
+     * @param atm the ATM the broker works for
+     */
+    public Broker(ATM atm) {
+        this.atm = atm;
+        this.quotes = new QuoteBook();
+        this.stockBroker = new StockBroker(atm);
+        this.mutualFundsBroker = new MutualFundsBroker(atm, this);
+        this.symbols = loadSymbolTable();
+    }
     /**
      * Gets a StockBroker instance.
      * @return stockbroker
@@ -50,6 +70,14 @@ public class Broker implements Serializable {
         return stockBroker;
     }
 
+    /**
+     * Gets the quotes shared by every position in a stock.
+     * @return quotes
+     */
+    public QuoteBook getQuoteBook() {
+        return quotes;
+    }
+
     /**
      * Gets a MutualFundsBroker instance.
      * @return mutualFundsBroker
@@ -60,33 +88,33 @@ public class Broker implements Serializable {
 
 
     /**
-     * Loads a JSONObject that contains a mapping of stocks to their names.
+     * Loads the table of every stock symbol and its company name from stocklist.txt.
      *
-     * @return a JSONObject that contains a mapping of stocks to their names
+     * @return a SymbolTable that contains a mapping of stocks to their names
      */
-    private JSONObject loadJSONFromText(){
-        JSONObject json = null;
+    private SymbolTable loadSymbolTable(){
+        SymbolTable table = null;
         try {
             File file = new File(System.getProperty("user.dir") + "/phase1/src/main/Text Files/stocklist.txt");
-            FileInputStream is = new FileInputStream(file);
-            InputStreamReader isr = new InputStreamReader(is);
-            Reader rd = new BufferedReader(isr);
-            StringBuilder sb = new StringBuilder();
-            int cp;
-            while ((cp = rd.read()) != -1) {
-                sb.append((char) cp);
-            }
-            json = new JSONObject(sb.toString());
-            return json;
+            table = SymbolTable.load(file);
         } catch (FileNotFoundException e) {
             System.out.println("FileNotFound! Why don't you have stocklist.txt?");
             System.exit(-1);
         } catch (IOException e){
             System.out.println("IOException! This shouldn't happen");
+            System.out.println(e.getMessage());
             System.exit(-1);
         }
-        return json;
+        return table;
     }
+
+    /**
+     * @return the table of every stock symbol we are sourcing from
+     */
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
     /**
      * Checks if a given symbol is in the database we are sourcing from.
      *
@@ -94,9 +122,9 @@ public class Broker implements Serializable {
      * @return true if a stock symbol is in the database, false otherwise.
      */
     public boolean checkIfStockIsValid(String symbol){
-        JSONObject jsonObject = new JSONObject(json);
-        return jsonObject.has(symbol);
+        return symbols.contains(symbol);
     }
+
     /**
      * Returns the company name given a stock symbol.
      *
@@ -104,8 +132,17 @@ public class Broker implements Serializable {
      * @return the company name of the stock symbol.
      */
     public String companyNameFromSymbol(String symbol){
-        JSONObject jsonObject = new JSONObject(json);
-        return jsonObject.getString(symbol);
+        return symbols.nameOf(symbol);
+    }
+
+    /**
+     * Returns every stock symbol that starts with a prefix, so a user can search for a symbol.
+     *
+     * @param prefix the start of the symbol
+     * @return every matching symbol in alphabetical order
+     */
+    public List<String> symbolsStartingWith(String prefix){
+        return symbols.symbolsStartingWith(prefix);
     }
 
     /**
@@ -134,6 +171,7 @@ public class Broker implements Serializable {
     private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException{
         try{
             ois.defaultReadObject();
+            symbols = loadSymbolTable();
         } catch (Exception e){
             System.out.println("Broker readObject Failed!");
             System.out.println(e.getMessage());
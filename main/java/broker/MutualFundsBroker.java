@@ -4,6 +4,7 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import account.*;
 import atm.ATM;
 import atm.User;
@@ -28,7 +29,7 @@ public class MutualFundsBroker implements Serializable {
     public MutualFundsBroker(ATM atm, Broker broker){
         this.atm = atm;
         date = atm.getDate();
-        this.mutualFundsStocks = new MutualFundsStocks(atm);
+        this.mutualFundsStocks = new MutualFundsStocks(atm, broker.getQuoteBook());
         this.lowRiskFund = new MutualFund(1, "lowRiskFund1", mutualFundsStocks.getLowRiskStocks());
         this.mediumRiskFund = new MutualFund(2, "mediumRiskFund1", mutualFundsStocks.getMediumRiskStocks());
         this.highRiskFund = new MutualFund(3, "highRiskFund1", mutualFundsStocks.getHighRiskStocks());
@@ -38,6 +39,11 @@ public class MutualFundsBroker implements Serializable {
 
     }
 
+    /**
+     * @return the date the funds were set up, which is the date their stocks are priced at
+     */
+    public Calendar getDate() {return (Calendar) date.clone();}
+
     /**
      *
      * @return a Mutual Fund with low risk stocks in it.
@@ -56,23 +62,29 @@ public class MutualFundsBroker implements Serializable {
     public MutualFund getHighRiskFund() {return highRiskFund;}
 
     /**
-     * Used to access {@link UserMutualFundBroker#buyMutualFunds(User, MutualFund, double)} by the interface.
+     * Used to access {@link UserMutualFundBroker#buyMutualFunds(User, MutualFund, long)} by the interface.
      * @param user the user buying into the fund
      * @param mutualFund the mutual fund the user is buying into
-     * @param amount dollar amount invested in the mutual fund
+     * @param amount amount invested in the mutual fund, in cents
      */
-    public void buyMutualFunds(User user, MutualFund mutualFund, double amount) {
-        userMutualFundBroker.buyMutualFunds(user, mutualFund, amount);
+    public void buyMutualFunds(User user, MutualFund mutualFund, long amount) {
+        TransferEngine.getDefault().change(() -> {
+            userMutualFundBroker.buyMutualFunds(user, mutualFund, amount);
+            return true;
+        });
     }
 
     /**
-     * Used to access {@link UserMutualFundBroker#sellMutualFunds(User, MutualFund, double)} from the interface.
+     * Used to access {@link UserMutualFundBroker#sellMutualFunds(User, MutualFund, long)} from the interface.
      * @param user the user selling their mutual fund shares
      * @param mutualFund the mutual fund the user is selling
-     * @param amount dollar amount taken out of the mutual fund investment
+     * @param amount amount taken out of the mutual fund investment, in cents
      */
-    public void sellMutualFunds(User user, MutualFund mutualFund, double amount) {
-        userMutualFundBroker.sellMutualFunds(user, mutualFund, amount);
+    public void sellMutualFunds(User user, MutualFund mutualFund, long amount) {
+        TransferEngine.getDefault().change(() -> {
+            userMutualFundBroker.sellMutualFunds(user, mutualFund, amount);
+            return true;
+        });
     }
 
     public String toString(User user) {
@@ -100,12 +112,15 @@ public class MutualFundsBroker implements Serializable {
     }
 
     /**
-     * Updates the price the fund every day upon ATM restart.
+     * Updates the price the fund every day upon ATM restart. A stock held by several funds is updated once, since
+     * they share its quote.
      */
     public void updateMutualFunds() {
-        for(Stock stock : lowRiskFund.getStocks()){stock.updateStock(date);}
-        for(Stock stock : mediumRiskFund.getStocks()){stock.updateStock(date);}
-        for(Stock stock : highRiskFund.getStocks()){stock.updateStock(date);}
+        HashSet<Quote> quotes = new HashSet<>();
+        for(Position stock : lowRiskFund.getStocks()){quotes.add(stock.getQuote());}
+        for(Position stock : mediumRiskFund.getStocks()){quotes.add(stock.getQuote());}
+        for(Position stock : highRiskFund.getStocks()){quotes.add(stock.getQuote());}
+        for(Quote quote : quotes){quote.updateStock(date);}
     }
     private void writeObject(ObjectOutputStream oos) throws IOException {
         oos.defaultWriteObject();
@@ -0,0 +1,221 @@
+package broker;
+
+import atm.ATM;
+import atm.Money;
+import atm.User;
+import investments.MutualFund;
+import investments.PriceCache;
+import investments.Position;
+import investments.Quote;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Refreshes the price of every stock held in the ATM at once: every user's investment portfolio and the three
+ * mutual funds.
+ *
+ * <p>
+ *     A refresh runs in three phases. Collect finds the shared {@link Quote} of every position, so a symbol held
+ *     in many portfolios is only priced once. Fetch looks up the distinct symbols through the {@link PriceCache} on
+ *     a bounded pool of threads. Apply writes each fetched price to its quote, which every position in that symbol
+ *     reads; a symbol that could not be priced keeps its last known price. The time spent in each phase is
+ *     reported in a {@link Report}.
+ * </p>
+ */
+public class PriceRefresher {
+
+    /**
+     * Number of symbols fetched at the same time, unless set with the atm.refresh.threads system property.
+     */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    /**
+     * The ATM instance being used.
+     */
+    private final ATM atm;
+
+    /**
+     * Where prices are looked up.
+     */
+    private final PriceCache cache;
+
+    /**
+     * The most symbols fetched at the same time.
+     */
+    private final int parallelism;
+
+    /**
+     * The outcome of one refresh.
+     */
+    public static class Report {
+        private final int symbols;
+        private final int positions;
+        private final List<String> failed;
+        private final long collectMillis;
+        private final long fetchMillis;
+        private final long applyMillis;
+
+        Report(int symbols, int positions, List<String> failed, long collectMillis, long fetchMillis,
+               long applyMillis) {
+            this.symbols = symbols;
+            this.positions = positions;
+            this.failed = failed;
+            this.collectMillis = collectMillis;
+            this.fetchMillis = fetchMillis;
+            this.applyMillis = applyMillis;
+        }
+
+        /**
+         * @return the number of distinct symbols priced
+         */
+        public int getSymbols() {return symbols;}
+
+        /**
+         * @return the number of positions whose price was refreshed
+         */
+        public int getPositions() {return positions;}
+
+        /**
+         * @return the symbols that could not be priced
+         */
+        public List<String> getFailed() {return failed;}
+
+        /**
+         * @return milliseconds spent finding the quote of every position
+         */
+        public long getCollectMillis() {return collectMillis;}
+
+        /**
+         * @return milliseconds spent fetching prices
+         */
+        public long getFetchMillis() {return fetchMillis;}
+
+        /**
+         * @return milliseconds spent writing prices to quotes
+         */
+        public long getApplyMillis() {return applyMillis;}
+
+        public String toString() {
+            return "Refreshed " + positions + " positions (" + symbols + " symbols, " + failed.size() + " failed) in "
+                    + (collectMillis + fetchMillis + applyMillis) + " ms: collect " + collectMillis + " ms, fetch "
+                    + fetchMillis + " ms, apply " + applyMillis + " ms";
+        }
+    }
+
+    /**
+     * PriceRefresher constructor.
+     *
+     * @param atm the ATM instance being used
+     * @param cache where prices are looked up
+     * @param parallelism the most symbols fetched at the same time
+     */
+    public PriceRefresher(ATM atm, PriceCache cache, int parallelism) {
+        this.atm = atm;
+        this.cache = cache;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * PriceRefresher constructor using the default price cache.
+     *
+     * @param atm the ATM instance being used
+     */
+    public PriceRefresher(ATM atm) {
+        this(atm, PriceCache.getDefault(), Integer.getInteger("atm.refresh.threads", DEFAULT_PARALLELISM));
+    }
+
+    /**
+     * Updates every stock in the ATM to its price on the ATM's date.
+     *
+     * @return the outcome of the refresh
+     */
+    public Report refreshAll() {
+        long start = System.nanoTime();
+        LinkedHashMap<String, Quote> bySymbol = new LinkedHashMap<>();
+        int positions = collect(bySymbol);
+        long collected = System.nanoTime();
+
+        HashMap<String, Double> prices = fetch(bySymbol.keySet());
+        long fetched = System.nanoTime();
+
+        ArrayList<String> failed = new ArrayList<>();
+        for (Map.Entry<String, Quote> entry : bySymbol.entrySet()) {
+            Double price = prices.get(entry.getKey());
+            if (price == null) {
+                failed.add(entry.getKey());
+            } else {
+                entry.getValue().setCurrentPrice(Money.fromDollars(price));
+            }
+        }
+        long applied = System.nanoTime();
+
+        return new Report(bySymbol.size(), positions, failed, (collected - start) / 1000000,
+                (fetched - collected) / 1000000, (applied - fetched) / 1000000);
+    }
+
+    /**
+     * Finds the quote of every position held in the ATM.
+     *
+     * @param bySymbol filled with every symbol held mapped to its quote, in the order they were found
+     * @return the number of positions found
+     */
+    private int collect(LinkedHashMap<String, Quote> bySymbol) {
+        int positions = 0;
+        for (User user : atm.getUserDirectory()) {
+            for (Position stock : user.getInvestmentPortfolio().getStockPortfolio()) {
+                bySymbol.putIfAbsent(stock.getSymbol(), stock.getQuote());
+                positions += 1;
+            }
+        }
+        MutualFundsBroker funds = atm.getBroker().getMutualFundsBroker();
+        for (MutualFund fund : new MutualFund[]{funds.getLowRiskFund(), funds.getMediumRiskFund(),
+                funds.getHighRiskFund()}) {
+            for (Position stock : fund.getStocks()) {
+                bySymbol.putIfAbsent(stock.getSymbol(), stock.getQuote());
+                positions += 1;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Fetches the price of every symbol, at most parallelism at a time.
+     *
+     * @param symbols the distinct symbols to price
+     * @return every symbol that could be priced mapped to its price
+     */
+    private HashMap<String, Double> fetch(Collection<String> symbols) {
+        HashMap<String, Double> prices = new HashMap<>();
+        if (symbols.isEmpty()) {
+            return prices;
+        }
+        final Calendar date = (Calendar) atm.getDate().clone();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, symbols.size()), r -> {
+            Thread t = new Thread(r, "price-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            LinkedHashMap<String, Future<Double>> pending = new LinkedHashMap<>();
+            for (String symbol : symbols) {
+                pending.put(symbol, pool.submit(() -> cache.closingPrice(symbol, date)));
+            }
+            for (Map.Entry<String, Future<Double>> entry : pending.entrySet()) {
+                try {
+                    prices.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() instanceof IOException ? e.getCause() : e;
+                    System.out.println("Could not update " + entry.getKey() + ": " + cause.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return prices;
+    }
+}
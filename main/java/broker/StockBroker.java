@@ -2,14 +2,20 @@ package broker;
 
 import account.Account;
 import account.Asset;
+import account.TransferEngine;
 import atm.ATM;
+import atm.Money;
 import atm.User;
 import investments.InvestmentPortfolio;
 import investments.MutualFundsStocks;
-import investments.Stock;
+import investments.Position;
+import investments.Quote;
+import metrics.Metrics;
+import metrics.Timer;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 /**
  * Class to Implement Functions of Broker related to stocks.
@@ -18,6 +24,12 @@ import java.util.ArrayList;
  */
 public class StockBroker implements Serializable {
 
+    /**
+     * Times buying and selling stocks, including fetching the price of a stock bought for the first time.
+     */
+    private static final Timer BUYS = Metrics.getDefault().timer("broker.buy");
+    private static final Timer SELLS = Metrics.getDefault().timer("broker.sell");
+
     private final ATM atm;
 
     /**
@@ -33,25 +45,96 @@ public class StockBroker implements Serializable {
      * Buys stocks of given share amount for a user.
      *
      * @param symbol: the symbol in String of the stock the user wants to purchase.
-     * @param Iv : The user's investment portfolio.
+     * @param user : The user buying the stocks.
      * @param sa : The user's stocks account.
      * @param shares : The number of shares to be purchased.
      */
-    public void buyStocks(String symbol, int shares, Account sa, InvestmentPortfolio Iv) {
-
-        boolean bought = false;
-        boolean contains = buyOwnedStock(symbol, shares, sa, Iv);
-
+    public void buyStocks(String symbol, int shares, Account sa, User user) {
         if (shares <= 0){
             System.out.println("Enter Share amount greater than 0");
-        } else if (!contains){
-            bought = buyNewStock(symbol, shares, sa, Iv);
         }
-
-        if (!bought){
+        if (buy(symbol, shares, sa, user)){
+            System.out.println("You have bought " + shares + " shares of "
+                    + nameOf(symbol, user.getInvestmentPortfolio()));
+        } else {
             System.out.println("Stocks not purchase because of insufficient funds or invalid symbol");}
     }
 
+    /**
+     * Returns the name of a stock in a portfolio, to show the user what they bought or sold.
+     * @param symbol: Symbol of stock.
+     * @param Iv : The user's investment portfolio.
+     * @return the name of the stock, or the symbol if it is not in the portfolio
+     */
+    private String nameOf(String symbol, InvestmentPortfolio Iv) {
+        for (Position st : Iv.getStockPortfolio()) {
+            if (st.getSymbol().equalsIgnoreCase(symbol)) {
+                return st.getName();
+            }
+        }
+        return symbol;
+    }
+
+    /**
+     * Buys stocks of given share amount for a user and reports whether they were bought.
+     *
+     * @param symbol: the symbol in String of the stock the user wants to purchase.
+     * @param shares : The number of shares to be purchased.
+     * @param sa : The user's stocks account.
+     * @param user : The user buying the stocks.
+     * @return : Returns True if bought.
+     */
+    public boolean buy(String symbol, int shares, Account sa, User user) {
+        long start = BUYS.start();
+        InvestmentPortfolio Iv = user.getInvestmentPortfolio();
+        // the price of a stock bought for the first time is fetched before the change, so a snapshot waiting for
+        // changes to finish, and every change queued behind it, never waits on the market data provider.
+        Quote quote = shares > 0 && positionOf(symbol, Iv) == null && atm.getBroker().checkIfStockIsValid(symbol)
+                ? fetchQuote(symbol) : null;
+        // the stocks account is locked so the record of the trade is not written out of order with another change
+        // to the account.
+        boolean bought = TransferEngine.getDefault().withLock(sa, () -> {
+            if (shares <= 0) {
+                return false;
+            }
+            boolean paid = positionOf(symbol, Iv) != null
+                    ? buyOwnedStock(symbol, shares, sa, Iv)
+                    : quote != null && buyNewStock(quote, shares, sa, Iv);
+            if (paid) {
+                journalTrade(user, sa, positionOf(symbol, Iv));
+            }
+            return paid;
+        });
+        BUYS.stop(start);
+        return bought;
+    }
+
+    /**
+     * @param symbol: the symbol of a stock.
+     * @param Iv: The user's investment portfolio.
+     * @return : Returns the position of the portfolio in the stock, or null if it holds no shares of it.
+     */
+    private Position positionOf(String symbol, InvestmentPortfolio Iv) {
+        for (Position st : Iv.getStockPortfolio()) {
+            if (st.getSymbol().equalsIgnoreCase(symbol)) {
+                return st;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records a trade in the ATM's journal, if it has one.
+     * @param user: The user who traded.
+     * @param sa: The user's stocks account.
+     * @param st: The user's position in the stock traded, after the trade.
+     */
+    private void journalTrade(User user, Account sa, Position st) {
+        if (atm.getJournal() != null) {
+            atm.getJournal().logTrade(user, sa, st);
+        }
+    }
+
     /**
      * Buys stocks of given share amount for a user (if the user already owns some shares of it)
      *
@@ -63,12 +146,11 @@ public class StockBroker implements Serializable {
      */
     private boolean buyOwnedStock(String symbol, int shares, Account sa, InvestmentPortfolio Iv) {
         if (shares > 0) {
-            for (Stock st : Iv.getStockPortfolio()) {
+            for (Position st : Iv.getStockPortfolio()) {
                 if (st.getSymbol().equalsIgnoreCase(symbol)) {
-                    if ((st.getValue() * shares) <= sa.getBalance()) {
-                        sa.removeMoney(st.getValue() * shares);
+                    long cost = Math.multiplyExact(st.getValue(), (long) shares);
+                    if (sa.tryRemoveMoney(cost)) {
                         st.increaseNumShares(shares);
-                        System.out.println("You have bought " + shares + " shares of " + st.getName());
                         return true;
                     }
                 }
@@ -81,45 +163,34 @@ public class StockBroker implements Serializable {
     /**
      * Helper function to buyStocks(), purchases a stock not already owned by User.
      *
-     * @param symbol: the symbol in String of the stock the user wants to purchase.
+     * @param quote: the quote of the stock the user wants to purchase, already updated to the current price.
      * @param shares: The number of shares to be purchased.
      * @param sa: The user's stocks account.
      * @param Iv: The user's investment portfolio.
      * @return : Returns True if bought.
      */
-    private boolean buyNewStock(String symbol, int shares, Account sa, InvestmentPortfolio Iv) {
-        boolean valid = atm.getBroker().checkIfStockIsValid(symbol);
-        if (valid){
-        Stock st = fetchStock(symbol);
-        if (st.getValue() != 0 && shares > 0){
-            if (st.getValue() * shares <= sa.getBalance()){
+    private boolean buyNewStock(Quote quote, int shares, Account sa, InvestmentPortfolio Iv) {
+        if (quote.getValue() != 0 && shares > 0){
+            long cost = Math.multiplyExact(quote.getValue(), (long) shares);
+            if (sa.tryRemoveMoney(cost)){
+                Position st = new Position(quote, shares);
                 Iv.getStockPortfolio().add(st);
-                st.setNumShares(shares);
-                sa.removeMoney(st.getValue() * shares);
-                System.out.println("You have bought " + shares + " shares of " + st.getName());
                 return true;
             }
-        } else {
-            if (shares <= 0){
-                System.out.println("Enter share amount greater than 0");
-            }
-            else {
-                System.out.println("There is no stock of symbol: " + symbol);
-            }
-        }}
+        }
         return false;
     }
 
     /**
-     * Returns a stock of the given symbol.
+     * Returns the shared quote of the given symbol, updated to the current price.
      * @param symbol: Symbol of stock.
-     * @return Stock object of given symbol
+     * @return Quote object of given symbol
      */
-    private Stock fetchStock(String symbol){
+    private Quote fetchQuote(String symbol){
         String stockName = atm.getBroker().companyNameFromSymbol(symbol);
-        Stock st = new Stock(stockName, symbol,0);
-        st.updateStock(atm.getDate());
-        return st;
+        Quote quote = atm.getBroker().getQuoteBook().intern(symbol, stockName);
+        quote.updateStock(atm.getDate());
+        return quote;
     }
 
 
@@ -128,48 +199,71 @@ public class StockBroker implements Serializable {
      * @param SA: The user's stocks account.
      * @param symbol: Symbol of stock to be sold.
      * @param shares: Number of shares to be sold.
-     * @param IV: The user's stock portfolio.
-     */
-    public void sellStocks(Asset SA, String symbol, int shares, InvestmentPortfolio IV) {
-        boolean sold = false;
-        for (Stock st: IV.getStockPortfolio()){
-            if (st.getSymbol().equalsIgnoreCase(symbol)){
-                if (shares <= st.getNumShares()) {
-                    st.decreaseNumShares(shares);
-                    SA.addMoney(shares * st.getValue());
-                    sold = true;
-                    System.out.println("You have sold " + shares + " shares of " + st.getName());
-                    break;
-                }
-            }
-        }
-        if (!sold){
+     * @param user: The user selling the stocks.
+     */
+    public void sellStocks(Asset SA, String symbol, int shares, User user) {
+        if (sell(SA, symbol, shares, user)){
+            System.out.println("You have sold " + shares + " shares of "
+                    + nameOf(symbol, user.getInvestmentPortfolio()));
+        } else {
             System.out.println("Not enough shares, or stock is not owned by user. ");
         }
     }
 
+    /**
+     * Sells stocks of given symbol and share amount for user and reports whether they were sold.
+     * @param SA: The user's stocks account.
+     * @param symbol: Symbol of stock to be sold.
+     * @param shares: Number of shares to be sold.
+     * @param user: The user selling the stocks.
+     * @return : Returns True if sold.
+     */
+    public boolean sell(Asset SA, String symbol, int shares, User user) {
+        long start = SELLS.start();
+        boolean sold = TransferEngine.getDefault().withLock(SA, () -> {
+            for (Position st: user.getInvestmentPortfolio().getStockPortfolio()){
+                if (st.getSymbol().equalsIgnoreCase(symbol)){
+                    if (shares > 0 && shares <= st.getNumShares()) {
+                        st.decreaseNumShares(shares);
+                        SA.addMoney(shares * st.getValue());
+                        journalTrade(user, SA, st);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        SELLS.stop(start);
+        return sold;
+    }
+
 
     /**
-     * Updates all the stocks in the atm to their current value.
+     * Updates all the stocks in the atm to their current value. A stock held by several users is updated once,
+     * since they share its quote.
      */
     public void updateAllStocks() {
-        for (User user:atm.getListOfUsers()){
-            for (Stock st:user.getInvestmentPortfolio().getStockPortfolio()){
-                st.updateStock(atm.getDate());
+        HashSet<Quote> quotes = new HashSet<>();
+        for (User user : atm.getUserDirectory()){
+            for (Position st:user.getInvestmentPortfolio().getStockPortfolio()){
+                quotes.add(st.getQuote());
             }
         }
+        for (Quote quote : quotes){
+            quote.updateStock(atm.getDate());
+        }
     }
 
     /**
      * Returns the total money a user owns in stocks.
      * @param user: User that owns stocks.
-     * @return Amount of type double, of the user's networth in Stocks.
+     * @return the user's networth in Stocks, in cents.
      */
 
-    public double getTotalStockWorth(User user) {
-        double total = 0.0;
-        for (Stock st: user.getInvestmentPortfolio().getStockPortfolio()){
-            total += st.getValue() * st.getNumShares();
+    public long getTotalStockWorth(User user) {
+        long total = 0;
+        for (Position st: user.getInvestmentPortfolio().getStockPortfolio()){
+            total += st.getMarketValue();
         }
         return total;
     }
@@ -179,9 +273,9 @@ public class StockBroker implements Serializable {
      * @param user: user object.
      */
     public void viewUserStocks(User user) {
-        ArrayList<Stock> Iv = user.getInvestmentPortfolio().getStockPortfolio();
+        ArrayList<Position> Iv = user.getInvestmentPortfolio().getStockPortfolio();
         System.out.println("User Currently owns: "+Iv.size()+" types of stocks");
-        for (Stock st: Iv){
+        for (Position st: Iv){
             System.out.println("Stock: "+st.getSymbol()+"; Shares: "+st.getNumShares());
         }
     }
@@ -193,9 +287,9 @@ public class StockBroker implements Serializable {
      */
     public String stocksToString(User user){
         String totalStocks = "";
-        for (Stock stock : user.getInvestmentPortfolio().getStockPortfolio()){
+        for (Position stock : user.getInvestmentPortfolio().getStockPortfolio()){
             totalStocks += stock.toString();
-        } return totalStocks + "\nTotal value of all your stocks: " + getTotalStockWorth(user) + "$";
+        } return totalStocks + "\nTotal value of all your stocks: " + Money.format(getTotalStockWorth(user)) + "$";
     }
 
     /**
@@ -206,7 +300,7 @@ public class StockBroker implements Serializable {
      * @return boolean that is true if the user owns shares of that stock and false otherwise
      */
     public boolean checkIfUserHasStock(User user, String symbol) {
-        for (Stock stock : user.getInvestmentPortfolio().getStockPortfolio()) {
+        for (Position stock : user.getInvestmentPortfolio().getStockPortfolio()) {
             if (stock.getSymbol().equals(symbol)) {
                 return true;
             }
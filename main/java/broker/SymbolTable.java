@@ -0,0 +1,269 @@
+package broker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A read-only index of every stock symbol we are sourcing from, mapped to the name of its company.
+ *
+ * <p>
+ *     The table is built once from stocklist.txt, a JSON object of the form {"SYMBOL": "Company name", ...}. The
+ *     file is memory mapped and parsed in a single pass, without building a JSON object for it. Symbols are kept in
+ *     a hash map for constant time validation and name lookup, and in a sorted array for prefix search.
+ * </p>
+ *
+ * <p>
+ *     A SymbolTable is immutable once built and is never serialized; {@link Broker} rebuilds it from the file
+ *     every time the ATM boots.
+ * </p>
+ */
+public final class SymbolTable {
+
+    /**
+     * Maps each symbol to the name of its company.
+     */
+    private final HashMap<String, String> names;
+
+    /**
+     * Every symbol, sorted.
+     */
+    private final String[] sortedSymbols;
+
+    /**
+     * SymbolTable constructor.
+     *
+     * @param names maps each symbol to the name of its company
+     */
+    private SymbolTable(HashMap<String, String> names) {
+        this.names = names;
+        this.sortedSymbols = names.keySet().toArray(new String[0]);
+        Arrays.sort(this.sortedSymbols);
+    }
+
+    /**
+     * Builds the table from a stock list file.
+     *
+     * @param file the stock list file
+     * @return the table of every symbol in the file
+     * @throws IOException if the file cannot be read or is not a JSON object of strings
+     */
+    public static SymbolTable load(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(buffer);
+        }
+    }
+
+    /**
+     * Builds the table from the bytes of a stock list.
+     *
+     * @param in the UTF-8 encoded stock list
+     * @return the table of every symbol in the stock list
+     * @throws IOException if the stock list is not a JSON object of strings
+     */
+    static SymbolTable parse(ByteBuffer in) throws IOException {
+        HashMap<String, String> names = new HashMap<>(8192);
+        ByteArrayOutputStream scratch = new ByteArrayOutputStream(64);
+        skipWhitespace(in);
+        expect(in, '{');
+        skipWhitespace(in);
+        if (peek(in) == '}') {
+            return new SymbolTable(names);
+        }
+        while (true) {
+            skipWhitespace(in);
+            String symbol = readString(in, scratch);
+            skipWhitespace(in);
+            expect(in, ':');
+            skipWhitespace(in);
+            String name = peek(in) == '"' ? readString(in, scratch) : readBareValue(in);
+            names.put(symbol, name);
+            skipWhitespace(in);
+            byte next = peek(in);
+            in.position(in.position() + 1);
+            if (next == '}') {
+                return new SymbolTable(names);
+            } else if (next != ',') {
+                throw new IOException("Expected , or } in stock list at byte " + (in.position() - 1));
+            }
+            // stocklist.txt ends with a comma before the closing brace, which the old JSON parser allowed.
+            skipWhitespace(in);
+            if (peek(in) == '}') {
+                return new SymbolTable(names);
+            }
+        }
+    }
+
+    /**
+     * Checks if a given symbol is in the table.
+     *
+     * @param symbol unique identifier of a stock
+     * @return true if the symbol is in the table, false otherwise
+     */
+    public boolean contains(String symbol) {
+        return names.containsKey(symbol);
+    }
+
+    /**
+     * Returns the company name of a symbol.
+     *
+     * @param symbol unique identifier of a stock
+     * @return the name of the company, or null if the symbol is not in the table
+     */
+    public String nameOf(String symbol) {
+        return names.get(symbol);
+    }
+
+    /**
+     * Returns every symbol that starts with a prefix, in alphabetical order.
+     *
+     * @param prefix the start of the symbols to find
+     * @return the matching symbols, which may be empty
+     */
+    public List<String> symbolsStartingWith(String prefix) {
+        int start = Arrays.binarySearch(sortedSymbols, prefix);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        ArrayList<String> matches = new ArrayList<>();
+        for (int i = start; i < sortedSymbols.length && sortedSymbols[i].startsWith(prefix); i++) {
+            matches.add(sortedSymbols[i]);
+        }
+        return matches;
+    }
+
+    /**
+     * @return the number of symbols in the table
+     */
+    public int size() {
+        return sortedSymbols.length;
+    }
+
+    /**
+     * @param in the stock list being parsed
+     * @return the next byte, without consuming it
+     * @throws IOException if there are no bytes left
+     */
+    private static byte peek(ByteBuffer in) throws IOException {
+        if (!in.hasRemaining()) {
+            throw new IOException("Unexpected end of stock list");
+        }
+        return in.get(in.position());
+    }
+
+    /**
+     * Consumes the next byte, which must be c.
+     *
+     * @param in the stock list being parsed
+     * @param c the expected character
+     * @throws IOException if the next byte is not c
+     */
+    private static void expect(ByteBuffer in, char c) throws IOException {
+        if (!in.hasRemaining() || in.get() != c) {
+            throw new IOException("Expected " + c + " in stock list at byte " + (in.position() - 1));
+        }
+    }
+
+    /**
+     * Consumes any whitespace.
+     *
+     * @param in the stock list being parsed
+     */
+    private static void skipWhitespace(ByteBuffer in) {
+        while (in.hasRemaining()) {
+            byte b = in.get(in.position());
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            in.position(in.position() + 1);
+        }
+    }
+
+    /**
+     * Reads a JSON string, handling escape sequences.
+     *
+     * @param in positioned at the opening quote
+     * @param scratch buffer used to collect the bytes of the string
+     * @return the string, without quotes
+     * @throws IOException if the string is not terminated
+     */
+    private static String readString(ByteBuffer in, ByteArrayOutputStream scratch) throws IOException {
+        expect(in, '"');
+        scratch.reset();
+        while (true) {
+            if (!in.hasRemaining()) {
+                throw new IOException("Unterminated string in stock list");
+            }
+            byte b = in.get();
+            if (b == '"') {
+                return scratch.toString(StandardCharsets.UTF_8.name());
+            } else if (b == '\\') {
+                if (!in.hasRemaining()) {
+                    throw new IOException("Unterminated string in stock list");
+                }
+                byte escaped = in.get();
+                switch (escaped) {
+                    case 'n': scratch.write('\n'); break;
+                    case 't': scratch.write('\t'); break;
+                    case 'r': scratch.write('\r'); break;
+                    case 'b': scratch.write('\b'); break;
+                    case 'f': scratch.write('\f'); break;
+                    case 'u': {
+                        String c = String.valueOf(readHex(in));
+                        if (Character.isHighSurrogate(c.charAt(0)) && in.remaining() >= 6
+                                && in.get(in.position()) == '\\' && in.get(in.position() + 1) == 'u') {
+                            in.position(in.position() + 2);
+                            c += readHex(in);
+                        }
+                        byte[] utf8 = c.getBytes(StandardCharsets.UTF_8);
+                        scratch.write(utf8, 0, utf8.length);
+                        break;
+                    }
+                    default: scratch.write(escaped); break;
+                }
+            } else {
+                scratch.write(b);
+            }
+        }
+    }
+
+    /**
+     * Reads the four hex digits of a unicode escape.
+     *
+     * @param in positioned just after the u that starts the escape
+     * @return the escaped character
+     * @throws IOException if the stock list ends before the four digits or they are not hex digits
+     */
+    private static char readHex(ByteBuffer in) throws IOException {
+        if (in.remaining() < 4) {
+            throw new IOException("Unterminated string in stock list");
+        }
+        byte[] hex = new byte[4];
+        in.get(hex);
+        try {
+            return (char) Integer.parseInt(new String(hex, StandardCharsets.US_ASCII), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad unicode escape in stock list at byte " + (in.position() - 4));
+        }
+    }
+
+    /**
+     * Reads a value that is not a string (a number, true, false or null) as its text.
+     *
+     * @param in positioned at the start of the value
+     * @return the text of the value
+     * @throws IOException if the stock list ends before the value does
+     */
+    private static String readBareValue(ByteBuffer in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (peek(in) != ',' && peek(in) != '}') {
+            sb.append((char) in.get());
+        }
+        return sb.toString().trim();
+    }
+}
@@ -2,11 +2,12 @@ package broker;
 
 import account.Account;
 import atm.ATM;
+import atm.Money;
 import atm.User;
+import investments.Investment;
 import investments.MutualFund;
 
 import java.io.*;
-import java.util.ArrayList;
 import java.util.HashMap;
 
 /***
@@ -30,11 +31,11 @@ public class UserMutualFundBroker implements Serializable {
     /***
      * Calculates the broker fee for buying this mutual fund.
      *
-     * @param amount the amount that the mutual fund is bought for
-     * @return returns the broker free
+     * @param amount the amount that the mutual fund is bought for, in cents
+     * @return returns the broker free, 1% of amount rounded to the nearest cent
      */
-    private double calculateBrokerFree(double amount){
-        double fee = amount / 100;
+    private long calculateBrokerFree(long amount){
+        long fee = Money.scale(amount, 1, 100);
         return fee;
     }
 
@@ -43,17 +44,17 @@ public class UserMutualFundBroker implements Serializable {
      *
      * @param user the user that wants to sell mutual funds
      * @param fund the fund that the user wants to sell
-     * @param amount the amount that the user wants to sell
+     * @param amount the amount that the user wants to sell, in cents
      */
-    public void sellMutualFunds(User user, MutualFund fund, double amount){
-        double currentInvestment = calculateUserMoney(user, fund);
+    public void sellMutualFunds(User user, MutualFund fund, long amount){
+        long currentInvestment = calculateUserMoney(user, fund);
         if(amount <= currentInvestment){
-            double sold = (-1 * amount) / 2;
+            long sold = Money.scale(-amount, 1, 2);
             updateFundInvestors(user, fund, sold);
             for (Account account: user.getAccounts()){
                 if (account.getType().equals("stock")){
                     account.addMoney(amount);
-                    System.out.println("You have sold " + amount + "$ of your " + fund.getName() + " fund investment");
+                    System.out.println("You have sold " + Money.format(amount) + "$ of your " + fund.getName() + " fund investment");
                     break;
                 }
             }
@@ -67,13 +68,13 @@ public class UserMutualFundBroker implements Serializable {
      *
      * @param user the user that would like to see how much their investment is worth
      * @param fund the fund that the user has invested in
-     * @return the money that user's investment is worth
+     * @return the money that user's investment is worth, in cents
      */
-    private double calculateUserMoney(User user, MutualFund fund){
-        HashMap<MutualFund, ArrayList<Double>> portfolio = user.getInvestmentPortfolio().getMutualFundPortfolio();
-        double percentOwned = portfolio.get(fund).get(1);
-        double fundTotalValue = fund.getValue();
-        return (fundTotalValue / 100) * percentOwned;
+    private long calculateUserMoney(User user, MutualFund fund){
+        HashMap<MutualFund, Investment> portfolio = user.getInvestmentPortfolio().getMutualFundPortfolio();
+        double percentOwned = portfolio.get(fund).getPercentOwned();
+        long fundTotalValue = fund.getValue();
+        return Money.scale(fundTotalValue, percentOwned / 100);
     }
 
 
@@ -82,10 +83,10 @@ public class UserMutualFundBroker implements Serializable {
      *
      * @param user the user that would like to buy into a mutual fund
      * @param fund the fund that the user would like to buy into
-     * @param amount the amount that the user wants to buy
+     * @param amount the amount that the user wants to buy, in cents
      */
-    public void buyMutualFunds(User user, MutualFund fund, double amount){
-        double total = calculateBrokerFree(amount) + amount;
+    public void buyMutualFunds(User user, MutualFund fund, long amount){
+        long total = calculateBrokerFree(amount) + amount;
         boolean enoughStockBalance = false;
         for (Account account: user.getAccounts()){
             if (account.getType().equals("stock")){
@@ -105,16 +106,16 @@ public class UserMutualFundBroker implements Serializable {
      *
      * @param user the user that would like to invest
      * @param fund the mutual fund the stock is being added to
-     * @param amount the dollar amount equivalent of stock shares to buy
+     * @param amount the amount equivalent of stock shares to buy, in cents
      */
-    private void refillToSell(User user, MutualFund fund, double amount){
+    private void refillToSell(User user, MutualFund fund, long amount){
         if (!possibleToBuy(fund, amount)){
             bankMutualFundBroker.refillFunds(fund, amount);}
         updateFundInvestors(user, fund, amount);
         for (Account account: user.getAccounts()){
             if (account.getType().equals("stock")){
                 account.removeMoney(amount);
-                System.out.println("The broker has invested " + amount + "$ into " + fund.getName() + " fund for you");
+                System.out.println("The broker has invested " + Money.format(amount) + "$ into " + fund.getName() + " fund for you");
                 break;
             }
         }
@@ -125,17 +126,17 @@ public class UserMutualFundBroker implements Serializable {
      * Checks the percentage of the fund that has been bought.
      *
      * @param fund the fund that is to be checked
-     * @param amount the amount that is bought
+     * @param amount the amount that is bought, in cents
      * @return true if it is possible to buy this amount and false otherwise
      */
-    private boolean possibleToBuy(MutualFund fund, double amount) {
+    private boolean possibleToBuy(MutualFund fund, long amount) {
         if (fund.getValue() < amount) {
             return false;
         } else {
             double totalPercent = 0.0;
-            double percentOfFund = fund.getValue() / amount;
+            double percentOfFund = (double) fund.getValue() / amount;
             for (User user : fund.getInvestors().keySet()) {
-                totalPercent += fund.getInvestors().get(user).get(1);
+                totalPercent += fund.getInvestors().get(user).getPercentOwned();
             }
             return (totalPercent + percentOfFund) <= 100;
         }
@@ -148,15 +149,13 @@ public class UserMutualFundBroker implements Serializable {
      *
      * @param user the user that has purchased a fund
      * @param fund the fund that the user has purchased into
-     * @param amount the amount that the user has purchased
+     * @param amount the amount that the user has purchased, in cents
      */
-    private void updateFundInvestors(User user, MutualFund fund, double amount){
-        double percentOfFund = amount / fund.getValue() * 100;
-        boolean found = findFundInvestors(user, fund, (amount /2));
+    private void updateFundInvestors(User user, MutualFund fund, long amount){
+        double percentOfFund = (double) amount / fund.getValue() * 100;
+        boolean found = findFundInvestors(user, fund, amount);
         if(!found){
-            ArrayList<Double> investment = new ArrayList<>();
-            investment.add(amount);
-            investment.add(percentOfFund);
+            Investment investment = new Investment(amount, percentOfFund);
             user.getInvestmentPortfolio().setMutualFundsPortfolio(fund, investment);
             fund.setInvestors(user, investment);}
     }
@@ -166,22 +165,18 @@ public class UserMutualFundBroker implements Serializable {
      *
      * @param user the user that has invested
      * @param fund the fund that the user has invested into
-     * @param amount the amount that the user has invested
+     * @param amount the amount that the user has invested, in cents
      * @return true if the user has successfully invested in a fund and the fund has updated accordingly, false otherwise
      */
-    private boolean findFundInvestors(User user, MutualFund fund, double amount){
-        double percentOfFund = amount / fund.getValue() * 100;
-        HashMap<MutualFund, ArrayList<Double>> userInvestments = user.getInvestmentPortfolio().getMutualFundPortfolio();
-        boolean found = false;
-        for (MutualFund userFund : userInvestments .keySet()){
-            if(userFund.equals(fund)){
-                userInvestments.get(userFund).set(0, userInvestments.get(userFund).get(0) + amount);
-                userInvestments.get(userFund).set(1, userInvestments.get(userFund).get(1) + percentOfFund);
-                fund.getInvestors().get(user).set(0, fund.getInvestors().get(user).get(0) + amount);
-                fund.getInvestors().get(user).set(1, fund.getInvestors().get(user).get(1) + percentOfFund);
-                found = true;
-                break;}}
-        return found;
+    private boolean findFundInvestors(User user, MutualFund fund, long amount){
+        double percentOfFund = (double) amount / fund.getValue() * 100;
+        // the user's portfolio and the fund share the same Investment, so it is only updated once.
+        Investment investment = user.getInvestmentPortfolio().getMutualFundPortfolio().get(fund);
+        if (investment == null){
+            return false;
+        }
+        investment.add(amount, percentOfFund);
+        return true;
     }
 
     /***
@@ -192,12 +187,12 @@ public class UserMutualFundBroker implements Serializable {
      */
     //Calculate the %profit or loss of the user's investmentPortfolio in mutual funds
     private double calculateInvestmentIncrease(User user){
-        double invested = 0.0;
-        double netWorth = 0.0;
+        long invested = 0;
+        long netWorth = 0;
         for (MutualFund fund : user.getInvestmentPortfolio().getMutualFundPortfolio().keySet()){
-            invested += user.getInvestmentPortfolio().getMutualFundPortfolio().get(fund).get(0);
-            netWorth += (fund.getValue() * (user.getInvestmentPortfolio().getMutualFundPortfolio().get(fund).get(1) / 100));
-        } return ((netWorth - invested)/ invested) * 100;
+            invested += user.getInvestmentPortfolio().getMutualFundPortfolio().get(fund).getInvested();
+            netWorth += calculateUserMoney(user, fund);
+        } return ((double) (netWorth - invested)/ invested) * 100;
     }
 
     /***
@@ -209,14 +204,14 @@ public class UserMutualFundBroker implements Serializable {
     // prints the funds the user invested in and how much their investment is worth currently
     public String toString(User user){
         String mutualFundInvestments = "";
-        double total = 0.0;
+        long total = 0;
         for (MutualFund fund : user.getInvestmentPortfolio().getMutualFundPortfolio().keySet()){
-            double value = fund.getValue() * (user.getInvestmentPortfolio().getMutualFundPortfolio().get(fund).get(1) / 100);
+            long value = calculateUserMoney(user, fund);
             mutualFundInvestments += "\n Your mutual fund investment in " + fund.getName()
-                    + " is worth " + value + "$";
+                    + " is worth " + Money.format(value) + "$";
             total += value;
         }
-        mutualFundInvestments += "\n The total value of your mutual fund investmentPortfolio is $" + total;
+        mutualFundInvestments += "\n The total value of your mutual fund investmentPortfolio is $" + Money.format(total);
         mutualFundInvestments += "\n Your total mutual fund investment increase is " +
                 calculateInvestmentIncrease(user) + " $";
         return mutualFundInvestments;
@@ -159,7 +159,7 @@ class AccountInterface implements Serializable {
         general.printChoices(user, true, "savings");
         general.printChoices(user, true, "creditcard");
         general.printChoices(user, true, "stock");
-        System.out.println("Your net total is: " + user.getNetTotal());
+        System.out.println("Your net total is: " + Money.format(user.getNetTotal()));
 
     }
 
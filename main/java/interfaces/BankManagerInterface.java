@@ -3,6 +3,7 @@ package interfaces;
 import account.*;
 import atm.*;
 import bankmanager.*;
+import metrics.Metrics;
 
 import java.io.*;
 import java.text.ParseException;
@@ -12,7 +13,7 @@ import java.util.Scanner;
 /***
  * A class representing the bank manager menu that will be displayed in the interface for bank managers to perform
  * the required tasks: set date, create user, create account, check alerts, restock machine, undo transactions
- * for users, shut down the system.
+ * for users, shut down the system, show metrics.
  *
  */
 class BankManagerInterface implements Serializable{
@@ -84,8 +85,12 @@ class BankManagerInterface implements Serializable{
                     shutDownSystem();
                     break;
                 }
+                case "8": {
+                    showMetrics();
+                    break;
+                }
                 default: {
-                    System.out.println("There is no option " + option + ". Pick a number from 1 to 7.");
+                    System.out.println("There is no option " + option + ". Pick a number from 0 to 8.");
                     break;
                 }
             }
@@ -105,6 +110,7 @@ class BankManagerInterface implements Serializable{
         System.out.println("5. Undo transaction");
         System.out.println("6. Logout");
         System.out.println("7. Turn Off System");
+        System.out.println("8. Show Metrics");
     }
 
     /***
@@ -161,6 +167,7 @@ class BankManagerInterface implements Serializable{
         System.out.println("Type the password for the new user");
         String password = scanner.next();
         atm.getBM().createUser(username, password);
+        AsyncOutput.getDefault().flush();
     }
 
     /***
@@ -179,13 +186,10 @@ class BankManagerInterface implements Serializable{
                 System.out.println("Type in the username of the user that would like to create an account: ");
             }
             String username = scanner.next();
-            for (User parameter : atm.getListOfUsers()) {
-                if (parameter.getUsername().equals(username)) {
-                    user = parameter;
-                    general.createAccount(user);
-                    created = true;
-                    break;
-                }
+            user = general.findUser(username);
+            if (user != null) {
+                general.createAccount(user);
+                created = true;
             }
             if (count2 != 0 && !created) {
                 System.out.println("The username is not valid, please try again.");
@@ -197,29 +201,30 @@ class BankManagerInterface implements Serializable{
 
     /***
      * Method that allows the bank manager to check alerts. The ATM will alert the bank manager every time the
-     * amount of any denomination in the ATM goes below 20. This method will read from alerts.txt because
-     * every time the amount of any denomination in the ATM goes below 20, the ATM will automatically write into
-     * alerts.txt. The bank manager will be able to check this file through this method and this is a signal for the
-     * bank manager to restock the machine.
+     * amount of any denomination in the ATM runs low, and again once it has been restocked. This method prints the
+     * most recent alerts, which the ATM keeps in memory, followed by every type of bill that is still low. This is a
+     * signal for the bank manager to restock the machine.
      *
      */
     private void checkAlerts(){
-        try {System.out.println(System.getProperty("user.dir"));
-            File file = new File(System.getProperty("user.dir") + "/phase1/src/main/Text Files/alerts.txt");
-            FileInputStream is = new FileInputStream(file);
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader r = new BufferedReader(isr);
-            String line = "Alerts:";
-            System.out.println(line);
-
-            while ((line = r.readLine()) != null) {
-                System.out.println(line);
-            }
-        } catch (IOException e) {
-            System.err.println("Problem reading the file alerts.txt");
+        CashAlerts alerts = atm.getBills().getAlerts();
+        System.out.println("Alerts:");
+        for (CashAlerts.Alert alert : alerts.recent()) {
+            System.out.println(alert);
+        }
+        for (String denomination : alerts.lowDenominations()) {
+            System.out.println("ALERT " + denomination + " are low");
         }
     }
 
+    /***
+     * Shows how often each operation of the ATM has run and how long it took, and the cash, users and accounts in the
+     * ATM, see {@link Metrics}.
+     */
+    private void showMetrics(){
+        System.out.print(Metrics.getDefault().dump());
+    }
+
     /***
      * Allows the bank manager to restock the machine. The bank manager will be allowed to select the type of bill
      * to restock. The number of that type of bill the bank manager picks will increase by 100.
@@ -227,26 +232,29 @@ class BankManagerInterface implements Serializable{
      * @param bm the bank manager that is restocking the machine
      */
     private void restockMachine(BankManager bm){
+        CassetteLayout layout = atm.getBills().getLayout();
         System.out.println("Select what type of bill to restock.");
-        System.out.println("1. Five dollars, 2. Ten dollars, 3. Twenty dollars, 4. Fifty dollars");
+        StringBuilder options = new StringBuilder();
+        for (int i = 0; i < layout.size(); i++) {
+            if (i > 0) {
+                options.append(", ");
+            }
+            options.append(i + 1).append(". ").append(layout.getLabel(i));
+        }
+        System.out.println(options);
         scanner = new Scanner(System.in);
         String dollarType = scanner.next();
-        switch (dollarType) {
-            case "1":
-                bm.restock(1);
-                break;
-            case "2":
-                bm.restock(2);
-                break;
-            case "3":
-                bm.restock(3);
-                break;
-            case "4":
-                bm.restock(4);
-                break;
-            default:
-                System.out.println("There is no option " + dollarType + ". Pick a number from 1 to 4 or quit.");
-                break;
+        int cassette;
+        try {
+            cassette = Integer.parseInt(dollarType);
+        } catch (NumberFormatException e) {
+            cassette = 0;
+        }
+        if (cassette >= 1 && cassette <= layout.size()) {
+            bm.restock(cassette);
+        } else {
+            System.out.println("There is no option " + dollarType + ". Pick a number from 1 to " + layout.size()
+                    + " or quit.");
         }
     }
 
@@ -279,12 +287,13 @@ class BankManagerInterface implements Serializable{
             general.printChoices(user, false, type);
             Account account = general.selectAccount("undo its last transaction", user.getAccounts());
             atm.getBM().undoTransaction(user, account);
+            AsyncOutput.getDefault().flush();
         }
     }
 
     /***
      * The method that allows bank manager to shut down the system. When the system is shut down, all data will be
-     * serialized and stored in serialized.blob.
+     * written to a snapshot in snapshot.blob.
      *
      */
     private void shutDownSystem(){
@@ -40,6 +40,7 @@ public class GeneralInterfaceMethods implements Serializable {
     public void createAccount(User user) {
         String type = selectTypeOfAccount(false);
         atm.getBM().createAccount(user, type);
+        AsyncOutput.getDefault().flush();
     }
 
     /***
@@ -132,7 +133,7 @@ public class GeneralInterfaceMethods implements Serializable {
         StringBuilder choices = new StringBuilder();
 
         for (Account i : listOfAccounts) {
-            choices.append(i.getAccountNum()).append(", Balance: ").append(i.getBalance());
+            choices.append(i.getAccountNum()).append(", Balance: ").append(Money.format(i.getBalance()));
             if (summary) {
                 choices.append(", Last Transaction: ");
                 if (i.getLastTransaction() != null) {
@@ -237,9 +238,9 @@ public class GeneralInterfaceMethods implements Serializable {
      * Allows the user to input an amount that they would like to transfer in/out. This method also checks whether
      * the user has input the valid amount. If not, then the method will ask the user to enter again.
      *
-     * @return the amount the user has input
+     * @return the amount the user has input, in cents
      */
-    public double selectAmount() {
+    public long selectAmount() {
 
         System.out.println("Enter the desired amount you would like to transfer: ");
         scanner = new Scanner(System.in);
@@ -271,7 +272,7 @@ public class GeneralInterfaceMethods implements Serializable {
             if (!Character.isDigit(amountB.charAt(i))) {
                 valid = false;}}}
 
-        if(valid){return Double.valueOf(amount);}
+        if(valid){return Money.parse(amount);}
 
         System.out.println("The amount you entered is not possible, please enter an amount rounded to a whole number or to 2 digits.");
         return selectAmount();
@@ -284,12 +285,7 @@ public class GeneralInterfaceMethods implements Serializable {
      * @return the User with the specified username
      */
     public User findUser(String username) {
-        for (User user : atm.getListOfUsers()) {
-            if (user.getUsername().equals(username)) {
-                return user;
-            }
-        }
-        return null;
+        return atm.getUser(username);
     }
 
     /**
@@ -65,13 +65,10 @@ public class Interface implements Serializable {
             System.out.println("Login successful. Logging in as broker.");
             return "broker";
         } else {
-            for (User usr : atm.getListOfUsers()) {
-                if (usr.getUsername().equals(usernameAttempt) && usr.getPassword().equals(passwordAttempt)) {
-                    loginUser = usr;
-                    System.out.println("Login successful. Logging into " + loginUser.getUsername());
-                    return loginUser.getUsername();
-
-                }
+            loginUser = atm.getUserDirectory().authenticate(usernameAttempt, passwordAttempt);
+            if (loginUser != null) {
+                System.out.println("Login successful. Logging into " + loginUser.getUsername());
+                return loginUser.getUsername();
             }
         }
 
@@ -103,7 +100,12 @@ public class Interface implements Serializable {
                 }
                 case "2": {
                     validselection = true;
-                    userInterface.displayUserMenu(atm.getUser("broker"));
+                    User broker = atm.getUserDirectory().getPinned("broker");
+                    try {
+                        userInterface.displayUserMenu(broker);
+                    } finally {
+                        atm.getUserDirectory().unpin(broker);
+                    }
                     break;
                 }
                 default: {
@@ -58,7 +58,7 @@ class InvestmentInterface implements Serializable {
                     break;
                 case "6":
                     System.out.println("Your stocks are worth: " +
-                            atm.getBroker().getStockBroker().getTotalStockWorth(user) + "$");
+                            Money.format(atm.getBroker().getStockBroker().getTotalStockWorth(user)) + "$");
                     break;
                 case "7":
                     System.out.println(atm.getBroker().getMutualFundsBroker().toString(user));
@@ -101,6 +101,10 @@ class InvestmentInterface implements Serializable {
         String symbol = scanner.next();
 
         while (!atm.getBroker().checkIfStockIsValid(symbol)) {
+            List<String> suggestions = atm.getBroker().symbolsStartingWith(symbol.toUpperCase());
+            if (!suggestions.isEmpty()) {
+                System.out.println("Did you mean: " + suggestions.subList(0, Math.min(5, suggestions.size())));
+            }
             System.out.println("Stock symbol is not valid. Please enter again: ");
             symbol = scanner.next();
         }
@@ -115,7 +119,7 @@ class InvestmentInterface implements Serializable {
         }
 
         if (shares > 0) {
-            atm.getBroker().getStockBroker().buyStocks(symbol, shares, findStockAccount(user), user.getInvestmentPortfolio());
+            atm.getBroker().getStockBroker().buyStocks(symbol, shares, findStockAccount(user), user);
         }
         else {
             System.out.println("Please enter integer greater than 0");
@@ -150,7 +154,7 @@ class InvestmentInterface implements Serializable {
         }
 
         if (shares > 0) {
-            atm.getBroker().getStockBroker().sellStocks(findStockAccount(user), sym, shares, user.getInvestmentPortfolio());
+            atm.getBroker().getStockBroker().sellStocks(findStockAccount(user), sym, shares, user);
         }
         else {
             System.out.println("Please enter integer greater than 0.");
@@ -167,9 +171,9 @@ class InvestmentInterface implements Serializable {
         MutualFund fundToBuy = listFunds();
         System.out.println("Enter the amount you would like to invest: ");
         scanner = new Scanner(System.in);
-        String amount = scanner.next();
+        long amount = readAmount();
 
-        atm.getBroker().getMutualFundsBroker().buyMutualFunds(user, fundToBuy, Double.valueOf(amount));
+        atm.getBroker().getMutualFundsBroker().buyMutualFunds(user, fundToBuy, amount);
     }
 
     /***
@@ -192,9 +196,32 @@ class InvestmentInterface implements Serializable {
         }
 
         System.out.println("Enter the amount you would like to sell: ");
-        String amount = scanner.next();
+        long amount = readAmount();
+
+        atm.getBroker().getMutualFundsBroker().sellMutualFunds(user, fundToSell, amount);
+    }
+
+    /***
+     * Reads an amount of money greater than 0 from the scanner, asking again until one is entered.
+     *
+     * @return the amount, in cents
+     */
+    private long readAmount() {
+        long amount = -1;
+
+        while (amount == -1) {
+            try {
+                amount = Money.parse(scanner.next());
+                if (amount <= 0) {
+                    amount = -1;
+                    System.out.println("Enter an amount greater than 0");
+                }
+            } catch (Exception e) {
+                System.out.println("Enter an amount greater than 0, with at most 2 decimal places");
+            }
+        }
 
-        atm.getBroker().getMutualFundsBroker().sellMutualFunds(user, fundToSell, Double.valueOf(amount));
+        return amount;
     }
 
     /***
@@ -235,10 +262,11 @@ class InvestmentInterface implements Serializable {
      * @param user the user that would like to view their mutual funds
      */
     private void viewUserMutualFunds(User user) {
-        HashMap<MutualFund, ArrayList<Double>> mutualFundsPortfolio = user.getInvestmentPortfolio().getMutualFundPortfolio();
+        HashMap<MutualFund, Investment> mutualFundsPortfolio = user.getInvestmentPortfolio().getMutualFundPortfolio();
 
-        for (Map.Entry<MutualFund, ArrayList<Double>> entry : mutualFundsPortfolio.entrySet()) {
-            System.out.println(entry.getKey().getName() + " = " + (entry.getValue().get(1) / 100) * entry.getKey().getValue());
+        for (Map.Entry<MutualFund, Investment> entry : mutualFundsPortfolio.entrySet()) {
+            System.out.println(entry.getKey().getName() + " = " + Money.format(Money.scale(entry.getKey().getValue(),
+                    entry.getValue().getPercentOwned() / 100)));
         }
 
     }
@@ -253,9 +281,9 @@ class InvestmentInterface implements Serializable {
      * portfolio
      */
     private MutualFund findMutualFund(User user, String name) {
-        HashMap<MutualFund, ArrayList<Double>> mutualFundsPortfolio = user.getInvestmentPortfolio().getMutualFundPortfolio();
+        HashMap<MutualFund, Investment> mutualFundsPortfolio = user.getInvestmentPortfolio().getMutualFundPortfolio();
 
-        for (Map.Entry<MutualFund, ArrayList<Double>> entry : mutualFundsPortfolio.entrySet()) {
+        for (Map.Entry<MutualFund, Investment> entry : mutualFundsPortfolio.entrySet()) {
             if (entry.getKey().getName().equals(name)) {
                 return entry.getKey();
             }
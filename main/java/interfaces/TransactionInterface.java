@@ -99,6 +99,7 @@ class TransactionInterface implements Serializable {
             Chequing account = (Chequing)a;
             if (account.primaryStatus) {
                 account.deposit();
+                AsyncOutput.getDefault().flush();
                 break;
             }
         }
@@ -129,7 +130,7 @@ class TransactionInterface implements Serializable {
             if(valid){
 
                 if (Integer.valueOf(amount) % 5 == 0) {
-                    account.withdraw(Integer.valueOf(amount));
+                    account.withdraw(Integer.valueOf(amount) * Money.CENTS_PER_DOLLAR);
                     running = false;
                 }} else {
                 System.out.println("The amount you entered is not possible, please try again.");
@@ -152,7 +153,7 @@ class TransactionInterface implements Serializable {
         String typeTwo = general.selectTypeOfAccount(true);
         general.printChoices(user, false, typeTwo);
         Account accountFrom = general.selectAccount("transfer from", general.listOfAccounts(user, typeTwo));
-        double amount = general.selectAmount();
+        long amount = general.selectAmount();
 
         accountTo.transferIn(amount, accountFrom);
     }
@@ -174,7 +175,7 @@ class TransactionInterface implements Serializable {
         general.printChoices(user, false, typeTwo);
         Account accountTo = general.selectAccount("transfer to", general.listOfAccounts(user, typeTwo));
 
-        double amount = general.selectAmount();
+        long amount = general.selectAmount();
 
         accountFrom.transferOut(amount, accountTo);
     }
@@ -192,7 +193,7 @@ class TransactionInterface implements Serializable {
         System.out.println("Enter the name of the receiver of the bill: ");
         scanner = new Scanner(System.in);
         String receiver = scanner.next();
-        double amount = general.selectAmount();
+        long amount = general.selectAmount();
 
         accountFrom.payBill(amount, receiver.trim());
     }
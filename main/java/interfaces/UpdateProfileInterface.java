@@ -3,7 +3,6 @@ package interfaces;
 import atm.*;
 import account.*;
 import bankmanager.*;
-import com.sun.xml.internal.bind.v2.TODO;
 
 import java.io.*;
 import java.util.Scanner;
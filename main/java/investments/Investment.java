@@ -0,0 +1,72 @@
+package investments;
+
+import java.io.*;
+
+/***
+ * A user's investment in a mutual fund: how much they have put into the fund and what percentage of the fund they
+ * own through it. The same Investment is held by the user's {@link InvestmentPortfolio} and by the
+ * {@link MutualFund}, so updating it once updates both.
+ */
+public class Investment implements Serializable {
+    /***
+     * The amount the user has invested in the fund, in cents.
+     */
+    private long invested;
+
+    /***
+     * The percentage of the fund the user owns through this investment.
+     */
+    private double percentOwned;
+
+    /***
+     * Constructor for Investment.
+     *
+     * @param invested the amount the user has invested in the fund, in cents
+     * @param percentOwned the percentage of the fund the user owns through this investment
+     */
+    public Investment(long invested, double percentOwned){
+        this.invested = invested;
+        this.percentOwned = percentOwned;
+    }
+
+    /***
+     * @return the amount the user has invested in the fund, in cents
+     */
+    public long getInvested(){return invested;}
+
+    /***
+     * @return the percentage of the fund the user owns through this investment
+     */
+    public double getPercentOwned(){return percentOwned;}
+
+    /***
+     * Adds to the investment, or takes from it if amount is negative.
+     *
+     * @param amount the amount added to the investment, in cents
+     * @param percent the percentage of the fund added to what the user owns
+     */
+    public void add(long amount, double percent){
+        invested += amount;
+        percentOwned += percent;
+    }
+
+    /***
+     * Changes the percentage of the fund the user owns, for example when the fund grows.
+     *
+     * @param percentOwned the percentage of the fund the user owns through this investment
+     */
+    public void setPercentOwned(double percentOwned){this.percentOwned = percentOwned;}
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException{
+        ois.defaultReadObject();
+    }
+
+    private void readObjectNoData() throws ObjectStreamException {
+        System.out.println("readObjectNoData, this should never happen!");
+        System.exit(-1);
+    }
+}
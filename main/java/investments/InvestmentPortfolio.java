@@ -12,21 +12,20 @@ import java.util.HashMap;
  */
 public class InvestmentPortfolio implements Serializable {
 
-    /** An array list of stocks the user has invested in. */
-    private final ArrayList<Stock> stockPortfolio = new ArrayList<>();
+    /** An array list of the positions the user holds in stocks. */
+    private final ArrayList<Position> stockPortfolio = new ArrayList<>();
 
-    /** A hash map that stores the mutual fund the user has invested in as a key and stores an array list containing
-     * two values: [amount user invested in the mutual fund, the percentage of the fund the user owns through this
-     * investment]. */
-    private final HashMap<MutualFund, ArrayList<Double>> mutualFundsPortfolio = new HashMap<>();
-    // maps name of the fund: [amount user invested, %owned of the fund through this investment]
+    /** A hash map that stores the mutual fund the user has invested in as a key and the user's {@link Investment}
+     * in it: the amount user invested in the mutual fund and the percentage of the fund the user owns through this
+     * investment. */
+    private final HashMap<MutualFund, Investment> mutualFundsPortfolio = new HashMap<>();
 
     /***
      * Returns the stock portfolio of the user.
      *
      * @return the stock portfolio
      */
-    public ArrayList<Stock> getStockPortfolio(){
+    public ArrayList<Position> getStockPortfolio(){
         return stockPortfolio;
     }
 
@@ -34,20 +33,19 @@ public class InvestmentPortfolio implements Serializable {
      * Adds a mutual fund to the mutual funds portfolio to signal that the user has invested into this fund.
      *
      * @param fund the mutual fund the user has invested in
-     * @param value an array list containing the amount the user invested in the mutual fund and the percentage of the
-     *              the user owns through this investment, in this order
+     * @param value the amount the user invested in the mutual fund and the percentage of the fund the user owns
+     *              through this investment
      */
-    public void setMutualFundsPortfolio(MutualFund fund, ArrayList<Double> value){
+    public void setMutualFundsPortfolio(MutualFund fund, Investment value){
         mutualFundsPortfolio.put(fund, value);
     }
 
     /***
      * Returns the mutual funds porfolio of the user.
      *
-     * @return the hash map of mutual funds the user has invested in as the key and an array list containing two values:
-     * [amount user invested in the mutual fund, the percentage of the fund the user owns through this investment]
+     * @return the hash map of mutual funds the user has invested in as the key and the user's investment in it
      */
-    public HashMap<MutualFund, ArrayList<Double>> getMutualFundPortfolio(){
+    public HashMap<MutualFund, Investment> getMutualFundPortfolio(){
         return mutualFundsPortfolio;
     }
 
@@ -0,0 +1,79 @@
+package investments;
+
+import java.io.*;
+import java.util.HashMap;
+
+/**
+ * Serves historical stock prices from a local price history file instead of the network, so that the ATM can be
+ * run and tested offline.
+ *
+ * <p>
+ *     The file is a CSV with one price per line in the format "SYMBOL,yyyy-MM-dd,closingPrice". Blank lines, lines
+ *     starting with # and a header line starting with "symbol" are ignored. The whole file is read into memory when
+ *     the provider is created.
+ * </p>
+ */
+public class LocalMarketDataProvider implements MarketDataProvider {
+
+    /**
+     * Maps each symbol to a map from date to closing price.
+     */
+    private final HashMap<String, HashMap<String, Double>> prices = new HashMap<>();
+
+    /**
+     * LocalMarketDataProvider constructor.
+     *
+     * @param file the price history file
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public LocalMarketDataProvider(File file) throws IOException {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = r.readLine()) != null) {
+                lineNumber += 1;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.toLowerCase().startsWith("symbol")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length != 3) {
+                    throw new IOException("Malformed price on line " + lineNumber + " of " + file.getName());
+                }
+                try {
+                    addPrice(fields[0].trim(), fields[1].trim(), Double.parseDouble(fields[2].trim()));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed price on line " + lineNumber + " of " + file.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * LocalMarketDataProvider constructor for a provider with no prices. Prices are added with
+     * {@link #addPrice(String, String, double)}.
+     */
+    public LocalMarketDataProvider() {
+    }
+
+    /**
+     * Adds the closing price of a stock on a day.
+     *
+     * @param symbol unique symbol of the stock
+     * @param date the day, formatted as "yyyy-MM-dd"
+     * @param price the closing price
+     */
+    public void addPrice(String symbol, String date, double price) {
+        prices.computeIfAbsent(symbol, s -> new HashMap<>()).put(date, price);
+    }
+
+    @Override
+    public double closingPrice(String symbol, String date) throws IOException {
+        HashMap<String, Double> history = prices.get(symbol);
+        if (history == null) {
+            throw new IOException("No price history for " + symbol);
+        }
+        Double price = history.get(date);
+        return price == null ? Double.NaN : price;
+    }
+}
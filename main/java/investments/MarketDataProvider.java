@@ -0,0 +1,25 @@
+package investments;
+
+import java.io.IOException;
+
+/**
+ * A source of historical stock prices.
+ *
+ * <p>
+ *     Stocks never talk to a provider directly; prices are looked up through a {@link PriceCache}, which also
+ *     takes care of stepping back over days on which nothing was traded.
+ * </p>
+ */
+public interface MarketDataProvider {
+
+    /**
+     * Returns the closing price of a stock on a given day.
+     *
+     * @param symbol unique symbol of the stock
+     * @param date the day, formatted as "yyyy-MM-dd"
+     * @return the closing price of the stock on that day, or {@link Double#NaN} if the stock was not traded that
+     * day (for example on weekends and holidays)
+     * @throws IOException if the provider cannot be reached or does not know the symbol
+     */
+    double closingPrice(String symbol, String date) throws IOException;
+}
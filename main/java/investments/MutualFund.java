@@ -20,23 +20,23 @@ public class MutualFund implements Serializable {
      */
     private final String name;
     /***
-     * The stocks in that are in this mutual fund
+     * The positions in stocks that are in this mutual fund
      */
-    private final ArrayList<Stock> stocks;
+    private final ArrayList<Position> stocks;
     /***
-     * A hash map of users that have invested into this fund as keys and an array list of doubles in the following
-     * format: {amount user invested, percentage of the fund the user owns through this investment}
+     * A hash map of users that have invested into this fund as keys and their {@link Investment} in it: the amount
+     * user invested and the percentage of the fund the user owns through this investment
      */
-    private final HashMap<User, ArrayList<Double>> investors = new HashMap<>();
+    private final HashMap<User, Investment> investors = new HashMap<>();
 
     /***
      * Constructor for MutualFund.
      *
      * @param risk the risk level of the mutual fund
      * @param name the name of the mutual fund
-     * @param stocks the stocks that are in this mutual fund
+     * @param stocks the positions in stocks that are in this mutual fund
      */
-    public MutualFund(int risk, String name, ArrayList<Stock> stocks){
+    public MutualFund(int risk, String name, ArrayList<Position> stocks){
         this.risk = risk;
         this.name = name;
         this.stocks = stocks;
@@ -45,12 +45,12 @@ public class MutualFund implements Serializable {
     /***
      * Getter for the value of the mutual fund.
      *
-     * @return the value of the mutual fund
+     * @return the value of the mutual fund, in cents
      */
-    public double getValue(){
-        double total = 0.0;
-        for (Stock stock : stocks) {
-            total += stock.getValue() * stock.getNumShares();
+    public long getValue(){
+        long total = 0;
+        for (Position stock : stocks) {
+            total += stock.getMarketValue();
         }return total;
     }
 
@@ -62,21 +62,20 @@ public class MutualFund implements Serializable {
     public String getName(){return name;}
 
     /***
-     * Returns an array list of stocks in this mutual fund.
+     * Returns an array list of the positions in stocks in this mutual fund.
      *
-     * @return the array list of stocks in this mutual fund.
+     * @return the array list of positions in this mutual fund.
      */
-    public ArrayList<Stock> getStocks(){
+    public ArrayList<Position> getStocks(){
         return stocks;
     }
 
     /***
-     * Returns the hash map of users that have invested into this fund as keys and an array list of doubles in the
-     * following format: {amount user invested, percentage of the fund the user owns through this investment}
+     * Returns the hash map of users that have invested into this fund as keys and their investment in it.
      *
      * @return the hash map
      */
-    public HashMap<User, ArrayList<Double>> getInvestors(){
+    public HashMap<User, Investment> getInvestors(){
         return investors;
     }
 
@@ -84,10 +83,10 @@ public class MutualFund implements Serializable {
      * Adds user and how much they invested into the mutual fund.
      *
      * @param user the user that has invested into this mutual fund
-     * @param investment an array list of doubles in the following format: {amount user invested, percentage of the
-     *                   fund the user owns through this investment}
+     * @param investment the amount user invested and the percentage of the fund the user owns through this
+     *                   investment
      */
-    public void setInvestors(User user, ArrayList<Double> investment){
+    public void setInvestors(User user, Investment investment){
         investors.put(user, investment);
         }
 
@@ -7,14 +7,16 @@ import java.util.ArrayList;
 import java.util.Calendar;
 
 public class MutualFundsStocks implements Serializable {
-    private final ArrayList<Stock> lowRiskStocks = new ArrayList<>();
-    private final ArrayList<Stock> mediumRiskStocks = new ArrayList<>();
-    private final ArrayList<Stock> highRiskStocks = new ArrayList<>();
+    private final ArrayList<Position> lowRiskStocks = new ArrayList<>();
+    private final ArrayList<Position> mediumRiskStocks = new ArrayList<>();
+    private final ArrayList<Position> highRiskStocks = new ArrayList<>();
     private final ATM atm;
     private final Calendar date;
+    private final QuoteBook quotes;
 
-    public MutualFundsStocks(ATM atm){
+    public MutualFundsStocks(ATM atm, QuoteBook quotes){
         this.atm = atm;
+        this.quotes = quotes;
         date = atm.getDate();
         createLowRiskStocks();
         createMediumRiskStocks();
@@ -22,49 +24,48 @@ public class MutualFundsStocks implements Serializable {
     }
 
     private void createLowRiskStocks(){
-        lowRiskStocks.add(new Stock("MICROSOFT CORP","MSFT",0.0));
-        lowRiskStocks.add(new Stock("AMAZON COM INC","AMZN",0.0));
-        lowRiskStocks.add(new Stock("APPLE INC","AAPL",0.0));
-        lowRiskStocks.add(new Stock("ADOBE INC","ADBE",0.0));
-        lowRiskStocks.add(new Stock("FACEBOOK INC","FB",0.0));
-        lowRiskStocks.add(new Stock("NETFLIX INC","NFLX",0.0));
-        for (Stock stock : lowRiskStocks){
-            stock.increaseNumShares(1000);
-//            stock.updateStock(date);
-        }
+        lowRiskStocks.add(position("MSFT", "MICROSOFT CORP"));
+        lowRiskStocks.add(position("AMZN", "AMAZON COM INC"));
+        lowRiskStocks.add(position("AAPL", "APPLE INC"));
+        lowRiskStocks.add(position("ADBE", "ADOBE INC"));
+        lowRiskStocks.add(position("FB", "FACEBOOK INC"));
+        lowRiskStocks.add(position("NFLX", "NETFLIX INC"));
     }
 
     private void createMediumRiskStocks(){
-        mediumRiskStocks.add(new Stock("MICROSOFT CORP","MSFT", 0.0));
-        mediumRiskStocks.add(new Stock("AMAZON COM INC","AMZN", 0.0));
-        mediumRiskStocks.add(new Stock("APPLE INC","AAPL", 0.0));
-        mediumRiskStocks.add(new Stock("PAYPAL INC","PYPL",0.0));
-        mediumRiskStocks.add(new Stock("Expedia Group, Inc.","EXPE",0.0));
-        mediumRiskStocks.add(new Stock("Starbucks","SBUX",0.0));
-        for (Stock stock : mediumRiskStocks){
-            stock.increaseNumShares(1000);
-//            stock.updateStock(date);
-        }
+        mediumRiskStocks.add(position("MSFT", "MICROSOFT CORP"));
+        mediumRiskStocks.add(position("AMZN", "AMAZON COM INC"));
+        mediumRiskStocks.add(position("AAPL", "APPLE INC"));
+        mediumRiskStocks.add(position("PYPL", "PAYPAL INC"));
+        mediumRiskStocks.add(position("EXPE", "Expedia Group, Inc."));
+        mediumRiskStocks.add(position("SBUX", "Starbucks"));
     }
 
     private void createHighRiskStocks(){
-        highRiskStocks.add(new Stock("Starbucks","SBUX",0.0));
-        highRiskStocks.add(new Stock("Visa Inc","V",0.0));
-        highRiskStocks.add(new Stock("BAIDU INC","BIDU",0.0));
-        highRiskStocks.add(new Stock("Barrick Gold Corporation","GOLD",0.0));
-        highRiskStocks.add(new Stock("22nd Century Group Inc","XXII",0.0));
-        highRiskStocks.add(new Stock("Smucker","SJM",0.0));
-        for (Stock stock : highRiskStocks){
-            stock.increaseNumShares(1000);
-//            stock.updateStock(date);
-        }
+        highRiskStocks.add(position("SBUX", "Starbucks"));
+        highRiskStocks.add(position("V", "Visa Inc"));
+        highRiskStocks.add(position("BIDU", "BAIDU INC"));
+        highRiskStocks.add(position("GOLD", "Barrick Gold Corporation"));
+        highRiskStocks.add(position("XXII", "22nd Century Group Inc"));
+        highRiskStocks.add(position("SJM", "Smucker"));
     }
 
-    public ArrayList<Stock> getLowRiskStocks(){return lowRiskStocks;}
+    /**
+     * Returns a new position of 1000 shares in a stock, sharing the stock's quote with every other holder.
+     *
+     * @param symbol unique symbol of the stock
+     * @param name name of the stock
+     * @return the new position
+     */
+    private Position position(String symbol, String name){
+        return new Position(quotes.intern(symbol, name), 1000);
+    }
+
+    public ArrayList<Position> getLowRiskStocks(){return lowRiskStocks;}
 
-    public ArrayList<Stock> getMediumRiskStocks(){return mediumRiskStocks;}
+    public ArrayList<Position> getMediumRiskStocks(){return mediumRiskStocks;}
 
-    public ArrayList<Stock> getHighRiskStocks(){return highRiskStocks;}
+    public ArrayList<Position> getHighRiskStocks(){return highRiskStocks;}
     private void writeObject(ObjectOutputStream oos) throws IOException {
         oos.defaultWriteObject();
     }
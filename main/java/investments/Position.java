@@ -0,0 +1,132 @@
+package investments;
+
+import atm.Money;
+
+import java.io.*;
+
+/**
+ * A number of shares of one stock held by a user or a mutual fund. The price comes from the shared {@link Quote}
+ * of the stock, so a position only stores how many shares are held.
+ */
+public class Position implements Serializable {
+    /**
+     * The stock the shares are of.
+     */
+    private final Quote quote;
+
+    /**
+     * Number of shares of the stock.
+     */
+    private int numShares;
+
+    /**
+     * Position constructor.
+     *
+     * @param quote the stock the shares are of
+     * @param numShares number of shares of the stock
+     */
+    public Position(Quote quote, int numShares){
+        this.quote = quote;
+        this.numShares = numShares;
+    }
+
+    /**
+     * Getter function for the stock the shares are of.
+     * @return the shared quote of the stock
+     */
+    public Quote getQuote(){return quote;}
+
+    /**
+     * Getter function for current price of the stock.
+     * @return current price of the stock, in cents
+     */
+    public long getValue(){return quote.getValue();}
+
+    /**
+     * Getter function for the value of every share in the position.
+     * @return current price of the stock times the number of shares, in cents
+     */
+    public long getMarketValue(){return quote.getValue() * numShares;}
+
+    /**
+     * Getter function for symbol of the stock.
+     * @return unique symbol of the stock
+     */
+    public String getSymbol(){return quote.getSymbol();}
+
+    /**
+     * Getter function for name of the stock.
+     * @return name of the stock
+     */
+    public String getName(){return quote.getName();}
+
+    /**
+     * Getter function for number of shares.
+     * @return number of shares of the stock
+     */
+    public int getNumShares(){return numShares;}
+
+    /**
+     * sets num shares attribute.
+     *
+     * @param numShares number of shares
+     */
+    public void setNumShares(int numShares){this.numShares = numShares;}
+
+    /**
+     * Increasing function for num shares.
+     *
+     * @param sharesBought number of new shares to add
+     */
+    public void increaseNumShares(int sharesBought){numShares += sharesBought;}
+
+    /**
+     * Decreasing function for num shares.
+     *
+     * @param sharesSold number of shares to remove
+     */
+    public void decreaseNumShares(int sharesSold){numShares -= sharesSold;}
+
+    public String toString() {
+        return quote.getName() + " (" + quote.getSymbol() + "):\n" + this.numShares + " shares\n"
+                + "total value of shares: " + Money.format(getMarketValue()) + "\n";
+    }
+
+    /**
+     * Used in serialization to restore the Position state after it reboots.
+     *
+     * @param oos instance of ObjectOutputSream used to serialize the position object
+     * @throws IOException if an IO error occurs.
+     */
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        try {
+            oos.defaultWriteObject();
+        } catch (IOException e){
+            System.out.println("Position writeObject Failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Used in serialization to store the position state when the system is closed.
+     *
+     * @param ois a instance of ObjectInputStream used to deserialize object
+     * @throws ClassNotFoundException if the class of the serialized object could not be found
+     * @throws IOException if an IO error occurs
+     */
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException{
+        try{
+            ois.defaultReadObject();
+        } catch (Exception e){
+            System.out.println("Position readObject Failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    private void readObjectNoData() throws ObjectStreamException {
+        System.out.println("Position readObjectNoData, this should never happen!");
+        System.exit(-1);
+    }
+}
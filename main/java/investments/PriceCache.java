@@ -0,0 +1,204 @@
+package investments;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-process cache of closing prices in front of a {@link MarketDataProvider}, keyed by symbol and day.
+ *
+ * <p>
+ *     Each (symbol, day) pair is fetched from the provider at most once while it stays cached, no matter how many
+ *     portfolios hold the stock. Days on which the stock was not traded are cached as well, so stepping back over a
+ *     weekend only costs a request the first time. Stepping back is bounded by {@link #MAX_LOOKBACK_DAYS}.
+ * </p>
+ *
+ * <p>
+ *     Entries are evicted least recently used first once the cache holds more than its maximum number of entries,
+ *     and are dropped when they are older than the maximum age. The cache is safe to use from several threads;
+ *     the provider is never called while holding the cache lock.
+ * </p>
+ */
+public class PriceCache {
+
+    /**
+     * The furthest back, in days, a price is looked for before giving up.
+     */
+    public static final int MAX_LOOKBACK_DAYS = 10;
+
+    /**
+     * The cache used by every Quote, created from system properties on first use:
+     * atm.marketdata (a price history file for {@link LocalMarketDataProvider}, Quandl is used if unset),
+     * atm.pricecache.size (maximum entries) and atm.pricecache.ttl (maximum age in seconds, 0 for no limit).
+     */
+    private static PriceCache defaultCache;
+
+    /**
+     * Where prices come from when they are not cached.
+     */
+    private final MarketDataProvider provider;
+
+    /**
+     * Maximum number of cached (symbol, day) pairs.
+     */
+    private final int maxEntries;
+
+    /**
+     * Maximum age of an entry in milliseconds, or 0 if entries never expire.
+     */
+    private final long maxAgeMillis;
+
+    /**
+     * Maps "symbol|yyyy-MM-dd" to the price on that day, in least recently used order.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Number of lookups answered from the cache and from the provider.
+     */
+    private long hits;
+    private long misses;
+
+    /**
+     * A cached closing price, NaN if the stock was not traded that day.
+     */
+    private static class Entry {
+        final double price;
+        final long fetchedAt;
+
+        Entry(double price, long fetchedAt) {
+            this.price = price;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * PriceCache constructor.
+     *
+     * @param provider where prices come from when they are not cached
+     * @param maxEntries maximum number of cached (symbol, day) pairs
+     * @param maxAgeMillis maximum age of an entry in milliseconds, or 0 if entries never expire
+     */
+    public PriceCache(MarketDataProvider provider, int maxEntries, long maxAgeMillis) {
+        this.provider = provider;
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PriceCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the cache used by every Quote
+     */
+    public static synchronized PriceCache getDefault() {
+        if (defaultCache == null) {
+            MarketDataProvider provider;
+            String file = System.getProperty("atm.marketdata");
+            if (file == null) {
+                provider = new QuandlMarketDataProvider();
+            } else {
+                try {
+                    provider = new LocalMarketDataProvider(new File(file));
+                } catch (IOException e) {
+                    System.out.println("Could not read price history " + file + ": " + e.getMessage());
+                    provider = new LocalMarketDataProvider();
+                }
+            }
+            int size = Integer.getInteger("atm.pricecache.size", 4096);
+            long ttl = Long.getLong("atm.pricecache.ttl", 24 * 60 * 60);
+            defaultCache = new PriceCache(provider, size, ttl * 1000);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Replaces the cache used by every Quote, for example to run offline against a local provider.
+     *
+     * @param cache the new default cache
+     */
+    public static synchronized void setDefault(PriceCache cache) {
+        defaultCache = cache;
+    }
+
+    /**
+     * Returns the latest closing price of a stock on or before a date.
+     *
+     * @param symbol unique symbol of the stock
+     * @param date the date to price the stock at
+     * @return the closing price on the last day on or before date that the stock was traded
+     * @throws IOException if the provider fails, or the stock was not traded in the last MAX_LOOKBACK_DAYS days
+     */
+    public double closingPrice(String symbol, Calendar date) throws IOException {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        Calendar thisDate = (Calendar) date.clone();
+        for (int i = 0; i <= MAX_LOOKBACK_DAYS; i++) {
+            double price = priceOn(symbol, sdf.format(thisDate.getTime()));
+            if (!Double.isNaN(price)) {
+                return price;
+            }
+            //maybe the date is a holiday where stocks dont trade? here we use yesterday's date instead.
+            thisDate.add(Calendar.DATE, -1);
+        }
+        throw new IOException("No price for " + symbol + " in the " + MAX_LOOKBACK_DAYS + " days before "
+                + sdf.format(date.getTime()));
+    }
+
+    /**
+     * @param symbol unique symbol of the stock
+     * @param day the day, formatted as "yyyy-MM-dd"
+     * @return the closing price on that day, or NaN if the stock was not traded that day
+     * @throws IOException if the provider fails
+     */
+    private double priceOn(String symbol, String day) throws IOException {
+        String key = symbol + "|" + day;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && (maxAgeMillis <= 0 || now - entry.fetchedAt <= maxAgeMillis)) {
+                hits += 1;
+                return entry.price;
+            }
+            misses += 1;
+        }
+        double price = provider.closingPrice(symbol, day);
+        synchronized (this) {
+            entries.put(key, new Entry(price, now));
+        }
+        return price;
+    }
+
+    /**
+     * Drops every cached price.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of cached (symbol, day) pairs
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that went to the provider
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
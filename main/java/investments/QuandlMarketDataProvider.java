@@ -0,0 +1,109 @@
+package investments;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+
+/**
+ * Fetches historical stock prices from the Quandl WIKI dataset over HTTPS. Every call is one blocking request.
+ */
+public class QuandlMarketDataProvider implements MarketDataProvider {
+
+    /**
+     * This Static is for connecting to https websites without certificates.
+     */
+    //Source: https://stackoverflow.com/questions/18576069/how-to-save-the-file-from-https-url-in-java
+    static {
+        final TrustManager[] trustAllCertificates = new TrustManager[] {
+                new X509TrustManager() {
+                    @Override
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return null; // Not relevant.
+                    }
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                        // Do nothing. Just allow them all.
+                    }
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] certs, String authType) {
+                        // Do nothing. Just allow them all.
+                    }
+                }
+        };
+
+        try {
+            SSLContext sc = SSLContext.getInstance("SSL");
+            sc.init(null, trustAllCertificates, new SecureRandom());
+            HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+        } catch (GeneralSecurityException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public double closingPrice(String symbol, String date) throws IOException {
+        String url = "https://www.quandl.com/api/v3/datasets/WIKI/" + symbol + ".json?api_key=Hr_Vc1vsvQMfwf7xeK4S" +
+                "&start_date=" + date + "&end_date=" + date;
+        try {
+            JSONObject jsonobject = readJsonFromUrl(url);
+            if (jsonobject.has("quandl_error")) {
+                throw new IOException("Bad stock symbol: " + symbol);
+            }
+            if (jsonobject.has("dataset") && jsonobject.getJSONObject("dataset").has("data")) {
+                JSONArray data = jsonobject.getJSONObject("dataset").getJSONArray("data");
+                if (data.length() != 0) {
+                    return data.getJSONArray(0).getDouble(1);
+                }
+            }
+            //date is incorrect. maybe the date is a holiday where stocks dont trade?
+            return Double.NaN;
+        } catch (JSONException e) {
+            throw new IOException("Malformed response for " + symbol, e);
+        }
+    }
+
+    /**
+     * Helper function that reads from the url stream
+     * @param rd: Reader
+     * @return : returns string for JSON reader that is used as input for the JSON constructor
+     * @throws IOException : IO exception
+     */
+    private static String readAll(Reader rd) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int cp;
+        while ((cp = rd.read()) != -1) {
+            sb.append((char) cp);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Produces a JSON object from the given url.
+     * @param url : url to be searched from.
+     * @return : JSONObject that is produced from the url.
+     * @throws IOException : IO exception
+     * @throws JSONException : JSON exception
+     */
+    private static JSONObject readJsonFromUrl(String url) throws IOException, JSONException {
+        InputStream is = new URL(url).openStream();
+        try {
+            BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
+            String jsonText = readAll(rd);
+            JSONObject json = new JSONObject(jsonText);
+            return json;
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package investments;
+
+import atm.Money;
+
+import java.io.*;
+import java.util.Calendar;
+
+/**
+ * Represents a stock from which shares can be bought or sold, and the price it is currently being traded at.
+ *
+ * <p>
+ *     There is exactly one Quote per symbol, shared by every {@link Position} in it, so a price update is done
+ *     once no matter how many users and mutual funds hold the stock. Quotes are obtained from a {@link QuoteBook}.
+ * </p>
+ */
+public class Quote implements Serializable {
+    /**
+     * Name of stock.
+     */
+    private String name;
+
+    /**
+     * Unique symbol of the stock.
+     */
+    private final String symbol;
+
+    /**
+     * Current price the stock is being traded at, in cents.
+     */
+    private volatile long currentPrice;
+
+    /**
+     * Quote constructor. Use {@link QuoteBook#intern(String, String)} rather than creating quotes directly.
+     *
+     * @param name name of the stock
+     * @param symbol unique symbol of the stock
+     */
+    Quote(String name, String symbol){
+        this.name = name;
+        this.symbol = symbol;
+    }
+
+    /**
+     * Getter function for current price of the stock.
+     * @return current price of the stock, in cents
+     */
+    public long getValue(){
+        return currentPrice;
+    }
+
+    /**
+     * Getter function for symbol of the stock.
+     * @return unique symbol of the stock
+     */
+    public String getSymbol(){return symbol;}
+
+    /**
+     * Getter function for name of the stock.
+     * @return name of the stock
+     */
+    public String getName() {return name;}
+
+    /**
+     * Changes the name of the stock.
+     *
+     * @param name name of the stock
+     */
+    public void setName(String name){this.name = name;}
+
+    /**
+     * Sets the price of the stock to one that has already been fetched, for example by a bulk refresh.
+     *
+     * @param currentPrice current price the stock is being traded at, in cents
+     */
+    public void setCurrentPrice(long currentPrice){this.currentPrice = currentPrice;}
+
+    /**
+     * updates the price of the stock.
+     *
+     * @param date the date to which the price of the stock is updated to
+     */
+    public void updateStock(Calendar date){
+
+        // because of issues with the API we are using, we can only fetch historical stock data from 2019 March
+        // thus we are making every date go back to 2019 March of the date that was intended
+        // essentially, the data loops every month with data from March 2019.
+        try{
+            this.currentPrice = Money.fromDollars(PriceCache.getDefault().closingPrice(symbol, date));
+        } catch (IOException e){
+            // keep the last known price rather than stopping the whole ATM for one stock.
+            System.out.println("Could not update " + symbol + ": " + e.getMessage());
+        }
+    }
+
+    public String toString() {
+        return this.name + " (" + this.symbol + ")";
+    }
+
+    /**
+     * Used in serialization to restore the Quote state after it reboots.
+     *
+     * @param oos instance of ObjectOutputSream used to serialize the quote object
+     * @throws IOException if an IO error occurs.
+     */
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        try {
+            oos.defaultWriteObject();
+        } catch (IOException e){
+            System.out.println("Quote writeObject Failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Used in serialization to store the quote state when the system is closed.
+     *
+     * @param ois a instance of ObjectInputStream used to deserialize object
+     * @throws ClassNotFoundException if the class of the serialized object could not be found
+     * @throws IOException if an IO error occurs
+     */
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException{
+        try{
+            ois.defaultReadObject();
+        } catch (Exception e){
+            System.out.println("Quote readObject Failed!");
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    private void readObjectNoData() throws ObjectStreamException {
+        System.out.println("Quote readObjectNoData, this should never happen!");
+        System.exit(-1);
+    }
+}
@@ -0,0 +1,73 @@
+package investments;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Holds the one {@link Quote} of every stock held in the ATM, keyed by symbol.
+ *
+ * <p>
+ *     The book is serialized together with every portfolio and mutual fund, so positions still share their quotes
+ *     after the ATM is rebooted.
+ * </p>
+ */
+public class QuoteBook implements Serializable {
+
+    /**
+     * Maps each symbol to its quote.
+     */
+    private final HashMap<String, Quote> quotes = new HashMap<>();
+
+    /**
+     * Returns the quote of a symbol, creating it if no stock of that symbol has been held before.
+     *
+     * @param symbol unique symbol of the stock
+     * @param name name of the stock, used only if the quote is created
+     * @return the one quote of the symbol
+     */
+    public synchronized Quote intern(String symbol, String name) {
+        Quote quote = quotes.get(symbol);
+        if (quote == null) {
+            quote = new Quote(name, symbol);
+            quotes.put(symbol, quote);
+        }
+        return quote;
+    }
+
+    /**
+     * @param symbol unique symbol of the stock
+     * @return the quote of the symbol, or null if no stock of that symbol has been held
+     */
+    public synchronized Quote get(String symbol) {
+        return quotes.get(symbol);
+    }
+
+    /**
+     * @return a copy of every quote in the book
+     */
+    public synchronized List<Quote> quotes() {
+        return new ArrayList<>(quotes.values());
+    }
+
+    /**
+     * @return the number of quotes in the book
+     */
+    public synchronized int size() {
+        return quotes.size();
+    }
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException{
+        ois.defaultReadObject();
+    }
+
+    private void readObjectNoData() throws ObjectStreamException {
+        System.out.println("readObjectNoData, this should never happen!");
+        System.exit(-1);
+    }
+}
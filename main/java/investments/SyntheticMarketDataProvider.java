@@ -0,0 +1,41 @@
+package investments;
+
+/**
+ * Makes up stock prices instead of fetching them, so that the ATM can be loaded and tested offline without a price
+ * history file.
+ *
+ * <p>
+ *     Every symbol is traded every day. Its price is worked out from the symbol, the day and a seed alone, so the
+ *     same seed always gives the same prices: each symbol gets a base price between $10 and $500, and the price of a
+ *     day is within 5% of it.
+ * </p>
+ */
+public class SyntheticMarketDataProvider implements MarketDataProvider {
+
+    private final long seed;
+
+    /**
+     * SyntheticMarketDataProvider constructor.
+     *
+     * @param seed the seed prices are worked out from
+     */
+    public SyntheticMarketDataProvider(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public double closingPrice(String symbol, String date) {
+        long base = 1000 + Math.floorMod(mix(seed ^ symbol.hashCode()), 49000);
+        long change = Math.floorMod(mix(seed ^ symbol.hashCode() * 31L ^ date.hashCode()), 1001) - 500;
+        return Math.round(base * (10000 + change) / 10000.0) / 100.0;
+    }
+
+    /**
+     * Scrambles the bits of a number, so that close numbers give unrelated results.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
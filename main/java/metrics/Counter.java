@@ -0,0 +1,45 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often something happens. The count is a {@link LongAdder}, so threads counting at the same time add to
+ * different cells and do not slow each other down.
+ */
+public final class Counter implements CounterMBean {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        if (Metrics.ENABLED) {
+            count.increment();
+        }
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param amount the amount to add
+     */
+    public void add(long amount) {
+        if (Metrics.ENABLED) {
+            count.add(amount);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "count " + getCount();
+    }
+}
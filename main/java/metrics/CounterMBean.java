@@ -0,0 +1,12 @@
+package metrics;
+
+/**
+ * What JMX shows of a {@link Counter}.
+ */
+public interface CounterMBean {
+
+    /**
+     * @return the number counted so far
+     */
+    long getCount();
+}
@@ -0,0 +1,32 @@
+package metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value that is read when it is looked at, such as the cash in the ATM, rather than recorded as it changes.
+ */
+public final class Gauge implements GaugeMBean {
+
+    private volatile LongSupplier value;
+
+    Gauge(LongSupplier value) {
+        this.value = value;
+    }
+
+    /**
+     * @param value where the value is read from from now on
+     */
+    void set(LongSupplier value) {
+        this.value = value;
+    }
+
+    @Override
+    public long getValue() {
+        return value.getAsLong();
+    }
+
+    @Override
+    public String toString() {
+        return "value " + getValue();
+    }
+}
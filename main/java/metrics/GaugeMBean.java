@@ -0,0 +1,12 @@
+package metrics;
+
+/**
+ * What JMX shows of a {@link Gauge}.
+ */
+public interface GaugeMBean {
+
+    /**
+     * @return the current value
+     */
+    long getValue();
+}
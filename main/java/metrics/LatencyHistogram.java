@@ -0,0 +1,76 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long requests take, in buckets that each cover twice the time of the one before. Each bucket is a
+ * {@link LongAdder}, so recording a latency takes no lock and threads recording at the same time add to different
+ * cells instead of fighting over one.
+ *
+ * <p>
+ *     Percentiles are reported as the upper bound of the bucket they fall in, so they are accurate to within a factor
+ *     of two, which is enough to see whether requests take microseconds or milliseconds.
+ * </p>
+ */
+public class LatencyHistogram {
+
+    /**
+     * counts[i] is the number of latencies of at least 2^(i-1) and less than 2^i nanoseconds.
+     */
+    private final LongAdder[] counts = new LongAdder[64];
+
+    /**
+     * LatencyHistogram constructor.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency, in nanoseconds
+     */
+    public void record(long nanos) {
+        counts[64 - Long.numberOfLeadingZeros(Math.max(0, nanos)) & 63].increment();
+    }
+
+    /**
+     * @return the number of latencies recorded
+     */
+    public long count() {
+        long total = 0;
+        for (LongAdder count : counts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @param percentile the percentile, for example 99 or 99.9
+     * @return the latency below which the given percentage of latencies fall, in nanoseconds, or 0 if none were
+     * recorded
+     */
+    public long percentile(double percentile) {
+        long[] snapshot = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return i == 0 ? 0 : 1L << Math.min(62, i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,155 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds every {@link Timer}, {@link Counter} and {@link Gauge} by name, so they can be shown together through JMX or
+ * as text.
+ *
+ * <p>
+ *     Names start with the package the metric is recorded in, for example "account.withdraw". Classes look their
+ *     metrics up once and keep them in static fields, so recording never goes through the registry.
+ * </p>
+ * <p>
+ *     The budget for recording is 50 nanoseconds an operation on top of reading the clock: a timer adds two
+ *     {@link java.util.concurrent.atomic.LongAdder} increments to its two clock reads, and a counter is one increment.
+ *     bench/java/metrics/MetricsOverheadBench checks this. Recording can be turned off altogether with
+ *     -Datm.metrics=false.
+ * </p>
+ */
+public final class Metrics {
+
+    /**
+     * False if metrics were turned off with -Datm.metrics=false.
+     */
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("atm.metrics"));
+
+    /**
+     * The domain of the names the metrics are registered with JMX under.
+     */
+    static final String DOMAIN = "atm";
+
+    private static final Metrics DEFAULT = new Metrics();
+
+    private final ConcurrentHashMap<String, Object> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * The server metrics are registered with, or null until {@link #registerMBeans()} is called.
+     */
+    private volatile MBeanServer server;
+
+    /**
+     * Metrics constructor, for a registry separate from the default one.
+     */
+    public Metrics() {
+    }
+
+    /**
+     * @return the registry every part of the ATM records into
+     */
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param name the name of the timer
+     * @return the timer of that name, created if there is none yet
+     * @throws IllegalArgumentException if the name belongs to a metric that is not a timer
+     */
+    public Timer timer(String name) {
+        return get(name, Timer.class, Timer::new);
+    }
+
+    /**
+     * @param name the name of the counter
+     * @return the counter of that name, created if there is none yet
+     * @throws IllegalArgumentException if the name belongs to a metric that is not a counter
+     */
+    public Counter counter(String name) {
+        return get(name, Counter.class, Counter::new);
+    }
+
+    /**
+     * Creates a gauge, or points an existing one at a new value, for example when the ATM is loaded again.
+     *
+     * @param name the name of the gauge
+     * @param value where the value of the gauge is read from
+     * @return the gauge
+     * @throws IllegalArgumentException if the name belongs to a metric that is not a gauge
+     */
+    public Gauge gauge(String name, LongSupplier value) {
+        Gauge gauge = get(name, Gauge.class, () -> new Gauge(value));
+        gauge.set(value);
+        return gauge;
+    }
+
+    private <T> T get(String name, Class<T> type, Supplier<T> create) {
+        Object metric = metrics.get(name);
+        if (metric == null) {
+            T created = create.get();
+            metric = metrics.putIfAbsent(name, created);
+            if (metric == null) {
+                metric = created;
+                register(name, created);
+            }
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " is not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * Registers every metric, and every metric created from now on, with the platform MBean server, under names
+     * like atm:type=Timer,name=account.withdraw.
+     */
+    public synchronized void registerMBeans() {
+        if (server != null) {
+            return;
+        }
+        server = ManagementFactory.getPlatformMBeanServer();
+        for (Map.Entry<String, Object> metric : metrics.entrySet()) {
+            register(metric.getKey(), metric.getValue());
+        }
+    }
+
+    private synchronized void register(String name, Object metric) {
+        MBeanServer server = this.server;
+        if (server == null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + metric.getClass().getSimpleName()
+                    + ",name=" + name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metric, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register metric " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes out every metric, one per line in name order, for example
+     * "timer account.withdraw count 12 mean 5300ns p50 4096ns p99 16384ns p99.9 16384ns".
+     *
+     * @return the metrics as text
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> metric : new TreeMap<>(metrics).entrySet()) {
+            sb.append(metric.getValue().getClass().getSimpleName().toLowerCase(Locale.ROOT)).append(' ')
+                    .append(metric.getKey()).append(' ').append(metric.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
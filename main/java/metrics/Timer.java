@@ -0,0 +1,92 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often an operation runs and how long it takes.
+ *
+ * <p>
+ *     An operation is timed with
+ *     <pre>
+ *     long start = timer.start();
+ *     ...
+ *     timer.stop(start);
+ *     </pre>
+ *     which reads the clock twice and adds to two {@link LongAdder}s. Nothing is recorded when metrics are turned
+ *     off with -Datm.metrics=false.
+ * </p>
+ */
+public final class Timer implements TimerMBean {
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    Timer() {
+    }
+
+    /**
+     * @return the time the operation started, to be passed to {@link #stop(long)}
+     */
+    public long start() {
+        return Metrics.ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records an operation that started at the given time and has just finished.
+     *
+     * @param start the value {@link #start()} returned when the operation started
+     */
+    public void stop(long start) {
+        if (Metrics.ENABLED) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records an operation that took the given time.
+     *
+     * @param nanos how long the operation took, in nanoseconds
+     */
+    public void record(long nanos) {
+        latencies.record(nanos);
+        totalNanos.add(nanos);
+    }
+
+    @Override
+    public long getCount() {
+        return latencies.count();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public long getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : getTotalNanos() / count;
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return latencies.percentile(50);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return latencies.percentile(99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return latencies.percentile(99.9);
+    }
+
+    @Override
+    public String toString() {
+        return "count " + getCount() + " mean " + getMeanNanos() + "ns p50 " + getP50Nanos() + "ns p99 "
+                + getP99Nanos() + "ns p99.9 " + getP999Nanos() + "ns";
+    }
+}
@@ -0,0 +1,37 @@
+package metrics;
+
+/**
+ * What JMX shows of a {@link Timer}.
+ */
+public interface TimerMBean {
+
+    /**
+     * @return the number of times the operation was timed
+     */
+    long getCount();
+
+    /**
+     * @return the total time spent in the operation, in nanoseconds
+     */
+    long getTotalNanos();
+
+    /**
+     * @return the mean time the operation took, in nanoseconds, or 0 if it has not run
+     */
+    long getMeanNanos();
+
+    /**
+     * @return the median time the operation took, in nanoseconds
+     */
+    long getP50Nanos();
+
+    /**
+     * @return the 99th percentile of the time the operation took, in nanoseconds
+     */
+    long getP99Nanos();
+
+    /**
+     * @return the 99.9th percentile of the time the operation took, in nanoseconds
+     */
+    long getP999Nanos();
+}
@@ -0,0 +1,4 @@
+/**
+ * This package counts and times what the ATM does, so it can be watched through JMX or a text dump.
+ */
+package metrics;
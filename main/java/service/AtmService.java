@@ -0,0 +1,513 @@
+package service;
+
+import account.Account;
+import account.Asset;
+import account.Chequing;
+import atm.ATM;
+import atm.Bills;
+import atm.Money;
+import atm.User;
+import investments.InvestmentPortfolio;
+
+import java.util.ArrayList;
+
+/**
+ * Lets programs use the ATM directly instead of through the console menus in the interfaces package: every request
+ * takes its input as arguments and returns a {@link Result} instead of reading from and printing to the console.
+ *
+ * <p>
+ *     Requests are made on behalf of a {@link Session} returned by {@link AtmService#login(String, String)}. A user
+ *     can only use their own accounts; the bank manager's requests need a manager session. Amounts are in cents.
+ * </p>
+ *
+ * <p>
+ *     Any number of threads can make requests at the same time. Money moves between accounts under the locks of
+ *     {@link account.TransferEngine}, a user's list of accounts and subscriptions is guarded by the user, their stocks
+ *     by their investment portfolio, and the bank manager's requests are made one at a time. Every request pins the
+ *     user it works on in the {@link atm.UserDirectory} until it is done, so a user kept in a
+ *     {@link atm.PagedUserDirectory} is never written out, or pushed out and forgotten, while a request changes them.
+ * </p>
+ */
+public class AtmService {
+
+    /**
+     * The account types a user can have, as returned by {@link Account#getType()}.
+     */
+    private static final String[] ACCOUNT_TYPES = {"chequing", "creditcard", "loc", "savings", "stock"};
+
+    /**
+     * The ATM requests are made on.
+     */
+    private final ATM atm;
+
+    /**
+     * Held while the bank manager's requests are carried out.
+     */
+    private final Object managerLock = new Object();
+
+    /**
+     * AtmService constructor.
+     *
+     * @param atm the ATM requests are made on
+     */
+    public AtmService(ATM atm) {
+        this.atm = atm;
+    }
+
+    /**
+     * @return the ATM requests are made on
+     */
+    public ATM getAtm() {
+        return atm;
+    }
+
+    /**
+     * Logs in with the same usernames and passwords as the login menu.
+     *
+     * @param username the username
+     * @param password the password
+     * @return the session, or null if the username or password is wrong
+     */
+    public Session login(String username, String password) {
+        if (username.equals("manager") && password.equals("password")) {
+            return new Session(username, Session.Role.MANAGER, null);
+        }
+        if (username.equals("broker") && password.equals("password")) {
+            return new Session(username, Session.Role.BROKER, atm.getUserDirectory());
+        }
+        User user = atm.getUserDirectory().authenticate(username, password);
+        if (user == null) {
+            return null;
+        }
+        return new Session(username, Session.Role.USER, atm.getUserDirectory());
+    }
+
+    /**
+     * Lists the accounts the session's user can use.
+     *
+     * @param session the session
+     * @return a copy of the user's accounts, empty for the bank manager
+     */
+    public ArrayList<Account> accounts(Session session) {
+        User user = session.pinUser();
+        try {
+            return accountsOf(user);
+        } finally {
+            session.unpin(user);
+        }
+    }
+
+    /**
+     * Reads the balance of one of the session's accounts.
+     *
+     * @param session the session
+     * @param accountNum the account number
+     * @return the result, with the balance of the account
+     */
+    public Result balance(Session session, int accountNum) {
+        User user = session.pinUser();
+        try {
+            Account account = findAccount(user, accountNum);
+            if (account == null) {
+                return noAccount(accountNum);
+            }
+            return Result.ok(account.getType() + " " + accountNum, account.getBalance());
+        } finally {
+            session.unpin(user);
+        }
+    }
+
+    /**
+     * Deposits the next deposit in deposits.txt into the user's primary chequing account.
+     *
+     * @param session the session
+     * @return the result, with the balance of the primary account
+     */
+    public Result deposit(Session session) {
+        User user = session.pinUser();
+        try {
+            Account primary = null;
+            for (Account account : accountsOf(user)) {
+                if (account instanceof Chequing && account.isPrimary()) {
+                    primary = account;
+                }
+            }
+            if (primary == null) {
+                return Result.fail(Result.Status.NOT_FOUND, "There is no primary chequing account");
+            }
+            long amount = primary.deposit();
+            if (amount == 0) {
+                return new Result(Result.Status.DECLINED, "Nothing was deposited", primary.getBalance());
+            }
+            return Result.ok("Deposited " + Money.format(amount), primary.getBalance());
+        } finally {
+            session.unpin(user);
+        }
+    }
+
+    /**
+     * Withdraws cash from one of the session's accounts.
+     *
+     * @param session the session
+     * @param accountNum the account number
+     * @param amount the amount, in cents
+     * @return the result, with the balance of the account
+     */
+    public Result withdraw(Session session, int accountNum, long amount) {
+        if (amount <= 0) {
+            return invalidAmount(amount);
+        }
+        User user = session.pinUser();
+        try {
+            Account account = findAccount(user, accountNum);
+            if (account == null) {
+                return noAccount(accountNum);
+            }
+            if (!account.tryWithdraw(amount)) {
+                return new Result(Result.Status.DECLINED, "Not enough funds in the account or the ATM",
+                        account.getBalance());
+            }
+            return Result.ok("Withdrew " + Money.format(amount), account.getBalance());
+        } finally {
+            session.unpin(user);
+        }
+    }
+
+    /**
+     * Transfers money between two of the session's accounts.
+     *
+     * @param session the session
+     * @param fromAccountNum the number of the account the money comes from
+     * @param toAccountNum the number of the account the money goes to
+     * @param amount the amount, in cents
+     * @return the result, with the balance of the account the money comes from
+     */
+    public Result transfer(Session session, int fromAccountNum, int toAccountNum, long amount) {
+        if (amount <= 0) {
+            return invalidAmount(amount);
+        }
+        User user = session.pinUser();
+        try {
+            Account from = findAccount(user, fromAccountNum);
+            if (from == null) {
+                return noAccount(fromAccountNum);
+            }
+            Account to = findAccount(user, toAccountNum);
+            if (to == null) {
+                return noAccount(toAccountNum);
+            }
+            if (from == to) {
+                return Result.fail(Result.Status.INVALID, "Cannot transfer an account to itself");
+            }
+            if (!from.tryTransferOut(amount, to)) {
+                return new Result(Result.Status.DECLINED, "Insufficient funds or the account cannot transfer out",
+                        from.getBalance());
+            }
+            return Result.ok("Transferred " + Money.format(amount) + " to " + toAccountNum, from.getBalance());
+        } finally {
+            session.unpin(user);
+        }
+    }
+
+    /**
+     * Pays a bill from one of the session's accounts.
+     *
+     * @param session the session
+     * @param accountNum the number of the account the bill is paid from
+     * @param payee the external account the bill is paid to
+     * @param amount the amount, in cents
+     * @return the result, with the balance of the account
+     */
+    public Result payBill(Session session, int accountNum, String payee, long amount) {
+        if (amount <= 0) {
+            return invalidAmount(amount);
+        }
+        if (payee == null || payee.trim().isEmpty()) {
+            return Result.fail(Result.Status.INVALID, "No payee given");
+        }
+        User user = session.pinUser();
+        try {
+            Account account = findAccount(user, accountNum);
+            if (account == null) {
+                return noAccount(accountNum);
+            }
+            if (!account.tryPayBill(amount, payee.trim())) {
+                return new Result(Result.Status.DECLINED, "Insufficient funds or the account cannot pay bills",
+                        account.getBalance());
+            }
+            return Result.ok("Paid " + Money.format(amount) + " to " + payee.trim(), account.getBalance());
+        } finally {
+            session.unpin(user);
+        }
+    }
+
+    /**
+     * Buys shares of a stock with the money in the user's stock account.
+     *
+     * @param session the session
+     * @param symbol the symbol of the stock
+     * @param shares the number of shares
+     * @return the result, with the balance of the stock account
+     */
+    public Result buyStock(Session session, String symbol, int shares) {
+        return trade(session, symbol, shares, true);
+    }
+
+    /**
+     * Sells shares of a stock the user owns into their stock account.
+     *
+     * @param session the session
+     * @param symbol the symbol of the stock
+     * @param shares the number of shares
+     * @return the result, with the balance of the stock account
+     */
+    public Result sellStock(Session session, String symbol, int shares) {
+        return trade(session, symbol, shares, false);
+    }
+
+    private Result trade(Session session, String symbol, int shares, boolean buying) {
+        if (shares <= 0) {
+            return Result.fail(Result.Status.INVALID, "The number of shares must be greater than 0");
+        }
+        User user = session.pinUser();
+        try {
+            Account stockAccount = null;
+            for (Account account : accountsOf(user)) {
+                if (account.getType().equals("stock")) {
+                    stockAccount = account;
+                }
+            }
+            if (stockAccount == null) {
+                return Result.fail(Result.Status.NOT_FOUND, "There is no stock account");
+            }
+            InvestmentPortfolio portfolio = user.getInvestmentPortfolio();
+            boolean traded;
+            synchronized (portfolio) {
+                if (buying) {
+                    traded = atm.getBroker().getStockBroker().buy(symbol, shares, stockAccount, user);
+                } else {
+                    traded = atm.getBroker().getStockBroker().sell((Asset) stockAccount, symbol, shares, user);
+                }
+            }
+            if (!traded) {
+                String reason = buying ? "Insufficient funds or unknown symbol " : "Not enough shares of ";
+                return new Result(Result.Status.DECLINED, reason + symbol, stockAccount.getBalance());
+            }
+            return Result.ok((buying ? "Bought " : "Sold ") + shares + " shares of " + symbol,
+                    stockAccount.getBalance());
+        } finally {
+            session.unpin(user);
+        }
+    }
+
+    /**
+     * Subscribes the user to a subscription the ATM offers, charging their credit card.
+     *
+     * @param session the session
+     * @param name the name of the subscription
+     * @return the result
+     */
+    public Result subscribe(Session session, String name) {
+        User user = session.pinUser();
+        if (user == null) {
+            return notAllowed();
+        }
+        try {
+            synchronized (user) {
+                if (!atm.getSubscriber().subscribe(user, name)) {
+                    return Result.fail(Result.Status.DECLINED,
+                            "Not subscribed to " + name + ": not offered, already subscribed, or no credit available");
+                }
+            }
+            return Result.ok("Subscribed to " + name);
+        } finally {
+            session.unpin(user);
+        }
+    }
+
+    /**
+     * Cancels one of the user's subscriptions.
+     *
+     * @param session the session
+     * @param name the name of the subscription
+     * @return the result
+     */
+    public Result unsubscribe(Session session, String name) {
+        User user = session.pinUser();
+        if (user == null) {
+            return notAllowed();
+        }
+        try {
+            synchronized (user) {
+                atm.getSubscriber().removeSubscription(user, name);
+            }
+            return Result.ok("Unsubscribed from " + name);
+        } finally {
+            session.unpin(user);
+        }
+    }
+
+    /**
+     * Creates a new user with one account of each type. Bank manager only.
+     *
+     * @param session the session
+     * @param username the username of the new user
+     * @param password the password of the new user
+     * @return the result
+     */
+    public Result createUser(Session session, String username, String password) {
+        if (session.getRole() != Session.Role.MANAGER) {
+            return notAllowed();
+        }
+        if (username == null || username.trim().isEmpty() || password == null || password.isEmpty()) {
+            return Result.fail(Result.Status.INVALID, "A username and password are needed");
+        }
+        synchronized (managerLock) {
+            if (atm.getBM().createUser(username.trim(), password) == null) {
+                return Result.fail(Result.Status.DECLINED, "The username " + username.trim() + " is taken");
+            }
+        }
+        return Result.ok("Created user " + username.trim());
+    }
+
+    /**
+     * Opens a new account for a user. Bank manager only.
+     *
+     * @param session the session
+     * @param username the user the account is for
+     * @param type the type of account, one of chequing, creditcard, loc, savings or stock
+     * @return the result
+     */
+    public Result createAccount(Session session, String username, String type) {
+        if (session.getRole() != Session.Role.MANAGER) {
+            return notAllowed();
+        }
+        boolean known = false;
+        for (String accountType : ACCOUNT_TYPES) {
+            known |= accountType.equalsIgnoreCase(type);
+        }
+        if (!known) {
+            return Result.fail(Result.Status.INVALID, "There is no account type " + type);
+        }
+        User user = atm.getUserDirectory().getPinned(username);
+        if (user == null) {
+            return noUser(username);
+        }
+        try {
+            synchronized (managerLock) {
+                synchronized (user) {
+                    atm.getBM().createAccount(user, type);
+                }
+            }
+            return Result.ok("Opened a " + type.toLowerCase() + " account for " + username);
+        } finally {
+            atm.getUserDirectory().unpin(user);
+        }
+    }
+
+    /**
+     * Tops one cassette of the ATM up to its fill level. Bank manager only.
+     *
+     * @param session the session
+     * @param cassette the number of the cassette, from 1
+     * @return the result
+     */
+    public Result restock(Session session, int cassette) {
+        if (session.getRole() != Session.Role.MANAGER) {
+            return notAllowed();
+        }
+        Bills bills = atm.getBills();
+        if (cassette < 1 || cassette > bills.getLayout().size()) {
+            return Result.fail(Result.Status.INVALID, "There is no cassette " + cassette);
+        }
+        synchronized (managerLock) {
+            atm.getBM().restock(cassette);
+        }
+        return Result.ok("Restocked " + bills.getLayout().getLabel(cassette - 1) + " ("
+                + bills.getNumBills(cassette - 1) + ")");
+    }
+
+    /**
+     * Undoes the most recent transaction of a user's account. Bank manager only.
+     *
+     * @param session the session
+     * @param username the user who owns the account
+     * @param accountNum the account number
+     * @return the result, with the balance of the account
+     */
+    public Result undo(Session session, String username, int accountNum) {
+        if (session.getRole() != Session.Role.MANAGER) {
+            return notAllowed();
+        }
+        User user = atm.getUserDirectory().getPinned(username);
+        if (user == null) {
+            return noUser(username);
+        }
+        try {
+            Account account = findAccount(user, accountNum);
+            if (account == null) {
+                return noAccount(accountNum);
+            }
+            boolean undone;
+            synchronized (managerLock) {
+                undone = atm.getBM().undoTransaction(user, account);
+            }
+            if (!undone) {
+                return new Result(Result.Status.DECLINED, "Nothing that can be undone", account.getBalance());
+            }
+            return Result.ok("Undid the last transaction of " + accountNum, account.getBalance());
+        } finally {
+            atm.getUserDirectory().unpin(user);
+        }
+    }
+
+    /**
+     * @param user the user, or null for the bank manager who has no accounts
+     * @return a copy of the user's accounts
+     */
+    private static ArrayList<Account> accountsOf(User user) {
+        if (user == null) {
+            return new ArrayList<>();
+        }
+        synchronized (user) {
+            return new ArrayList<>(user.getAccounts());
+        }
+    }
+
+    /**
+     * Finds one of a user's accounts.
+     *
+     * @param user the user, or null for the bank manager who has no accounts
+     * @param accountNum the account number
+     * @return the account, or null if the user has no account with this number
+     */
+    private Account findAccount(User user, int accountNum) {
+        if (user == null) {
+            return null;
+        }
+        synchronized (user) {
+            for (Account account : user.getAccounts()) {
+                if (account.getAccountNum() == accountNum) {
+                    return account;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Result noAccount(int accountNum) {
+        return Result.fail(Result.Status.NOT_FOUND, "There is no account " + accountNum);
+    }
+
+    private static Result noUser(String username) {
+        return Result.fail(Result.Status.NOT_FOUND, "There is no user " + username);
+    }
+
+    private static Result invalidAmount(long amount) {
+        return Result.fail(Result.Status.INVALID, "The amount " + Money.format(amount) + " is not possible");
+    }
+
+    private static Result notAllowed() {
+        return Result.fail(Result.Status.NOT_ALLOWED, "Not allowed for this session");
+    }
+}
@@ -0,0 +1,375 @@
+package service;
+
+import account.Account;
+import account.OutgoingPayments;
+import atm.ATM;
+import atm.AsyncOutput;
+import atm.Money;
+import atm.User;
+import investments.PriceCache;
+import investments.SyntheticMarketDataProvider;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import subscriptions.Subscription;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Puts a made-up load on a new ATM, so that the bank can be tried at production volumes without a network or the
+ * real bank's data.
+ *
+ * <p>
+ *     The generator first creates its users through the bank manager, each with the usual five accounts. It gives
+ *     them money, a few stocks and a subscription. Then it sends a mix of withdrawals, deposits, transfers, bill
+ *     payments, stock trades and bank manager undos through {@link AtmService} at a fixed rate.
+ * </p>
+ * <p>
+ *     Requests are started on schedule whether or not earlier ones have finished. Latencies are measured from the
+ *     time a request was due to start, so a backlog shows up as latency rather than as a lower rate.
+ * </p>
+ * <p>
+ *     The report is followed by the ATM's {@link Metrics}. Prices come from a {@link SyntheticMarketDataProvider}.
+ *     Nothing is saved: there is no snapshot or journal, and bill payments go to a temporary file instead of
+ *     outgoing.txt.
+ * </p>
+ */
+public class LoadGenerator {
+
+    /**
+     * The kinds of request the generator sends.
+     */
+    enum Operation {
+        WITHDRAW, DEPOSIT, TRANSFER, PAYBILL, BUY, SELL, UNDO
+    }
+
+    /**
+     * The mix used when atm.load.mix is not set, as operation:weight pairs.
+     */
+    static final String DEFAULT_MIX = "withdraw:25,deposit:10,transfer:25,paybill:15,buy:10,sell:10,undo:5";
+
+    /**
+     * The cassettes used when atm.cassettes is not set: half a million of each standard bill, so that withdrawals
+     * do not empty the ATM during a run.
+     */
+    static final String DEFAULT_CASSETTES = "5:1000000:500000,10:1000000:500000,20:1000000:500000,50:1000000:500000";
+
+    /**
+     * A user of the generator and the numbers of their accounts.
+     */
+    private static final class Customer {
+        final String username;
+        final Session session;
+        final int chequing;
+        final int savings;
+
+        Customer(String username, Session session, int chequing, int savings) {
+            this.username = username;
+            this.session = session;
+            this.chequing = chequing;
+            this.savings = savings;
+        }
+    }
+
+    private final AtmService service;
+
+    private final Session manager;
+
+    private final Customer[] customers;
+
+    private final String[] symbols;
+
+    /**
+     * mix[i] is the total weight of the first i + 1 operations, so an operation is picked by drawing a number below
+     * the total weight of the mix and finding the first entry above it.
+     */
+    private final int[] mix;
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+
+    private final AtomicLongArray succeeded = new AtomicLongArray(Operation.values().length);
+
+    /**
+     * LoadGenerator constructor. Creates the users and gives them their money, stocks and subscriptions.
+     *
+     * @param service the service requests are sent through
+     * @param users the number of users to create
+     * @param mix the operations to send, as operation:weight pairs separated by commas
+     * @param seed the seed of every random choice the generator makes
+     * @throws IllegalArgumentException if the mix is not written that way
+     */
+    LoadGenerator(AtmService service, int users, String mix, long seed) {
+        this.service = service;
+        this.mix = parseMix(mix);
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        ATM atm = service.getAtm();
+        manager = service.login("manager", "password");
+        List<String> listed = atm.getBroker().symbolsStartingWith("");
+        symbols = new String[Math.min(50, listed.size())];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = listed.get(i * listed.size() / symbols.length);
+        }
+        ArrayList<Subscription> offered = atm.getSubscriptions().getListOfSubscriptions();
+        Random random = new Random(seed);
+        customers = new Customer[users];
+        for (int i = 0; i < users; i++) {
+            String username = "load" + i;
+            User user = atm.getBM().createUser(username, "pw" + i);
+            if (user == null) {
+                throw new IllegalStateException("There is already a user called " + username);
+            }
+            int chequing = -1;
+            int savings = -1;
+            for (Account account : user.getAccounts()) {
+                switch (account.getType()) {
+                    case "chequing":
+                        chequing = account.getAccountNum();
+                        account.addMoney(Money.fromDollars(1000 + random.nextInt(4000)));
+                        break;
+                    case "savings":
+                        savings = account.getAccountNum();
+                        account.addMoney(Money.fromDollars(1000 + random.nextInt(9000)));
+                        break;
+                    case "stock":
+                        account.addMoney(Money.fromDollars(5000));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            Session session = service.login(username, "pw" + i);
+            for (int s = 0; s < 2 && symbols.length > 0; s++) {
+                service.buyStock(session, symbols[random.nextInt(symbols.length)], 1 + random.nextInt(5));
+            }
+            if (!offered.isEmpty()) {
+                service.subscribe(session, offered.get(random.nextInt(offered.size())).getName());
+            }
+            customers[i] = new Customer(username, session, chequing, savings);
+        }
+    }
+
+    /**
+     * Reads a mix of operations.
+     *
+     * @param mix operation:weight pairs separated by commas, for example "withdraw:3,transfer:1"
+     * @return the total weight of the first i + 1 operations at index i
+     * @throws IllegalArgumentException if the mix is not written that way or has no weight at all
+     */
+    static int[] parseMix(String mix) {
+        Operation[] operations = Operation.values();
+        int[] weights = new int[operations.length];
+        int total = 0;
+        for (String pair : mix.split(",")) {
+            String[] parts = pair.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Mix entry " + pair.trim() + " is not operation:weight");
+            }
+            Operation operation = Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("The weight of " + parts[0].trim() + " is negative");
+            }
+            weights[operation.ordinal()] += weight;
+            total = Math.addExact(total, weight);
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("The mix " + mix + " has no operations");
+        }
+        for (int i = 1; i < weights.length; i++) {
+            weights[i] += weights[i - 1];
+        }
+        return weights;
+    }
+
+    /**
+     * @param random the source of the choice
+     * @return an operation, picked in the proportions of the mix
+     */
+    Operation pick(Random random) {
+        int draw = random.nextInt(mix[mix.length - 1]);
+        int i = 0;
+        while (mix[i] <= draw) {
+            i++;
+        }
+        return Operation.values()[i];
+    }
+
+    /**
+     * Sends requests at a fixed rate for a while and waits for all of them to finish.
+     *
+     * @param rate the number of requests started every second
+     * @param millis how long to keep starting requests, in milliseconds
+     * @param workers the number of threads carrying out requests
+     * @param seed the seed of every random choice made for the requests
+     * @return the number of requests sent
+     * @throws InterruptedException if interrupted while waiting for requests to finish
+     */
+    long run(double rate, long millis, int workers, long seed) throws InterruptedException {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "load-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        long sent = 0;
+        while (true) {
+            long due = start + (long) (sent * 1e9 / rate);
+            if (due - start >= millis * 1000000L) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = pick(random);
+            Customer customer = customers[random.nextInt(customers.length)];
+            long draw = random.nextLong();
+            pool.execute(() -> {
+                Result result = perform(operation, customer, draw);
+                latencies[operation.ordinal()].record(System.nanoTime() - due);
+                if (result.isOk()) {
+                    succeeded.incrementAndGet(operation.ordinal());
+                }
+            });
+            sent++;
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return sent;
+    }
+
+    /**
+     * Carries out one request for a customer.
+     *
+     * @param draw the random number the amounts and other choices of the request are taken from
+     */
+    private Result perform(Operation operation, Customer customer, long draw) {
+        Random random = new Random(draw);
+        Session session = customer.session;
+        switch (operation) {
+            case WITHDRAW:
+                return service.withdraw(session, customer.chequing, Money.fromDollars(20 * (1 + random.nextInt(10))));
+            case DEPOSIT:
+                return service.deposit(session);
+            case TRANSFER:
+                long amount = Money.fromDollars(1 + random.nextInt(200));
+                return random.nextBoolean() ? service.transfer(session, customer.chequing, customer.savings, amount)
+                        : service.transfer(session, customer.savings, customer.chequing, amount);
+            case PAYBILL:
+                return service.payBill(session, customer.chequing, "payee" + random.nextInt(100),
+                        Money.fromDollars(1 + random.nextInt(100)));
+            case BUY:
+                return service.buyStock(session, symbols[random.nextInt(symbols.length)], 1 + random.nextInt(5));
+            case SELL:
+                return service.sellStock(session, symbols[random.nextInt(symbols.length)], 1);
+            default:
+                return service.undo(manager, customer.username, customer.chequing);
+        }
+    }
+
+    /**
+     * @param operation an operation
+     * @return the number of requests of that operation that finished
+     */
+    long count(Operation operation) {
+        return latencies[operation.ordinal()].count();
+    }
+
+    /**
+     * @param operation an operation
+     * @return the number of requests of that operation that succeeded
+     */
+    long succeeded(Operation operation) {
+        return succeeded.get(operation.ordinal());
+    }
+
+    /**
+     * Describes the requests that have finished, with a line for each operation in the mix.
+     *
+     * @param nanos how long the run took, in nanoseconds
+     * @return the report
+     */
+    String report(long nanos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %10s %10s %12s %10s %10s %10s%n",
+                "operation", "requests", "ok", "requests/s", "p50 us", "p99 us", "p99.9 us"));
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram latency = latencies[operation.ordinal()];
+            long count = latency.count();
+            if (count == 0) {
+                continue;
+            }
+            total += count;
+            sb.append(String.format("%-10s %10d %10d %12.1f %10d %10d %10d%n",
+                    operation.name().toLowerCase(Locale.ROOT), count, succeeded(operation), count * 1e9 / nanos,
+                    latency.percentile(50) / 1000, latency.percentile(99) / 1000,
+                    latency.percentile(99.9) / 1000));
+        }
+        sb.append(String.format("%-10s %10d %10s %12.1f%n", "total", total, "", total * 1e9 / nanos));
+        return sb.toString();
+    }
+
+    /**
+     * Runs the generator against a new ATM and prints its report.
+     *
+     * <p>
+     *     Takes the number of users (1000 by default), the number of requests a second (500 by default) and the
+     *     number of seconds to run for (30 by default). The mix is read from atm.load.mix, the number of worker
+     *     threads from atm.load.workers and the seed from atm.load.seed.
+     * </p>
+     *
+     * @param args the number of users, requests a second and seconds, each optional
+     * @throws InterruptedException if interrupted while waiting for requests to finish
+     * @throws IOException if the temporary file for bill payments cannot be created
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 500;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 30;
+        String mix = System.getProperty("atm.load.mix", DEFAULT_MIX);
+        int workers = Integer.getInteger("atm.load.workers", 4 * Runtime.getRuntime().availableProcessors());
+        long seed = Long.getLong("atm.load.seed", 1);
+        if (System.getProperty("atm.cassettes") == null) {
+            System.setProperty("atm.cassettes", DEFAULT_CASSETTES);
+        }
+        PriceCache.setDefault(new PriceCache(new SyntheticMarketDataProvider(seed), 4096, 24 * 60 * 60 * 1000L));
+        File payments = File.createTempFile("outgoing", ".txt");
+        payments.deleteOnExit();
+        OutgoingPayments.setDefault(new OutgoingPayments(payments, 1024, Long.MAX_VALUE));
+
+        // the ATM prints a line for every user and account it creates and reports every declined transaction, which
+        // would swamp the report.
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        AsyncOutput.setDefault(line -> { });
+        console.println("Creating " + users + " users");
+        ATM atm = new ATM();
+        atm.registerMetrics();
+        LoadGenerator generator = new LoadGenerator(new AtmService(atm), users, mix, seed);
+        console.println("Sending " + rate + " requests a second for " + seconds + " seconds");
+        long start = System.nanoTime();
+        generator.run(rate, seconds * 1000, workers, seed);
+        long elapsed = System.nanoTime() - start;
+        OutgoingPayments.getDefault().close();
+        System.setOut(console);
+        System.out.print(generator.report(elapsed));
+        System.out.print(Metrics.getDefault().dump());
+    }
+}
@@ -0,0 +1,94 @@
+package service;
+
+import atm.Money;
+
+/**
+ * The outcome of a request made through {@link AtmService}.
+ */
+public final class Result {
+
+    /**
+     * Why a request did or did not go through.
+     */
+    public enum Status {
+        /** The request was carried out. */
+        OK,
+        /** The request was valid but refused, for example for insufficient funds. */
+        DECLINED,
+        /** An account, user or stock named in the request does not exist. */
+        NOT_FOUND,
+        /** The session is not allowed to make the request. */
+        NOT_ALLOWED,
+        /** The request itself is wrong, for example a negative amount. */
+        INVALID
+    }
+
+    private final Status status;
+
+    private final String message;
+
+    /**
+     * The balance of the account the request was made on after it, in cents, or 0 if there is none.
+     */
+    private final long balance;
+
+    /**
+     * Result constructor.
+     *
+     * @param status why the request did or did not go through
+     * @param message a description of the outcome that can be shown to the person using the ATM
+     * @param balance the balance of the account the request was made on after it, in cents
+     */
+    Result(Status status, String message, long balance) {
+        this.status = status;
+        this.message = message;
+        this.balance = balance;
+    }
+
+    static Result ok(String message, long balance) {
+        return new Result(Status.OK, message, balance);
+    }
+
+    static Result ok(String message) {
+        return new Result(Status.OK, message, 0);
+    }
+
+    static Result fail(Status status, String message) {
+        return new Result(status, message, 0);
+    }
+
+    /**
+     * @return why the request did or did not go through
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the request was carried out
+     */
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    /**
+     * @return a description of the outcome that can be shown to the person using the ATM
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the balance of the account the request was made on after it, in cents, or 0 if there is none
+     */
+    public long getBalance() {
+        return balance;
+    }
+
+    public String toString() {
+        if (status == Status.OK && balance != 0) {
+            return status + " " + message + " (balance " + Money.format(balance) + ")";
+        }
+        return status + " " + message;
+    }
+}
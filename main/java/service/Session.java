@@ -0,0 +1,92 @@
+package service;
+
+import atm.User;
+import atm.UserDirectory;
+
+/**
+ * A person logged in to the ATM through {@link AtmService}. A session never changes and can be used from any thread.
+ * It holds the directory its user is in rather than the user, so that a logged in terminal does not keep its user in
+ * memory between commands.
+ */
+public final class Session {
+
+    /**
+     * What a logged in person is allowed to do.
+     */
+    public enum Role {
+        /** A user with accounts. */
+        USER,
+        /** The bank manager. */
+        MANAGER,
+        /** The broker, who is also a user. */
+        BROKER
+    }
+
+    /**
+     * The username the person logged in with.
+     */
+    private final String username;
+
+    /**
+     * What the person is allowed to do.
+     */
+    private final Role role;
+
+    /**
+     * The directory the session's user is looked up in, or null for the bank manager.
+     */
+    private final UserDirectory users;
+
+    /**
+     * Session constructor.
+     *
+     * @param username the username the person logged in with
+     * @param role what the person is allowed to do
+     * @param users the directory holding the user whose accounts the session uses, or null for the bank manager
+     */
+    Session(String username, Role role, UserDirectory users) {
+        this.username = username;
+        this.role = role;
+        this.users = users;
+    }
+
+    /**
+     * @return the username the person logged in with
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * @return what the person is allowed to do
+     */
+    public Role getRole() {
+        return role;
+    }
+
+    /**
+     * Looks up the user whose accounts the session uses and pins them in their directory, so that they stay in
+     * memory and the changes made to them are kept while a request uses them. Every call must be followed by
+     * {@link #unpin(User)} once the request is done.
+     *
+     * @return the user, pinned, or null for the bank manager
+     */
+    User pinUser() {
+        return users == null ? null : users.getPinned(username);
+    }
+
+    /**
+     * Undoes {@link #pinUser()}.
+     *
+     * @param user the user returned by {@link #pinUser()}, or null
+     */
+    void unpin(User user) {
+        if (user != null) {
+            users.unpin(user);
+        }
+    }
+
+    public String toString() {
+        return username + " (" + role + ")";
+    }
+}
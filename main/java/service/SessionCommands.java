@@ -0,0 +1,162 @@
+package service;
+
+import account.Account;
+import atm.Money;
+
+import java.util.Locale;
+
+/**
+ * Reads the one-line commands terminals send to the {@link SessionServer} and carries them out through
+ * {@link AtmService}. Each command gets a one-line reply starting with the status of its {@link Result}.
+ *
+ * <p>
+ *     The commands follow the options of the console menus. Amounts are in dollars, like at the console.
+ * </p>
+ */
+class SessionCommands {
+
+    /**
+     * The reply to help, listing every command.
+     */
+    static final String HELP = "OK login <user> <password> | logout | accounts | balance <account> | deposit"
+            + " | withdraw <account> <amount> | transfer <from> <to> <amount> | paybill <account> <payee> <amount>"
+            + " | buy <symbol> <shares> | sell <symbol> <shares> | subscribe <name> | unsubscribe <name>"
+            + " | createuser <user> <password> | createaccount <user> <type> | restock <cassette>"
+            + " | undo <user> <account> | stats | quit";
+
+    /**
+     * What the server knows about one terminal between commands.
+     */
+    static final class State {
+
+        /**
+         * The session of the person logged in at the terminal, or null if nobody is.
+         */
+        Session session;
+
+        /**
+         * True once the terminal has asked to disconnect.
+         */
+        boolean quit;
+    }
+
+    private final AtmService service;
+
+    private final SessionServer server;
+
+    /**
+     * SessionCommands constructor.
+     *
+     * @param service the service commands are carried out through
+     * @param server the server whose statistics the stats command reports, or null
+     */
+    SessionCommands(AtmService service, SessionServer server) {
+        this.service = service;
+        this.server = server;
+    }
+
+    /**
+     * Carries out one command.
+     *
+     * @param state what the server knows about the terminal the command came from
+     * @param line the command
+     * @return the reply, without a newline
+     */
+    String execute(State state, String line) {
+        String[] words = line.trim().split("\\s+");
+        String command = words[0].toLowerCase(Locale.ROOT);
+        try {
+            switch (command) {
+                case "":
+                    return "INVALID Empty command";
+                case "help":
+                    return HELP;
+                case "quit":
+                    state.quit = true;
+                    return "OK Bye";
+                case "stats":
+                    return "OK " + (server == null ? "" : server.report());
+                case "login":
+                    expect(words, 3);
+                    state.session = service.login(words[1], words[2]);
+                    return state.session == null ? "NOT_ALLOWED Login failed"
+                            : "OK Logged in as " + state.session;
+                default:
+                    break;
+            }
+            if (state.session == null) {
+                return "NOT_ALLOWED Log in first";
+            }
+            Session session = state.session;
+            switch (command) {
+                case "logout":
+                    state.session = null;
+                    return "OK Logged out";
+                case "accounts":
+                    return accounts(session);
+                case "balance":
+                    expect(words, 2);
+                    return service.balance(session, Integer.parseInt(words[1])).toString();
+                case "deposit":
+                    return service.deposit(session).toString();
+                case "withdraw":
+                    expect(words, 3);
+                    return service.withdraw(session, Integer.parseInt(words[1]), Money.parse(words[2])).toString();
+                case "transfer":
+                    expect(words, 4);
+                    return service.transfer(session, Integer.parseInt(words[1]), Integer.parseInt(words[2]),
+                            Money.parse(words[3])).toString();
+                case "paybill":
+                    expect(words, 4);
+                    return service.payBill(session, Integer.parseInt(words[1]), words[2],
+                            Money.parse(words[3])).toString();
+                case "buy":
+                    expect(words, 3);
+                    return service.buyStock(session, words[1], Integer.parseInt(words[2])).toString();
+                case "sell":
+                    expect(words, 3);
+                    return service.sellStock(session, words[1], Integer.parseInt(words[2])).toString();
+                case "subscribe":
+                    expect(words, 2);
+                    return service.subscribe(session, words[1]).toString();
+                case "unsubscribe":
+                    expect(words, 2);
+                    return service.unsubscribe(session, words[1]).toString();
+                case "createuser":
+                    expect(words, 3);
+                    return service.createUser(session, words[1], words[2]).toString();
+                case "createaccount":
+                    expect(words, 3);
+                    return service.createAccount(session, words[1], words[2]).toString();
+                case "restock":
+                    expect(words, 2);
+                    return service.restock(session, Integer.parseInt(words[1])).toString();
+                case "undo":
+                    expect(words, 3);
+                    return service.undo(session, words[1], Integer.parseInt(words[2])).toString();
+                default:
+                    return "INVALID There is no command " + words[0] + ", try help";
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return "INVALID " + e.getMessage();
+        }
+    }
+
+    private String accounts(Session session) {
+        StringBuilder sb = new StringBuilder("OK");
+        for (Account account : service.accounts(session)) {
+            sb.append(' ').append(account.getAccountNum()).append(':').append(account.getType())
+                    .append(':').append(Money.format(account.getBalance()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the command does not have the number of words it needs
+     */
+    private static void expect(String[] words, int count) {
+        if (words.length != count) {
+            throw new IllegalArgumentException(words[0] + " takes " + (count - 1) + " arguments");
+        }
+    }
+}
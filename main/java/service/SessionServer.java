@@ -0,0 +1,423 @@
+package service;
+
+import atm.ATM;
+import metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves many ATM terminals from one process, all sharing the same bank through {@link AtmService}.
+ *
+ * <p>
+ *     Terminals connect on a local TCP port or a Unix domain socket and send one command per line, see
+ *     {@link SessionCommands}. One thread watches every connection with a selector and only reads and writes what
+ *     a connection is ready for, so a slow terminal never holds up the others. Complete commands are carried out on
+ *     a pool of worker threads, one command at a time per terminal so replies come back in order. A terminal that
+ *     sends commands faster than they are carried out is not read from until it catches up.
+ * </p>
+ *
+ * <p>
+ *     The server counts active sessions and records how long each command takes. The stats command returns the
+ *     numbers, and they are printed every atm.server.report seconds if that system property is set.
+ * </p>
+ */
+public class SessionServer {
+
+    /**
+     * The most commands read from a terminal that can wait to be carried out.
+     */
+    private static final int MAX_PENDING = 64;
+
+    /**
+     * The longest command line accepted, in bytes.
+     */
+    private static final int MAX_LINE = 4096;
+
+    private final AtmService service;
+
+    private final SessionCommands commands;
+
+    /**
+     * The threads commands are carried out on.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Connections whose state was changed by a worker, for the selector thread to look at.
+     */
+    private final ConcurrentLinkedQueue<Connection> changed = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    private final AtomicLong totalSessions = new AtomicLong();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private Selector selector;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread selectorThread;
+
+    private ScheduledExecutorService reporter;
+
+    private volatile boolean running;
+
+    /**
+     * SessionServer constructor.
+     *
+     * @param service the service terminals use
+     * @param workerThreads the number of threads commands are carried out on
+     */
+    public SessionServer(AtmService service, int workerThreads) {
+        this.service = service;
+        this.commands = new SessionCommands(service, this);
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, "session-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts accepting terminals.
+     *
+     * @param address a TCP address, or a {@link UnixDomainSocketAddress} for a Unix domain socket
+     * @return the address the server is listening on, with the port filled in if port 0 was asked for
+     * @throws IOException if the server cannot listen on the address
+     */
+    public synchronized SocketAddress start(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            serverChannel = ServerSocketChannel.open();
+        }
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        selector = Selector.open();
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::run, "session-server");
+        selectorThread.start();
+        long reportSeconds = Long.getLong("atm.server.report", 0);
+        if (reportSeconds > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "session-report");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(() -> System.out.println(report()), reportSeconds, reportSeconds,
+                    TimeUnit.SECONDS);
+        }
+        return serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Stops accepting terminals, disconnects every terminal and waits for the commands being carried out to finish.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void close() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        selectorThread.join();
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+        if (reporter != null) {
+            reporter.shutdown();
+        }
+    }
+
+    /**
+     * @return the number of terminals connected
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * @return the number of sessions, active sessions, commands carried out and how long commands take
+     */
+    public String report() {
+        return "sessions active " + activeSessions.get() + " total " + totalSessions.get()
+                + " requests " + latencies.count()
+                + " latency p50 " + micros(latencies.percentile(50))
+                + " p99 " + micros(latencies.percentile(99))
+                + " p99.9 " + micros(latencies.percentile(99.9));
+    }
+
+    private static String micros(long nanos) {
+        return nanos / 1000 + "us";
+    }
+
+    /**
+     * The selector loop: accepts terminals, reads commands and writes replies until the server is closed.
+     */
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = changed.poll()) != null) {
+                    dispatch(connection);
+                    updateInterest(connection);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(c);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(c);
+                        }
+                        if (key.isValid()) {
+                            updateInterest(c);
+                        }
+                    } catch (IOException e) {
+                        disconnect(c);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Session server stopped: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    disconnect((Connection) key.attachment());
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Problem closing the session server");
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        activeSessions.incrementAndGet();
+        totalSessions.incrementAndGet();
+    }
+
+    /**
+     * Reads what the terminal has sent and queues every complete line as a command.
+     */
+    private void read(Connection c) throws IOException {
+        int n = c.channel.read(c.in);
+        if (n < 0) {
+            c.closing = true;
+        }
+        c.in.flip();
+        int start = c.in.position();
+        for (int i = c.in.position(); i < c.in.limit(); i++) {
+            if (c.in.get(i) == '\n') {
+                byte[] bytes = new byte[i - start];
+                c.in.get(start, bytes);
+                String line = new String(bytes, StandardCharsets.UTF_8).trim();
+                if (!line.isEmpty()) {
+                    synchronized (c) {
+                        c.pending.add(line);
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        c.in.position(start);
+        c.in.compact();
+        if (!c.in.hasRemaining()) {
+            // a line longer than the buffer can never be completed.
+            c.closing = true;
+            synchronized (c) {
+                c.pending.clear();
+                c.output.add(ByteBuffer.wrap("INVALID Line too long\n".getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        dispatch(c);
+    }
+
+    /**
+     * Hands the terminal's next command to a worker if none of its commands is being carried out.
+     */
+    private void dispatch(Connection c) {
+        String line;
+        synchronized (c) {
+            if (c.busy || c.pending.isEmpty() || c.state.quit) {
+                return;
+            }
+            c.busy = true;
+            line = c.pending.poll();
+        }
+        workers.execute(() -> carryOut(c, line));
+    }
+
+    /**
+     * Carries out one command on a worker thread and queues the reply.
+     */
+    private void carryOut(Connection c, String line) {
+        long start = System.nanoTime();
+        String reply;
+        try {
+            reply = commands.execute(c.state, line);
+        } catch (RuntimeException e) {
+            reply = "INVALID " + e;
+        }
+        latencies.record(System.nanoTime() - start);
+        synchronized (c) {
+            c.output.add(ByteBuffer.wrap((reply + "\n").getBytes(StandardCharsets.UTF_8)));
+            c.busy = false;
+            if (c.state.quit) {
+                c.closing = true;
+                c.pending.clear();
+            }
+        }
+        changed.add(c);
+        selector.wakeup();
+    }
+
+    private void write(Connection c) throws IOException {
+        synchronized (c) {
+            while (!c.output.isEmpty()) {
+                ByteBuffer buffer = c.output.peek();
+                c.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                c.output.poll();
+            }
+        }
+    }
+
+    /**
+     * Watches the connection for what it can do next: reading while it has room for more commands and writing while
+     * it has replies to send. Disconnects once a closing terminal has nothing left to send or carry out.
+     */
+    private void updateInterest(Connection c) {
+        if (!c.key.isValid()) {
+            return;
+        }
+        int ops;
+        synchronized (c) {
+            if (c.closing && !c.busy && c.pending.isEmpty() && c.output.isEmpty()) {
+                ops = -1;
+            } else {
+                ops = 0;
+                if (!c.closing && c.pending.size() < MAX_PENDING) {
+                    ops |= SelectionKey.OP_READ;
+                }
+                if (!c.output.isEmpty()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+            }
+        }
+        if (ops < 0) {
+            disconnect(c);
+        } else {
+            c.key.interestOps(ops);
+        }
+    }
+
+    private void disconnect(Connection c) {
+        if (c.key.isValid()) {
+            c.key.cancel();
+            activeSessions.decrementAndGet();
+        }
+        try {
+            c.channel.close();
+        } catch (IOException e) {
+            // the terminal is gone either way.
+        }
+    }
+
+    /**
+     * A connected terminal. Its buffers are only touched by the selector thread; what a worker changes is guarded by
+     * the connection.
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+        private final ArrayDeque<String> pending = new ArrayDeque<>();
+        private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+        private final SessionCommands.State state = new SessionCommands.State();
+        private SelectionKey key;
+        private boolean busy;
+        private boolean closing;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Boots the ATM and serves it to terminals until the process is stopped, then shuts the ATM down.
+     *
+     * @param args a port number, or the path of a Unix domain socket. By default port atm.server.port (7777) on
+     *             this machine only.
+     * @throws IOException if the server cannot listen
+     */
+    public static void main(String[] args) throws IOException {
+        ATM atm = ATM.load();
+        atm.startUp();
+        SocketAddress address;
+        if (args.length > 0 && !args[0].matches("\\d+")) {
+            address = UnixDomainSocketAddress.of(Path.of(args[0]));
+        } else {
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("atm.server.port", 7777);
+            address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        }
+        SessionServer server = new SessionServer(new AtmService(atm), Integer.getInteger("atm.server.workers",
+                4 * Runtime.getRuntime().availableProcessors()));
+        System.out.println("Serving terminals on " + server.start(address));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            System.out.println(server.report());
+            atm.shutDown();
+        }));
+    }
+}
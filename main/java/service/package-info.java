@@ -0,0 +1,4 @@
+/**
+ * This package lets programs use the ATM directly, without the menus in the interfaces package.
+ */
+package service;
\ No newline at end of file
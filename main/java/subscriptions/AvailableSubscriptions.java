@@ -28,10 +28,10 @@ public class AvailableSubscriptions implements Serializable {
      * Adds some basic subscriptions to {@link AvailableSubscriptions#listOfSubscriptions}
      */
     private void basicSubscriptions(){
-        listOfSubscriptions.add(new Subscription("netflix", 12.99));
-        listOfSubscriptions.add(new Subscription("spotify", 9.50));
-        listOfSubscriptions.add(new Subscription("RogersTv", 35.00));
-        listOfSubscriptions.add(new Subscription("FidoMobile", 44.99));
+        listOfSubscriptions.add(new Subscription("netflix", 1299));
+        listOfSubscriptions.add(new Subscription("spotify", 950));
+        listOfSubscriptions.add(new Subscription("RogersTv", 3500));
+        listOfSubscriptions.add(new Subscription("FidoMobile", 4499));
     }
 
     /**
@@ -46,9 +46,9 @@ public class AvailableSubscriptions implements Serializable {
      * Makes a new subscription available if not offered already.
      *
      * @param name name of the subscription
-     * @param price price to pay to subscribe to this subscription
+     * @param price price to pay to subscribe to this subscription, in cents
      */
-    public void addSubscription (String name, double price){
+    public void addSubscription (String name, long price){
         boolean added = false;
 
         for (Subscription sub: listOfSubscriptions){
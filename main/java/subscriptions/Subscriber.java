@@ -2,17 +2,32 @@ package subscriptions;
 
 import account.Account;
 import account.CreditCard;
+import account.TransferEngine;
 import atm.ATM;
+import atm.AsyncOutput;
+import atm.Journal;
+import atm.Money;
 import atm.User;
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Scanner;
+import java.util.function.BooleanSupplier;
 
 /**
  * Class that handles the user's subscribing functions
  */
 public class Subscriber implements Serializable {
+    /**
+     * Times charging every user for their subscriptions, and counts subscriptions cancelled for lack of credit.
+     */
+    private static final Timer UPDATES = Metrics.getDefault().timer("subscriptions.update");
+    private static final Counter CANCELLED = Metrics.getDefault().counter("subscriptions.cancelled");
+
     /**
      *
      *
@@ -68,19 +83,47 @@ public class Subscriber implements Serializable {
             }
             if (userHas){
                 System.out.println("User already subscribed to: "+name);
-            } else if (s != null){
-                user.addSubscription(s);
-                hasCredit.removeMoney(s.getCost());
             } else {
-                s = createSubscription(name);
-                user.addSubscription(s);
-                hasCredit.removeMoney(s.getCost());
+                Subscription subscription = s != null ? s : createSubscription(name);
+                TransferEngine.getDefault().withLock(hasCredit, () -> {
+                    user.addSubscription(subscription);
+                    hasCredit.removeMoney(subscription.getCost());
+                    journal(Journal.SUBSCRIPTIONS, user, hasCredit);
+                    return true;
+                });
             }
         } else {
             System.out.println("User must create a credit card before making a Subscription.");
         }
     }
 
+    /**
+     * Subscribes a user to a subscription the ATM already offers, charging the first month to their credit card,
+     * without asking for anything.
+     * @param user user that adds a subscription.
+     * @param name name of the subscription.
+     * @return true if the user was subscribed, false if they have no credit card, are already subscribed, the
+     * subscription is not offered or the charge was declined
+     */
+    public boolean subscribe(User user, String name){
+        CreditCard hasCredit = checkCredit(user);
+        if (hasCredit == null){
+            return false;
+        }
+        return TransferEngine.getDefault().withLock(hasCredit, () -> {
+            Subscription s = hasSubscriptionAtm(name);
+            if (s == null || hasSubscriptionUser(name, user) != null){
+                return false;
+            }
+            if (!hasCredit.tryRemoveMoney(s.getCost())){
+                return false;
+            }
+            user.addSubscription(s);
+            journal(Journal.SUBSCRIPTIONS, user, hasCredit);
+            return true;
+        });
+    }
+
     /**
      * Checks if user has a credit card account.
      *
@@ -97,6 +140,33 @@ public class Subscriber implements Serializable {
         return null;
     }
 
+    /**
+     * Runs a change to a user's subscriptions with their credit card locked, if they have one, so that the record of
+     * the change is not written out of order with another change to the card.
+     * @param user the User whose subscriptions are changed
+     * @param change the change, returning whether it was made
+     * @return the result of the change
+     */
+    private boolean withCredit(User user, BooleanSupplier change){
+        CreditCard hasCredit = checkCredit(user);
+        if (hasCredit == null){
+            return TransferEngine.getDefault().change(change);
+        }
+        return TransferEngine.getDefault().withLock(hasCredit, change);
+    }
+
+    /**
+     * Records a user's subscriptions and the balance of their credit card in the ATM's journal, if it has one.
+     * @param type the type of the record, see {@link Journal#logSubscriptions(byte, User, Account)}
+     * @param user the User whose subscriptions changed
+     * @param hasCredit the user's credit card, or null if they have none
+     */
+    private void journal(byte type, User user, CreditCard hasCredit){
+        if (atm.getJournal() != null){
+            atm.getJournal().logSubscriptions(type, user, hasCredit);
+        }
+    }
+
     /**
      * Creates a new Subscription.
      * @param name name of the subscription created
@@ -107,22 +177,29 @@ public class Subscriber implements Serializable {
 
         System.out.println("Enter cost of Subscription");
 
-        double cost = -1.00;
+        long cost = -1;
 
-        while (cost == -1.00) {
+        while (cost == -1) {
 
             try {
-                cost = Double.parseDouble(sc.next());
+                cost = Money.parse(sc.next());
                 if (cost <= 0) {
-                    cost = -1.00;
-                    System.out.println("Enter double greater than 0");
+                    cost = -1;
+                    System.out.println("Enter an amount greater than 0");
                 } else {
-                    atm.getSubscriptions().addSubscription(name, cost);
+                    long offered = cost;
+                    TransferEngine.getDefault().change(() -> {
+                        atm.getSubscriptions().addSubscription(name, offered);
+                        if (atm.getJournal() != null) {
+                            atm.getJournal().logOfferSubscription(name, offered);
+                        }
+                        return true;
+                    });
                     return new Subscription(name, cost);
                 }
 
             } catch (Exception e) {
-                System.out.println("Enter double greater than 0");
+                System.out.println("Enter an amount greater than 0");
             }
         }
 
@@ -160,29 +237,40 @@ public class Subscriber implements Serializable {
     }
 
     /**
-     * Charges users for their subscriptions on the 1st of every month.
+     * Charges users for their subscriptions on the 1st of every month. Users with no subscriptions, and users the ATM
+     * already charged today before it crashed, are skipped.
      */
     public void updateAllSubscriptions(){
+        long start = UPDATES.start();
         Calendar date = atm.getDate();
         int day = date.get(Calendar.DAY_OF_MONTH);
         if (day == 1){
-            for (User user: this.atm.getListOfUsers()){
-                CreditCard userCred = checkCredit(user);
-                if (userCred != null){
-                    for (Subscription sub: user.getSubscriptions()){
-                        double m = userCred.getBalance();
-                        userCred.removeMoney(sub.getCost());
-                        if (userCred.getBalance() == m){
-                            user.removeSubsciption(sub.getName());
-                            System.out.println("Not enough funds for Subscription: "+sub.getName());
+            for (User user : this.atm.getUserDirectory()){
+                if (user.getSubscriptions().isEmpty() || atm.subscriptionsCharged(user)){
+                    continue;
+                }
+                withCredit(user, () -> {
+                    CreditCard userCred = checkCredit(user);
+                    if (userCred != null){
+                        // a copy, since subscriptions that cannot be paid for are removed from the user's list.
+                        for (Subscription sub: new ArrayList<>(user.getSubscriptions())){
+                            if (!userCred.tryRemoveMoney(sub.getCost())){
+                                CANCELLED.increment();
+                                user.removeSubsciption(sub.getName());
+                                AsyncOutput.getDefault().println("Not enough funds for Subscription: "+sub.getName());
+                            }
                         }
+                    } else {
+                        user.removeAllSubscriptions();
+                        AsyncOutput.getDefault().println("No Credit card found, all subscriptions cancelled from user: "
+                                + user.getUsername());
                     }
-                } else {
-                    user.removeAllSubscriptions();
-                    System.out.println("No Credit card found, all subscriptions cancelled from user: "+user.getUsername());
-                }
+                    journal(Journal.CHARGE_SUBSCRIPTIONS, user, userCred);
+                    return true;
+                });
             }
         }
+        UPDATES.stop(start);
     }
 
     /**
@@ -190,7 +278,7 @@ public class Subscriber implements Serializable {
      */
     public void showAllSubscriptions(){
         for (Subscription sub: atm.getSubscriptions().getListOfSubscriptions()){
-            System.out.println("Subscription: "+sub.getName()+" Cost: "+sub.getCost());
+            System.out.println("Subscription: "+sub.getName()+" Cost: "+Money.format(sub.getCost()));
         }
     }
 
@@ -200,7 +288,7 @@ public class Subscriber implements Serializable {
      */
     public void showUserSubscriptions(User user){
         for (Subscription sub: user.getSubscriptions()){
-            System.out.println("Subscription: "+sub.getName()+" Cost: "+sub.getCost());
+            System.out.println("Subscription: "+sub.getName()+" Cost: "+Money.format(sub.getCost()));
         }
     }
 
@@ -210,7 +298,11 @@ public class Subscriber implements Serializable {
      * @param name name of subscription
      */
     public void removeSubscription(User user, String name){
-        user.removeSubsciption(name);
+        withCredit(user, () -> {
+            user.removeSubsciption(name);
+            journal(Journal.SUBSCRIPTIONS, user, checkCredit(user));
+            return true;
+        });
     }
 
     /**
@@ -7,9 +7,9 @@ import java.io.*;
  */
 public class Subscription implements Serializable {
     /**
-     * cost of the subscription.
+     * cost of the subscription, in cents.
      */
-    private final double cost;
+    private final long cost;
 
     /**
      * Name of the subscription.
@@ -19,9 +19,9 @@ public class Subscription implements Serializable {
     /**
      * Subscription constructor.
      * @param n name of the subcription
-     * @param c cost of the subscription
+     * @param c cost of the subscription, in cents
      */
-    public Subscription(String n, double c){
+    public Subscription(String n, long c){
         this.name = n;
         this.cost = c;
     }
@@ -36,9 +36,9 @@ public class Subscription implements Serializable {
 
     /**
      *
-     * @return cost of the subcription
+     * @return cost of the subcription, in cents
      */
-    public double getCost(){
+    public long getCost(){
         return this.cost;
     }
 
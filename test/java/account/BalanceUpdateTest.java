@@ -0,0 +1,115 @@
+package account;
+import atm.ATM;
+import atm.Money;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BalanceUpdateTest {
+    private ATM atm;
+
+    @Before
+    public void setUp() {
+        atm = new ATM();
+    }
+
+    /**
+     * Runs the same task on several threads at once and waits for them all.
+     */
+    private void race(int threads, Runnable task) throws InterruptedException {
+        ArrayList<Thread> started = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(task);
+            started.add(thread);
+            thread.start();
+        }
+        for (Thread thread : started) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void concurrentCreditsAreNotLost() throws Exception {
+        Savings savings = new Savings(1001, atm);
+        race(8, () -> {
+            for (int i = 0; i < 10000; i++) {
+                savings.addMoney(1);
+            }
+        });
+        assertEquals(80000, savings.getBalance());
+    }
+
+    @Test
+    public void chequingNeverPassesOverdraftFloor() throws Exception {
+        Chequing chequing = new Chequing(1002, atm);
+        chequing.addMoney(500);
+        AtomicInteger debits = new AtomicInteger();
+        race(8, () -> {
+            for (int i = 0; i < 10000; i++) {
+                if (chequing.tryRemoveMoney(300)) {
+                    debits.incrementAndGet();
+                }
+            }
+        });
+        // 500, 200, -100: the third debit goes into overdraft, the fourth would pass $100.
+        assertEquals(2, debits.get());
+        assertEquals(-100, chequing.getBalance());
+    }
+
+    @Test
+    public void debtNeverPassesCreditLimit() throws Exception {
+        CreditCard card = new CreditCard(1003, atm);
+        long limit = 50000 * Money.CENTS_PER_DOLLAR;
+        AtomicInteger charges = new AtomicInteger();
+        race(8, () -> {
+            for (int i = 0; i < 100000; i++) {
+                if (card.tryRemoveMoney(7 * Money.CENTS_PER_DOLLAR)) {
+                    charges.incrementAndGet();
+                }
+            }
+        });
+        assertEquals(limit / (7 * Money.CENTS_PER_DOLLAR), charges.get());
+        assertEquals(charges.get() * 7 * Money.CENTS_PER_DOLLAR, card.getBalance());
+    }
+
+    @Test
+    public void stockAccountStaysPositive() {
+        StockAccount stocks = new StockAccount(1004, atm);
+        stocks.addMoney(1000);
+        assertFalse(stocks.tryRemoveMoney(1001));
+        assertTrue(stocks.tryRemoveMoney(1000));
+        assertEquals(0, stocks.getBalance());
+    }
+
+    @Test
+    public void cashIsNeverDispensedWithoutADebit() throws Exception {
+        Savings savings = new Savings(1005, atm);
+        savings.addMoney(1000 * Money.CENTS_PER_DOLLAR);
+        long cashBefore = atm.getBills().getTotalAmount();
+        AtomicInteger withdrawals = new AtomicInteger();
+        AtomicInteger debits = new AtomicInteger();
+        AtomicInteger started = new AtomicInteger();
+        // withdrawals take the account's lock, while a stock purchase debits it without.
+        race(4, () -> {
+            boolean withdrawing = started.getAndIncrement() % 2 == 0;
+            for (int i = 0; i < 100; i++) {
+                if (withdrawing) {
+                    if (savings.withdrawCash(20 * Money.CENTS_PER_DOLLAR) != null) {
+                        withdrawals.incrementAndGet();
+                    }
+                } else if (savings.tryRemoveMoney(20 * Money.CENTS_PER_DOLLAR)) {
+                    debits.incrementAndGet();
+                }
+            }
+        });
+        long dispensed = cashBefore - atm.getBills().getTotalAmount();
+        assertEquals(withdrawals.get() * 20 * Money.CENTS_PER_DOLLAR, dispensed);
+        assertEquals(1000 * Money.CENTS_PER_DOLLAR - dispensed - debits.get() * 20 * Money.CENTS_PER_DOLLAR,
+                savings.getBalance());
+        assertTrue(savings.getBalance() >= 0);
+    }
+}
@@ -0,0 +1,87 @@
+package account;
+import atm.ATM;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class DepositFeedTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("deposits", ".txt");
+        file.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() {
+        DepositFeed.setDefault(null);
+    }
+
+    private void append(String text) throws IOException {
+        try (FileWriter w = new FileWriter(file, true)) {
+            w.write(text);
+        }
+    }
+
+    @Test
+    public void readsEachLineOnceByOffset() throws IOException {
+        append("55.02\n\n0111\r\n1000");
+        DepositFeed feed = new DepositFeed(file, false);
+        DepositFeed.Entry first = feed.next(0);
+        assertEquals("55.02", first.getLine());
+        DepositFeed.Entry second = feed.next(first.getNextOffset());
+        assertEquals("0111", second.getLine());
+        DepositFeed.Entry third = feed.next(second.getNextOffset());
+        assertEquals("1000", third.getLine());
+        assertNull(feed.next(third.getNextOffset()));
+    }
+
+    @Test
+    public void tailingWaitsForCompleteLines() throws Exception {
+        append("0111\n20");
+        DepositFeed feed = new DepositFeed(file, true);
+        DepositFeed.Entry first = feed.next(0);
+        assertEquals("0111", first.getLine());
+        assertNull(feed.next(first.getNextOffset()));
+        append(".50\n");
+        DepositFeed.Entry second = feed.await(first.getNextOffset(), 1000);
+        assertEquals("20.50", second.getLine());
+        assertEquals(Files.size(file.toPath()), second.getNextOffset());
+    }
+
+    @Test
+    public void replacedFileIsReadFromTheStart() throws IOException {
+        append("0111\n0222\n0333\n");
+        DepositFeed feed = new DepositFeed(file, false);
+        long offset = feed.next(feed.next(0).getNextOffset()).getNextOffset();
+        try (FileWriter w = new FileWriter(file)) {
+            w.write("9.99\n");
+        }
+        assertEquals("9.99", feed.next(offset).getLine());
+    }
+
+    @Test
+    public void waitingForADepositDoesNotHoldTheAccount() throws Exception {
+        DepositFeed.setDefault(new DepositFeed(file, true));
+        ATM atm = new ATM();
+        Chequing chequing = new Chequing(1001, atm);
+        Savings savings = new Savings(1002, atm);
+        chequing.addMoney(5000);
+        long[] deposited = new long[1];
+        Thread depositor = new Thread(() -> deposited[0] = chequing.deposit());
+        depositor.start();
+        Thread.sleep(200);
+        assertTrue(chequing.tryTransferOut(100, savings));
+        assertTrue(depositor.isAlive());
+        append("20.00\n");
+        depositor.join();
+        assertEquals(2000, deposited[0]);
+        assertEquals(6900, chequing.getBalance());
+    }
+}
@@ -0,0 +1,104 @@
+package account;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class OutgoingPaymentsTest {
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("outgoing").toFile();
+        file = new File(dir, "outgoing.txt");
+    }
+
+    private List<String> lines(File f) throws IOException {
+        return Files.readAllLines(f.toPath());
+    }
+
+    @Test
+    public void appendsInsteadOfTruncating() throws Exception {
+        OutgoingPayments payments = new OutgoingPayments(file, 16, 1 << 20);
+        assertTrue(payments.append("1001 payed 5.00 to hydro"));
+        assertTrue(payments.append("1001 payed 7.00 to gas"));
+        assertEquals(2, lines(file).size());
+        payments.close();
+    }
+
+    @Test
+    public void concurrentPaymentsAreAllWritten() throws Exception {
+        OutgoingPayments payments = new OutgoingPayments(file, 8, 1 << 20);
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int id = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    assertTrue(payments.append(id + " payed " + i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400, lines(file).size());
+        payments.close();
+    }
+
+    @Test
+    public void flushWaitsForSubmittedLines() throws Exception {
+        OutgoingPayments payments = new OutgoingPayments(file, 64, 1 << 20);
+        ArrayList<CompletableFuture<Void>> acks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            acks.add(payments.submit("line " + i));
+        }
+        payments.flush();
+        for (CompletableFuture<Void> ack : acks) {
+            assertTrue(ack.isDone());
+        }
+        assertEquals(50, lines(file).size());
+        payments.close();
+    }
+
+    @Test
+    public void rotatesLargeFiles() throws Exception {
+        OutgoingPayments payments = new OutgoingPayments(file, 16, 100);
+        for (int i = 0; i < 20; i++) {
+            payments.append("1001 payed 10.00 to hydro");
+        }
+        payments.close();
+        int total = file.exists() ? lines(file).size() : 0;
+        int n = 1;
+        while (new File(file.getPath() + "." + n).exists()) {
+            total += lines(new File(file.getPath() + "." + n)).size();
+            n++;
+        }
+        assertTrue(n > 2);
+        assertEquals(20, total);
+    }
+
+    @Test
+    public void failingToRotateDoesNotFailWrittenPayments() throws Exception {
+        // the longest name a file can have, so the name it would be rotated to is too long.
+        StringBuilder name = new StringBuilder();
+        while (name.length() < 255) {
+            name.append('o');
+        }
+        File full = new File(dir, name.toString());
+        OutgoingPayments payments = new OutgoingPayments(full, 16, 10);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(payments.append("1001 payed 10.00 to hydro"));
+        }
+        payments.close();
+        assertEquals(5, lines(full).size());
+    }
+}
@@ -0,0 +1,108 @@
+package account;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TransferEngineTest {
+
+    @Test
+    public void roundsStripesToPowerOfTwo() {
+        assertEquals(1, new TransferEngine(1).getStripeCount());
+        assertEquals(64, new TransferEngine(64).getStripeCount());
+        assertEquals(128, new TransferEngine(65).getStripeCount());
+    }
+
+    @Test
+    public void spreadsNeighbouringAccounts() {
+        TransferEngine engine = new TransferEngine(64);
+        boolean[] used = new boolean[64];
+        int stripes = 0;
+        for (int accountNum = 1001; accountNum < 1065; accountNum++) {
+            int stripe = engine.stripeOf(accountNum);
+            if (!used[stripe]) {
+                used[stripe] = true;
+                stripes++;
+            }
+        }
+        assertTrue(stripes > 32);
+    }
+
+    @Test
+    public void opposingTransfersKeepTotalWithoutDeadlock() throws Exception {
+        // few stripes so many transfers share locks in both directions.
+        TransferEngine engine = new TransferEngine(4);
+        long[] balances = new long[16];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = 1000;
+        }
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Random random = new Random(t);
+            Thread thread = new Thread(() -> {
+                for (int n = 0; n < 20000; n++) {
+                    int from = random.nextInt(balances.length);
+                    int to = random.nextInt(balances.length);
+                    engine.withLocks(from, to, () -> {
+                        if (balances[from] < 7) {
+                            return false;
+                        }
+                        balances[from] -= 7;
+                        balances[to] += 7;
+                        return true;
+                    });
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(30000);
+            assertFalse(thread.isAlive());
+        }
+        long total = 0;
+        for (long balance : balances) {
+            assertTrue(balance >= 0);
+            total += balance;
+        }
+        assertEquals(16000, total);
+    }
+
+    @Test
+    public void snapshotWaitsForChangesInProgress() throws Exception {
+        TransferEngine engine = new TransferEngine(4);
+        CountDownLatch changing = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        Thread change = new Thread(() -> engine.withLocks(1, 2, () -> {
+            changing.countDown();
+            engine.change(() -> {
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finished.set(true);
+                return true;
+            });
+            return true;
+        }));
+        change.start();
+        assertTrue(changing.await(10, TimeUnit.SECONDS));
+        AtomicBoolean sawFinished = new AtomicBoolean();
+        Thread snapshot = new Thread(() -> engine.quiesce(() -> sawFinished.set(finished.get())));
+        snapshot.start();
+        snapshot.join(200);
+        assertTrue(snapshot.isAlive());
+        finish.countDown();
+        snapshot.join(10000);
+        change.join(10000);
+        assertFalse(snapshot.isAlive());
+        assertTrue(sawFinished.get());
+    }
+}
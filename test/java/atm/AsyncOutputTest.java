@@ -0,0 +1,62 @@
+package atm;
+import metrics.Metrics;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class AsyncOutputTest {
+
+    @Test
+    public void printsEveryLineInOrder() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncOutput output = new AsyncOutput(new PrintStream(bytes, true), 1024);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            output.println("line " + i);
+            expected.append("line ").append(i).append(System.lineSeparator());
+        }
+        output.flush();
+        assertEquals(expected.toString(), bytes.toString());
+    }
+
+    @Test
+    public void dropsLinesWhenTheQueueIsFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                bytes.write(b, off, len);
+            }
+        };
+        AsyncOutput output = new AsyncOutput(new PrintStream(slow), 2);
+        long dropped = Metrics.getDefault().counter("atm.output.dropped").getCount();
+        output.println("a");
+        writing.await();
+        output.println("b");
+        output.println("c");
+        output.println("d");
+        assertEquals(dropped + 1, Metrics.getDefault().counter("atm.output.dropped").getCount());
+        release.countDown();
+        output.flush();
+        String n = System.lineSeparator();
+        assertEquals("a" + n + "b" + n + "c" + n, bytes.toString());
+    }
+}
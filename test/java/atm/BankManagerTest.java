@@ -1,9 +1,53 @@
 package atm;
 import org.junit.*;
 
-class BankManagerTest {
-//    @Before
-//
-//    @Test
+import java.util.ArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+import static org.junit.Assert.*;
+
+public class BankManagerTest {
+
+    @Test
+    public void sameUsernameCreatedAtOnceIsCreatedOnce() throws Exception {
+        AsyncOutput.setDefault(line -> { });
+        try {
+            ATM atm = new ATM();
+            int users = atm.getUserDirectory().size();
+            int accounts = atm.getBM().getNumberOfAccounts();
+            int rounds = 200;
+            CyclicBarrier start = new CyclicBarrier(4);
+            AtomicIntegerArray created = new AtomicIntegerArray(rounds);
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String password = "pw" + i;
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int round = 0; round < rounds; round++) {
+                            start.await();
+                            if (atm.getBM().createUser("user" + round, password) != null) {
+                                created.incrementAndGet(round);
+                            }
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (int round = 0; round < rounds; round++) {
+                assertEquals(1, created.get(round));
+                assertEquals(5, atm.getUser("user" + round).getAccounts().size());
+            }
+            assertEquals(users + rounds, atm.getUserDirectory().size());
+            assertEquals(accounts + 5 * rounds, atm.getBM().getNumberOfAccounts());
+        } finally {
+            AsyncOutput.setDefault(null);
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package atm;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BillsTest {
+
+    @Test
+    public void parsesLayout(){
+        CassetteLayout layout = CassetteLayout.parse("0.25:500, 5:100, 100:50:20");
+        assertEquals(3, layout.size());
+        assertEquals(25, layout.getDenomination(0));
+        assertEquals(10000, layout.getDenomination(2));
+        assertEquals(50, layout.getCapacity(2));
+        assertEquals(20, layout.getFill(2));
+        assertEquals(100, layout.getFill(1));
+        assertEquals("0.25$ coins", layout.getLabel(0));
+        assertEquals("100$ bills", layout.getLabel(2));
+    }
+
+    @Test
+    public void parsesCashDeposits(){
+        CassetteLayout layout = CassetteLayout.standard();
+        assertArrayEquals(new int[]{0, 1, 1, 1}, layout.parseCash("0111"));
+        assertArrayEquals(new int[]{0, 12, 1, 0}, layout.parseCash("0 12 1"));
+        assertEquals(8000, layout.valueOf(layout.parseCash("0111")));
+    }
+
+    @Test
+    public void totalFollowsEveryChange(){
+        Bills bills = new Bills(CassetteLayout.parse("5:100,20:100,100:50"), new int[]{10, 10, 10});
+        assertEquals(125000, bills.getTotalAmount());
+        bills.addBills(2, 5);
+        assertEquals(175000, bills.getTotalAmount());
+        assertTrue(bills.withdrawBills(12500));
+        assertEquals(162500, bills.getTotalAmount());
+        bills.restock(0);
+        assertEquals(100, bills.getNumBills(0));
+        assertEquals(162500 + 91 * 500, bills.getTotalAmount());
+    }
+
+    @Test
+    public void depositRespectsCapacity(){
+        Bills bills = new Bills(CassetteLayout.parse("5:10,10:10"), new int[]{9, 0});
+        assertFalse(bills.depositBills(new int[]{2, 1}));
+        assertEquals(4500, bills.getTotalAmount());
+        assertTrue(bills.depositBills(new int[]{1, 1}));
+        assertEquals(6000, bills.getTotalAmount());
+    }
+
+    @Test
+    public void dispensesCoins(){
+        Bills bills = new Bills(CassetteLayout.parse("0.25:100,1:100,20:10"), new int[]{10, 10, 10});
+        assertTrue(bills.withdrawBills(2175));
+        assertEquals(7, bills.getNumBills(0));
+        assertEquals(9, bills.getNumBills(1));
+        assertEquals(9, bills.getNumBills(2));
+        assertFalse(bills.withdrawBills(10));
+    }
+
+    @Test
+    public void returnsTheBillsDispensed(){
+        Bills bills = new Bills(CassetteLayout.parse("5:100,20:100,100:50"), new int[]{10, 10, 10});
+        int[] plan = bills.dispense(14500);
+        assertArrayEquals(new int[]{1, 2, 1}, plan);
+        assertEquals("You have received 1 100$ bills\nYou have received 2 20$ bills\nYou have received 1 5$ bills",
+                bills.describe(plan));
+        assertNull(bills.dispense(1));
+    }
+}
@@ -0,0 +1,84 @@
+package atm;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class CashAlertsTest {
+    private File file;
+    private CashAlerts alerts;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("alerts", ".txt");
+        file.delete();
+        alerts = new CashAlerts(new CassetteLayout(new int[]{500, 1000}, new int[]{100, 100}),
+                new int[]{4, 2}, new int[]{20, 20}, file, 0);
+        alerts.prime(new int[]{100, 100});
+    }
+
+    @Test
+    public void raisesOnlyOnCrossing(){
+        alerts.update(0, 10);
+        assertEquals(0, alerts.recent().size());
+        alerts.update(0, 3);
+        alerts.update(0, 2);
+        alerts.update(0, 1);
+        assertEquals(1, alerts.recent().size());
+        assertTrue(alerts.recent().get(0).isLow());
+        assertEquals("5$ bills", alerts.recent().get(0).getDenomination());
+    }
+
+    @Test
+    public void hysteresis(){
+        alerts.update(1, 1);
+        alerts.update(1, 5);
+        alerts.update(1, 1);
+        assertEquals(1, alerts.recent().size());
+        alerts.update(1, 20);
+        assertEquals(2, alerts.recent().size());
+        assertFalse(alerts.recent().get(1).isLow());
+        assertTrue(alerts.lowDenominations().isEmpty());
+    }
+
+    @Test
+    public void ringKeepsMostRecent(){
+        for (int i = 0; i < 100; i++){
+            alerts.update(0, 0);
+            alerts.update(0, 100);
+        }
+        assertEquals(64, alerts.recent().size());
+        assertFalse(alerts.recent().get(63).isLow());
+    }
+
+    @Test
+    public void flushAppendsNewAlertsOnce() throws IOException {
+        alerts.update(0, 0);
+        alerts.flush();
+        alerts.flush();
+        alerts.update(1, 0);
+        alerts.close();
+        assertEquals(2, Files.readAllLines(file.toPath()).size());
+    }
+
+    @Test
+    public void flushesAtTheSameTimeWriteEachAlertOnce() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            alerts.update(0, 0);
+            alerts.update(0, 100);
+        }
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(alerts::flush);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        alerts.close();
+        assertEquals(60, Files.readAllLines(file.toPath()).size());
+    }
+}
@@ -0,0 +1,66 @@
+package atm;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DispensePlannerTest {
+    private static final int[] DENOMINATIONS = {500, 1000, 2000, 5000};
+
+    private DispensePlanner planner(DispensePolicy policy){
+        return new DispensePlanner(DENOMINATIONS, policy, 200000);
+    }
+
+    @Test
+    public void fewestBills(){
+        int[] plan = planner(DispensePolicy.FEWEST_BILLS).plan(8500, new int[]{100, 100, 100, 100});
+        assertArrayEquals(new int[]{1, 1, 1, 1}, plan);
+    }
+
+    @Test
+    public void findsExactChangeGreedyMisses(){
+        // greedy takes the $50 and is left with $10 it cannot make from one $20
+        int[] plan = planner(DispensePolicy.FEWEST_BILLS).plan(6000, new int[]{0, 0, 3, 1});
+        assertArrayEquals(new int[]{0, 0, 3, 0}, plan);
+    }
+
+    @Test
+    public void infeasibleLeavesNothingPlanned(){
+        assertNull(planner(DispensePolicy.FEWEST_BILLS).plan(1500, new int[]{0, 0, 5, 5}));
+        assertNull(planner(DispensePolicy.FEWEST_BILLS).plan(100000, new int[]{1, 1, 1, 1}));
+        assertNull(planner(DispensePolicy.FEWEST_BILLS).plan(1234, new int[]{100, 100, 100, 100}));
+    }
+
+    @Test
+    public void usesExactCountsWhenBucketsUndercount(){
+        // 4 $5 bills fall in the bucket of 2, which cannot make $20 on its own
+        assertArrayEquals(new int[]{4, 0, 0, 0}, planner(DispensePolicy.FEWEST_BILLS).plan(2000, new int[]{4, 0, 0, 0}));
+    }
+
+    @Test
+    public void preserveScarceAvoidsLowBills(){
+        int[] plan = planner(DispensePolicy.PRESERVE_SCARCE).plan(5000, new int[]{100, 100, 100, 1});
+        assertEquals(0, plan[3]);
+        assertEquals(5000, plan[0] * 500 + plan[1] * 1000 + plan[2] * 2000 + plan[3] * 5000);
+    }
+
+    @Test
+    public void plansCoinsSeparatelyFromBills(){
+        int[] denominations = {1, 5, 10, 25, 500, 1000, 2000, 5000};
+        DispensePlanner planner = new DispensePlanner(denominations, DispensePolicy.FEWEST_BILLS, 200000);
+        int[] counts = {1000, 1000, 1000, 1000, 1000, 1000, 1000, 1000};
+        int[] plan = planner.plan(123456, counts);
+        assertArrayEquals(new int[]{1, 1, 0, 18, 0, 1, 1, 24}, plan);
+        // the coins make up the dollars the bills cannot.
+        assertArrayEquals(new int[]{0, 0, 0, 13, 0, 0, 0, 0}, planner.plan(325, counts));
+        assertNull(planner.plan(325, new int[]{0, 0, 0, 12, 1000, 1000, 1000, 1000}));
+    }
+
+    @Test
+    public void billsWithdrawAtomically(){
+        Bills bills = new Bills(0, 0, 3, 1);
+        assertFalse(bills.withdrawBills(1500));
+        assertEquals(11000, bills.getTotalAmount());
+        assertTrue(bills.withdrawBills(6000));
+        assertEquals(5000, bills.getTotalAmount());
+    }
+}
@@ -0,0 +1,283 @@
+package atm;
+import account.Account;
+import account.OutgoingPayments;
+import investments.Position;
+import investments.PriceCache;
+import investments.SyntheticMarketDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Crashes an ATM by dropping it without shutting it down, and loads it again from snapshot.blob and journal.log in
+ * the working directory.
+ */
+public class JournalTest {
+    private File payments;
+
+    @Before
+    public void setUp() throws Exception {
+        deleteFiles();
+        PriceCache.setDefault(new PriceCache(new SyntheticMarketDataProvider(3), 1024, 60000));
+        payments = File.createTempFile("outgoing", ".txt");
+        OutgoingPayments.setDefault(new OutgoingPayments(payments, 1024, Long.MAX_VALUE));
+        AsyncOutput.setDefault(line -> { });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        OutgoingPayments.getDefault().close();
+        OutgoingPayments.setDefault(null);
+        PriceCache.setDefault(null);
+        AsyncOutput.setDefault(null);
+        payments.delete();
+        deleteFiles();
+    }
+
+    private static void deleteFiles() throws IOException {
+        new File(ATM.SNAPSHOT_FILE).delete();
+        new File(ATM.SNAPSHOT_FILE + ".tmp").delete();
+        new File(ATM.JOURNAL_FILE).delete();
+        File history = new File(HistoryStore.HISTORY_DIR);
+        if (history.exists()) {
+            try (Stream<File> files = Files.walk(history.toPath()).map(Path::toFile)) {
+                files.sorted(Comparator.reverseOrder()).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Stops an ATM the way a crash would: the journal is left as it is and no snapshot is taken. Every record was
+     * already flushed to the operating system when it was written, so closing the file only lets it be replaced.
+     */
+    private static void crash(ATM atm) {
+        atm.getJournal().close();
+    }
+
+    /**
+     * @return the offset of every record in the journal, in order
+     */
+    private static ArrayList<Long> recordOffsets() throws IOException {
+        ArrayList<Long> offsets = new ArrayList<>();
+        File journal = new File(ATM.JOURNAL_FILE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+            long offset = 0;
+            while (offset < journal.length()) {
+                offsets.add(offset);
+                int length = in.readInt();
+                in.skipBytes(length + 4);
+                offset += 4 + length + 4;
+            }
+        }
+        return offsets;
+    }
+
+    private static void truncateJournal(long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(ATM.JOURNAL_FILE, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    /**
+     * Boots a new ATM on the 1st of the month with alice subscribed to netflix and money in her savings and stock
+     * accounts, all in a snapshot, and buys her some stock.
+     */
+    private static ATM bootOnTheFirst() {
+        ATM atm = ATM.load();
+        atm.setDate("2020-01-01");
+        User alice = atm.getBM().createUser("alice", "pw");
+        alice.getAccounts().get(3).addMoney(100000);
+        alice.getAccounts().get(4).addMoney(100000);
+        assertTrue(atm.getSubscriber().subscribe(alice, "netflix"));
+        atm.writeSnapshot();
+        assertTrue(atm.getBroker().getStockBroker().buy("AAPL", 2, alice.getAccounts().get(4), alice));
+        return atm;
+    }
+
+    /**
+     * Creates alice with $1000 in her chequing account, and takes a snapshot.
+     */
+    private static User createWithMoney(ATM atm) {
+        User alice = atm.getBM().createUser("alice", "pw");
+        alice.getAccounts().get(0).addMoney(100000);
+        atm.writeSnapshot();
+        return alice;
+    }
+
+    private static long balance(ATM atm, String username, int account) {
+        return atm.getUser(username).getAccounts().get(account).getBalance();
+    }
+
+    @Test
+    public void changesSinceTheSnapshotAreReplayed() {
+        ATM atm = ATM.load();
+        atm.setDate("2019-03-14");
+        User alice = atm.getBM().createUser("alice", "pw1");
+        User bob = atm.getBM().createUser("bob", "pw2");
+        Account chequing = alice.getAccounts().get(0);
+        Account savings = alice.getAccounts().get(3);
+        chequing.addMoney(100000);
+        atm.writeSnapshot();
+        assertTrue(chequing.tryTransferOut(500, savings));
+        assertNotNull(chequing.withdrawCash(2000));
+        assertTrue(chequing.tryPayBill(750, "hydro"));
+        User carol = atm.getBM().createUser("carol", "pw3");
+        atm.getBM().addExistingUserToAccount(bob, savings);
+        int[] bills = new int[atm.getBills().getLayout().size()];
+        for (int i = 0; i < bills.length; i++) {
+            bills[i] = atm.getBills().getNumBills(i);
+        }
+        crash(atm);
+
+        ATM read = ATM.load();
+        assertEquals(atm.getDate().getTimeInMillis(), read.getDate().getTimeInMillis());
+        assertEquals(chequing.getBalance(), balance(read, "alice", 0));
+        assertEquals(savings.getBalance(), balance(read, "alice", 3));
+        assertEquals(chequing.getTransactionCount(),
+                read.getUser("alice").getAccounts().get(0).getTransactionCount());
+        for (int i = 0; i < bills.length; i++) {
+            assertEquals(bills[i], read.getBills().getNumBills(i));
+        }
+        assertEquals(carol.getPassword(), read.getUser("carol").getPassword());
+        assertEquals(carol.getAccounts().size(), read.getUser("carol").getAccounts().size());
+        assertSame(read.getUser("alice").getAccounts().get(3), read.getUser("bob").getAccounts().get(5));
+        assertEquals(atm.getBM().getNumberOfAccounts(), read.getBM().getNumberOfAccounts());
+        crash(read);
+    }
+
+    @Test
+    public void crashOnTheFirstOfTheMonthDoesNotAddInterestOrChargeTwice() {
+        ATM atm = bootOnTheFirst();
+        atm.startUp();
+        long savings = balance(atm, "alice", 3);
+        long card = balance(atm, "alice", 1);
+        long stock = balance(atm, "alice", 4);
+        assertTrue(savings > 100000);
+        assertEquals(2 * 1299, card);
+        crash(atm);
+
+        ATM read = ATM.load();
+        read.startUp();
+        assertEquals(savings, balance(read, "alice", 3));
+        assertEquals(card, balance(read, "alice", 1));
+        assertEquals(stock, balance(read, "alice", 4));
+        assertEquals(1, read.getUser("alice").getSubscriptions().size());
+        Position position = read.getUser("alice").getInvestmentPortfolio().getStockPortfolio().get(0);
+        assertEquals("AAPL", position.getSymbol());
+        assertEquals(2, position.getNumShares());
+        crash(read);
+    }
+
+    @Test
+    public void crashPartWayThroughTheBootJobsOnlyRunsThemForWhatTheyHadNotReached() throws IOException {
+        ATM atm = bootOnTheFirst();
+        atm.startUp();
+        long savings = balance(atm, "alice", 3);
+        long card = balance(atm, "alice", 1);
+        crash(atm);
+        // the last two records are alice being charged for netflix and the boot jobs being done.
+        ArrayList<Long> offsets = recordOffsets();
+        truncateJournal(offsets.get(offsets.size() - 2));
+
+        ATM read = ATM.load();
+        read.startUp();
+        assertEquals(savings, balance(read, "alice", 3));
+        assertEquals(card, balance(read, "alice", 1));
+        crash(read);
+
+        ATM again = ATM.load();
+        again.startUp();
+        assertEquals(savings, balance(again, "alice", 3));
+        assertEquals(card, balance(again, "alice", 1));
+        crash(again);
+    }
+
+    @Test
+    public void tornRecordAtTheEndIsCutOff() throws IOException {
+        ATM atm = ATM.load();
+        User alice = createWithMoney(atm);
+        Account chequing = alice.getAccounts().get(0);
+        Account savings = alice.getAccounts().get(3);
+        assertTrue(chequing.tryTransferOut(1000, savings));
+        crash(atm);
+        long length = new File(ATM.JOURNAL_FILE).length();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(ATM.JOURNAL_FILE, true))) {
+            out.writeInt(40);
+            out.writeByte(Journal.TRANSFER_OUT);
+            out.writeLong(atm.getJournal().getSequence() + 1);
+        }
+
+        ATM read = ATM.load();
+        assertEquals(length, new File(ATM.JOURNAL_FILE).length());
+        assertEquals(1000, balance(read, "alice", 3));
+        assertEquals(atm.getJournal().getSequence(), read.getJournal().getSequence());
+        crash(read);
+    }
+
+    @Test
+    public void recordThatFailsItsChecksumIsCutOff() throws IOException {
+        ATM atm = ATM.load();
+        User alice = createWithMoney(atm);
+        Account chequing = alice.getAccounts().get(0);
+        Account savings = alice.getAccounts().get(3);
+        assertTrue(chequing.tryTransferOut(1000, savings));
+        assertTrue(chequing.tryTransferOut(2000, savings));
+        crash(atm);
+        ArrayList<Long> offsets = recordOffsets();
+        long last = offsets.get(offsets.size() - 1);
+        try (RandomAccessFile raf = new RandomAccessFile(ATM.JOURNAL_FILE, "rw")) {
+            raf.seek(last + 4 + 1 + 8);
+            raf.writeInt(raf.readInt() ^ 1);
+        }
+
+        ATM read = ATM.load();
+        assertEquals(last, new File(ATM.JOURNAL_FILE).length());
+        assertEquals(1000, balance(read, "alice", 3));
+        assertEquals(99000, balance(read, "alice", 0));
+        crash(read);
+    }
+
+    @Test
+    public void recordsAlreadyInTheSnapshotAreSkipped() throws IOException {
+        ATM atm = ATM.load();
+        User alice = createWithMoney(atm);
+        Account chequing = alice.getAccounts().get(0);
+        Account savings = alice.getAccounts().get(3);
+        assertTrue(chequing.tryTransferOut(1000, savings));
+        byte[] before = Files.readAllBytes(new File(ATM.JOURNAL_FILE).toPath());
+        atm.writeSnapshot();
+        long snapshotSequence = atm.getJournalSequence();
+        assertTrue(chequing.tryTransferOut(2000, savings));
+        crash(atm);
+        // as if the ATM crashed after writing the snapshot but before emptying the journal.
+        byte[] after = Files.readAllBytes(new File(ATM.JOURNAL_FILE).toPath());
+        try (FileOutputStream out = new FileOutputStream(ATM.JOURNAL_FILE)) {
+            out.write(before);
+            out.write(after);
+        }
+
+        ATM snapshot;
+        try (InputStream in = new FileInputStream(ATM.SNAPSHOT_FILE)) {
+            snapshot = SnapshotCodec.read(in);
+        }
+        Journal journal = new Journal(snapshot, new File(ATM.JOURNAL_FILE), snapshotSequence, false);
+        assertEquals(1, journal.replay());
+        assertEquals(snapshotSequence + 1, journal.getSequence());
+
+        ATM read = ATM.load();
+        Account readChequing = read.getUser("alice").getAccounts().get(0);
+        assertEquals(3000, balance(read, "alice", 3));
+        assertEquals(chequing.getBalance(), readChequing.getBalance());
+        assertEquals(chequing.getTransactionCount(), readChequing.getTransactionCount());
+        crash(read);
+    }
+}
@@ -0,0 +1,120 @@
+package atm;
+import account.Account;
+import account.OutgoingPayments;
+import investments.Investment;
+import investments.MutualFund;
+import investments.PriceCache;
+import investments.SyntheticMarketDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import subscriptions.Subscription;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class LegacyBlobTest {
+    private File payments;
+
+    @Before
+    public void setUp() throws Exception {
+        PriceCache.setDefault(new PriceCache(new SyntheticMarketDataProvider(3), 1024, 60000));
+        payments = File.createTempFile("outgoing", ".txt");
+        OutgoingPayments.setDefault(new OutgoingPayments(payments, 1024, Long.MAX_VALUE));
+        AsyncOutput.setDefault(line -> { });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        OutgoingPayments.getDefault().close();
+        OutgoingPayments.setDefault(null);
+        PriceCache.setDefault(null);
+        AsyncOutput.setDefault(null);
+        payments.delete();
+    }
+
+    /**
+     * Reads legacy-serialized.blob.gz, a serialized.blob written by the ATM before it used snapshots: alice and bob,
+     * alice's savings account shared with bob, a few transactions on alice's chequing account, bob subscribed to
+     * netflix, alice invested in the medium risk fund and 77 twenties in the ATM.
+     */
+    private static ATM readLegacy() throws IOException {
+        try (InputStream in = new GZIPInputStream(LegacyBlobTest.class.getResourceAsStream("legacy-serialized.blob.gz"))) {
+            return LegacyBlob.read(in);
+        }
+    }
+
+    @Test
+    public void movesTheBankOverFromSerializedBlob() throws IOException {
+        ATM atm = readLegacy();
+
+        assertEquals(3, atm.getListOfUsers().size());
+        assertEquals(77, atm.getBills().getNumBills(2));
+        User alice = atm.getUser("alice");
+        User bob = atm.getUser("bob");
+        assertEquals("pw1", alice.getPassword());
+        assertEquals("pw2", bob.getPassword());
+
+        Account chequing = alice.getAccounts().get(0);
+        Account savings = alice.getAccounts().get(3);
+        assertTrue(chequing.isPrimary());
+        assertEquals(87225, chequing.getBalance());
+        assertEquals(15050, savings.getBalance());
+        assertTrue(savings.getIsJoint());
+        assertSame(savings, bob.getAccounts().get(bob.getAccounts().size() - 1));
+        assertEquals(3, chequing.getTransactionLog().size());
+        assertEquals("hydro", chequing.getLastTransaction().getBillPayee());
+        assertEquals(750, chequing.getLastTransaction().getTransactionAmount());
+        int next = atm.getBM().createUser("carol", "pw3").getAccounts().get(0).getAccountNum();
+        for (User user : atm.getListOfUsers()) {
+            if (user != atm.getUser("carol")) {
+                for (Account account : user.getAccounts()) {
+                    assertTrue(account.getAccountNum() < next);
+                }
+            }
+        }
+
+        Subscription netflix = bob.getSubscriptions().get(0);
+        assertEquals("netflix", netflix.getName());
+        assertSame(netflix, atm.getSubscriptions().getListOfSubscriptions().get(0));
+
+        MutualFund fund = atm.getBroker().getMutualFundsBroker().getMediumRiskFund();
+        assertEquals(6, fund.getStocks().size());
+        Investment investment = fund.getInvestors().get(alice);
+        assertEquals(5000, investment.getInvested());
+        assertEquals(1.5, investment.getPercentOwned(), 0);
+        assertSame(investment, alice.getInvestmentPortfolio().getMutualFundPortfolio().get(fund));
+    }
+
+    @Test
+    public void migratedBankSurvivesASnapshot() throws IOException {
+        ATM atm = readLegacy();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotCodec.write(atm, bytes);
+        ATM read = SnapshotCodec.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(atm.getDate().getTimeInMillis(), read.getDate().getTimeInMillis());
+        assertEquals(atm.getBills().getTotalAmount(), read.getBills().getTotalAmount());
+        User alice = read.getUser("alice");
+        User bob = read.getUser("bob");
+        assertSame(alice.getAccounts().get(3), bob.getAccounts().get(bob.getAccounts().size() - 1));
+        assertEquals(atm.getUser("alice").getAccounts().get(0).getTransactionLog().toList().toString(),
+                alice.getAccounts().get(0).getTransactionLog().toList().toString());
+    }
+
+    @Test
+    public void refusesAnythingButAnAtm() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(new java.util.ArrayList<String>());
+        }
+        try {
+            LegacyBlob.read(new ByteArrayInputStream(bytes.toByteArray()));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("does not hold an ATM"));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package atm;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MoneyTest {
+
+    @Test
+    public void parseAndFormat(){
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(1205, Money.parse("12.05"));
+        assertEquals(1200, Money.parse("12"));
+        assertEquals("12.05", Money.format(1205));
+        assertEquals("-0.07", Money.format(-7));
+        assertEquals("0.00", Money.format(0));
+    }
+
+    @Test
+    public void rejectsFractionsOfCents(){
+        try {
+            Money.parse("1.005");
+            fail();
+        } catch (NumberFormatException e){
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void interestRoundsHalfEven(){
+        // 0.1% of $12.50 is 1.25 cents, 0.1% of $13.50 is 1.35 cents
+        assertEquals(1251, Money.scale(1250, 1001, 1000));
+        assertEquals(1351, Money.scale(1350, 1001, 1000));
+        // exactly half a cent rounds to the even cent
+        assertEquals(2, Money.scale(5, 1, 2));
+        assertEquals(4, Money.scale(7, 1, 2));
+        assertEquals(-2, Money.scale(-5, 1, 2));
+    }
+
+    @Test
+    public void fromDollars(){
+        assertEquals(17497, Money.fromDollars(174.97));
+        assertEquals(30, Money.fromDollars(0.1 + 0.2));
+    }
+
+    @Test
+    public void valueType(){
+        Money a = Money.of("10.10");
+        Money b = Money.ofCents(90);
+        assertEquals(Money.ofCents(1100), a.plus(b));
+        assertEquals(Money.ofCents(920), a.minus(b));
+        assertEquals(Money.ofCents(3030), a.times(3));
+        assertTrue(a.compareTo(b) > 0);
+        assertEquals("11.00", a.plus(b).toString());
+    }
+}
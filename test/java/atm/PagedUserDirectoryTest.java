@@ -0,0 +1,184 @@
+package atm;
+import account.Account;
+import account.OutgoingPayments;
+import investments.PriceCache;
+import investments.SyntheticMarketDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PagedUserDirectoryTest {
+    private File payments;
+    private File store;
+    private ATM atm;
+    private PagedUserDirectory users;
+
+    @Before
+    public void setUp() throws Exception {
+        PriceCache.setDefault(new PriceCache(new SyntheticMarketDataProvider(5), 1024, 60000));
+        payments = File.createTempFile("outgoing", ".txt");
+        OutgoingPayments.setDefault(new OutgoingPayments(payments, 1024, Long.MAX_VALUE));
+        AsyncOutput.setDefault(line -> { });
+        store = File.createTempFile("users", ".dat");
+        atm = new ATM();
+        users = new PagedUserDirectory(atm, store, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        OutgoingPayments.getDefault().close();
+        OutgoingPayments.setDefault(null);
+        PriceCache.setDefault(null);
+        AsyncOutput.setDefault(null);
+        System.clearProperty("atm.users.store");
+        System.clearProperty("atm.users.cache");
+        payments.delete();
+        store.delete();
+    }
+
+    private User newUser(int i) {
+        User user = new User("user" + i, "pw" + i, new ArrayList<>());
+        user.getAccounts().add(atm.getBM().newAccount("chequing", 5000 + 2 * i));
+        user.getAccounts().add(atm.getBM().newAccount("savings", 5001 + 2 * i));
+        return user;
+    }
+
+    @Test
+    public void keepsOnlyRecentUsersInMemory() {
+        for (int i = 0; i < 50; i++) {
+            assertTrue(users.add(newUser(i)));
+        }
+        assertFalse(users.add(newUser(7)));
+        assertEquals(50, users.size());
+        assertEquals(4, users.resident());
+        users.get("user3").getAccounts().get(0).addMoney(1234);
+        for (int i = 10; i < 50; i++) {
+            assertEquals("pw" + i, users.authenticate("user" + i, "pw" + i).getPassword());
+        }
+        assertEquals(4, users.resident());
+        assertEquals(1234, users.get("user3").getAccounts().get(0).getBalance());
+        assertNull(users.get("nobody"));
+        assertEquals("user12", users.getIgnoreCase("USER12").getUsername());
+    }
+
+    @Test
+    public void handsBackAUserStillHeld() {
+        for (int i = 0; i < 20; i++) {
+            users.add(newUser(i));
+        }
+        User held = users.get("user0");
+        for (int i = 1; i < 20; i++) {
+            users.get("user" + i);
+        }
+        held.getAccounts().get(1).addMoney(50);
+        assertSame(held, users.get("user0"));
+    }
+
+    @Test
+    public void streamsThroughEveryUser() {
+        for (int i = 0; i < 30; i++) {
+            users.add(newUser(i));
+        }
+        int seen = 0;
+        for (User user : users) {
+            user.getAccounts().get(0).addMoney(100 + seen);
+            seen++;
+            assertTrue(users.resident() <= 4);
+        }
+        assertEquals(30, seen);
+        for (int i = 0; i < 30; i++) {
+            assertEquals(100 + i, users.get("user" + i).getAccounts().get(0).getBalance());
+        }
+    }
+
+    @Test
+    public void keepsUsersWhoShareAnAccountOrArePinned() {
+        User owner = newUser(0);
+        User other = newUser(1);
+        Account shared = owner.getAccounts().get(0);
+        shared.setIsJoint(true);
+        other.getAccounts().add(shared);
+        users.add(owner);
+        users.add(other);
+        User pinned = newUser(2);
+        users.add(pinned);
+        users.pin(pinned);
+        for (int i = 3; i < 20; i++) {
+            users.add(newUser(i));
+        }
+        assertEquals(7, users.resident());
+        assertSame(users.get("user0").getAccounts().get(0), users.get("user1").getAccounts().get(2));
+        users.unpin(pinned);
+        for (int i = 3; i < 20; i++) {
+            users.get("user" + i);
+        }
+        assertEquals(6, users.resident());
+    }
+
+    @Test
+    public void findsTheOwnerOfEveryAccount() {
+        for (int i = 0; i < 20; i++) {
+            users.add(newUser(i));
+        }
+        User held = users.get("user5");
+        held.getAccounts().add(atm.getBM().newAccount("loc", 9000));
+        for (int i = 6; i < 20; i++) {
+            users.get("user" + i);
+        }
+        held.getAccounts().add(atm.getBM().newAccount("loc", 9001));
+        int resident = users.resident();
+        Map<Integer, String> owners = users.accountOwners();
+        assertEquals(resident, users.resident());
+        assertEquals(42, owners.size());
+        assertEquals("user0", owners.get(5000));
+        assertEquals("user19", owners.get(5039));
+        assertEquals("user5", owners.get(9000));
+        assertEquals("user5", owners.get(9001));
+        assertNull(owners.get(4999));
+    }
+
+    @Test
+    public void recordsReadBackTheirUser() throws IOException {
+        User user = newUser(4);
+        user.getAccounts().get(0).addMoney(999);
+        assertTrue(user.getAccounts().get(0).tryPayBill(99, "hydro"));
+        User copy = SnapshotCodec.readUser(SnapshotCodec.writeUser(user, atm), atm);
+        assertEquals(user.getUsername(), copy.getUsername());
+        assertEquals(user.getAccounts().get(0).getBalance(), copy.getAccounts().get(0).getBalance());
+        assertEquals("hydro", copy.getAccounts().get(0).getLastTransaction().getBillPayee());
+        assertEquals(user.getAccounts().get(1).getType(), copy.getAccounts().get(1).getType());
+    }
+
+    @Test
+    public void pagedATMWritesTheSameSnapshot() throws IOException {
+        System.setProperty("atm.users.store", store.getPath());
+        System.setProperty("atm.users.cache", "3");
+        ATM paged = new ATM();
+        assertTrue(paged.getUserDirectory() instanceof PagedUserDirectory);
+        for (int i = 0; i < 25; i++) {
+            paged.getBM().createUser("user" + i, "pw" + i);
+            paged.getUser("user" + i).getAccounts().get(0).addMoney(10 * i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotCodec.write(paged, bytes, 4);
+
+        File second = File.createTempFile("users", ".dat");
+        try {
+            System.setProperty("atm.users.store", second.getPath());
+            ATM read = SnapshotCodec.read(new ByteArrayInputStream(bytes.toByteArray()));
+            assertEquals(paged.getUserDirectory().size(), read.getUserDirectory().size());
+            assertTrue(((PagedUserDirectory) read.getUserDirectory()).resident() <= 4);
+            for (int i = 0; i < 25; i++) {
+                assertEquals(10 * i, read.getUser("user" + i).getAccounts().get(0).getBalance());
+            }
+        } finally {
+            second.delete();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package atm;
+import account.Account;
+import account.OutgoingPayments;
+import investments.Investment;
+import investments.MutualFund;
+import investments.Position;
+import investments.PriceCache;
+import investments.SyntheticMarketDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import subscriptions.Subscription;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SnapshotCodecTest {
+    private File payments;
+
+    @Before
+    public void setUp() throws Exception {
+        PriceCache.setDefault(new PriceCache(new SyntheticMarketDataProvider(3), 1024, 60000));
+        payments = File.createTempFile("outgoing", ".txt");
+        OutgoingPayments.setDefault(new OutgoingPayments(payments, 1024, Long.MAX_VALUE));
+        AsyncOutput.setDefault(line -> { });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        OutgoingPayments.getDefault().close();
+        OutgoingPayments.setDefault(null);
+        PriceCache.setDefault(null);
+        AsyncOutput.setDefault(null);
+        payments.delete();
+    }
+
+    private static ATM roundTrip(ATM atm, int usersPerShard) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotCodec.write(atm, bytes, usersPerShard);
+        return SnapshotCodec.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    public void readsBackWhatItWrote() throws IOException {
+        ATM atm = new ATM();
+        atm.setDate("2019-03-14");
+        User alice = atm.getBM().createUser("alice", "pw1");
+        User bob = atm.getBM().createUser("bob", "pw2");
+        Account chequing = alice.getAccounts().get(0);
+        Account savings = alice.getAccounts().get(3);
+        Account stock = alice.getAccounts().get(4);
+        chequing.addMoney(100000);
+        stock.addMoney(1000000);
+        assertTrue(chequing.tryWithdraw(2000));
+        assertTrue(chequing.tryTransferOut(500, savings));
+        assertTrue(chequing.tryPayBill(750, "hydro"));
+        atm.getBM().addExistingUserToAccount(bob, savings);
+        assertTrue(atm.getBroker().getStockBroker().buy("AAPL", 3, stock, alice));
+        bob.addSubscription(atm.getSubscriptions().getListOfSubscriptions().get(0));
+        MutualFund fund = atm.getBroker().getMutualFundsBroker().getMediumRiskFund();
+        Investment investment = new Investment(5000, 1.5);
+        fund.setInvestors(alice, investment);
+        alice.getInvestmentPortfolio().setMutualFundsPortfolio(fund, investment);
+
+        // one user per shard, so bob's share of alice's savings account is linked across shards.
+        ATM read = roundTrip(atm, 1);
+
+        assertEquals(atm.getDate().getTimeInMillis(), read.getDate().getTimeInMillis());
+        assertEquals(atm.getBills().getTotalAmount(), read.getBills().getTotalAmount());
+        assertEquals(atm.getListOfUsers().size(), read.getListOfUsers().size());
+        assertEquals(atm.getBM().getNumberOfAccounts(), read.getBM().getNumberOfAccounts());
+        User readAlice = read.getUser("alice");
+        User readBob = read.getUser("bob");
+        assertEquals("pw1", readAlice.getPassword());
+        for (int i = 0; i < alice.getAccounts().size(); i++) {
+            Account before = alice.getAccounts().get(i);
+            Account after = readAlice.getAccounts().get(i);
+            assertEquals(before.getAccountNum(), after.getAccountNum());
+            assertEquals(before.getType(), after.getType());
+            assertEquals(before.getBalance(), after.getBalance());
+            assertEquals(before.isPrimary(), after.isPrimary());
+            assertEquals(before.getIsJoint(), after.getIsJoint());
+            assertEquals(before.getDateCreated().getTimeInMillis(), after.getDateCreated().getTimeInMillis());
+            assertEquals(before.getTransactionLog().toList().toString(), after.getTransactionLog().toList().toString());
+        }
+        assertEquals("hydro", readAlice.getAccounts().get(0).getLastTransaction().getBillPayee());
+        assertSame(readAlice.getAccounts().get(3), readBob.getAccounts().get(5));
+
+        ArrayList<Position> positions = readAlice.getInvestmentPortfolio().getStockPortfolio();
+        assertEquals(1, positions.size());
+        assertEquals(3, positions.get(0).getNumShares());
+        assertEquals(alice.getInvestmentPortfolio().getStockPortfolio().get(0).getValue(), positions.get(0).getValue());
+        assertSame(read.getBroker().getQuoteBook().get("AAPL"), positions.get(0).getQuote());
+
+        Subscription subscription = readBob.getSubscriptions().get(0);
+        assertSame(read.getSubscriptions().getListOfSubscriptions().get(0), subscription);
+
+        MutualFund readFund = read.getBroker().getMutualFundsBroker().getMediumRiskFund();
+        assertEquals(fund.getStocks().size(), readFund.getStocks().size());
+        Investment readInvestment = readFund.getInvestors().get(readAlice);
+        assertEquals(5000, readInvestment.getInvested());
+        assertSame(readInvestment, readAlice.getInvestmentPortfolio().getMutualFundPortfolio().get(readFund));
+    }
+
+    @Test
+    public void linksSharedAccountsAndInvestorsAcrossShards() throws IOException {
+        ATM atm = new ATM();
+        for (int i = 0; i < 100; i++) {
+            atm.getBM().createUser("user" + i, "pw" + i);
+        }
+        List<User> users = atm.getListOfUsers();
+        MutualFund fund = atm.getBroker().getMutualFundsBroker().getHighRiskFund();
+        for (int i = 0; i < 100; i += 3) {
+            atm.getBM().addExistingUserToAccount(users.get(99 - i), users.get(i).getAccounts().get(0));
+            Investment investment = new Investment(100 + i, 0.01 * i);
+            fund.setInvestors(users.get(i), investment);
+            users.get(i).getInvestmentPortfolio().setMutualFundsPortfolio(fund, investment);
+        }
+
+        ATM read = roundTrip(atm, 7);
+
+        assertEquals(atm.getBM().getNumberOfAccounts(), read.getBM().getNumberOfAccounts());
+        List<User> readUsers = read.getListOfUsers();
+        MutualFund readFund = read.getBroker().getMutualFundsBroker().getHighRiskFund();
+        assertEquals(fund.getInvestors().size(), readFund.getInvestors().size());
+        for (int i = 0; i < 100; i++) {
+            User before = users.get(i);
+            User after = readUsers.get(i);
+            assertEquals(before.getUsername(), after.getUsername());
+            assertEquals(before.getAccounts().size(), after.getAccounts().size());
+            for (int j = 0; j < before.getAccounts().size(); j++) {
+                assertEquals(before.getAccounts().get(j).getAccountNum(), after.getAccounts().get(j).getAccountNum());
+            }
+            Investment investment = fund.getInvestors().get(before);
+            if (investment != null) {
+                assertEquals(investment.getInvested(), readFund.getInvestors().get(after).getInvested());
+                assertSame(readFund.getInvestors().get(after),
+                        after.getInvestmentPortfolio().getMutualFundPortfolio().get(readFund));
+                assertSame(after.getAccounts().get(0), readUsers.get(99 - i).getAccounts().get(5));
+            }
+        }
+    }
+
+    @Test
+    public void isSmallerThanJavaSerialization() throws IOException {
+        ATM atm = new ATM();
+        for (int i = 0; i < 50; i++) {
+            atm.getBM().createUser("user" + i, "pw" + i);
+        }
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(serialized)) {
+            oos.writeObject(atm);
+        }
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        SnapshotCodec.write(atm, snapshot);
+        assertTrue(snapshot.size() * 4 < serialized.size());
+        try {
+            SnapshotCodec.read(new ByteArrayInputStream(serialized.toByteArray()));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("Not an ATM snapshot"));
+        }
+    }
+
+    @Test
+    public void refusesOtherVersions() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotCodec.write(new ATM(), bytes);
+        byte[] snapshot = bytes.toByteArray();
+        snapshot[4] = (byte) (SnapshotCodec.VERSION + 1);
+        try {
+            SnapshotCodec.read(new ByteArrayInputStream(snapshot));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("version"));
+        }
+        try {
+            SnapshotCodec.read(new ByteArrayInputStream(snapshot, 0, 40));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package atm;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class TransactionLogTest {
+    private TransactionLog log;
+
+    @Before
+    public void setUp(){
+        log = new TransactionLog();
+    }
+
+    @Test
+    public void lastAndPop(){
+        assertNull(log.last());
+        log.add(TransactionType.TRANSFER_OUT, 1000, 42);
+        log.add(TransactionType.WITHDRAW, 2000, 0);
+        assertEquals(TransactionType.WITHDRAW, log.lastType());
+        assertEquals(2000, log.last().getTransactionAmount());
+        log.pop();
+        assertEquals(1, log.size());
+        assertEquals(42, log.last().getTransactionAccount());
+        assertEquals("TransferOut", log.last().getTransactionType());
+    }
+
+    @Test
+    public void growsAcrossChunks(){
+        for (int i = 0; i < 1000; i++){
+            log.add(TransactionType.WITHDRAW, i, 0);
+        }
+        assertEquals(1000, log.size());
+        assertEquals(0, log.amountAt(0));
+        assertEquals(999, log.amountAt(999));
+        assertEquals(1000, log.toList().size());
+    }
+
+    @Test
+    public void payeesAreInterned(){
+        log.addPayBill("hydro", 500);
+        log.addPayBill("gas", 700);
+        log.addPayBill("hydro", 900);
+        assertEquals(log.counterpartyAt(0), log.counterpartyAt(2));
+        assertEquals("gas", log.payeeAt(1));
+        assertEquals("Paid 9.00 to hydro", log.last().toString());
+    }
+
+    @Test
+    public void serializes() throws Exception {
+        for (int i = 0; i < 100; i++){
+            log.add(TransactionType.TRANSFER_IN, i, i + 1);
+        }
+        log.addPayBill("hydro", 500);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(log);
+        oos.close();
+        TransactionLog copy = (TransactionLog) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(log.toString(), copy.toString());
+        copy.addPayBill("hydro", 100);
+        assertEquals(copy.counterpartyAt(100), copy.counterpartyAt(101));
+    }
+
+    @Test
+    public void dropAndPrependKeepSequences(){
+        for (int i = 0; i < 100; i++){
+            log.add(TransactionType.WITHDRAW, i, 0);
+        }
+        log.addPayBill("hydro", 500);
+        ArrayList<Transaction> older = new ArrayList<>();
+        for (int i = 0; i < 98; i++){
+            older.add(log.get(i));
+        }
+        log.dropOldest(98);
+        assertEquals(98, log.getFirstSequence());
+        assertEquals(101, log.getNextSequence());
+        assertEquals(98, log.amountAt(0));
+        assertEquals("hydro", log.payeeAt(2));
+        log.pop();
+        log.pop();
+        log.pop();
+        log.prepend(older);
+        assertEquals(0, log.getFirstSequence());
+        assertEquals(98, log.size());
+        assertEquals(97, log.last().getTransactionAmount());
+    }
+}
@@ -0,0 +1,52 @@
+package atm;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class UserDirectoryTest {
+    private UserDirectory directory;
+    private User alice;
+    private User bob;
+
+    @Before
+    public void setup(){
+        directory = new UserDirectory(true);
+        alice = new User("Alice", "a", new ArrayList<>());
+        bob = new User("bob", "b", new ArrayList<>());
+        directory.add(alice);
+        directory.add(bob);
+    }
+
+    @Test
+    public void lookup(){
+        assertSame(alice, directory.get("Alice"));
+        assertNull(directory.get("alice"));
+        assertSame(alice, directory.getIgnoreCase("ALICE"));
+        assertTrue(directory.contains("bob"));
+    }
+
+    @Test
+    public void duplicateRejected(){
+        assertFalse(directory.add(new User("bob", "c", new ArrayList<>())));
+        assertEquals(2, directory.size());
+    }
+
+    @Test
+    public void authenticate(){
+        assertSame(bob, directory.authenticate("bob", "b"));
+        assertNull(directory.authenticate("bob", "wrong"));
+        assertNull(directory.authenticate("carol", "b"));
+    }
+
+    @Test
+    public void keepsInsertionOrder(){
+        ConcurrentUserDirectory concurrent = new ConcurrentUserDirectory();
+        concurrent.add(bob);
+        concurrent.add(alice);
+        assertSame(bob, concurrent.users().get(0));
+        assertSame(alice, concurrent.users().get(1));
+        assertSame(alice, directory.users().get(0));
+    }
+}
@@ -0,0 +1,86 @@
+package broker;
+import account.Account;
+import account.OutgoingPayments;
+import account.TransferEngine;
+import atm.ATM;
+import atm.AsyncOutput;
+import atm.User;
+import investments.MarketDataProvider;
+import investments.PriceCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StockBrokerTest {
+    private File payments;
+
+    /**
+     * Counted down when the price of AAPL is asked for.
+     */
+    private final CountDownLatch fetching = new CountDownLatch(1);
+
+    /**
+     * Holds the price of AAPL back until counted down.
+     */
+    private final CountDownLatch priced = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        MarketDataProvider slow = (symbol, date) -> {
+            if (symbol.equals("AAPL")) {
+                fetching.countDown();
+                try {
+                    priced.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return 12.5;
+        };
+        PriceCache.setDefault(new PriceCache(slow, 1024, 60000));
+        payments = File.createTempFile("outgoing", ".txt");
+        OutgoingPayments.setDefault(new OutgoingPayments(payments, 1024, Long.MAX_VALUE));
+        AsyncOutput.setDefault(line -> { });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        priced.countDown();
+        OutgoingPayments.getDefault().close();
+        OutgoingPayments.setDefault(null);
+        PriceCache.setDefault(null);
+        AsyncOutput.setDefault(null);
+        payments.delete();
+    }
+
+    @Test
+    public void snapshotsDoNotWaitForAPriceBeingFetched() throws Exception {
+        ATM atm = new ATM();
+        atm.setDate("2019-03-14");
+        User alice = atm.getBM().createUser("alice", "pw");
+        Account stock = alice.getAccounts().get(4);
+        stock.addMoney(100000);
+        boolean[] bought = new boolean[1];
+        Thread buyer = new Thread(() -> bought[0] = atm.getBroker().getStockBroker().buy("AAPL", 2, stock, alice));
+        buyer.start();
+        assertTrue(fetching.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch snapshotted = new CountDownLatch(1);
+        Thread snapshot = new Thread(() -> TransferEngine.getDefault().quiesce(snapshotted::countDown));
+        snapshot.start();
+        assertTrue(snapshotted.await(5, TimeUnit.SECONDS));
+        assertTrue(buyer.isAlive());
+
+        priced.countDown();
+        buyer.join();
+        assertTrue(bought[0]);
+        assertEquals(100000 - 2500, stock.getBalance());
+        assertEquals(2, alice.getInvestmentPortfolio().getStockPortfolio().get(0).getNumShares());
+    }
+}
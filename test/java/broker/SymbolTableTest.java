@@ -0,0 +1,58 @@
+package broker;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SymbolTableTest {
+    private SymbolTable table;
+
+    @Before
+    public void setup() throws Exception {
+        String json = "{\"AAPL\": \"APPLE INC\", \"AMZN\":\"AMAZON COM INC\",\n \"AMD\": \"Advanced \\\"Micro\\\" Devices\"," +
+                " \"V\": \"Visa Inc\", \"CAF\": \"Caf\\u00e9 Co\"}";
+        table = SymbolTable.parse(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void lookup() {
+        assertEquals(5, table.size());
+        assertTrue(table.contains("AAPL"));
+        assertFalse(table.contains("aapl"));
+        assertEquals("AMAZON COM INC", table.nameOf("AMZN"));
+        assertEquals("Advanced \"Micro\" Devices", table.nameOf("AMD"));
+        assertEquals("Caf\u00e9 Co", table.nameOf("CAF"));
+        assertNull(table.nameOf("MSFT"));
+    }
+
+    @Test
+    public void prefixSearch() {
+        assertEquals(Arrays.asList("AAPL", "AMD", "AMZN"), table.symbolsStartingWith("A"));
+        assertEquals(Arrays.asList("AMD", "AMZN"), table.symbolsStartingWith("AM"));
+        assertTrue(table.symbolsStartingWith("Z").isEmpty());
+    }
+
+    @Test
+    public void trailingComma() throws Exception {
+        String json = "{\"ZTS\": \"Zoetis Inc\",\"ZUMZ\": \"Zumiez Inc.\",}";
+        SymbolTable trailing = SymbolTable.parse(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, trailing.size());
+        assertEquals("Zumiez Inc.", trailing.nameOf("ZUMZ"));
+    }
+
+    @Test
+    public void truncatedListIsAnIOException() {
+        String json = "{\"ZTS\": \"Zoetis Inc\",\"ZUMZ\": \"Zumiez \\u00e9\\\"Inc.\"}";
+        for (int length = 1; length < json.length(); length++) {
+            try {
+                SymbolTable.parse(ByteBuffer.wrap(json.substring(0, length).getBytes(StandardCharsets.UTF_8)));
+                fail("parsed the first " + length + " bytes");
+            } catch (IOException expected) {
+            }
+        }
+    }
+}
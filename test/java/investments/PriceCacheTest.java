@@ -0,0 +1,70 @@
+package investments;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.*;
+
+public class PriceCacheTest {
+    private int requests;
+    private PriceCache cache;
+
+    @Before
+    public void setup(){
+        requests = 0;
+        LocalMarketDataProvider prices = new LocalMarketDataProvider();
+        prices.addPrice("AAPL", "2019-03-01", 174.97);
+        prices.addPrice("AAPL", "2019-03-04", 175.85);
+        cache = new PriceCache((symbol, date) -> {
+            requests += 1;
+            return prices.closingPrice(symbol, date);
+        }, 100, 0);
+    }
+
+    @Test
+    public void fetchesOncePerDay() throws IOException {
+        Calendar monday = new GregorianCalendar(2019, Calendar.MARCH, 4);
+        assertEquals(175.85, cache.closingPrice("AAPL", monday), 0.001);
+        assertEquals(175.85, cache.closingPrice("AAPL", monday), 0.001);
+        assertEquals(1, requests);
+    }
+
+    @Test
+    public void stepsBackOverWeekend() throws IOException {
+        Calendar sunday = new GregorianCalendar(2019, Calendar.MARCH, 3);
+        assertEquals(174.97, cache.closingPrice("AAPL", sunday), 0.001);
+        assertEquals(3, requests);
+        Calendar saturday = new GregorianCalendar(2019, Calendar.MARCH, 2);
+        assertEquals(174.97, cache.closingPrice("AAPL", saturday), 0.001);
+        assertEquals(3, requests);
+    }
+
+    @Test
+    public void lookbackIsBounded(){
+        try {
+            cache.closingPrice("AAPL", new GregorianCalendar(2019, Calendar.FEBRUARY, 1));
+            fail();
+        } catch (IOException e){
+            assertEquals(PriceCache.MAX_LOOKBACK_DAYS + 1, requests);
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        PriceCache small = new PriceCache((symbol, date) -> {
+            requests += 1;
+            return 1.0;
+        }, 2, 0);
+        small.closingPrice("A", new GregorianCalendar(2019, Calendar.MARCH, 4));
+        small.closingPrice("B", new GregorianCalendar(2019, Calendar.MARCH, 4));
+        small.closingPrice("A", new GregorianCalendar(2019, Calendar.MARCH, 4));
+        small.closingPrice("C", new GregorianCalendar(2019, Calendar.MARCH, 4));
+        assertEquals(2, small.size());
+        small.closingPrice("A", new GregorianCalendar(2019, Calendar.MARCH, 4));
+        assertEquals(3, requests);
+        small.closingPrice("B", new GregorianCalendar(2019, Calendar.MARCH, 4));
+        assertEquals(4, requests);
+    }
+}
@@ -0,0 +1,67 @@
+package metrics;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Test
+    public void timerCountsAndTimes() {
+        Timer timer = new Metrics().timer("test.timer");
+        for (int i = 0; i < 99; i++) {
+            timer.record(1000);
+        }
+        timer.record(1000000);
+        assertEquals(100, timer.getCount());
+        assertEquals(99 * 1000 + 1000000, timer.getTotalNanos());
+        assertEquals(1024, timer.getP50Nanos());
+        assertEquals(1024, timer.getP99Nanos());
+        assertEquals(1 << 20, timer.getP999Nanos());
+        long start = timer.start();
+        timer.stop(start);
+        assertEquals(101, timer.getCount());
+    }
+
+    @Test
+    public void namesAreShared() {
+        Metrics metrics = new Metrics();
+        assertSame(metrics.counter("test.counter"), metrics.counter("test.counter"));
+        metrics.counter("test.counter").add(3);
+        metrics.counter("test.counter").increment();
+        assertEquals(4, metrics.counter("test.counter").getCount());
+        try {
+            metrics.timer("test.counter");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void gaugesFollowTheirValue() {
+        Metrics metrics = new Metrics();
+        AtomicLong cash = new AtomicLong(500);
+        Gauge gauge = metrics.gauge("test.cash", cash::get);
+        cash.set(700);
+        assertEquals(700, gauge.getValue());
+        assertSame(gauge, metrics.gauge("test.cash", () -> 5));
+        assertEquals(5, gauge.getValue());
+        assertTrue(metrics.dump().contains("gauge test.cash value 5\n"));
+    }
+
+    @Test
+    public void exportedThroughJmx() throws Exception {
+        Metrics metrics = new Metrics();
+        metrics.counter("test.jmx.before").increment();
+        metrics.registerMBeans();
+        metrics.timer("test.jmx.after").record(2000);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(1L, server.getAttribute(new ObjectName("atm:type=Counter,name=test.jmx.before"), "Count"));
+        assertEquals(1L, server.getAttribute(new ObjectName("atm:type=Timer,name=test.jmx.after"), "Count"));
+        assertEquals(2048L, server.getAttribute(new ObjectName("atm:type=Timer,name=test.jmx.after"), "P99Nanos"));
+    }
+}
@@ -0,0 +1,152 @@
+package service;
+import account.Account;
+import account.DepositFeed;
+import atm.ATM;
+import atm.Money;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class AtmServiceTest {
+    private AtmService service;
+    private Session manager;
+
+    @Before
+    public void setUp() {
+        service = new AtmService(new ATM());
+        manager = service.login("manager", "password");
+    }
+
+    private int accountOfType(Session session, String type) {
+        return accountOfType(service, session, type);
+    }
+
+    private static int accountOfType(AtmService service, Session session, String type) {
+        for (Account account : service.accounts(session)) {
+            if (account.getType().equals(type)) {
+                return account.getAccountNum();
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void loginChecksPasswords() {
+        assertEquals(Session.Role.MANAGER, manager.getRole());
+        assertTrue(service.createUser(manager, "alice", "pw").isOk());
+        assertNull(service.login("alice", "wrong"));
+        assertEquals(Session.Role.USER, service.login("alice", "pw").getRole());
+        assertEquals(Result.Status.DECLINED, service.createUser(manager, "alice", "again").getStatus());
+    }
+
+    @Test
+    public void usersOnlyReachTheirOwnAccounts() {
+        service.createUser(manager, "alice", "pw");
+        service.createUser(manager, "bob", "pw");
+        Session alice = service.login("alice", "pw");
+        Session bob = service.login("bob", "pw");
+        int bobsChequing = accountOfType(bob, "chequing");
+        assertEquals(Result.Status.NOT_FOUND, service.withdraw(alice, bobsChequing, 2000).getStatus());
+        assertEquals(Result.Status.NOT_ALLOWED, service.createUser(alice, "eve", "pw").getStatus());
+        assertEquals(Result.Status.INVALID, service.withdraw(bob, bobsChequing, -5).getStatus());
+    }
+
+    @Test
+    public void transfersAndUndo() {
+        service.createUser(manager, "alice", "pw");
+        Session alice = service.login("alice", "pw");
+        int card = accountOfType(alice, "creditcard");
+        int chequing = accountOfType(alice, "chequing");
+        int savings = accountOfType(alice, "savings");
+        assertEquals(Result.Status.DECLINED, service.transfer(alice, card, chequing, 100).getStatus());
+        assertEquals(Result.Status.DECLINED, service.transfer(alice, chequing, savings, 100).getStatus());
+
+        Result cash = service.transfer(alice, accountOfType(alice, "loc"), chequing, 50 * Money.CENTS_PER_DOLLAR);
+        assertTrue(cash.isOk());
+        Result moved = service.transfer(alice, chequing, savings, 20 * Money.CENTS_PER_DOLLAR);
+        assertTrue(moved.isOk());
+        assertEquals(30 * Money.CENTS_PER_DOLLAR, moved.getBalance());
+        assertEquals(20 * Money.CENTS_PER_DOLLAR, service.balance(alice, savings).getBalance());
+
+        Result undone = service.undo(manager, "alice", chequing);
+        assertTrue(undone.isOk());
+        assertEquals(50 * Money.CENTS_PER_DOLLAR, undone.getBalance());
+        assertEquals(0, service.balance(alice, savings).getBalance());
+    }
+
+    @Test
+    public void concurrentSessionsKeepTotal() throws Exception {
+        service.createUser(manager, "alice", "pw");
+        Session alice = service.login("alice", "pw");
+        int chequing = accountOfType(alice, "chequing");
+        int savings = accountOfType(alice, "savings");
+        assertTrue(service.transfer(alice, accountOfType(alice, "loc"), chequing, 1000).isOk());
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            boolean forward = t % 2 == 0;
+            Thread thread = new Thread(() -> {
+                Session session = service.login("alice", "pw");
+                for (int i = 0; i < 2000; i++) {
+                    if (forward) {
+                        service.transfer(session, chequing, savings, 3);
+                    } else {
+                        service.transfer(session, savings, chequing, 3);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long total = service.balance(alice, chequing).getBalance() + service.balance(alice, savings).getBalance();
+        assertEquals(1000, total);
+    }
+
+    @Test
+    public void requestsKeepTheirChangesWhenUsersArePagedOut() throws Exception {
+        File store = File.createTempFile("users", ".dat");
+        File deposits = File.createTempFile("deposits", ".txt");
+        System.setProperty("atm.users.store", store.getPath());
+        System.setProperty("atm.users.cache", "1");
+        DepositFeed.setDefault(new DepositFeed(deposits, true));
+        try {
+            AtmService paged = new AtmService(new ATM());
+            Session pagedManager = paged.login("manager", "password");
+            for (int u = 0; u < 4; u++) {
+                assertTrue(paged.createUser(pagedManager, "user" + u, "pw").isOk());
+            }
+            Session alice = paged.login("user0", "pw");
+            Result[] deposited = new Result[1];
+            Thread depositor = new Thread(() -> deposited[0] = paged.deposit(alice));
+            depositor.start();
+            Thread.sleep(200);
+            // pushes alice out of the cache while her deposit waits.
+            for (int u = 1; u < 4; u++) {
+                paged.accounts(paged.login("user" + u, "pw"));
+            }
+            try (FileWriter w = new FileWriter(deposits, true)) {
+                w.write("20.00\n");
+            }
+            depositor.join();
+            assertTrue(deposited[0].isOk());
+            for (int u = 1; u < 4; u++) {
+                paged.accounts(paged.login("user" + u, "pw"));
+            }
+            System.gc();
+            assertEquals(2000, paged.balance(alice, accountOfType(paged, alice, "chequing")).getBalance());
+        } finally {
+            System.clearProperty("atm.users.store");
+            System.clearProperty("atm.users.cache");
+            DepositFeed.setDefault(null);
+            store.delete();
+            deposits.delete();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package service;
+import account.OutgoingPayments;
+import atm.ATM;
+import investments.PriceCache;
+import investments.SyntheticMarketDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LoadGeneratorTest {
+    private File payments;
+
+    @Before
+    public void setUp() throws Exception {
+        PriceCache.setDefault(new PriceCache(new SyntheticMarketDataProvider(7), 1024, 60000));
+        payments = File.createTempFile("outgoing", ".txt");
+        OutgoingPayments.setDefault(new OutgoingPayments(payments, 1024, Long.MAX_VALUE));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        OutgoingPayments.getDefault().close();
+        OutgoingPayments.setDefault(null);
+        PriceCache.setDefault(null);
+        payments.delete();
+    }
+
+    @Test
+    public void picksInProportionToWeights() {
+        LoadGenerator generator = new LoadGenerator(new AtmService(new ATM()), 0, "withdraw:3, undo:1", 1);
+        Random random = new Random(1);
+        int withdrawals = 0;
+        for (int i = 0; i < 4000; i++) {
+            LoadGenerator.Operation operation = generator.pick(random);
+            assertTrue(operation == LoadGenerator.Operation.WITHDRAW || operation == LoadGenerator.Operation.UNDO);
+            if (operation == LoadGenerator.Operation.WITHDRAW) {
+                withdrawals++;
+            }
+        }
+        assertTrue(withdrawals > 2800 && withdrawals < 3200);
+    }
+
+    @Test
+    public void rejectsBadMixes() {
+        for (String mix : new String[]{"withdraw", "fly:1", "withdraw:-1", "withdraw:0"}) {
+            try {
+                LoadGenerator.parseMix(mix);
+                fail(mix);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void finishesEveryRequestItSends() throws Exception {
+        LoadGenerator generator = new LoadGenerator(new AtmService(new ATM()), 20, LoadGenerator.DEFAULT_MIX, 1);
+        long sent = generator.run(2000, 250, 4, 1);
+        assertEquals(500, sent);
+        long finished = 0;
+        for (LoadGenerator.Operation operation : LoadGenerator.Operation.values()) {
+            finished += generator.count(operation);
+            assertTrue(generator.succeeded(operation) <= generator.count(operation));
+        }
+        assertEquals(sent, finished);
+        assertTrue(generator.succeeded(LoadGenerator.Operation.TRANSFER) > 0);
+        assertTrue(generator.report(250000000L).contains("transfer"));
+    }
+}
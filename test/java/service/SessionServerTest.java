@@ -0,0 +1,109 @@
+package service;
+import atm.ATM;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SessionServerTest {
+    private AtmService service;
+    private SessionServer server;
+    private InetSocketAddress address;
+
+    @Before
+    public void setUp() throws IOException {
+        service = new AtmService(new ATM());
+        Session manager = service.login("manager", "password");
+        for (int i = 0; i < 8; i++) {
+            service.createUser(manager, "user" + i, "pw");
+        }
+        server = new SessionServer(service, 4);
+        address = (InetSocketAddress) server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        server.close();
+    }
+
+    /**
+     * Sends every command in one write, then reads one reply per command.
+     */
+    private ArrayList<String> converse(String... lines) throws IOException {
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(String.join("\n", lines) + "\n");
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8));
+            ArrayList<String> replies = new ArrayList<>();
+            for (int i = 0; i < lines.length; i++) {
+                replies.add(in.readLine());
+            }
+            return replies;
+        }
+    }
+
+    @Test
+    public void repliesInOrder() throws IOException {
+        ArrayList<String> replies = converse("balance 1000", "login user0 nope", "login user0 pw", "accounts",
+                "withdraw 1000 abc", "frobnicate", "quit");
+        assertTrue(replies.get(0).startsWith("NOT_ALLOWED"));
+        assertTrue(replies.get(1).startsWith("NOT_ALLOWED"));
+        assertTrue(replies.get(2).startsWith("OK Logged in as user0"));
+        assertTrue(replies.get(3).contains(":chequing:"));
+        assertTrue(replies.get(4).startsWith("INVALID"));
+        assertTrue(replies.get(5).startsWith("INVALID"));
+        assertEquals("OK Bye", replies.get(6));
+    }
+
+    @Test
+    public void servesManyTerminalsAtOnce() throws Exception {
+        AtomicInteger ok = new AtomicInteger();
+        ArrayList<Thread> terminals = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            String user = "user" + (i % 8);
+            Thread terminal = new Thread(() -> {
+                try {
+                    for (String reply : converse("login " + user + " pw", "accounts", "stats", "quit")) {
+                        if (reply.startsWith("OK")) {
+                            ok.incrementAndGet();
+                        }
+                    }
+                } catch (IOException e) {
+                    fail(e.getMessage());
+                }
+            });
+            terminals.add(terminal);
+            terminal.start();
+        }
+        for (Thread terminal : terminals) {
+            terminal.join();
+        }
+        assertEquals(64, ok.get());
+        assertTrue(server.report().contains("total 16 requests 64"));
+    }
+
+    @Test
+    public void slowTerminalDoesNotBlockOthers() throws Exception {
+        // a terminal that sends half a line and never finishes it.
+        try (SocketChannel slow = SocketChannel.open(address)) {
+            slow.write(ByteBuffer.wrap("login us".getBytes(StandardCharsets.UTF_8)));
+            ArrayList<String> replies = converse("login user1 pw", "quit");
+            assertTrue(replies.get(0).startsWith("OK"));
+            assertEquals("OK Bye", replies.get(1));
+            assertTrue(server.getActiveSessions() >= 1);
+        }
+    }
+}